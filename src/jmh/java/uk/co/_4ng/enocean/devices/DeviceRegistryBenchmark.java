@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.devices;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookup of the sender of a received telegram in the
+ * {@link PersistentDeviceSet} with the {@link HashMap} it replaced, which
+ * copied the address out of the telegram, wrapped it in a ByteBuffer and
+ * boxed the UID, and with a {@link ConcurrentHashMap}, the obvious thread
+ * safe alternative. One telegram in 10 comes from an unknown device.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec}, JMH options can be
+ * given with {@code -Djmh.args="..."}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceRegistryBenchmark {
+
+    // the offset of the sender address in the radio data of a 4BS telegram
+    private static final int SENDER = 5;
+
+    // the number of telegrams cycled through, a power of 2
+    private static final int TELEGRAMS = 4096;
+
+    // the number of registered devices
+    @Param({"100", "20000"})
+    private int devices;
+
+    // the registries compared
+    private PersistentDeviceSet deviceSet;
+    private Map<Integer, EnOceanDevice> hashMap;
+    private Map<Integer, EnOceanDevice> concurrentMap;
+
+    // the radio data of the telegrams looked up
+    private byte[][] telegrams;
+
+    // the device registered and unregistered while the lookups run
+    private EnOceanDevice churned;
+
+    /**
+     * Registers the devices and builds the telegrams
+     */
+    @Setup
+    public void setUp() {
+        deviceSet = new PersistentDeviceSet();
+        hashMap = new HashMap<>();
+        concurrentMap = new ConcurrentHashMap<>();
+        int[] uids = new int[devices];
+        for (int i = 0; i < devices; i++) {
+            // devices of a batch have consecutive addresses
+            EnOceanDevice device = new EnOceanDevice(address(0x01800000 + i), null);
+            uids[i] = device.getAddressInt();
+            deviceSet.add(device);
+            hashMap.put(uids[i], device);
+            concurrentMap.put(uids[i], device);
+        }
+        churned = new EnOceanDevice(address(0xFF800000), null);
+
+        Random random = new Random(42);
+        telegrams = new byte[TELEGRAMS][];
+        for (int i = 0; i < TELEGRAMS; i++) {
+            int uid = random.nextInt(10) == 0 ? 0x02000000 + random.nextInt(devices) : uids[random.nextInt(devices)];
+            byte[] telegram = new byte[SENDER + 5];
+            telegram[0] = (byte) 0xA5;
+            System.arraycopy(address(uid), 0, telegram, SENDER, 4);
+            telegrams[i] = telegram;
+        }
+    }
+
+    /**
+     * Looks the sender up in the device set, straight from the telegram
+     *
+     * @param cursor Telegram cursor of the thread
+     * @return Device found, null if unknown
+     */
+    @Benchmark
+    public EnOceanDevice deviceSet(Cursor cursor) {
+        return deviceSet.getByAddress(cursor.next(telegrams), SENDER);
+    }
+
+    /**
+     * Looks the sender up as the former registry did
+     *
+     * @param cursor Telegram cursor of the thread
+     * @return Device found, null if unknown
+     */
+    @Benchmark
+    public EnOceanDevice hashMap(Cursor cursor) {
+        byte[] telegram = cursor.next(telegrams);
+        byte[] address = Arrays.copyOfRange(telegram, SENDER, SENDER + 4);
+        return hashMap.get(ByteBuffer.wrap(address).getInt());
+    }
+
+    /**
+     * Looks the sender up in a concurrent map, boxing the UID
+     *
+     * @param cursor Telegram cursor of the thread
+     * @return Device found, null if unknown
+     */
+    @Benchmark
+    public EnOceanDevice concurrentMap(Cursor cursor) {
+        return concurrentMap.get(EnOceanDevice.byteAddressToUID(cursor.next(telegrams), SENDER));
+    }
+
+    /**
+     * Looks senders up in the device set while a device is registered and
+     * unregistered, as when commissioning during live traffic
+     *
+     * @param cursor Telegram cursor of the thread
+     * @return Device found, null if unknown
+     */
+    @Benchmark
+    @Group("deviceSetChurn")
+    @GroupThreads(3)
+    public EnOceanDevice deviceSetLookup(Cursor cursor) {
+        return deviceSet.getByAddress(cursor.next(telegrams), SENDER);
+    }
+
+    /**
+     * Registers and unregisters a device in the device set
+     *
+     * @return Device removed
+     */
+    @Benchmark
+    @Group("deviceSetChurn")
+    @GroupThreads(1)
+    public EnOceanDevice deviceSetRegister() {
+        deviceSet.add(churned);
+        return deviceSet.remove(churned);
+    }
+
+    /**
+     * Looks senders up in the concurrent map while a device is registered
+     * and unregistered
+     *
+     * @param cursor Telegram cursor of the thread
+     * @return Device found, null if unknown
+     */
+    @Benchmark
+    @Group("concurrentMapChurn")
+    @GroupThreads(3)
+    public EnOceanDevice concurrentMapLookup(Cursor cursor) {
+        return concurrentMap.get(EnOceanDevice.byteAddressToUID(cursor.next(telegrams), SENDER));
+    }
+
+    /**
+     * Registers and unregisters a device in the concurrent map
+     *
+     * @return Device removed
+     */
+    @Benchmark
+    @Group("concurrentMapChurn")
+    @GroupThreads(1)
+    public EnOceanDevice concurrentMapRegister() {
+        concurrentMap.put(churned.getAddressInt(), churned);
+        return concurrentMap.remove(churned.getAddressInt());
+    }
+
+    private static byte[] address(int uid) {
+        return ByteBuffer.allocate(4).putInt(uid).array();
+    }
+
+    /**
+     * The telegram each thread looks up next, kept per thread so that the
+     * threads do not contend on it
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        // the index of the next telegram
+        private int next;
+
+        private byte[] next(byte[][] telegrams) {
+            return telegrams[next++ & TELEGRAMS - 1];
+        }
+    }
+}
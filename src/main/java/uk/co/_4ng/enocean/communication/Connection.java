@@ -21,15 +21,21 @@ import uk.co._4ng.enocean.devices.DeviceManager;
 import uk.co._4ng.enocean.devices.EnOceanDevice;
 import uk.co._4ng.enocean.eep.EEP;
 import uk.co._4ng.enocean.eep.eep26.telegram.EEP26Telegram;
-import uk.co._4ng.enocean.eep.eep26.telegram.EEP26TelegramFactory;
+import uk.co._4ng.enocean.eep.eep26.telegram.EEP26TelegramType;
+import uk.co._4ng.enocean.eep.eep26.telegram.EEP26TelegramView;
+import uk.co._4ng.enocean.link.CommandKeyExtractor;
 import uk.co._4ng.enocean.link.LinkLayer;
 import uk.co._4ng.enocean.link.PacketListener;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.event.Event;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.radio.Radio;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.response.Response;
+import uk.co._4ng.enocean.util.EnOceanException;
 import uk.co._4ng.enocean.util.EnOceanUtils;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 /**
  * The EnOcean for Java (EnJ) connection layer. It decouples link-level
  * communication and protocol management issues from the application logic.
@@ -58,6 +64,19 @@ public class Connection implements PacketListener {
     private final TeachInHandler teachIn;
     private final DeviceManager deviceManager;
 
+    // decodes received telegrams in place, only used by the delivery thread
+    private final EEP26TelegramView telegramView = new EEP26TelegramView();
+
+    // answers the teach-in requests needing a response on the priority
+    // delivery thread, with its own view
+    private final EEP26TelegramView priorityTelegramView = new EEP26TelegramView();
+    private final PacketListener priorityListener = new PacketListener() {
+        @Override
+        public void handlePacket(ESP3Packet pkt) {
+            handlePriorityPacket(pkt);
+        }
+    };
+
     /**
      * Build a connection layer instance on top of the given link layer
      * instance.
@@ -66,6 +85,19 @@ public class Connection implements PacketListener {
      *                  layer.
      */
     public Connection(LinkLayer linkLayer, DeviceManager deviceManager) {
+        this(linkLayer, deviceManager, true);
+    }
+
+    /**
+     * Build a connection layer instance on top of the given link layer
+     * instance, optionally leaving the received packets to someone else, e.g.
+     * a {@link GatewayGroup} merging several link layers
+     *
+     * @param linkLayer The {@link LinkLayer} used to send packets
+     * @param attach    True to listen to the packets received by the link
+     *                  layer
+     */
+    Connection(LinkLayer linkLayer, DeviceManager deviceManager, boolean attach) {
 
         // store a reference to the link layer
         this.linkLayer = linkLayer;
@@ -73,11 +105,15 @@ public class Connection implements PacketListener {
         // store the device manager to use
         this.deviceManager = deviceManager;
 
-        // add this connection layer as listener for incoming events
-        this.linkLayer.addPacketListener(this);
-
         // Create the teach-in manager
         teachIn = new TeachInHandler(linkLayer);
+
+        // add this connection layer as listener for incoming events, and for
+        // the ones needing a timely response
+        if (attach) {
+            this.linkLayer.addPacketListener(this);
+            this.linkLayer.addPriorityPacketListener(priorityListener);
+        }
     }
 
     /**
@@ -90,6 +126,53 @@ public class Connection implements PacketListener {
      * @param payload Payload to send
      */
     public void sendRadioCommand(byte[] address, byte[] payload) {
+        // build the link-layer packet and it
+        registerCommandKeyExtractor(address);
+        linkLayer.send(buildRadioCommand(address, payload));
+    }
+
+    /**
+     * Sends the given payload encapsulated into a Radio message, like
+     * {@link #sendRadioCommand(byte[], byte[])}, and returns a future
+     * completed with the transceiver's response
+     *
+     * @param address Address to send to
+     * @param payload Payload to send
+     * @param timeout Maximum time to wait for the response, 0 for no limit
+     * @param unit    Unit of the timeout
+     * @return Future completed with the response
+     */
+    public CompletableFuture<Response> sendRadioCommandAsync(byte[] address, byte[] payload, long timeout, TimeUnit unit) {
+        registerCommandKeyExtractor(address);
+        return linkLayer.sendAsync(buildRadioCommand(address, payload), timeout, unit);
+    }
+
+    /**
+     * Registers with the transmit scheduler how the profile of the destination
+     * tells which state a command sets, so that the commands sent to it can be
+     * coalesced
+     *
+     * @param address Address to send to
+     */
+    private void registerCommandKeyExtractor(byte[] address) {
+        EnOceanDevice device = deviceManager.getDevice(address);
+        if (device != null && device.getEEP() != null) {
+            CommandKeyExtractor keyExtractor = device.getEEP().getCommandKeyExtractor();
+            if (keyExtractor != null) {
+                linkLayer.getTransmitter().getScheduler().setCommandKeyExtractor(device.getAddressInt(), keyExtractor);
+            }
+        }
+    }
+
+    /**
+     * Builds the Radio packet carrying the given payload, adding the sender
+     * address and the status
+     *
+     * @param address Address to send to
+     * @param payload Payload to send
+     * @return Radio packet
+     */
+    private Radio buildRadioCommand(byte[] address, byte[] payload) {
         // add sender address and status
         byte[] actualPayload = new byte[payload.length + 5];
 
@@ -105,8 +188,7 @@ public class Connection implements PacketListener {
         // status
         actualPayload[payload.length + 4] = (byte) 0x00;
 
-        // build the link-layer packet and it
-        linkLayer.send(Radio.getRadio(address, actualPayload, true));
+        return Radio.getRadio(address, actualPayload, true);
     }
 
     /*
@@ -118,7 +200,7 @@ public class Connection implements PacketListener {
         // network or a response
         try {
             if (pkt.isRadio()) {
-                handleRadioPacket(new Radio(pkt));
+                handleRadioPacket(pkt);
             }
             else if (pkt.isResponse()) {
                 handleResponse(new Response(pkt));
@@ -133,24 +215,55 @@ public class Connection implements PacketListener {
     }
 
     /**
-     * Handles the packet and any notifications
+     * Handles the packets needing a timely response, on the priority delivery
+     * thread. UTE teach-in requests and Smart Ack events are answered here
+     * rather than on the regular delivery path.
+     *
+     * @param pkt Packet needing a response
+     */
+    void handlePriorityPacket(ESP3Packet pkt) {
+        try {
+            if (pkt.isEvent()) {
+                teachIn.handleSmartAck(new Event(pkt), deviceManager);
+            }
+            else if (priorityTelegramView.wrap(pkt) && priorityTelegramView.getTelegramType() == EEP26TelegramType.UTETeachIn) {
+                EnOceanDevice device = deviceManager.getDevice(priorityTelegramView.getAddressAsInt());
+                EEP26Telegram telegram = priorityTelegramView.toOwned();
+                teachIn.handle(telegram, new Radio(telegram.getRawPacket()), device);
+            }
+        }
+        catch (Exception e) {
+            logger.warn("Error while handling received packet needing a response", e);
+        }
+    }
+
+    /**
+     * Handles the packet and any notifications. The telegram is first decoded
+     * in place, an owned telegram is only built when it is actually
+     * dispatched, i.e. for teach-in requests and registered devices.
      *
      * @param pkt Packet to interrogate
+     * @throws EnOceanException If the teach-in packet is not a valid radio packet
      */
-    private void handleRadioPacket(Radio pkt) {
+    private void handleRadioPacket(ESP3Packet pkt) throws EnOceanException {
 
-        logger.debug("Radio packet received: {}", pkt);
-        EEP26Telegram telegram = EEP26TelegramFactory.getEEP26Telegram(pkt);
-        if (telegram != null) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Radio packet received: {}", EnOceanUtils.toHexString(pkt.getPacketAsBytes()));
+        }
+        if (telegramView.wrap(pkt)) {
 
             // We should only handle teach-in requests when in teach-in mode and if we don't
             // already have the device registered
-            byte[] address = telegram.getAddress();
-            EnOceanDevice device = deviceManager.getDevice(address);
+            EnOceanDevice device = deviceManager.getDevice(telegramView.getAddressAsInt());
 
-            // Is this a teach-in request
-            if (telegram.isTeachIn()) {
-                teachIn.handle(telegram, pkt, device);
+            // Is this a teach-in request, the ones needing a response are
+            // answered on the priority path unless it dropped them
+            if (telegramView.isTeachIn()) {
+                if (pkt.requiresResponse() && pkt.isPriorityQueued()) {
+                    return;
+                }
+                EEP26Telegram telegram = telegramView.toOwned();
+                teachIn.handle(telegram, new Radio(telegram.getRawPacket()), device);
             }
 
             // Normal request so check if we have a device registered
@@ -161,7 +274,7 @@ public class Connection implements PacketListener {
 
                 // check not null
                 if (deviceEEP != null) {
-                    if (!deviceEEP.handleUpdate(deviceManager, telegram, device)) {
+                    if (!deviceEEP.handleUpdate(deviceManager, telegramView.toOwned(), device)) {
                         logger.warn("Profile update for {} was not handled successfully", EnOceanUtils.toHexString(device.getAddress()));
                     }
                 }
@@ -182,12 +295,16 @@ public class Connection implements PacketListener {
     }
 
     /**
-     * Default event handler
+     * Default event handler, answering the Smart Ack events the priority
+     * path dropped
      *
      * @param pkt Event packet
      */
     private void handleEvent(Event pkt) {
         logger.debug("Received event: {}", pkt.toString());
+        if (pkt.requiresResponse() && !pkt.isPriorityQueued()) {
+            teachIn.handleSmartAck(pkt, deviceManager);
+        }
     }
 
     /**
@@ -198,6 +315,14 @@ public class Connection implements PacketListener {
         return teachIn;
     }
 
+    /**
+     * Returns the link layer the connection is built on
+     * @return Link layer
+     */
+    public LinkLayer getLinkLayer() {
+        return linkLayer;
+    }
+
     /**
      * Returns the device manager for the connection
      * @return Device manager
@@ -0,0 +1,641 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.communication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co._4ng.enocean.devices.DeviceManager;
+import uk.co._4ng.enocean.link.DuplicateFilter;
+import uk.co._4ng.enocean.link.LinkLayer;
+import uk.co._4ng.enocean.link.PacketListener;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the telegrams received by several gateways (transceivers and their
+ * {@link LinkLayer}s) covering the same site, so that a telegram heard by
+ * several of them is decoded and dispatched once.
+ * <p>
+ * The radio telegrams are matched by sender address and payload. The first
+ * copy of a telegram is held for a short window, during which the copies
+ * heard by the other gateways are merged into it, keeping the strongest one;
+ * the telegram is then handled by the {@link Connection} of the gateway that
+ * heard it best, which also answers teach-in requests. Copies arriving within
+ * another window after that are dropped. Teach-in requests needing a timely
+ * response are answered by the first gateway reporting them. The signal
+ * strength every gateway heard each registered sender with is recorded, see
+ * {@link #getReceptions(int)}; the records of the senders removed from the
+ * {@link DeviceManager} are forgotten.
+ * <p>
+ * With a single gateway the telegrams are handled as they arrive.
+ */
+public class GatewayGroup {
+
+    private static final Logger logger = LoggerFactory.getLogger(GatewayGroup.class);
+
+    // the default time a telegram waits for its copies, in milliseconds
+    public static final int DEFAULT_WINDOW = 50;
+
+    // the number of reception records kept before sweeping the removed senders
+    private static final int MIN_SWEEP = 256;
+
+    // the device manager shared by the gateways
+    private final DeviceManager deviceManager;
+
+    // the gateways, by index
+    private final List<Gateway> gateways = new CopyOnWriteArrayList<>();
+
+    // the time a telegram waits for its copies, in nanoseconds
+    private volatile long window = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW);
+
+    // the telegrams by key, those waiting for their copies and those already
+    // handled, in arrival order, guarded by the lock
+    private final Object lock = new Object();
+    private final Map<Long, Pending> pending = new HashMap<>();
+    private final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+    private final ArrayDeque<Pending> handled = new ArrayDeque<>();
+
+    // the arrival time of the teach-in requests answered, by key, guarded by
+    // the lock
+    private final Map<Long, Long> answered = new HashMap<>();
+
+    // the signal strength every registered sender was heard with, by sender
+    // UID, and the size past which the removed senders are swept, guarded by
+    // the lock
+    private final Map<Integer, Receptions> receptions = new HashMap<>();
+    private int sweepAt = MIN_SWEEP;
+
+    // the thread handling the telegrams once their window has elapsed
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    // statistics, guarded by the lock
+    private long received;
+    private long merged;
+    private long late;
+    private long dispatched;
+
+    /**
+     * Creates an empty group
+     *
+     * @param deviceManager Device manager shared by the gateways
+     */
+    public GatewayGroup(DeviceManager deviceManager) {
+        this.deviceManager = deviceManager;
+    }
+
+    /**
+     * Adds a gateway to the group, building its connection. The packets
+     * received by the link layer are handled by the group from then on, so no
+     * other {@link Connection} should be built on it.
+     *
+     * @param name      Name of the gateway, for the reception records
+     * @param linkLayer Link layer of the gateway
+     * @return Gateway
+     */
+    public synchronized Gateway addGateway(String name, LinkLayer linkLayer) {
+        final Gateway gateway = new Gateway(gateways.size(), name, new Connection(linkLayer, deviceManager, false));
+        gateway.listener = new PacketListener() {
+            @Override
+            public void handlePacket(ESP3Packet pkt) {
+                received(gateway, pkt);
+            }
+        };
+        gateway.priorityListener = new PacketListener() {
+            @Override
+            public void handlePacket(ESP3Packet pkt) {
+                receivedPriority(gateway, pkt);
+            }
+        };
+        linkLayer.addPacketListener(gateway.listener);
+        linkLayer.addPriorityPacketListener(gateway.priorityListener);
+        gateways.add(gateway);
+        if (dispatcher == null) {
+            running = true;
+            dispatcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch();
+                }
+            }, "EnOcean gateway group");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+        return gateway;
+    }
+
+    /**
+     * Returns the gateways of the group
+     *
+     * @return Read-only list of the gateways
+     */
+    public List<Gateway> getGateways() {
+        return Collections.unmodifiableList(gateways);
+    }
+
+    /**
+     * Enables the teach-in on every gateway
+     *
+     * @param teachInTime Teach-in duration, in milliseconds
+     */
+    public void enableTeachIn(int teachInTime) {
+        for (Gateway gateway : gateways) {
+            gateway.connection.getTeachIn().enableTeachIn(teachInTime);
+        }
+    }
+
+    /**
+     * Disables the teach-in on every gateway
+     */
+    public void disableTeachIn() {
+        for (Gateway gateway : gateways) {
+            gateway.connection.getTeachIn().disableTeachIn();
+        }
+    }
+
+    /**
+     * Adds a teach-in listener to every gateway
+     *
+     * @param listener Listener
+     */
+    public void addTeachInListener(TeachInListener listener) {
+        for (Gateway gateway : gateways) {
+            gateway.connection.getTeachIn().addTeachInListener(listener);
+        }
+    }
+
+    /**
+     * Sets the time a telegram waits for the copies heard by the other
+     * gateways, which is added to the delivery time of every telegram
+     *
+     * @param window Window
+     * @param unit   Unit of the window
+     */
+    public void setWindow(long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+        this.window = unit.toNanos(window);
+    }
+
+    /**
+     * Returns the time a telegram waits for its copies
+     *
+     * @param unit Unit of the result
+     * @return Window
+     */
+    public long getWindow(TimeUnit unit) {
+        return unit.convert(window, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns how the gateways last heard a sender
+     *
+     * @param uid Sender UID
+     * @return Receptions, strongest first, empty if the sender is not
+     * registered or was not heard since
+     */
+    public List<Reception> getReceptions(int uid) {
+        List<Reception> result = new ArrayList<>();
+        synchronized (lock) {
+            Receptions sender = receptions.get(uid);
+            if (sender != null && deviceManager.getDevice(uid) == null) {
+                receptions.remove(uid);
+            }
+            else if (sender != null) {
+                for (int i = 0; i < sender.heard.length; i++) {
+                    if (sender.heard[i] != 0) {
+                        result.add(new Reception(gateways.get(i), sender.dbm[i], sender.heard[i]));
+                    }
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the gateway that last heard a sender with the strongest signal,
+     * e.g. to send commands to the sender
+     *
+     * @param uid Sender UID
+     * @return Gateway or null if the sender was never heard
+     */
+    public Gateway getBestGateway(int uid) {
+        List<Reception> heard = getReceptions(uid);
+        return heard.isEmpty() ? null : heard.get(0).getGateway();
+    }
+
+    /**
+     * Returns the number of radio telegrams received by all the gateways
+     *
+     * @return Telegram count
+     */
+    public long getReceived() {
+        synchronized (lock) {
+            return received;
+        }
+    }
+
+    /**
+     * Returns the number of copies merged into a telegram waiting for them
+     *
+     * @return Copy count
+     */
+    public long getMerged() {
+        synchronized (lock) {
+            return merged;
+        }
+    }
+
+    /**
+     * Returns the number of copies dropped because the telegram was already
+     * handled
+     *
+     * @return Copy count
+     */
+    public long getLate() {
+        synchronized (lock) {
+            return late;
+        }
+    }
+
+    /**
+     * Returns the number of telegrams handled
+     *
+     * @return Telegram count
+     */
+    public long getDispatched() {
+        synchronized (lock) {
+            return dispatched;
+        }
+    }
+
+    /**
+     * Stops the dispatching thread, after handling the telegrams waiting for
+     * their copies
+     */
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            thread = dispatcher;
+            running = false;
+        }
+        if (thread != null) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            try {
+                thread.join(TimeUnit.NANOSECONDS.toMillis(window) + 1000);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Handles a packet received by a gateway, on the delivery thread of its
+     * link layer
+     */
+    private void received(Gateway gateway, ESP3Packet pkt) {
+        byte[] data = pkt.getData();
+        if (!pkt.isRadio() || data == null || data.length < 6) {
+            gateway.connection.handlePacket(pkt);
+            return;
+        }
+        long now = System.nanoTime();
+        long key = DuplicateFilter.key(data);
+        int dbm = pkt.getDbm();
+        synchronized (lock) {
+            received++;
+            record((int) (key >>> 32), gateway, dbm);
+            if (gateways.size() > 1 || !waiting.isEmpty()) {
+                Pending telegram = pending.get(key);
+                if (telegram != null && now - telegram.arrived < 2 * window) {
+                    if (telegram.pkt == null) {
+                        late++;
+                    }
+                    else {
+                        merged++;
+                        if (dbm > telegram.dbm) {
+                            telegram.pkt.release();
+                            telegram.pkt = pkt.retain();
+                            telegram.gateway = gateway;
+                            telegram.dbm = dbm;
+                        }
+                    }
+                    return;
+                }
+
+                // wait for the copies
+                telegram = new Pending(key, pkt.retain(), gateway, dbm, now);
+                pending.put(key, telegram);
+                waiting.addLast(telegram);
+                if (waiting.size() == 1) {
+                    lock.notifyAll();
+                }
+                return;
+            }
+            dispatched++;
+        }
+        gateway.connection.handlePacket(pkt);
+    }
+
+    /**
+     * Answers a packet needing a timely response, on the priority thread of
+     * the link layer of a gateway, unless another gateway already did
+     */
+    private void receivedPriority(Gateway gateway, ESP3Packet pkt) {
+        byte[] data = pkt.getData();
+        if (pkt.isRadio() && data != null && data.length >= 6 && gateways.size() > 1) {
+            long now = System.nanoTime();
+            long key = DuplicateFilter.key(data);
+            synchronized (lock) {
+                Long previous = answered.get(key);
+                if (previous != null && now - previous < 2 * window) {
+                    return;
+                }
+                if (answered.size() >= 256) {
+                    for (Iterator<Long> i = answered.values().iterator(); i.hasNext(); ) {
+                        if (now - i.next() >= 2 * window) {
+                            i.remove();
+                        }
+                    }
+                }
+                answered.put(key, now);
+            }
+        }
+        gateway.connection.handlePriorityPacket(pkt);
+    }
+
+    /**
+     * The loop of the dispatching thread: handles the telegrams whose window
+     * has elapsed, with the strongest copy, and forgets them one window later
+     */
+    private void dispatch() {
+        while (true) {
+            Pending due = null;
+            synchronized (lock) {
+                long now = System.nanoTime();
+
+                // forget the telegrams handled long enough ago
+                Pending old;
+                while ((old = handled.peekFirst()) != null && now - old.arrived >= 2 * window) {
+                    handled.pollFirst();
+                    if (pending.get(old.key) == old) {
+                        pending.remove(old.key);
+                    }
+                }
+                Pending next = waiting.peekFirst();
+                if (next != null && (now - next.arrived >= window || !running)) {
+                    due = waiting.pollFirst();
+                    handled.addLast(due);
+                    dispatched++;
+                }
+                else if (next == null && !running) {
+                    return;
+                }
+                else {
+                    long wait = next != null ? next.arrived + window - now : !handled.isEmpty() ? handled.peekFirst().arrived + 2 * window - now : 0;
+                    try {
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                        }
+                        else {
+                            lock.wait();
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    continue;
+                }
+            }
+
+            // handle the strongest copy
+            ESP3Packet pkt;
+            Gateway gateway;
+            synchronized (lock) {
+                pkt = due.pkt;
+                gateway = due.gateway;
+                due.pkt = null;
+            }
+            try {
+                gateway.connection.handlePacket(pkt);
+            }
+            catch (RuntimeException e) {
+                logger.warn("Error while handling a telegram received by {}", gateway.getName(), e);
+            }
+            finally {
+                pkt.release();
+            }
+        }
+    }
+
+    /**
+     * Records the signal strength a gateway heard a registered sender with,
+     * with the lock held
+     */
+    private void record(int uid, Gateway gateway, int dbm) {
+        Receptions sender = receptions.get(uid);
+        if (sender == null) {
+            if (deviceManager.getDevice(uid) == null) {
+                return;
+            }
+            if (receptions.size() >= sweepAt) {
+                sweep();
+            }
+            sender = new Receptions(gateways.size());
+            receptions.put(uid, sender);
+        }
+        if (gateway.index >= sender.heard.length) {
+            sender.heard = Arrays.copyOf(sender.heard, gateways.size());
+            sender.dbm = Arrays.copyOf(sender.dbm, gateways.size());
+        }
+        sender.heard[gateway.index] = System.currentTimeMillis();
+        sender.dbm[gateway.index] = dbm;
+    }
+
+    /**
+     * Forgets the senders no longer registered, with the lock held; the next
+     * sweep happens once the records doubled, so that sweeping costs a
+     * constant time per record
+     */
+    private void sweep() {
+        for (Iterator<Integer> i = receptions.keySet().iterator(); i.hasNext(); ) {
+            if (deviceManager.getDevice(i.next()) == null) {
+                i.remove();
+            }
+        }
+        sweepAt = Math.max(MIN_SWEEP, 2 * receptions.size());
+    }
+
+    /**
+     * A gateway of the group
+     */
+    public static final class Gateway {
+
+        // the position of the gateway in the group
+        private final int index;
+
+        // the name of the gateway
+        private final String name;
+
+        // the connection handling the telegrams the gateway heard best
+        private final Connection connection;
+
+        // the listeners handing the packets received over to the group
+        private PacketListener listener;
+        private PacketListener priorityListener;
+
+        private Gateway(int index, String name, Connection connection) {
+            this.index = index;
+            this.name = name;
+            this.connection = connection;
+        }
+
+        /**
+         * Returns the name of the gateway
+         *
+         * @return Name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the connection of the gateway, e.g. to send commands
+         *
+         * @return Connection
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Returns the link layer of the gateway
+         *
+         * @return Link layer
+         */
+        public LinkLayer getLinkLayer() {
+            return connection.getLinkLayer();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * How a gateway last heard a sender
+     */
+    public static final class Reception implements Comparable<Reception> {
+        private final Gateway gateway;
+        private final int dbm;
+        private final long time;
+
+        private Reception(Gateway gateway, int dbm, long time) {
+            this.gateway = gateway;
+            this.dbm = dbm;
+            this.time = time;
+        }
+
+        /**
+         * Returns the gateway
+         *
+         * @return Gateway
+         */
+        public Gateway getGateway() {
+            return gateway;
+        }
+
+        /**
+         * Returns the signal strength of the last telegram heard
+         *
+         * @return Signal strength in dBm, {@link ESP3Packet#UNKNOWN_DBM} if
+         * not reported by the gateway
+         */
+        public int getDbm() {
+            return dbm;
+        }
+
+        /**
+         * Returns the time the last telegram was heard
+         *
+         * @return Milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public int compareTo(Reception other) {
+            return Integer.compare(other.dbm, dbm);
+        }
+
+        @Override
+        public String toString() {
+            return gateway + " " + dbm + " dBm";
+        }
+    }
+
+    /**
+     * A telegram waiting for its copies, or recently handled
+     */
+    private static final class Pending {
+        private final long key;
+        private final long arrived;
+
+        // the strongest copy, null once handled
+        private ESP3Packet pkt;
+        private Gateway gateway;
+        private int dbm;
+
+        private Pending(long key, ESP3Packet pkt, Gateway gateway, int dbm, long arrived) {
+            this.key = key;
+            this.pkt = pkt;
+            this.gateway = gateway;
+            this.dbm = dbm;
+            this.arrived = arrived;
+        }
+    }
+
+    /**
+     * The last receptions of a sender by every gateway
+     */
+    private static final class Receptions {
+        private long[] heard;
+        private int[] dbm;
+
+        private Receptions(int gateways) {
+            heard = new long[gateways];
+            dbm = new int[gateways];
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.communication;
+
+import uk.co._4ng.enocean.devices.DeviceManager;
+import uk.co._4ng.enocean.link.RxFilter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An {@link RxFilter} keeping the radio frames sent by the devices registered
+ * with a {@link DeviceManager}, so that the telegrams of the neighbouring
+ * devices are dropped before anything is built for them. The sender address
+ * is looked up directly in the frame against the device registry, which is
+ * always in sync with the registrations and does not allocate. While teach-in
+ * is enabled on any of the given handlers, every frame is kept so that new
+ * devices can be learnt; the teach-in handler of the connection is therefore
+ * required at construction.
+ * <pre>
+ * KnownAddressFilter filter = new KnownAddressFilter(deviceManager, connection.getTeachIn());
+ * linkLayer.setRxFilter(filter);
+ * </pre>
+ */
+public class KnownAddressFilter implements RxFilter {
+
+    // the registry of the known devices
+    private final DeviceManager deviceManager;
+
+    // the teach-in handlers bypassing the filter while enabled
+    private final List<TeachInHandler> teachInHandlers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a filter keeping the devices registered with a device manager,
+     * and every frame while teach-in is enabled on the given handler
+     *
+     * @param deviceManager  Device manager
+     * @param teachInHandler Teach-in handler, e.g. {@link Connection#getTeachIn()}
+     */
+    public KnownAddressFilter(DeviceManager deviceManager, TeachInHandler teachInHandler) {
+        if (teachInHandler == null) {
+            throw new IllegalArgumentException("A teach-in handler is required, new devices could not be learnt otherwise");
+        }
+        this.deviceManager = deviceManager;
+        teachInHandlers.add(teachInHandler);
+    }
+
+    /**
+     * Adds another teach-in handler, e.g. of a second gateway, the filter
+     * keeps every frame while teach-in is enabled on it
+     *
+     * @param teachInHandler Teach-in handler, e.g. {@link Connection#getTeachIn()}
+     */
+    public void addTeachInHandler(TeachInHandler teachInHandler) {
+        if (teachInHandler != null) {
+            teachInHandlers.add(teachInHandler);
+        }
+    }
+
+    /**
+     * Removes a teach-in handler
+     *
+     * @param teachInHandler Teach-in handler
+     */
+    public void removeTeachInHandler(TeachInHandler teachInHandler) {
+        teachInHandlers.remove(teachInHandler);
+    }
+
+    /**
+     * Tells whether the filter is bypassed because teach-in is enabled
+     *
+     * @return True if every frame is kept
+     */
+    public boolean isBypassed() {
+        for (TeachInHandler teachInHandler : teachInHandlers) {
+            if (teachInHandler.isTeachInEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean accept(byte[] frame, int offset, int dataLength, int optLength) {
+        return deviceManager.getDevice(frame, RxFilter.getSenderOffset(offset, dataLength)) != null || isBypassed();
+    }
+}
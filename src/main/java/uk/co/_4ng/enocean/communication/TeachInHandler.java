@@ -24,8 +24,11 @@ import uk.co._4ng.enocean.eep.eep26.EEPRegistry;
 import uk.co._4ng.enocean.eep.eep26.telegram.*;
 import uk.co._4ng.enocean.link.LinkLayer;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.event.Event;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.radio.Radio;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.response.Response;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Timer;
@@ -38,13 +41,25 @@ public class TeachInHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(TeachInHandler.class);
 
+    // the confirm codes answering a Smart Ack learn request
+    private static final byte SA_LEARN_IN = 0x00;
+    private static final byte SA_DISCARD_EEP_UNKNOWN = 0x11;
+    private static final byte SA_DISCARD_NO_PLACE = 0x13;
+
+    // the time given to a Smart Ack client taught in to send its first
+    // telegram, in milliseconds
+    private static final int SA_RESPONSE_TIME = 500;
+
+    // the length of the SA_CONFIRM_LEARN event data
+    private static final int SA_CONFIRM_LEARN_LENGTH = 17;
+
     private final LinkLayer linkLayer;
 
     // the set of device listeners to keep updated about device events
     private final Set<TeachInListener> teachInListeners;
 
-    // the teach-in flag
-    private boolean teachInEnabled;
+    // the teach-in flag, read by both delivery threads
+    private volatile boolean teachInEnabled;
 
     // the teach in timer
     private final Timer teachInTimer;
@@ -187,6 +202,10 @@ public class TeachInHandler {
         // the possible response to send back to the transceiver
         UTETeachInTelegram response = null;
 
+        // the device taught in, the listeners are only informed once the
+        // response has been sent
+        EnOceanDevice device = null;
+
         // check the packet type
         if (pkt.isTeachInRequest()) {
             // check the eep
@@ -196,7 +215,7 @@ public class TeachInHandler {
                 response = pkt.buildResponse(UTETeachInTelegram.BIDIRECTIONAL_TEACH_IN_SUCCESSFUL);
 
                 // build the device
-                informNewDeviceFound(DeviceManager.createDevice(pkt.getAddress(), pkt.getManId(), pkt.getEEP()));
+                device = DeviceManager.createDevice(pkt.getAddress(), pkt.getManId(), pkt.getEEP());
             }
             // build the response packet
             else {
@@ -221,6 +240,9 @@ public class TeachInHandler {
             // priority as a maximum 500ms latency is allowed.
             linkLayer.send(response.getRawPacket(), true);
         }
+        if (device != null) {
+            informNewDeviceFound(device);
+        }
     }
 
     /**
@@ -300,6 +322,68 @@ public class TeachInHandler {
         }
     }
 
+    /**
+     * Answers the Smart Ack events expecting a response, see
+     * {@link ESP3Packet#requiresResponse()}. A learn request (SA_CONFIRM_LEARN)
+     * is accepted while teach-in is enabled if the client EEP is supported,
+     * or if the client is already registered, and refused otherwise; the
+     * other events are acknowledged.
+     *
+     * @param event         Event received from the transceiver
+     * @param deviceManager Registry of the known devices
+     */
+    void handleSmartAck(Event event, DeviceManager deviceManager) {
+        byte[] data = event.getData();
+        if (!event.retSaConfirmLearn()) {
+            // SA_RECLAIM_NOT_SUCCESSFUL and SA_LEARN_ACK only need to be
+            // acknowledged
+            linkLayer.send(new Response(Response.RET_OK), true);
+            return;
+        }
+        if (data.length < SA_CONFIRM_LEARN_LENGTH) {
+            logger.warn("Invalid Smart Ack learn request: {}", event);
+            linkLayer.send(new Response(Response.RET_WRONG_PARAM), true);
+            return;
+        }
+
+        // the client, its manufacturer and its profile
+        byte[] manId = {(byte) (data[2] & 0x07), data[3]};
+        EEPIdentifier eep = new EEPIdentifier(data[4] & 0xff, data[5] & 0xff, data[6] & 0xff);
+        byte[] address = Arrays.copyOfRange(data, 12, 16);
+
+        // the device taught in, the listeners are only informed once the
+        // response has been sent
+        EnOceanDevice device = deviceManager.getDevice(address);
+        EnOceanDevice newDevice = null;
+        byte confirmCode;
+        if (device != null) {
+            confirmCode = SA_LEARN_IN;
+        }
+        else if (!isTeachInEnabled()) {
+            logger.warn("Refusing Smart Ack learn request whilst not in teach-in mode");
+            confirmCode = SA_DISCARD_NO_PLACE;
+        }
+        else if (EEPRegistry.isEEPSupported(eep)) {
+            newDevice = DeviceManager.createDevice(address, manId, eep);
+            confirmCode = newDevice != null ? SA_LEARN_IN : SA_DISCARD_EEP_UNKNOWN;
+        }
+        else {
+            confirmCode = SA_DISCARD_EEP_UNKNOWN;
+        }
+
+        // send the response back to the transceiver, with high priority as
+        // a maximum 500ms latency is allowed
+        byte[] response = {Response.RET_OK, (byte) (SA_RESPONSE_TIME >> 8), (byte) SA_RESPONSE_TIME, confirmCode};
+        linkLayer.send(new ESP3Packet(ESP3Packet.RESPONSE, response, new byte[0]), true);
+
+        if (newDevice != null) {
+            informNewDeviceFound(newDevice);
+        }
+        else if (device != null) {
+            informRegisteredDeviceFound(device);
+        }
+    }
+
     /**
      * Handles all the possible teach requests
      * @param telegram Telegram forming the request
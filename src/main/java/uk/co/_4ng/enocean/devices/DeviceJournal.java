@@ -0,0 +1,475 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.devices;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co._4ng.enocean.eep.EEP;
+import uk.co._4ng.enocean.eep.EEPIdentifier;
+import uk.co._4ng.enocean.eep.Rorg;
+import uk.co._4ng.enocean.eep.eep26.EEPRegistry;
+import uk.co._4ng.enocean.protocol.serial.v3.network.crc8.Crc8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only journal of the device registrations and removals, replayed
+ * when the application starts so that the registry is rebuilt without parsing
+ * addresses and profiles or notifying listeners for every device.
+ * <p>
+ * The file starts with an 8 byte header followed by fixed size records of
+ * {@value #RECORD_SIZE} bytes: the record type, the device UID, the
+ * manufacturer id, the profile (RORG, function, type) and a CRC8 of the
+ * preceding bytes. A record torn by a crash at the end of the file is
+ * dropped when the journal is opened, while corrupted records followed by
+ * valid ones are skipped and reported. Once the records of removed or re-registered devices outnumber
+ * both the compaction threshold and the live devices, the journal is
+ * rewritten with one record per live device and atomically renamed over
+ * the old file.
+ * <p>
+ * Records are written straight to the file, so they survive a crash of the
+ * application; call {@link #setSync(boolean)} to also force them to the
+ * storage device before returning.
+ */
+public class DeviceJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceJournal.class);
+
+    // the size of a record, in bytes
+    public static final int RECORD_SIZE = 12;
+
+    // the default number of obsolete records tolerated before compacting
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 4096;
+
+    // the file header, "ENJ" and the format version
+    private static final int MAGIC = 0x454E4A01;
+    private static final int HEADER_SIZE = 8;
+
+    // the record types
+    private static final byte REGISTER = 1;
+    private static final byte REGISTER_MANUFACTURER = 2;
+    private static final byte REMOVE = 3;
+    private static final byte CLEAR = 4;
+
+    // the journal file
+    private final Path file;
+
+    // the open file, null until opened
+    private FileChannel channel;
+
+    // the record being written
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+    // the registration record of every live device, used for compaction
+    private final Map<Integer, byte[]> live = new LinkedHashMap<>();
+
+    // the number of records in the file
+    private int records;
+
+    // the number of obsolete records tolerated before compacting
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+    // forces every record to the storage device
+    private volatile boolean sync;
+
+    // statistics
+    private volatile int loadedDevices;
+    private volatile long loadTime;
+    private volatile int compactions;
+
+    /**
+     * Creates a journal stored in the given file, created when opened if
+     * needed
+     *
+     * @param file Journal file
+     */
+    public DeviceJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the journal and replays it
+     *
+     * @return The devices registered when the journal was last written, by
+     * UID, in registration order
+     * @throws IOException If the journal cannot be read or created
+     */
+    public synchronized Map<Integer, EnOceanDevice> open() throws IOException {
+        if (channel != null) {
+            throw new IllegalStateException("The journal " + file + " is already open");
+        }
+        long start = System.nanoTime();
+        Map<Integer, EnOceanDevice> devices = new LinkedHashMap<>();
+        live.clear();
+        records = 0;
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            writeHeader(channel);
+        }
+        else {
+            // read the whole file at once, records are replayed from memory
+            ByteBuffer content = ByteBuffer.allocate((int) size);
+            while (content.hasRemaining() && channel.read(content, content.position()) >= 0) {
+                // keep reading
+            }
+            content.flip();
+            if (content.getInt() != MAGIC) {
+                channel.close();
+                channel = null;
+                throw new IOException("Not a device journal: " + file);
+            }
+            content.position(HEADER_SIZE);
+            replay(content, devices);
+
+            // drop a torn tail, later records are appended after the last
+            // valid one
+            long valid = HEADER_SIZE + (long) records * RECORD_SIZE;
+            if (valid < size) {
+                logger.warn("Dropping {} bytes after the last valid record of the device journal {}", size - valid, file);
+                channel.truncate(valid);
+            }
+        }
+        channel.position(channel.size());
+        loadedDevices = devices.size();
+        loadTime = System.nanoTime() - start;
+        logger.info("Loaded {} devices from {} records of the device journal {} in {} ms", loadedDevices, records, file, getLoadTime(TimeUnit.MILLISECONDS));
+
+        compactIfNeeded();
+        return devices;
+    }
+
+    /**
+     * Records the registration of a device
+     *
+     * @param device Registered device
+     * @throws IOException If the record cannot be written
+     */
+    public synchronized void registered(EnOceanDevice device) throws IOException {
+        byte[] manufacturerId = device.getManufacturerId();
+        EEP eep = device.getEEP();
+        EEPIdentifier id = eep == null ? null : eep.getIdentifier();
+
+        record.clear();
+        record.put(manufacturerId == null ? REGISTER : REGISTER_MANUFACTURER);
+        record.putInt(device.getAddressInt());
+        for (int i = 0; i < 3; i++) {
+            record.put(manufacturerId != null && i < manufacturerId.length ? manufacturerId[i] : 0);
+        }
+        record.put(id == null ? 0 : id.getRorg().getRorgValue());
+        record.put(id == null ? 0 : id.getFunction());
+        record.put(id == null ? 0 : id.getType());
+        append();
+        live.put(device.getAddressInt(), record.array().clone());
+        compactIfNeeded();
+    }
+
+    /**
+     * Records the removal of a device
+     *
+     * @param uid UID of the removed device
+     * @throws IOException If the record cannot be written
+     */
+    public synchronized void removed(int uid) throws IOException {
+        record.clear();
+        record.put(REMOVE);
+        record.putInt(uid);
+        record.put(new byte[RECORD_SIZE - 6]);
+        append();
+        live.remove(uid);
+        compactIfNeeded();
+    }
+
+    /**
+     * Records the removal of all the devices
+     *
+     * @throws IOException If the record cannot be written
+     */
+    public synchronized void cleared() throws IOException {
+        record.clear();
+        record.put(CLEAR);
+        record.put(new byte[RECORD_SIZE - 2]);
+        append();
+        live.clear();
+        compactIfNeeded();
+    }
+
+    /**
+     * Rewrites the journal with one record per live device
+     *
+     * @throws IOException If the journal cannot be rewritten, the current one
+     *                     is then kept
+     */
+    public synchronized void compact() throws IOException {
+        checkOpen();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            ByteBuffer content = ByteBuffer.allocate(live.size() * RECORD_SIZE);
+            for (byte[] registration : live.values()) {
+                content.put(registration);
+            }
+            content.flip();
+            while (content.hasRemaining()) {
+                out.write(content);
+            }
+            out.force(true);
+        }
+
+        // the journal is reopened whether the new file replaced it or not
+        channel.close();
+        channel = null;
+        boolean moved = false;
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        }
+        finally {
+            if (!moved) {
+                Files.deleteIfExists(temporary);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        records = live.size();
+        compactions++;
+        logger.debug("Compacted the device journal {} to {} records", file, records);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Returns the journal file
+     *
+     * @return Journal file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns true if every record is forced to the storage device
+     *
+     * @return True if synchronous
+     */
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Sets whether every record is forced to the storage device before
+     * returning, which survives power losses but costs a disk flush per
+     * registration
+     *
+     * @param sync True to force every record
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Returns the number of obsolete records tolerated before compacting
+     *
+     * @return Compaction threshold
+     */
+    public synchronized int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Sets the number of obsolete records tolerated before compacting
+     *
+     * @param compactionThreshold Compaction threshold
+     */
+    public synchronized void setCompactionThreshold(int compactionThreshold) {
+        if (compactionThreshold < 0) {
+            throw new IllegalArgumentException("Invalid compaction threshold: " + compactionThreshold);
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Returns the number of records in the journal
+     *
+     * @return Record count
+     */
+    public synchronized int getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the number of devices found when the journal was opened
+     *
+     * @return Loaded device count
+     */
+    public int getLoadedDevices() {
+        return loadedDevices;
+    }
+
+    /**
+     * Returns the time taken to open and replay the journal
+     *
+     * @param unit Unit of the result
+     * @return Load time
+     */
+    public long getLoadTime(TimeUnit unit) {
+        return unit.convert(loadTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of compactions since the journal was created
+     *
+     * @return Compaction count
+     */
+    public int getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Replays the records, skipping the invalid ones. The invalid records
+     * after the last valid one are the torn tail, left out of the record
+     * count so that they are truncated.
+     */
+    private void replay(ByteBuffer content, Map<Integer, EnOceanDevice> devices) {
+        byte[] registration = new byte[RECORD_SIZE];
+
+        // profiles are looked up once per identifier
+        Map<Integer, EEP> profiles = new HashMap<>();
+
+        // the invalid records since the last valid one, and the ones skipped
+        int invalid = 0;
+        int skipped = 0;
+        while (content.remaining() >= RECORD_SIZE) {
+            content.get(registration);
+            if (Crc8.calc(registration, 0, RECORD_SIZE - 1) == registration[RECORD_SIZE - 1] && apply(registration, devices, profiles)) {
+                // the invalid records before are kept, as obsolete ones
+                records += invalid + 1;
+                skipped += invalid;
+                invalid = 0;
+            }
+            else {
+                invalid++;
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} corrupted records of the device journal {}", skipped, file);
+        }
+    }
+
+    /**
+     * Applies a record with a valid checksum
+     *
+     * @return False if the record type is unknown
+     */
+    private boolean apply(byte[] registration, Map<Integer, EnOceanDevice> devices, Map<Integer, EEP> profiles) {
+        ByteBuffer fields = ByteBuffer.wrap(registration);
+        byte type = fields.get();
+        int uid = fields.getInt();
+        switch (type) {
+            case REGISTER:
+            case REGISTER_MANUFACTURER:
+                byte[] manufacturerId = null;
+                if (type == REGISTER_MANUFACTURER) {
+                    manufacturerId = new byte[3];
+                    fields.get(manufacturerId);
+                }
+                EnOceanDevice device = new EnOceanDevice(new byte[]{(byte) (uid >>> 24), (byte) (uid >>> 16), (byte) (uid >>> 8), (byte) uid}, manufacturerId);
+                int profile = (registration[8] & 0xff) << 16 | (registration[9] & 0xff) << 8 | registration[10] & 0xff;
+                EEP eep = profiles.get(profile);
+                if (eep == null && profile != 0 && !profiles.containsKey(profile)) {
+                    eep = EEPRegistry.getEEP(Rorg.valueOf(registration[8]), registration[9], registration[10]);
+                    profiles.put(profile, eep);
+                }
+                device.setEEP(eep);
+                devices.put(uid, device);
+                live.put(uid, registration.clone());
+                break;
+
+            case REMOVE:
+                devices.remove(uid);
+                live.remove(uid);
+                break;
+
+            case CLEAR:
+                devices.clear();
+                live.clear();
+                break;
+
+            default:
+                // unknown record
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends the record being written
+     */
+    private void append() throws IOException {
+        checkOpen();
+        record.put(RECORD_SIZE - 1, Crc8.calc(record.array(), 0, RECORD_SIZE - 1));
+        record.rewind();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+        records++;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        int obsolete = records - live.size();
+        if (obsolete > compactionThreshold && obsolete > live.size()) {
+            compact();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("The device journal " + file + " is not open");
+        }
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(RECORD_SIZE);
+        header.flip();
+        out.truncate(0);
+        while (header.hasRemaining()) {
+            out.write(header, header.position());
+        }
+        out.position(HEADER_SIZE);
+    }
+}
@@ -25,11 +25,13 @@ import uk.co._4ng.enocean.eep.EEP;
 import uk.co._4ng.enocean.eep.EEPAttributeChangeJob;
 import uk.co._4ng.enocean.eep.EEPIdentifier;
 import uk.co._4ng.enocean.eep.eep26.EEPRegistry;
+import uk.co._4ng.enocean.link.OverflowPolicy;
+import uk.co._4ng.enocean.util.StripedExecutor;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * This class is the connection independent device management class.
@@ -47,26 +49,55 @@ public class DeviceManager {
     // the set of device listeners to keep updated about device value changes
     private final Set<DeviceValueListener> deviceValueListeners = Collections.newSetFromMap(new ConcurrentHashMap<DeviceValueListener, Boolean>());
 
-    // Initialize the update delivery executor thread pool
-    private ExecutorService deviceUpdateDeliveryExecutor = Executors.newCachedThreadPool();
+    // the default number of threads delivering device updates
+    public static final int DEFAULT_NOTIFICATION_STRIPES = 2;
+
+    // the update delivery executor, the updates of a device are delivered in
+    // order by the same thread
+    private final StripedExecutor deviceUpdateDeliveryExecutor;
 
     // The set of known devices
     private final PersistentDeviceSet knownDevices;
 
+    // the current attribute values of the devices
+    private final DeviceStateStore stateStore = new DeviceStateStore();
+
+    // the journal of the registrations, null if not persisted
+    private volatile DeviceJournal journal;
+
+    // the last known attribute values, null if not persisted
+    private volatile LastValueStore lastValues;
+
+    // keeps the journal in the order of the registry changes
+    private final Object registryLock = new Object();
+
     /**
      * Initialises the DeviceManager
      */
     public DeviceManager() {
+        this(DEFAULT_NOTIFICATION_STRIPES, StripedExecutor.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Initialises the DeviceManager with the given device update delivery
+     * threads. Notifiers wait when the queue of a thread is full, so that no
+     * update is lost.
+     *
+     * @param notificationStripes       Number of threads delivering device
+     *                                  updates, the updates of a device are
+     *                                  always delivered by the same thread
+     * @param notificationQueueCapacity Number of updates every thread can hold
+     */
+    public DeviceManager(int notificationStripes, int notificationQueueCapacity) {
 
         // Clear the listeners
 
         deviceListeners.clear();
         deviceValueListeners.clear();
 
-        // Stop all jobs and clear the thread pool
+        // Create the update delivery threads
 
-        deviceUpdateDeliveryExecutor.shutdownNow();
-        deviceUpdateDeliveryExecutor = Executors.newCachedThreadPool();
+        deviceUpdateDeliveryExecutor = new StripedExecutor("EnOcean device updates", notificationStripes, notificationQueueCapacity, OverflowPolicy.BLOCK);
 
         // Initialise the device eepRegistry from the passed file if necessary
 
@@ -137,12 +168,22 @@ public class DeviceManager {
 
         // check if the device is already known
         if (eepId != null) {
-            if (knownDevices.getByAddress(deviceAddress) == null) {
-                return registerDevice(deviceAddress, null, eepId);
-            }
-            else {
-                return knownDevices.getByAddress(deviceAddress);
+            EnOceanDevice device = knownDevices.getByAddress(deviceAddress);
+            if (device == null) {
+                device = createDevice(deviceAddress, null, eepId);
+                if (device != null) {
+                    synchronized (registryLock) {
+                        // a concurrent registration of the same address wins
+                        EnOceanDevice registered = knownDevices.addIfAbsent(device);
+                        if (registered != null) {
+                            return registered;
+                        }
+                        recordRegistration(device);
+                    }
+                    notifyDeviceValueListeners(device, DeviceChangeType.CREATED);
+                }
             }
+            return device;
         }
         return null;
     }
@@ -190,11 +231,14 @@ public class DeviceManager {
      * @return EnOceanDevice
      */
     public EnOceanDevice registerDevice(EnOceanDevice device) {
+        // store the device, before the listeners can look it up
+        synchronized (registryLock) {
+            knownDevices.add(device);
+            recordRegistration(device);
+        }
+
         // notify listeners
         notifyDeviceValueListeners(device, DeviceChangeType.CREATED);
-
-        // store the device
-        knownDevices.add(device);
         return device;
     }
 
@@ -202,7 +246,23 @@ public class DeviceManager {
      * Clear all the registered devices
      */
     public void clearRegistry() {
-        knownDevices.clear();
+        synchronized (registryLock) {
+            knownDevices.clear();
+            DeviceJournal current = journal;
+            if (current != null) {
+                try {
+                    current.cleared();
+                }
+                catch (IOException e) {
+                    logger.error("Cannot record the registry clearing in the device journal", e);
+                }
+            }
+        }
+        stateStore.clear();
+        LastValueStore values = lastValues;
+        if (values != null) {
+            values.clear();
+        }
     }
 
     /**
@@ -211,20 +271,36 @@ public class DeviceManager {
      * @param device Enocean device to unregister
      */
     public void unRegisterDevice(EnOceanDevice device) {
-        if (knownDevices.getByUID(device.getAddressInt()) != null) {
+        // remove the device, only the thread removing it notifies
+        EnOceanDevice removed;
+        synchronized (registryLock) {
+            removed = knownDevices.remove(device);
+            DeviceJournal current = journal;
+            if (removed != null && current != null) {
+                try {
+                    current.removed(device.getAddressInt());
+                }
+                catch (IOException e) {
+                    logger.error("Cannot record the removal of {} in the device journal", device, e);
+                }
+            }
+        }
+        if (removed != null) {
+            stateStore.remove(device.getAddressInt());
+            LastValueStore values = lastValues;
+            if (values != null) {
+                values.remove(removed);
+            }
 
             // notify listeners
-            notifyDeviceValueListeners(device, DeviceChangeType.CREATED);
-
-            // store the device
-            knownDevices.remove(device);
+            notifyDeviceValueListeners(device, DeviceChangeType.DELETED);
         }
     }
 
     /**
      * Returns the set of currently known devices
      *
-     * @return the knownDevices
+     * @return Read-only snapshot of the known devices
      */
     public Collection<EnOceanDevice> getDevices() {
         return knownDevices.values();
@@ -251,6 +327,19 @@ public class DeviceManager {
         return knownDevices.getByAddress(address);
     }
 
+    /**
+     * Returns the registered device whose address is held by the 4 bytes at
+     * the given offset of a buffer, e.g. of a received telegram, without
+     * copying them
+     *
+     * @param buffer Buffer holding the address
+     * @param offset Offset of the first address byte
+     * @return Device or null if not registered
+     */
+    public EnOceanDevice getDevice(byte[] buffer, int offset) {
+        return knownDevices.getByAddress(buffer, offset);
+    }
+
     /**
      * Checks to see if the EEP is a supported format
      *
@@ -268,7 +357,7 @@ public class DeviceManager {
      * @param changeType Type of the change occurring
      */
     public void notifyDeviceValueListeners(EnOceanDevice device, DeviceChangeType changeType) {
-        deviceUpdateDeliveryExecutor.execute(new DeviceChangeJob(device, changeType, deviceListeners));
+        deviceUpdateDeliveryExecutor.execute(device.getAddressInt(), new DeviceChangeJob(device, changeType, deviceListeners));
     }
 
     /**
@@ -282,6 +371,197 @@ public class DeviceManager {
         }
     }
 
+    /**
+     * Returns the current attribute values of a device. Unlike the attributes
+     * of its profile, which are shared by all the devices using the profile,
+     * they only change with the telegrams of the device.
+     *
+     * @param deviceUID Device UID
+     * @return Device state or null if no value was received from the device
+     */
+    public DeviceState getDeviceState(int deviceUID) {
+        return stateStore.get(deviceUID);
+    }
+
+    /**
+     * Returns the store of the current attribute values of all the devices
+     *
+     * @return Device state store
+     */
+    public DeviceStateStore getStateStore() {
+        return stateStore;
+    }
+
+    /**
+     * Copies the values of the attributes changed by a telegram to the state of
+     * the device, called by the profile while decoding the telegram
+     *
+     * @param device Device the telegram came from
+     * @param job    Changed attributes
+     */
+    public void updateDeviceState(EnOceanDevice device, EEPAttributeChangeJob job) {
+        stateStore.update(device, job);
+        LastValueStore values = lastValues;
+        if (values != null) {
+            values.update(device, job);
+        }
+    }
+
+    /**
+     * Returns the executor delivering the device updates, giving access to its
+     * statistics
+     *
+     * @return Device update executor
+     */
+    public StripedExecutor getDeviceUpdateExecutor() {
+        return deviceUpdateDeliveryExecutor;
+    }
+
+    /**
+     * Opens a journal persisting the registered devices, registering the
+     * devices it holds. The devices are added to the registry in bulk, without
+     * notifying the listeners; the devices already registered are kept and
+     * appended to the journal, as are the registrations and removals made from
+     * then on.
+     *
+     * @param file Journal file, created if it does not exist
+     * @return Number of devices loaded from the journal and registered
+     * @throws IOException If the journal cannot be read or created
+     */
+    public int openJournal(Path file) throws IOException {
+        synchronized (registryLock) {
+            if (journal != null) {
+                throw new IllegalStateException("A device journal is already open: " + journal.getFile());
+            }
+            DeviceJournal opened = new DeviceJournal(file);
+            Map<Integer, EnOceanDevice> devices = opened.open();
+
+            // the devices registered before the journal was opened win over
+            // the journaled ones, and are recorded
+            for (EnOceanDevice device : knownDevices.values()) {
+                devices.remove(device.getAddressInt());
+                opened.registered(device);
+            }
+            knownDevices.addAll(devices.values());
+            journal = opened;
+            return devices.size();
+        }
+    }
+
+    /**
+     * Returns the journal persisting the registered devices
+     *
+     * @return Journal or null if none is open
+     */
+    public DeviceJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Closes the journal persisting the registered devices, later changes are
+     * not persisted
+     */
+    public void closeJournal() {
+        synchronized (registryLock) {
+            if (journal != null) {
+                try {
+                    journal.close();
+                }
+                catch (IOException e) {
+                    logger.warn("Cannot close the device journal {}", journal.getFile(), e);
+                }
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Opens a memory mapped store of the last known attribute values starting
+     * with {@link LastValueStore#DEFAULT_CAPACITY} slots
+     *
+     * @param file Store file, created if it does not exist
+     * @return Number of values restored
+     * @throws IOException If the store cannot be mapped
+     * @see #openLastValueStore(Path, int)
+     */
+    public int openLastValueStore(Path file) throws IOException {
+        return openLastValueStore(file, LastValueStore.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens a memory mapped store of the last known attribute values, filling
+     * the state of the registered devices with the values it holds. The
+     * devices should be registered first, e.g. by {@link #openJournal(Path)};
+     * the values decoded from then on are written to the store.
+     *
+     * @param file     Store file, created if it does not exist
+     * @param capacity Number of slots a new store starts with, the store grows
+     *                 as values are added
+     * @return Number of values restored
+     * @throws IOException If the store cannot be mapped
+     */
+    public synchronized int openLastValueStore(Path file, int capacity) throws IOException {
+        if (lastValues != null) {
+            throw new IllegalStateException("A last value store is already open: " + lastValues.getFile());
+        }
+        LastValueStore opened = new LastValueStore(file, capacity);
+        int restored = opened.restore(this);
+        lastValues = opened;
+        return restored;
+    }
+
+    /**
+     * Returns the store of the last known attribute values
+     *
+     * @return Store or null if none is open
+     */
+    public LastValueStore getLastValueStore() {
+        return lastValues;
+    }
+
+    /**
+     * Closes the store of the last known attribute values, later values are
+     * not persisted
+     */
+    public synchronized void closeLastValueStore() {
+        if (lastValues != null) {
+            LastValueStore closed = lastValues;
+            lastValues = null;
+            try {
+                closed.close();
+            }
+            catch (IOException e) {
+                logger.warn("Cannot close the last value store {}", closed.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Stops the threads delivering the device updates and closes the device
+     * journal and the last value store
+     */
+    public void shutdown() {
+        deviceUpdateDeliveryExecutor.shutdown();
+        closeJournal();
+        closeLastValueStore();
+    }
+
+    /**
+     * Appends a registration to the journal, if any, with the registry lock
+     * held
+     */
+    private void recordRegistration(EnOceanDevice device) {
+        DeviceJournal current = journal;
+        if (current != null) {
+            try {
+                current.registered(device);
+            }
+            catch (IOException e) {
+                logger.error("Cannot record the registration of {} in the device journal", device, e);
+            }
+        }
+    }
+
     /**
      * Returns a reference to all the supported profiles
      *
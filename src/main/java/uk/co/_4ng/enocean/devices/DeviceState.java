@@ -0,0 +1,454 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.devices;
+
+import uk.co._4ng.enocean.eep.EEPAttributeChangeJob;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The current attribute values of a single device. Numbers and booleans are
+ * kept in primitive slots, other values by reference, following the
+ * {@link StateLayout} of the device profile. The values of one telegram are
+ * written together, and readers either get single values or a consistent
+ * {@link Snapshot} of all of them without blocking the writer: reads are
+ * optimistic and retried if a write happened meanwhile.
+ */
+public class DeviceState {
+
+    // the device UID
+    private final int uid;
+
+    // the layout shared by the devices of the same profile
+    private final StateLayout layout;
+
+    // the primitive values, the references and the flags of the slots set
+    private long[] values;
+    private Object[] references;
+    private long[] set;
+
+    // the kind of value held by every slot, set by each write as the values
+    // of an attribute are not always of the same type
+    private byte[] kinds;
+
+    // the time of the last update, in milliseconds since the epoch
+    private long updated;
+
+    // guards the slots, readers are optimistic
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Creates the empty state of a device
+     *
+     * @param uid    Device UID
+     * @param layout Layout of the device profile
+     */
+    DeviceState(int uid, StateLayout layout) {
+        this.uid = uid;
+        this.layout = layout;
+        int size = layout.size();
+        values = new long[size];
+        kinds = new byte[size];
+        references = new Object[0];
+        set = new long[(size + 63) >> 6];
+    }
+
+    /**
+     * Returns the UID of the device
+     *
+     * @return Device UID
+     */
+    public int getUID() {
+        return uid;
+    }
+
+    /**
+     * Stores the values of the attributes changed by one telegram, as one
+     * update
+     *
+     * @param changes Changed attributes
+     */
+    public void update(List<EEPAttributeChangeJob.EEPAttributeChange> changes) {
+        long stamp = lock.writeLock();
+        try {
+            for (EEPAttributeChangeJob.EEPAttributeChange change : changes) {
+                int slot = layout.getSlot(change.getChannelId(), change.getName());
+                if (change.isDouble()) {
+                    storeNumber(slot, StateLayout.DOUBLE, change.getDouble(), 0);
+                }
+                else if (change.isInteger()) {
+                    storeNumber(slot, StateLayout.INT, 0, change.getLong());
+                }
+                else if (change.isBoolean()) {
+                    storeNumber(slot, StateLayout.BOOLEAN, 0, change.getLong());
+                }
+                else {
+                    store(slot, change.getValue());
+                }
+            }
+            updated = System.currentTimeMillis();
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Stores the value of an attribute
+     *
+     * @param channel Channel
+     * @param name    Attribute name
+     * @param value   Value, null to clear it
+     */
+    public void update(int channel, String name, Object value) {
+        int slot = layout.getSlot(channel, name);
+        long stamp = lock.writeLock();
+        try {
+            store(slot, value);
+            updated = System.currentTimeMillis();
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Stores a value saved before a restart, keeping the time it was decoded.
+     * A value decoded since the device state was filled is kept, unless the
+     * saved value is newer than the last update.
+     *
+     * @param channel   Channel
+     * @param name      Attribute name
+     * @param value     Value
+     * @param timestamp Time the value was decoded, in milliseconds since the
+     *                  epoch
+     * @return True if the value was stored
+     */
+    boolean restore(int channel, String name, Object value, long timestamp) {
+        int slot = layout.getSlot(channel, name);
+        long stamp = lock.writeLock();
+        try {
+            if (isSet(slot, values, set) && timestamp <= updated) {
+                return false;
+            }
+            store(slot, value);
+            updated = Math.max(updated, timestamp);
+            return true;
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the current value of an attribute
+     *
+     * @param channel Channel
+     * @param name    Attribute name
+     * @return Value or null if never set
+     */
+    public Object getValue(int channel, String name) {
+        int slot = layout.findSlot(channel, name);
+        if (slot < 0) {
+            return null;
+        }
+        long stamp = lock.tryOptimisticRead();
+        Object value = load(slot);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = load(slot);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the current value of a numeric attribute without boxing it
+     *
+     * @param channel      Channel
+     * @param name         Attribute name
+     * @param defaultValue Value returned if the attribute was never set or is
+     *                     not numeric
+     * @return Value
+     */
+    public double getDouble(int channel, String name, double defaultValue) {
+        int slot = layout.findSlot(channel, name);
+        if (slot < 0) {
+            return defaultValue;
+        }
+        long stamp = lock.tryOptimisticRead();
+        double value = loadDouble(slot, defaultValue);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = loadDouble(slot, defaultValue);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns a consistent copy of all the values
+     *
+     * @return Snapshot
+     */
+    public Snapshot snapshot() {
+        long stamp = lock.tryOptimisticRead();
+        Snapshot snapshot = copy();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                snapshot = copy();
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the time of the last update
+     *
+     * @return Milliseconds since the epoch, 0 if never updated
+     */
+    public long getUpdated() {
+        long stamp = lock.tryOptimisticRead();
+        long value = updated;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = updated;
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value, with the write lock held
+     */
+    private void store(int slot, Object value) {
+        grow(slot);
+        if (value == null) {
+            set[slot >> 6] &= ~(1L << slot);
+            clearReference(slot);
+            return;
+        }
+        byte kind = StateLayout.kindOf(value);
+        switch (kind) {
+            case StateLayout.DOUBLE:
+                values[slot] = Double.doubleToRawLongBits(((Number) value).doubleValue());
+                clearReference(slot);
+                break;
+            case StateLayout.INT:
+            case StateLayout.LONG:
+                values[slot] = ((Number) value).longValue();
+                clearReference(slot);
+                break;
+            case StateLayout.BOOLEAN:
+                values[slot] = (Boolean) value ? 1 : 0;
+                clearReference(slot);
+                break;
+            default:
+                if (slot >= references.length) {
+                    references = Arrays.copyOf(references, values.length);
+                }
+                references[slot] = value;
+                break;
+        }
+        kinds[slot] = kind;
+        set[slot >> 6] |= 1L << slot;
+    }
+
+    /**
+     * Stores a primitive value without boxing it, with the write lock held
+     *
+     * @param kind    Kind of the value, {@link StateLayout#DOUBLE} for real
+     *                values, another one for integer values
+     * @param real    Real value
+     * @param integer Integer value
+     */
+    private void storeNumber(int slot, byte kind, double real, long integer) {
+        grow(slot);
+        values[slot] = kind == StateLayout.DOUBLE ? Double.doubleToRawLongBits(real) : integer;
+        clearReference(slot);
+        kinds[slot] = kind;
+        set[slot >> 6] |= 1L << slot;
+    }
+
+    /**
+     * Drops the reference held by a slot now holding a primitive value
+     */
+    private void clearReference(int slot) {
+        if (slot < references.length) {
+            references[slot] = null;
+        }
+    }
+
+    /**
+     * Makes room for a slot assigned after the state was created
+     */
+    private void grow(int slot) {
+        if (slot >= values.length) {
+            values = Arrays.copyOf(values, layout.size());
+            kinds = Arrays.copyOf(kinds, values.length);
+            set = Arrays.copyOf(set, (values.length + 63) >> 6);
+        }
+    }
+
+    /**
+     * Loads a value, the arrays may be replaced by a concurrent write
+     */
+    private Object load(int slot) {
+        long[] currentValues = values;
+        long[] currentSet = set;
+        byte[] currentKinds = kinds;
+        if (!isSet(slot, currentValues, currentSet) || slot >= currentKinds.length) {
+            return null;
+        }
+        Object[] currentReferences = references;
+        return decode(currentKinds[slot], currentValues[slot], slot < currentReferences.length ? currentReferences[slot] : null);
+    }
+
+    private double loadDouble(int slot, double defaultValue) {
+        long[] currentValues = values;
+        long[] currentSet = set;
+        byte[] currentKinds = kinds;
+        if (!isSet(slot, currentValues, currentSet) || slot >= currentKinds.length) {
+            return defaultValue;
+        }
+        return toDouble(currentKinds[slot], currentValues[slot], defaultValue);
+    }
+
+    /**
+     * Checks the flag of a slot, the arrays being possibly read while a write
+     * replaces them
+     */
+    private static boolean isSet(int slot, long[] values, long[] set) {
+        return slot >= 0 && slot < values.length && slot >> 6 < set.length && (set[slot >> 6] & 1L << slot) != 0;
+    }
+
+    private Snapshot copy() {
+        return new Snapshot(layout, values.clone(), kinds.clone(), references.clone(), set.clone(), updated);
+    }
+
+    private static double toDouble(byte kind, long bits, double defaultValue) {
+        switch (kind) {
+            case StateLayout.DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case StateLayout.INT:
+            case StateLayout.LONG:
+            case StateLayout.BOOLEAN:
+                return bits;
+            default:
+                return defaultValue;
+        }
+    }
+
+    private static Object decode(byte kind, long bits, Object reference) {
+        switch (kind) {
+            case StateLayout.DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case StateLayout.INT:
+                return (int) bits;
+            case StateLayout.LONG:
+                return bits;
+            case StateLayout.BOOLEAN:
+                return bits != 0;
+            default:
+                return reference;
+        }
+    }
+
+    /**
+     * An immutable copy of the values of a device, all taken from the same
+     * point in time
+     */
+    public static final class Snapshot {
+        private final StateLayout layout;
+        private final long[] values;
+        private final byte[] kinds;
+        private final Object[] references;
+        private final long[] set;
+        private final long updated;
+
+        private Snapshot(StateLayout layout, long[] values, byte[] kinds, Object[] references, long[] set, long updated) {
+            this.layout = layout;
+            this.values = values;
+            this.kinds = kinds;
+            this.references = references;
+            this.set = set;
+            this.updated = updated;
+        }
+
+        /**
+         * Returns the value of an attribute
+         *
+         * @param channel Channel
+         * @param name    Attribute name
+         * @return Value or null if not set
+         */
+        public Object getValue(int channel, String name) {
+            int slot = layout.findSlot(channel, name);
+            if (!isSet(slot)) {
+                return null;
+            }
+            return decode(kinds[slot], values[slot], slot < references.length ? references[slot] : null);
+        }
+
+        /**
+         * Returns the value of a numeric attribute without boxing it
+         *
+         * @param channel      Channel
+         * @param name         Attribute name
+         * @param defaultValue Value returned if the attribute is not set or is
+         *                     not numeric
+         * @return Value
+         */
+        public double getDouble(int channel, String name, double defaultValue) {
+            int slot = layout.findSlot(channel, name);
+            if (!isSet(slot)) {
+                return defaultValue;
+            }
+            return toDouble(kinds[slot], values[slot], defaultValue);
+        }
+
+        /**
+         * Returns the time of the last update included
+         *
+         * @return Milliseconds since the epoch, 0 if never updated
+         */
+        public long getUpdated() {
+            return updated;
+        }
+
+        private boolean isSet(int slot) {
+            return DeviceState.isSet(slot, values, set) && slot < kinds.length;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.devices;
+
+import uk.co._4ng.enocean.eep.EEP;
+import uk.co._4ng.enocean.eep.EEPAttributeChangeJob;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the current attribute values of every device, by device UID. The
+ * profile ({@link EEP}) instances are shared by all the devices using them,
+ * so the values they decode only belong to a device until the next telegram
+ * of the same profile is decoded; they are copied here, under the decoding
+ * lock of the profile, and read from here by anyone needing the value of a
+ * given device.
+ */
+public class DeviceStateStore {
+
+    // the states by device UID
+    private final ConcurrentMap<Integer, DeviceState> states = new ConcurrentHashMap<>();
+
+    // the slot layouts by profile instance
+    private final ConcurrentMap<EEP, StateLayout> layouts = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the state of a device
+     *
+     * @param uid Device UID
+     * @return State or null if no value has been stored for the device
+     */
+    public DeviceState get(int uid) {
+        return states.get(uid);
+    }
+
+    /**
+     * Returns the state of a device, creating it if needed
+     *
+     * @param device Device
+     * @return State
+     */
+    public DeviceState getOrCreate(EnOceanDevice device) {
+        DeviceState state = states.get(device.getAddressInt());
+        if (state == null) {
+            DeviceState created = new DeviceState(device.getAddressInt(), getLayout(device.getEEP()));
+            state = states.putIfAbsent(device.getAddressInt(), created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Stores the values of the attributes changed by one telegram
+     *
+     * @param device Device the telegram came from
+     * @param job    Changed attributes
+     */
+    public void update(EnOceanDevice device, EEPAttributeChangeJob job) {
+        getOrCreate(device).update(job.getChanges());
+    }
+
+    /**
+     * Forgets the state of a device
+     *
+     * @param uid Device UID
+     */
+    public void remove(int uid) {
+        states.remove(uid);
+    }
+
+    /**
+     * Forgets the state of every device
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * Returns the number of devices having a state
+     *
+     * @return Device count
+     */
+    public int size() {
+        return states.size();
+    }
+
+    private StateLayout getLayout(EEP eep) {
+        if (eep == null) {
+            return new StateLayout();
+        }
+        StateLayout layout = layouts.get(eep);
+        if (layout == null) {
+            StateLayout created = new StateLayout(eep);
+            layout = layouts.putIfAbsent(eep, created);
+            if (layout == null) {
+                layout = created;
+            }
+        }
+        return layout;
+    }
+}
@@ -70,7 +70,20 @@ public class EnOceanDevice implements Serializable {
      * @return the corresponding high level identifier.
      */
     public static int byteAddressToUID(byte[] address) {
-        return ByteBuffer.wrap(address).getInt();
+        return byteAddressToUID(address, 0);
+    }
+
+    /**
+     * Given the 4 bytes of a device address at the given offset of a buffer,
+     * e.g. of a received telegram, returns the device address in the
+     * high-level notation.
+     *
+     * @param buffer The buffer holding the address
+     * @param offset The offset of the first address byte
+     * @return the corresponding high level identifier.
+     */
+    public static int byteAddressToUID(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16 | (buffer[offset + 2] & 0xff) << 8 | buffer[offset + 3] & 0xff;
     }
 
     /**
@@ -81,21 +94,33 @@ public class EnOceanDevice implements Serializable {
      */
     public static byte[] parseAddress(String hexDeviceAddress) {
 
-        // allowed format for Device address is with or without dashes
-
-        hexDeviceAddress = hexDeviceAddress.replaceAll("-|(0x)", "").trim().toLowerCase();
-        hexDeviceAddress = "00000000".substring(hexDeviceAddress.length() > 8 ? 8 : hexDeviceAddress.length()) + hexDeviceAddress;
-
-        // prepare the byte[] for hosting the address
-        byte[] address = new byte[4];
-
-        // parse the address
-        if (hexDeviceAddress.length() == 8) {
-            for (int i = 0; i < hexDeviceAddress.length(); i += 2) {
-                address[i / 2] = (byte) Integer.parseInt(hexDeviceAddress.substring(i, i + 2), 16);
+        // allowed format for Device address is with or without dashes and 0x
+        // prefixes, parsed by hand as many devices are registered at startup
+        String address = hexDeviceAddress.trim();
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            if (c == '0' && i + 1 < address.length() && (address.charAt(i + 1) == 'x' || address.charAt(i + 1) == 'X')) {
+                i++;
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                throw new NumberFormatException("Invalid device address: " + hexDeviceAddress);
             }
+            value = value << 4 | digit;
+            digits++;
         }
-        return address;
+
+        // addresses longer than 4 bytes are not valid
+        if (digits > 8) {
+            return new byte[4];
+        }
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
     }
 
     /**
@@ -154,7 +179,7 @@ public class EnOceanDevice implements Serializable {
      * @return The device address as an integer number.
      */
     public int getAddressInt() {
-        return ByteBuffer.wrap(address).getInt();
+        return byteAddressToUID(address, 0);
     }
 
     /**
@@ -0,0 +1,827 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.devices;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co._4ng.enocean.eep.EEP;
+import uk.co._4ng.enocean.eep.EEPAttributeChangeJob;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the last decoded value of every device attribute in a memory mapped
+ * file, so that the {@link DeviceStateStore} can be filled as soon as the
+ * application restarts instead of waiting for every device to transmit again.
+ * <p>
+ * The file holds {@value #SLOT_SIZE} byte slots split in {@value #SEGMENTS}
+ * segments. A value is addressed by hashing the device UID, the channel and
+ * the attribute name, the hash selecting the segment and the first slot
+ * probed linearly within it. A slot holds the key, the kind of value, the
+ * value bits and the decoding time. Only numbers and booleans are kept.
+ * Values are written with plain stores to the mapped memory and reach the
+ * file when the operating system writes the pages back, which survives a
+ * crash of the application but not necessarily a power loss;
+ * {@link #flush()} forces them.
+ * <p>
+ * Each segment has its own lock, so that the decoding threads only contend
+ * when they write to the same segment. A segment is kept at most 3/4 full,
+ * removed slots included: when it would go over, its removed slots are
+ * purged, or if there are few of them the file is doubled and every value is
+ * rehashed while the writers are held off. The values are rehashed from a
+ * copy in memory, a crash while the store grows loses them until the devices
+ * transmit again.
+ * <p>
+ * Attribute names are not stored. When the values are restored they are
+ * resolved from the profile of the registered device, so the devices must be
+ * registered, e.g. from the {@link DeviceJournal}, before the store is opened.
+ */
+public class LastValueStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(LastValueStore.class);
+
+    // the default number of slots of a new store
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    // the largest number of slots the store grows to
+    public static final int MAX_CAPACITY = 1 << 24;
+
+    // the size of a slot, in bytes
+    public static final int SLOT_SIZE = 32;
+
+    // the number of segments, each with its own lock
+    public static final int SEGMENTS = 16;
+
+    // the smallest number of slots, 4 per segment
+    private static final int MIN_CAPACITY = SEGMENTS * 4;
+
+    // the file header, "ELV" and the format version, then the slot count
+    private static final int MAGIC = 0x454C5601;
+    private static final int HEADER_SIZE = 64;
+
+    // the slot layout
+    private static final int UID = 0;
+    private static final int CHANNEL = 4;
+    private static final int NAME = 8;
+    private static final int KIND = 12;
+    private static final int VALUE = 16;
+    private static final int TIMESTAMP = 24;
+
+    // the kinds of value, empty and removed slots included
+    private static final byte EMPTY = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte INTEGER = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte REMOVED = -1;
+
+    // the store file
+    private final Path file;
+
+    // the mapped file, remapped when the store grows
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    // the number of slots, a power of 2
+    private volatile int capacity;
+
+    // shared by the writers of the segments, held exclusively to grow, clear and close the store
+    private final ReentrantReadWriteLock mappingLock = new ReentrantReadWriteLock();
+
+    // the locks of the segments, and their number of live and removed slots
+    private final Object[] segmentLocks = new Object[SEGMENTS];
+    private final int[] live = new int[SEGMENTS];
+    private final int[] removed = new int[SEGMENTS];
+
+    // statistics
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger purges = new AtomicInteger();
+    private volatile int growths;
+    private volatile int restored;
+    private volatile long loadTime;
+
+    // the closed flag
+    private boolean closed;
+
+    /**
+     * Opens or creates a store with the default number of slots
+     *
+     * @param file Store file
+     * @throws IOException If the file cannot be mapped
+     */
+    public LastValueStore(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens or creates a store. An existing store keeps the number of slots
+     * it has grown to.
+     *
+     * @param file     Store file
+     * @param capacity Number of slots a new store starts with, rounded up to a
+     *                 power of 2
+     * @throws IOException If the file cannot be mapped
+     */
+    public LastValueStore(Path file, int capacity) throws IOException {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.file = file;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segmentLocks[i] = new Object();
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            int magic = header.getInt(0);
+            if (magic == MAGIC) {
+                capacity = header.getInt(4);
+                if (Integer.bitCount(capacity) != 1 || capacity < MIN_CAPACITY || capacity > MAX_CAPACITY || channel.size() < HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                    throw new IOException("Corrupted last value store: " + file);
+                }
+                this.capacity = capacity;
+                buffer = map(capacity);
+                count();
+            }
+            else {
+                capacity = Math.max(Integer.highestOneBit(capacity - 1) << 1, MIN_CAPACITY);
+                this.capacity = capacity;
+                buffer = map(capacity);
+                buffer.putInt(4, capacity);
+                buffer.putInt(8, SLOT_SIZE);
+            }
+            buffer.putInt(0, MAGIC);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stores the values of the attributes changed by one telegram
+     *
+     * @param device Device the telegram came from
+     * @param job    Changed attributes
+     */
+    public void update(EnOceanDevice device, EEPAttributeChangeJob job) {
+        int uid = device.getAddressInt();
+        for (EEPAttributeChangeJob.EEPAttributeChange change : job.getChanges()) {
+            byte kind;
+            long bits;
+            if (change.isDouble()) {
+                kind = DOUBLE;
+                bits = Double.doubleToRawLongBits(change.getDouble());
+            }
+            else if (change.isInteger()) {
+                kind = INTEGER;
+                bits = change.getLong();
+            }
+            else if (change.isBoolean()) {
+                kind = BOOLEAN;
+                bits = change.getLong();
+            }
+            else {
+                // only numbers and booleans are kept
+                continue;
+            }
+            if (!store(uid, change.getChannelId(), hashName(change.getName()), kind, bits, change.getTimestamp())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forgets the values of a device, looking up the attributes of its
+     * profile instead of scanning the whole store
+     *
+     * @param device Device
+     */
+    public void remove(EnOceanDevice device) {
+        EEP eep = device.getEEP();
+        if (eep == null) {
+            remove(device.getAddressInt());
+            return;
+        }
+        int uid = device.getAddressInt();
+        for (Integer channelId : eep.getChannels()) {
+            for (String name : eep.getChannelAttributes(channelId)) {
+                if (!remove(uid, channelId, hashName(name))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the values of a device by scanning the whole store
+     *
+     * @param uid Device UID
+     */
+    public void remove(int uid) {
+        mappingLock.readLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            int segmentSize = capacity / SEGMENTS;
+            for (int segment = 0; segment < SEGMENTS; segment++) {
+                synchronized (segmentLocks[segment]) {
+                    for (int slot = segment * segmentSize; slot < (segment + 1) * segmentSize; slot++) {
+                        int offset = offset(slot);
+                        byte kind = buffer.get(offset + KIND);
+                        if (kind != EMPTY && kind != REMOVED && buffer.getInt(offset + UID) == uid) {
+                            buffer.put(offset + KIND, REMOVED);
+                            live[segment]--;
+                            removed[segment]++;
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            mappingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets the values of every device
+     */
+    public void clear() {
+        mappingLock.writeLock().lock();
+        try {
+            if (!closed) {
+                reset();
+            }
+        }
+        finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Fills the state of the registered devices with the stored values, the
+     * values of devices that are not registered are kept for later restores.
+     * A value decoded since the device state was filled is only replaced by
+     * a newer stored value.
+     *
+     * @param deviceManager Device manager holding the devices and their state
+     * @return Number of values restored
+     */
+    public int restore(DeviceManager deviceManager) {
+        long start = System.nanoTime();
+        int count = 0;
+        mappingLock.readLock().lock();
+        try {
+            int segmentSize = capacity / SEGMENTS;
+            for (int segment = 0; segment < SEGMENTS && !closed; segment++) {
+                synchronized (segmentLocks[segment]) {
+                    for (int slot = segment * segmentSize; slot < (segment + 1) * segmentSize; slot++) {
+                        if (restore(deviceManager, offset(slot))) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            mappingLock.readLock().unlock();
+        }
+        restored = count;
+        loadTime = System.nanoTime() - start;
+        logger.info("Restored {} attribute values from the last value store {} in {} ms", count, file, getLoadTime(TimeUnit.MILLISECONDS));
+        return count;
+    }
+
+    /**
+     * Forces the values written so far to the file
+     */
+    public void flush() {
+        mappingLock.readLock().lock();
+        try {
+            if (!closed) {
+                buffer.force();
+            }
+        }
+        finally {
+            mappingLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mappingLock.writeLock().lock();
+        try {
+            if (!closed) {
+                buffer.force();
+                closed = true;
+                channel.close();
+            }
+        }
+        finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the store file
+     *
+     * @return Store file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of slots
+     *
+     * @return Slot count
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of values held
+     *
+     * @return Value count
+     */
+    public int getSize() {
+        mappingLock.readLock().lock();
+        try {
+            int size = 0;
+            for (int segment = 0; segment < SEGMENTS; segment++) {
+                synchronized (segmentLocks[segment]) {
+                    size += live[segment];
+                }
+            }
+            return size;
+        }
+        finally {
+            mappingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of values not stored because the store could not
+     * grow any more
+     *
+     * @return Dropped value count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of times the store doubled its number of slots
+     *
+     * @return Growth count
+     */
+    public int getGrowths() {
+        return growths;
+    }
+
+    /**
+     * Returns the number of times a segment was rehashed to reuse its removed
+     * slots
+     *
+     * @return Purge count
+     */
+    public int getPurges() {
+        return purges.get();
+    }
+
+    /**
+     * Returns the number of values restored by the last restore
+     *
+     * @return Restored value count
+     */
+    public int getRestored() {
+        return restored;
+    }
+
+    /**
+     * Returns the time taken by the last restore
+     *
+     * @param unit Unit of the result
+     * @return Restore time
+     */
+    public long getLoadTime(TimeUnit unit) {
+        return unit.convert(loadTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stores one value, growing the store if its segment is full
+     *
+     * @return False if the store is closed
+     */
+    private boolean store(int uid, int channelId, int nameHash, byte kind, long bits, long timestamp) {
+        int hash = hash(uid, channelId, nameHash);
+        while (true) {
+            int full;
+            mappingLock.readLock().lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                int segment = segment(hash);
+                synchronized (segmentLocks[segment]) {
+                    int slot = findSlot(segment, hash, uid, channelId, nameHash);
+                    if (slot < 0) {
+                        if (!hasRoom(segment) && removed[segment] >= maxUsed() / 4) {
+                            purge(segment);
+                        }
+                        if (hasRoom(segment)) {
+                            slot = claim(segment, hash, uid, channelId, nameHash);
+                        }
+                    }
+                    if (slot >= 0) {
+                        write(slot, kind, bits, timestamp);
+                        return true;
+                    }
+                    full = capacity;
+                }
+            }
+            finally {
+                mappingLock.readLock().unlock();
+            }
+            if (!grow(full)) {
+                dropped.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Forgets one value
+     *
+     * @return False if the store is closed
+     */
+    private boolean remove(int uid, int channelId, int nameHash) {
+        int hash = hash(uid, channelId, nameHash);
+        mappingLock.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            int segment = segment(hash);
+            synchronized (segmentLocks[segment]) {
+                int slot = findSlot(segment, hash, uid, channelId, nameHash);
+                if (slot >= 0) {
+                    buffer.put(offset(slot) + KIND, REMOVED);
+                    live[segment]--;
+                    removed[segment]++;
+                }
+            }
+            return true;
+        }
+        finally {
+            mappingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Doubles the number of slots, unless another writer did it already
+     *
+     * @param full Number of slots when the segment was found full
+     * @return False if the store cannot grow
+     */
+    private boolean grow(int full) {
+        mappingLock.writeLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (capacity != full) {
+                return true;
+            }
+            if (capacity >= MAX_CAPACITY) {
+                return false;
+            }
+            rebuild(capacity * 2);
+            growths++;
+            logger.info("Grew the last value store {} to {} slots", file, capacity);
+            return true;
+        }
+        catch (IOException e) {
+            logger.error("Cannot grow the last value store {}", file, e);
+            return false;
+        }
+        finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rehashes every value into a store of the given number of slots, or more
+     * if a segment overflows, removed slots being purged. Called with the
+     * mapping lock held exclusively or from the constructor.
+     */
+    private void rebuild(int newCapacity) throws IOException {
+        Entries entries = collect(0, capacity);
+        while (true) {
+            if (newCapacity != capacity) {
+                buffer = map(newCapacity);
+                capacity = newCapacity;
+            }
+            reset();
+            if (entries.insert(this)) {
+                break;
+            }
+            if (newCapacity >= MAX_CAPACITY) {
+                logger.warn("Dropped values of the last value store {} not fitting in {} slots", file, capacity);
+                break;
+            }
+            newCapacity *= 2;
+        }
+        buffer.putInt(4, capacity);
+    }
+
+    /**
+     * Rehashes the values of a segment to reuse its removed slots
+     */
+    private void purge(int segment) {
+        int segmentSize = capacity / SEGMENTS;
+        Entries entries = collect(segment * segmentSize, (segment + 1) * segmentSize);
+        for (int slot = segment * segmentSize; slot < (segment + 1) * segmentSize; slot++) {
+            buffer.put(offset(slot) + KIND, EMPTY);
+        }
+        live[segment] = 0;
+        removed[segment] = 0;
+        entries.insert(this);
+        purges.incrementAndGet();
+    }
+
+    /**
+     * Empties every slot
+     */
+    private void reset() {
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.put(offset(slot) + KIND, EMPTY);
+        }
+        Arrays.fill(live, 0);
+        Arrays.fill(removed, 0);
+    }
+
+    /**
+     * Counts the live and removed slots of every segment
+     */
+    private void count() {
+        int segmentSize = capacity / SEGMENTS;
+        for (int slot = 0; slot < capacity; slot++) {
+            byte kind = buffer.get(offset(slot) + KIND);
+            if (kind == REMOVED) {
+                removed[slot / segmentSize]++;
+            }
+            else if (kind != EMPTY) {
+                live[slot / segmentSize]++;
+            }
+        }
+    }
+
+    /**
+     * Copies the values of a range of slots
+     */
+    private Entries collect(int from, int to) {
+        Entries entries = new Entries();
+        for (int slot = from; slot < to; slot++) {
+            int offset = offset(slot);
+            byte kind = buffer.get(offset + KIND);
+            if (kind != EMPTY && kind != REMOVED) {
+                entries.add(buffer.getInt(offset + UID), buffer.getInt(offset + CHANNEL), buffer.getInt(offset + NAME), kind, buffer.getLong(offset + VALUE), buffer.getLong(offset + TIMESTAMP));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Fills the state of a device with the value of a slot
+     *
+     * @return True if the value was restored
+     */
+    private boolean restore(DeviceManager deviceManager, int offset) {
+        byte kind = buffer.get(offset + KIND);
+        if (kind == EMPTY || kind == REMOVED) {
+            return false;
+        }
+        EnOceanDevice device = deviceManager.getDevice(buffer.getInt(offset + UID));
+        if (device == null || device.getEEP() == null) {
+            return false;
+        }
+        int channelId = buffer.getInt(offset + CHANNEL);
+        String name = resolveName(device.getEEP(), channelId, buffer.getInt(offset + NAME));
+        if (name == null) {
+            return false;
+        }
+        long bits = buffer.getLong(offset + VALUE);
+        Object value;
+        switch (kind) {
+            case DOUBLE:
+                value = Double.longBitsToDouble(bits);
+                break;
+            case INTEGER:
+                value = (int) bits;
+                break;
+            default:
+                value = bits != 0;
+                break;
+        }
+        return deviceManager.getStateStore().getOrCreate(device).restore(channelId, name, value, buffer.getLong(offset + TIMESTAMP));
+    }
+
+    /**
+     * Finds the slot of a value in its segment
+     *
+     * @return Slot index or -1 if not found
+     */
+    private int findSlot(int segment, int hash, int uid, int channelId, int nameHash) {
+        int segmentSize = capacity / SEGMENTS;
+        int mask = segmentSize - 1;
+        int start = hash & mask;
+        for (int i = 0; i < segmentSize; i++) {
+            int slot = segment * segmentSize + (start + i & mask);
+            int offset = offset(slot);
+            byte kind = buffer.get(offset + KIND);
+            if (kind == EMPTY) {
+                return -1;
+            }
+            if (kind != REMOVED && buffer.getInt(offset + UID) == uid && buffer.getInt(offset + CHANNEL) == channelId && buffer.getInt(offset + NAME) == nameHash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Claims the first empty or removed slot of a segment for a new value,
+     * the segment having room
+     *
+     * @return Slot index
+     */
+    private int claim(int segment, int hash, int uid, int channelId, int nameHash) {
+        int segmentSize = capacity / SEGMENTS;
+        int mask = segmentSize - 1;
+        int start = hash & mask;
+        for (int i = 0; i < segmentSize; i++) {
+            int slot = segment * segmentSize + (start + i & mask);
+            int offset = offset(slot);
+            byte kind = buffer.get(offset + KIND);
+            if (kind == EMPTY || kind == REMOVED) {
+                if (kind == REMOVED) {
+                    removed[segment]--;
+                }
+                live[segment]++;
+                buffer.putInt(offset + UID, uid);
+                buffer.putInt(offset + CHANNEL, channelId);
+                buffer.putInt(offset + NAME, nameHash);
+                return slot;
+            }
+        }
+        throw new IllegalStateException("No free slot in segment " + segment);
+    }
+
+    private void write(int slot, byte kind, long bits, long timestamp) {
+        int offset = offset(slot);
+        buffer.putLong(offset + VALUE, bits);
+        buffer.putLong(offset + TIMESTAMP, timestamp);
+        buffer.put(offset + KIND, kind);
+    }
+
+    /**
+     * Checks whether a segment can take one more value without going over
+     * the load factor
+     */
+    private boolean hasRoom(int segment) {
+        return live[segment] + removed[segment] < maxUsed();
+    }
+
+    /**
+     * Returns the number of used slots, live or removed, a segment may hold
+     */
+    private int maxUsed() {
+        return capacity / SEGMENTS * 3 / 4;
+    }
+
+    private MappedByteBuffer map(int slots) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+    }
+
+    private static String resolveName(EEP eep, int channelId, int nameHash) {
+        Set<String> names = eep.getChannelAttributes(channelId);
+        if (names != null) {
+            for (String name : names) {
+                if (hashName(name) == nameHash) {
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hashes an attribute name ignoring its case, as the state store does,
+     * without allocating
+     */
+    private static int hashName(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(name.charAt(i));
+        }
+        return hash;
+    }
+
+    private static int hash(int uid, int channelId, int nameHash) {
+        int hash = (uid * 31 + channelId) * 31 + nameHash;
+        hash *= 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+
+    /**
+     * Selects the segment of a hash from its top bits, the low bits
+     * selecting the slot
+     */
+    private static int segment(int hash) {
+        return hash >>> 28 & SEGMENTS - 1;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Values copied out of the slots while they are rehashed
+     */
+    private static class Entries {
+
+        // the keys, kinds, value bits and timestamps
+        private int[] uids = new int[16];
+        private int[] channels = new int[16];
+        private int[] names = new int[16];
+        private byte[] kinds = new byte[16];
+        private long[] values = new long[16];
+        private long[] timestamps = new long[16];
+
+        // the number of values
+        private int size;
+
+        private void add(int uid, int channelId, int nameHash, byte kind, long bits, long timestamp) {
+            if (size == uids.length) {
+                int length = size * 2;
+                uids = Arrays.copyOf(uids, length);
+                channels = Arrays.copyOf(channels, length);
+                names = Arrays.copyOf(names, length);
+                kinds = Arrays.copyOf(kinds, length);
+                values = Arrays.copyOf(values, length);
+                timestamps = Arrays.copyOf(timestamps, length);
+            }
+            uids[size] = uid;
+            channels[size] = channelId;
+            names[size] = nameHash;
+            kinds[size] = kind;
+            values[size] = bits;
+            timestamps[size] = timestamp;
+            size++;
+        }
+
+        /**
+         * Inserts the values into the store
+         *
+         * @param store Store with the segments emptied
+         * @return False if a segment overflowed
+         */
+        private boolean insert(LastValueStore store) {
+            for (int i = 0; i < size; i++) {
+                int hash = hash(uids[i], channels[i], names[i]);
+                int segment = segment(hash);
+                if (!store.hasRoom(segment)) {
+                    return false;
+                }
+                int slot = store.claim(segment, hash, uids[i], channels[i], names[i]);
+                store.write(slot, kinds[i], values[i], timestamps[i]);
+            }
+            return true;
+        }
+    }
+}
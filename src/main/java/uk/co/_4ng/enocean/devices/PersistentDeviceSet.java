@@ -15,88 +15,125 @@
  */
 package uk.co._4ng.enocean.devices;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Hashmap implementation for EnOceanDevices
+ * The set of registered EnOceanDevices, by device UID. Devices are kept in an
+ * open addressing table keyed by the primitive UID, so that the serial thread
+ * looks devices up without locking, boxing the UID or wrapping the address,
+ * while application threads register and unregister devices concurrently.
+ * Writers are serialized; a lookup sees either the table before or after a
+ * concurrent write, never a partial one. The collections returned by the
+ * {@link Map} views are read-only snapshots.
  */
 public class PersistentDeviceSet implements Map<Integer, EnOceanDevice>, Serializable {
 
     private static final long serialVersionUID = 4702253423427228802L;
-    private final Map<Integer, EnOceanDevice> theSet = new HashMap<>();
+
+    // the initial number of slots, always a power of 2
+    private static final int INITIAL_CAPACITY = 64;
+
+    // marks a slot whose device was removed, lookups probe past it
+    private static final Node REMOVED = new Node(0, null);
+
+    // the slots, replaced as a whole when the table is rebuilt
+    private transient volatile AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+    // the number of devices and of removed slots, only changed by writers
+    private transient volatile int size;
+    private transient int removed;
 
     @Override
     public int size() {
-        return theSet.size();
+        return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return theSet.isEmpty();
+        return size == 0;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        return theSet.containsKey(key);
+        return key instanceof Integer && getByUID((Integer) key) != null;
     }
 
     @Override
     public boolean containsValue(Object value) {
-        return theSet.containsValue(value);
+        return value instanceof EnOceanDevice && values().contains(value);
     }
 
     @Override
     public EnOceanDevice get(Object key) {
-        return theSet.get(key);
+        return key instanceof Integer ? getByUID((Integer) key) : null;
     }
 
     @Override
     public EnOceanDevice put(Integer key, EnOceanDevice value) {
-        return theSet.put(key, value);
+        return put(key, value, false);
     }
 
     @Override
     public EnOceanDevice remove(Object key) {
-        return theSet.remove(key);
+        return key instanceof Integer ? remove((int) (Integer) key) : null;
     }
 
     @Override
     public void putAll(Map<? extends Integer, ? extends EnOceanDevice> m) {
-        theSet.putAll(m);
+        for (Entry<? extends Integer, ? extends EnOceanDevice> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
-    public void clear() {
-        theSet.clear();
+    public synchronized void clear() {
+        nodes = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        size = 0;
+        removed = 0;
     }
 
     @Override
     public Set<Integer> keySet() {
-        return theSet.keySet();
+        return Collections.unmodifiableSet(snapshot().keySet());
     }
 
     @Override
     public Collection<EnOceanDevice> values() {
-        return theSet.values();
+        AtomicReferenceArray<Node> current = nodes;
+        List<EnOceanDevice> values = new ArrayList<>(size);
+        for (int i = 0; i < current.length(); i++) {
+            Node node = current.get(i);
+            if (node != null && node != REMOVED) {
+                values.add(node.device);
+            }
+        }
+        return Collections.unmodifiableList(values);
     }
 
     @Override
     public Set<Entry<Integer, EnOceanDevice>> entrySet() {
-        return theSet.entrySet();
+        return Collections.unmodifiableSet(snapshot().entrySet());
     }
 
     @Override
     public boolean equals(Object o) {
-        return theSet.equals(o);
+        return o instanceof Map && snapshot().equals(o);
     }
 
     @Override
     public int hashCode() {
-        return theSet.hashCode();
+        return snapshot().hashCode();
     }
 
     /**
@@ -107,8 +144,17 @@ public class PersistentDeviceSet implements Map<Integer, EnOceanDevice>, Seriali
      * @return The corresponding {@link EnOceanDevice} instance.
      */
     EnOceanDevice getByUID(int deviceUID) {
-        // return the device, if present
-        return theSet.get(deviceUID);
+        AtomicReferenceArray<Node> current = nodes;
+        int mask = current.length() - 1;
+        for (int i = hash(deviceUID) & mask; ; i = (i + 1) & mask) {
+            Node node = current.get(i);
+            if (node == null) {
+                return null;
+            }
+            if (node != REMOVED && node.uid == deviceUID) {
+                return node.device;
+            }
+        }
     }
 
     /**
@@ -121,7 +167,19 @@ public class PersistentDeviceSet implements Map<Integer, EnOceanDevice>, Seriali
      */
     EnOceanDevice getByAddress(byte[] address) {
         // get the corresponding EnOcean device
-        return theSet.get(EnOceanDevice.byteAddressToUID(address));
+        return getByUID(EnOceanDevice.byteAddressToUID(address));
+    }
+
+    /**
+     * Gets a device given the 4 address bytes at the given offset of a buffer,
+     * e.g. of a received telegram
+     *
+     * @param buffer The buffer holding the address
+     * @param offset The offset of the first address byte
+     * @return The corresponding {@link EnOceanDevice} instance
+     */
+    EnOceanDevice getByAddress(byte[] buffer, int offset) {
+        return getByUID(EnOceanDevice.byteAddressToUID(buffer, offset));
     }
 
     /**
@@ -131,14 +189,183 @@ public class PersistentDeviceSet implements Map<Integer, EnOceanDevice>, Seriali
      */
     void add(EnOceanDevice device) {
         // add the given device
-        theSet.put(device.getAddressInt(), device);
+        put(device.getAddressInt(), device, false);
+    }
+
+    /**
+     * Adds the given {@link EnOceanDevice} unless a device with the same UID is
+     * already registered
+     *
+     * @param device The {@link EnOceanDevice} instance to add.
+     * @return The device already registered, null if the given one was added
+     */
+    EnOceanDevice addIfAbsent(EnOceanDevice device) {
+        return put(device.getAddressInt(), device, true);
+    }
+
+    /**
+     * Adds many devices at once, e.g. when loading them from a journal, growing
+     * the table only once
+     *
+     * @param devices The devices to add
+     */
+    synchronized void addAll(Collection<EnOceanDevice> devices) {
+        rebuild(size + devices.size());
+        for (EnOceanDevice device : devices) {
+            put(device.getAddressInt(), device, false);
+        }
     }
 
     EnOceanDevice remove(EnOceanDevice device) {
-        return theSet.remove(device.getAddressInt());
+        return remove(device.getAddressInt());
+    }
+
+    synchronized EnOceanDevice remove(int uid) {
+        AtomicReferenceArray<Node> nodes = this.nodes;
+        int mask = nodes.length() - 1;
+        for (int i = hash(uid) & mask; ; i = (i + 1) & mask) {
+            Node node = nodes.get(i);
+            if (node == null) {
+                return null;
+            }
+            if (node != REMOVED && node.uid == uid) {
+                nodes.set(i, REMOVED);
+                removed++;
+                size--;
+                return node.device;
+            }
+        }
+    }
+
+    /**
+     * Stores a device, with the writers serialized
+     */
+    private synchronized EnOceanDevice put(int uid, EnOceanDevice device, boolean onlyIfAbsent) {
+        if (device == null) {
+            throw new NullPointerException("Null devices are not supported");
+        }
+
+        // keep at least a quarter of the slots free so that probes stay short
+        // and always end on an empty slot
+        if ((size + removed + 1) * 4 > nodes.length() * 3) {
+            rebuild(size + 1);
+        }
+
+        AtomicReferenceArray<Node> nodes = this.nodes;
+        int mask = nodes.length() - 1;
+        int free = -1;
+        for (int i = hash(uid) & mask; ; i = (i + 1) & mask) {
+            Node node = nodes.get(i);
+            if (node == null) {
+                if (free < 0) {
+                    free = i;
+                }
+                break;
+            }
+            if (node == REMOVED) {
+                if (free < 0) {
+                    free = i;
+                }
+            }
+            else if (node.uid == uid) {
+                if (!onlyIfAbsent) {
+                    nodes.set(i, new Node(uid, device));
+                }
+                return node.device;
+            }
+        }
+        if (nodes.get(free) == REMOVED) {
+            removed--;
+        }
+        nodes.set(free, new Node(uid, device));
+        size++;
+        return null;
+    }
+
+    /**
+     * Copies the devices in a new table, large enough to keep half of the
+     * slots free with the expected number of devices, dropping the removed
+     * slots; readers keep using the old table meanwhile
+     */
+    private void rebuild(int expected) {
+        AtomicReferenceArray<Node> old = nodes;
+        int capacity = old.length();
+        while (expected * 2 > capacity) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<Node> rebuilt = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length(); i++) {
+            Node node = old.get(i);
+            if (node != null && node != REMOVED) {
+                int j = hash(node.uid) & mask;
+                while (rebuilt.get(j) != null) {
+                    j = (j + 1) & mask;
+                }
+                rebuilt.set(j, node);
+            }
+        }
+        nodes = rebuilt;
+        removed = 0;
     }
 
-    EnOceanDevice remove(int uid) {
-        return theSet.remove(uid);
+    private Map<Integer, EnOceanDevice> snapshot() {
+        Map<Integer, EnOceanDevice> snapshot = new LinkedHashMap<>();
+        AtomicReferenceArray<Node> current = nodes;
+        for (int i = 0; i < current.length(); i++) {
+            Node node = current.get(i);
+            if (node != null && node != REMOVED) {
+                snapshot.put(node.uid, node.device);
+            }
+        }
+        return snapshot;
+    }
+
+    private static int hash(int uid) {
+        // devices of the same batch often differ in the low bits only
+        int hash = uid * 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (Entry<Integer, EnOceanDevice> entry : snapshot().entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        nodes = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        if (fields.getObjectStreamClass().getField("theSet") != null) {
+            // the first form of the set, with the same serialVersionUID, wrapped a HashMap
+            Map<?, ?> devices = (Map<?, ?>) fields.get("theSet", null);
+            if (devices != null) {
+                for (Entry<?, ?> entry : devices.entrySet()) {
+                    put((Integer) entry.getKey(), (EnOceanDevice) entry.getValue(), false);
+                }
+            }
+            return;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int uid = in.readInt();
+            put(uid, (EnOceanDevice) in.readObject(), false);
+        }
+    }
+
+    /**
+     * A device and its UID, never changed once stored
+     */
+    private static final class Node {
+        private final int uid;
+        private final EnOceanDevice device;
+
+        Node(int uid, EnOceanDevice device) {
+            this.uid = uid;
+            this.device = device;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.devices;
+
+import uk.co._4ng.enocean.eep.EEP;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Maps the channel attributes of a profile to the slots of the
+ * {@link DeviceState}s of its devices. One layout is shared by all the devices
+ * using the profile; new attributes are given a slot the first time they are
+ * stored. The kind of value a slot holds is kept by each device state, as
+ * the values of an attribute are not always of the same type.
+ */
+class StateLayout {
+
+    // the kinds of value a slot can hold
+    static final byte UNKNOWN = 0;
+    static final byte DOUBLE = 1;
+    static final byte LONG = 2;
+    static final byte BOOLEAN = 3;
+    static final byte OBJECT = 4;
+    static final byte INT = 5;
+
+    // the slots by channel and attribute name
+    private final Map<Integer, Map<String, Integer>> slots = new HashMap<>();
+
+    // the number of slots assigned
+    private volatile int size;
+
+    /**
+     * Creates an empty layout, for devices without a profile
+     */
+    StateLayout() {
+    }
+
+    /**
+     * Creates the layout of a profile, with a slot for every attribute it
+     * declares
+     *
+     * @param eep Profile
+     */
+    StateLayout(EEP eep) {
+        for (Integer channel : eep.getChannels()) {
+            Set<String> names = eep.getChannelAttributes(channel);
+            if (names != null) {
+                for (String name : names) {
+                    getSlot(channel, name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of an attribute, assigning a new one if needed
+     *
+     * @param channel Channel
+     * @param name    Attribute name
+     * @return Slot index
+     */
+    synchronized int getSlot(int channel, String name) {
+        Map<String, Integer> channelSlots = slots.get(channel);
+        if (channelSlots == null) {
+            channelSlots = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            slots.put(channel, channelSlots);
+        }
+        Integer slot = channelSlots.get(name);
+        if (slot == null) {
+            slot = size;
+            channelSlots.put(name, slot);
+            size = slot + 1;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the slot of an attribute without assigning one
+     *
+     * @param channel Channel
+     * @param name    Attribute name
+     * @return Slot index or -1 if the attribute was never stored
+     */
+    synchronized int findSlot(int channel, String name) {
+        Map<String, Integer> channelSlots = slots.get(channel);
+        Integer slot = channelSlots == null ? null : channelSlots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Returns the kind of slot holding a value
+     *
+     * @param value Value about to be stored, not null
+     * @return Kind of value
+     */
+    static byte kindOf(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return DOUBLE;
+        }
+        else if (value instanceof Integer) {
+            return INT;
+        }
+        else if (value instanceof Long) {
+            return LONG;
+        }
+        else if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Returns the number of slots
+     *
+     * @return Slot count
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.eep;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An attribute holding a flag, kept as a primitive boolean. The boxed
+ * {@link #getValue()} and {@link #setValue(Boolean)} remain available for
+ * generic code; profiles and listeners should prefer {@link #getBoolean()}
+ * and {@link #setRaw(int)}.
+ */
+public abstract class BooleanAttribute extends EEPAttribute<Boolean> {
+
+    // the attribute value
+    protected boolean booleanValue;
+
+    // the listeners to notify with the primitive value
+    private final Set<BooleanAttributeChangeListener> booleanListeners = Collections.newSetFromMap(new ConcurrentHashMap<BooleanAttributeChangeListener, Boolean>());
+
+    /**
+     * Creates an attribute with a value of false
+     *
+     * @param name Attribute name
+     */
+    public BooleanAttribute(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the current value of this attribute
+     *
+     * @return The value of the attribute
+     */
+    public boolean getBoolean() {
+        return booleanValue;
+    }
+
+    /**
+     * Returns the current value of this attribute as a real number
+     *
+     * @return 1 if the attribute is true, 0 otherwise
+     */
+    public double getDouble() {
+        return booleanValue ? 1 : 0;
+    }
+
+    /**
+     * Sets the current value of this attribute
+     *
+     * @param value Value to set
+     */
+    public void setBoolean(boolean value) {
+        booleanValue = value;
+        virginal = false;
+    }
+
+    /**
+     * Sets the value of this attribute from the unscaled value of a telegram,
+     * any value other than 0 being true
+     *
+     * @param raw Unscaled value
+     */
+    public void setRaw(int raw) {
+        setBoolean(raw != 0);
+    }
+
+    /**
+     * Returns the current value of this attribute, boxed
+     *
+     * @return The value of the attribute
+     */
+    @Override
+    public Boolean getValue() {
+        return booleanValue;
+    }
+
+    /**
+     * Sets the current value of this attribute, null values are ignored
+     *
+     * @param value Value to set
+     */
+    @Override
+    public void setValue(Boolean value) {
+        if (value != null) {
+            setBoolean(value);
+        }
+    }
+
+    @Override
+    public void setRawValue(int value) {
+        setRaw(value);
+    }
+
+    /**
+     * Adds a listener notified of the changes of this attribute with the
+     * primitive value
+     *
+     * @param listener The listener to add.
+     * @return true if the listener is successfully added, false otherwise.
+     */
+    public boolean addBooleanChangeListener(BooleanAttributeChangeListener listener) {
+        return booleanListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener notified of the changes of this attribute with the
+     * primitive value
+     *
+     * @param listener The listener to remove.
+     * @return true if the listener is successfully removed, false otherwise.
+     */
+    public boolean removeBooleanChangeListener(BooleanAttributeChangeListener listener) {
+        return booleanListeners.remove(listener);
+    }
+
+    @Override
+    public void notifyAttributeListeners(EEPAttributeChangeJob.EEPAttributeChange change) {
+        super.notifyAttributeListeners(change);
+        if (!booleanListeners.isEmpty()) {
+            boolean value = change.getLong() != 0;
+            for (BooleanAttributeChangeListener listener : booleanListeners) {
+                listener.handleAttributeChange(change, value);
+            }
+        }
+    }
+}
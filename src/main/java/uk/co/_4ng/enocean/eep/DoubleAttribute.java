@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.eep;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An attribute holding a real number, kept as a primitive double so that
+ * decoding a telegram does not allocate. The boxed {@link #getValue()} and
+ * {@link #setValue(Double)} remain available for generic code; profiles and
+ * listeners should prefer {@link #getDouble()} and {@link #setRaw(int)}.
+ */
+public abstract class DoubleAttribute extends EEPAttribute<Double> {
+
+    // the attribute value
+    protected double doubleValue;
+
+    // the listeners to notify with the primitive value
+    private final Set<DoubleAttributeChangeListener> doubleListeners = Collections.newSetFromMap(new ConcurrentHashMap<DoubleAttributeChangeListener, Boolean>());
+
+    /**
+     * Creates an attribute with a value of 0
+     *
+     * @param name Attribute name
+     */
+    public DoubleAttribute(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the current value of this attribute
+     *
+     * @return The value of the attribute
+     */
+    public double getDouble() {
+        return doubleValue;
+    }
+
+    /**
+     * Sets the current value of this attribute
+     *
+     * @param value Value to set
+     */
+    public void setDouble(double value) {
+        doubleValue = value;
+        virginal = false;
+    }
+
+    /**
+     * Sets the value of this attribute from the unscaled value of a telegram,
+     * subclasses override it to apply their scaling
+     *
+     * @param raw Unscaled value
+     */
+    public void setRaw(int raw) {
+        setDouble(raw);
+    }
+
+    /**
+     * Returns the current value of this attribute, boxed
+     *
+     * @return The value of the attribute
+     */
+    @Override
+    public Double getValue() {
+        return doubleValue;
+    }
+
+    /**
+     * Sets the current value of this attribute, null values are ignored
+     *
+     * @param value Value to set
+     */
+    @Override
+    public void setValue(Double value) {
+        if (value != null) {
+            setDouble(value);
+        }
+    }
+
+    @Override
+    public void setRawValue(int value) {
+        setRaw(value);
+    }
+
+    /**
+     * Adds a listener notified of the changes of this attribute with the
+     * primitive value
+     *
+     * @param listener The listener to add.
+     * @return true if the listener is successfully added, false otherwise.
+     */
+    public boolean addDoubleChangeListener(DoubleAttributeChangeListener listener) {
+        return doubleListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener notified of the changes of this attribute with the
+     * primitive value
+     *
+     * @param listener The listener to remove.
+     * @return true if the listener is successfully removed, false otherwise.
+     */
+    public boolean removeDoubleChangeListener(DoubleAttributeChangeListener listener) {
+        return doubleListeners.remove(listener);
+    }
+
+    @Override
+    public void notifyAttributeListeners(EEPAttributeChangeJob.EEPAttributeChange change) {
+        super.notifyAttributeListeners(change);
+        if (!doubleListeners.isEmpty()) {
+            double value = change.getDouble();
+            double oldValue = change.getOldDouble();
+            for (DoubleAttributeChangeListener listener : doubleListeners) {
+                listener.handleAttributeChange(change, value, oldValue);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.eep;
+
+/**
+ * Notified of the changes of a {@link DoubleAttribute} with the primitive
+ * value decoded from the telegram, without boxing.
+ */
+public interface DoubleAttributeChangeListener {
+    /**
+     * Notifies a listener about the change of a real valued attribute
+     *
+     * @param change   The immutable attribute change.
+     * @param value    The value decoded from the telegram.
+     * @param oldValue The previous value of the device, NaN if unknown.
+     */
+    void handleAttributeChange(EEPAttributeChangeJob.EEPAttributeChange change, double value, double oldValue);
+}
@@ -20,6 +20,8 @@ import org.slf4j.LoggerFactory;
 import uk.co._4ng.enocean.devices.DeviceManager;
 import uk.co._4ng.enocean.devices.EnOceanDevice;
 import uk.co._4ng.enocean.eep.eep26.telegram.EEP26Telegram;
+import uk.co._4ng.enocean.link.CommandKeyExtractor;
+import uk.co._4ng.enocean.link.TransmitScheduler;
 
 import java.util.*;
 import java.util.Map.Entry;
@@ -47,6 +49,15 @@ public abstract class EEP implements EEPAttributeChangePublisher {
     protected byte type;
     protected byte function;
 
+    // the copies of this profile decoding the telegrams of each thread, so
+    // that the devices of the profile are decoded concurrently
+    private final ThreadLocal<EEP> decoders = new ThreadLocal<EEP>() {
+        @Override
+        protected EEP initialValue() {
+            return createDecoder();
+        }
+    };
+
     public EEP() {
         this("2.6");
     }
@@ -216,6 +227,15 @@ public abstract class EEP implements EEPAttributeChangePublisher {
         return attributes != null ? attributes.keySet() : null;
     }
 
+    /**
+     * Returns the ids of the channels having attributes
+     *
+     * @return The {@link Set}<{@link Integer}> of channel ids.
+     */
+    public Set<Integer> getChannels() {
+        return channelAttributes.keySet();
+    }
+
     /**
      * Returns the number of channels supported by this {@link EEP} instance.
      *
@@ -279,11 +299,55 @@ public abstract class EEP implements EEPAttributeChangePublisher {
 
     /**
      * Handles the profile data update, must be specifically implemented by each
-     * profile class
+     * profile class. The attributes of a profile instance are shared by all the
+     * devices using it, so every thread decodes on its own copy of the profile,
+     * whose changes are notified to the listeners of the attributes of this
+     * one, and the decoded values are copied to the device state (see
+     * {@link DeviceManager#getDeviceState(int)}).
      */
     public boolean handleUpdate(DeviceManager deviceManager, EEP26Telegram telegram, EnOceanDevice device) {
         logger.debug("Handling telegram: {} for device: {}", getIdentifier(), device);
-        return handleProfileUpdate(deviceManager, telegram, device);
+        EEP decoder = decoders.get();
+        if (decoder == this) {
+            // the profile cannot be copied, decode one telegram at a time
+            synchronized (this) {
+                return handleProfileUpdate(deviceManager, telegram, device);
+            }
+        }
+        return decoder.handleProfileUpdate(deviceManager, telegram, device);
+    }
+
+    /**
+     * Creates a copy of this profile to decode telegrams on, the changes of
+     * its attributes being notified through the attributes of this profile
+     *
+     * @return Copy or this profile if it cannot be instantiated
+     */
+    private EEP createDecoder() {
+        EEP decoder;
+        try {
+            decoder = getClass().newInstance();
+        }
+        catch (InstantiationException | IllegalAccessException e) {
+            logger.warn("Cannot copy the profile {}, its telegrams are decoded one at a time", getIdentifier(), e);
+            return this;
+        }
+        for (Entry<Integer, Map<String, EEPAttribute<?>>> channel : decoder.channelAttributes.entrySet()) {
+            Map<String, EEPAttribute<?>> attributes = channelAttributes.get(channel.getKey());
+            for (Entry<String, EEPAttribute<?>> attribute : channel.getValue().entrySet()) {
+                link(attribute.getValue(), attributes == null ? null : attributes.get(attribute.getKey()));
+            }
+        }
+        for (Entry<String, EEPAttribute<?>> attribute : decoder.eepAttributes.entrySet()) {
+            link(attribute.getValue(), eepAttributes.get(attribute.getKey()));
+        }
+        return decoder;
+    }
+
+    private static void link(EEPAttribute<?> copy, EEPAttribute<?> attribute) {
+        if (attribute != null) {
+            copy.registered = attribute;
+        }
     }
 
     /**
@@ -308,6 +372,18 @@ public abstract class EEP implements EEPAttributeChangePublisher {
         return function;
     }
 
+    /**
+     * Returns the extractor telling which state the commands sent to the
+     * devices of this profile set, letting a queued command be replaced by a
+     * newer one, see {@link TransmitScheduler#setCoalescing(boolean)}
+     *
+     * @return Extractor or null if the commands of this profile are never
+     * coalesced
+     */
+    public CommandKeyExtractor getCommandKeyExtractor() {
+        return null;
+    }
+
     /**
      * Handles the profile data update, must be specifically implemented by each
      * profile class
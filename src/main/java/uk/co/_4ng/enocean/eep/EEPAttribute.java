@@ -29,7 +29,7 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public abstract class EEPAttribute<T> {
+public abstract class EEPAttribute<T> implements Cloneable {
     /**
      * Default channel to which the attribute is associated if no channel id is
      * specified. Used to handle default attribute change dispatching.
@@ -39,9 +39,9 @@ public abstract class EEPAttribute<T> {
     // the attribute name
     protected String name;
 
-    // the attribute value
-    // e.g., power measurement.
-    protected T value;
+    // the attribute value, e.g., power measurement; the primitive attributes
+    // keep their own value and override the accessors, leaving it unused
+    private T value;
 
     // The unit of measure for the value, if any.
     protected String unit;
@@ -52,6 +52,10 @@ public abstract class EEPAttribute<T> {
     // Indicates that this attribute hasn't received a value before
     protected boolean virginal = true;
 
+    // the attribute of the registered profile, this one for the attributes
+    // of the copies of a profile decoding telegrams
+    EEPAttribute<?> registered = this;
+
     /**
      * The class constructor, initializes the data structures shared between all
      * EEPFunctions, i.e., the name and the set of supported EEPs (storing their
@@ -68,6 +72,18 @@ public abstract class EEPAttribute<T> {
         registeredListeners = Collections.newSetFromMap(new ConcurrentHashMap<EEPAttributeChangeListener, Boolean>());
     }
 
+    /**
+     * Creates an attribute holding an initial value, the attribute being
+     * still virginal
+     *
+     * @param name         Attribute name
+     * @param initialValue Initial value
+     */
+    protected EEPAttribute(String name, T initialValue) {
+        this(name);
+        value = initialValue;
+    }
+
     /**
      * Get the attribute name, should be one, unique and matching the EEP
      * specification
@@ -179,6 +195,33 @@ public abstract class EEPAttribute<T> {
         notifyAttributeListeners(DEFAULT_CHANNEL, telegram, device);
     }
 
+    /**
+     * Notifies all registered listeners of a change of the represented
+     * attribute, holding the value decoded from the telegram
+     *
+     * @param change The attribute change
+     */
+    public void notifyAttributeListeners(EEPAttributeChangeJob.EEPAttributeChange change) {
+        for (EEPAttributeChangeListener listener : registeredListeners) {
+            listener.handleAttributeChange(change);
+        }
+    }
+
+    /**
+     * Returns a copy of this attribute, e.g. to hold the value decoded from
+     * one telegram; the copy shares the listeners of this attribute
+     *
+     * @return Copy
+     */
+    EEPAttribute<?> copy() {
+        try {
+            return (EEPAttribute<?>) clone();
+        }
+        catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Returns true if the attribute has never received a value
      * @return True if virginal
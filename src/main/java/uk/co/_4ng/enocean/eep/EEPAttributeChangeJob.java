@@ -16,14 +16,19 @@
 package uk.co._4ng.enocean.eep;
 
 import uk.co._4ng.enocean.devices.DeviceManager;
+import uk.co._4ng.enocean.devices.DeviceState;
 import uk.co._4ng.enocean.devices.EnOceanDevice;
 import uk.co._4ng.enocean.eep.eep26.telegram.EEP26Telegram;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * A simple way of launching asynchronous notifications
+ * A simple way of launching asynchronous notifications. The changes capture
+ * the values of the attributes when the telegram is decoded, so listeners see
+ * the values of this telegram even if the next one has been decoded since;
+ * a job must not be changed once submitted.
  *
  * @author sohara
  */
@@ -32,6 +37,12 @@ public class EEPAttributeChangeJob implements Runnable {
     private final DeviceManager deviceManager;
     private final List<EEPAttributeChange> changes = new ArrayList<>();
 
+    // the read-only view handed to the listeners
+    private final List<EEPAttributeChange> changesView = Collections.unmodifiableList(changes);
+
+    // the time the telegram was decoded, in milliseconds since the epoch
+    private final long timestamp = System.currentTimeMillis();
+
     /**
      * Creates an empty list of attributes that need to be notified for the specific device and channel
      *
@@ -52,7 +63,7 @@ public class EEPAttributeChangeJob implements Runnable {
      */
     public EEPAttributeChangeJob(DeviceManager deviceManager, EEPAttribute<?> changedAttribute, int channelId, EEP26Telegram telegram, EnOceanDevice device) {
         this.deviceManager = deviceManager;
-        changes.add(new EEPAttributeChange(changedAttribute, channelId, telegram, device));
+        addChangedAttribute(changedAttribute, channelId, telegram, device);
     }
 
     /**
@@ -67,12 +78,16 @@ public class EEPAttributeChangeJob implements Runnable {
     public EEPAttributeChangeJob(DeviceManager deviceManager, List<EEPAttribute<?>> changedAttributes, int channelId, EEP26Telegram telegram, EnOceanDevice device) {
         this.deviceManager = deviceManager;
         for (EEPAttribute<?> changedAttribute : changedAttributes) {
-            changes.add(new EEPAttributeChange(changedAttribute, channelId, telegram, device));
+            addChangedAttribute(changedAttribute, channelId, telegram, device);
         }
     }
 
     /**
-     * Adds a changed attribute to the list of notifications
+     * Adds a changed attribute to the list of notifications, capturing its
+     * current value and the previous value of the device. When the telegram
+     * was decoded on a copy of the profile, the value is also written back to
+     * the attribute of the registered profile, which keeps holding the last
+     * value decoded for any of its devices.
      *
      * @param changedAttribute Attributes that has changed
      * @param channelId        The channel
@@ -80,15 +95,61 @@ public class EEPAttributeChangeJob implements Runnable {
      * @param device           The target device
      */
     public void addChangedAttribute(EEPAttribute<?> changedAttribute, int channelId, EEP26Telegram telegram, EnOceanDevice device) {
-        changes.add(new EEPAttributeChange(changedAttribute, channelId, telegram, device));
+        DeviceState state = null;
+        if (deviceManager != null && device != null) {
+            state = deviceManager.getDeviceState(device.getAddressInt());
+        }
+
+        // primitive attributes are captured without boxing their value
+        EEPAttributeChange change;
+        if (changedAttribute instanceof DoubleAttribute) {
+            double oldValue = state == null ? Double.NaN : state.getDouble(channelId, changedAttribute.getName(), Double.NaN);
+            change = new EEPAttributeChange(changedAttribute, channelId, telegram, device, ((DoubleAttribute) changedAttribute).getDouble(), oldValue, timestamp);
+        }
+        else if (changedAttribute instanceof IntAttribute) {
+            Object oldValue = state == null ? null : state.getValue(channelId, changedAttribute.getName());
+            change = new EEPAttributeChange(changedAttribute, channelId, telegram, device, EEPAttributeChange.INTEGER, ((IntAttribute) changedAttribute).getInt(), null, oldValue instanceof Number ? ((Number) oldValue).doubleValue() : Double.NaN, oldValue, timestamp);
+        }
+        else if (changedAttribute instanceof BooleanAttribute) {
+            Object oldValue = state == null ? null : state.getValue(channelId, changedAttribute.getName());
+            change = new EEPAttributeChange(changedAttribute, channelId, telegram, device, EEPAttributeChange.BOOLEAN, ((BooleanAttribute) changedAttribute).getBoolean() ? 1 : 0, null, Double.NaN, oldValue, timestamp);
+        }
+        else {
+            Object oldValue = state == null ? null : state.getValue(channelId, changedAttribute.getName());
+            change = new EEPAttributeChange(changedAttribute, channelId, telegram, device, changedAttribute.getValue(), oldValue, timestamp);
+        }
+        changes.add(change);
+
+        // keep the attribute of the registered profile up to date
+        if (changedAttribute.registered != changedAttribute) {
+            change.assignTo(changedAttribute.registered);
+        }
+    }
+
+    /**
+     * Returns the device manager notified of the changes
+     *
+     * @return Device manager
+     */
+    public DeviceManager getDeviceManager() {
+        return deviceManager;
     }
 
     /**
      * Returns the list of changes
-     * @return List of changes
+     * @return Read-only list of changes
      */
     public List<EEPAttributeChange> getChanges() {
-        return new ArrayList<>(changes);
+        return changesView;
+    }
+
+    /**
+     * Returns the time the telegram was decoded
+     *
+     * @return Milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
     }
 
     @Override
@@ -100,13 +161,39 @@ public class EEPAttributeChangeJob implements Runnable {
     }
 
     /**
-     * A class that encapsulates the attribute change
+     * An immutable attribute change, holding the values captured when the
+     * telegram was decoded. The attribute itself is shared by all the devices
+     * of the profile, its current value may already belong to another
+     * telegram; use {@link #getValue()}, or {@link #getSnapshot()} for an
+     * attribute holding the value of this telegram.
      */
-    public class EEPAttributeChange {
+    public static final class EEPAttributeChange {
+
+        // the kinds of value held
+        private static final byte REFERENCE = 0;
+        private static final byte DOUBLE = 1;
+        private static final byte INTEGER = 2;
+        private static final byte BOOLEAN = 3;
+
         private final EEPAttribute<?> changedAttribute;
+        private final String name;
         private final int channelId;
         private final EEP26Telegram telegram;
         private final EnOceanDevice device;
+        private final int deviceUID;
+        private final long timestamp;
+
+        // the value, primitive ones are kept as bits and only boxed on demand
+        private final byte kind;
+        private final long bits;
+        private final Object value;
+
+        // the previous value, NaN for unknown real values
+        private final double oldDouble;
+        private final Object oldValue;
+
+        // the copy of the attribute holding the value, built on demand
+        private volatile EEPAttribute<?> snapshot;
 
         /**
          * Constructs an attribute change with all the required bits
@@ -115,23 +202,105 @@ public class EEPAttributeChangeJob implements Runnable {
          * @param channelId        The channel ID
          * @param telegram         The originating telegram
          * @param device           The device associated with the telegram
+         * @param value            The decoded value
+         * @param oldValue         The previous value of the device, null if unknown
+         * @param timestamp        The decoding time in milliseconds since the epoch
          */
-        private EEPAttributeChange(EEPAttribute<?> changedAttribute, int channelId, EEP26Telegram telegram, EnOceanDevice device) {
-            this.changedAttribute = changedAttribute;
+        public EEPAttributeChange(EEPAttribute<?> changedAttribute, int channelId, EEP26Telegram telegram, EnOceanDevice device, Object value, Object oldValue, long timestamp) {
+            this(changedAttribute, channelId, telegram, device, kindOf(value), bitsOf(value), value, oldValue instanceof Number ? ((Number) oldValue).doubleValue() : Double.NaN, oldValue, timestamp);
+        }
+
+        /**
+         * Constructs the change of a real valued attribute without boxing its
+         * values
+         *
+         * @param changedAttribute Attribute that has changed
+         * @param channelId        The channel ID
+         * @param telegram         The originating telegram
+         * @param device           The device associated with the telegram
+         * @param value            The decoded value
+         * @param oldValue         The previous value of the device, NaN if unknown
+         * @param timestamp        The decoding time in milliseconds since the epoch
+         */
+        public EEPAttributeChange(EEPAttribute<?> changedAttribute, int channelId, EEP26Telegram telegram, EnOceanDevice device, double value, double oldValue, long timestamp) {
+            this(changedAttribute, channelId, telegram, device, DOUBLE, Double.doubleToRawLongBits(value), null, oldValue, null, timestamp);
+        }
+
+        private EEPAttributeChange(EEPAttribute<?> changedAttribute, int channelId, EEP26Telegram telegram, EnOceanDevice device, byte kind, long bits, Object value, double oldDouble, Object oldValue, long timestamp) {
+            this.changedAttribute = changedAttribute.registered;
+            name = changedAttribute.getName();
             this.channelId = channelId;
             this.telegram = telegram;
             this.device = device;
+            deviceUID = device == null ? 0 : device.getAddressInt();
+            this.kind = kind;
+            this.bits = bits;
+            this.value = kind == REFERENCE ? value : null;
+            this.oldDouble = oldDouble;
+            this.oldValue = kind == DOUBLE ? null : oldValue;
+            this.timestamp = timestamp;
+        }
+
+        private static byte kindOf(Object value) {
+            if (value instanceof Double || value instanceof Float) {
+                return DOUBLE;
+            }
+            else if (value instanceof Integer) {
+                return INTEGER;
+            }
+            else if (value instanceof Boolean) {
+                return BOOLEAN;
+            }
+            return REFERENCE;
+        }
+
+        private static long bitsOf(Object value) {
+            switch (kindOf(value)) {
+                case DOUBLE:
+                    return Double.doubleToRawLongBits(((Number) value).doubleValue());
+                case INTEGER:
+                    return (Integer) value;
+                case BOOLEAN:
+                    return (Boolean) value ? 1 : 0;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Sets the value of an attribute of the changed type to the value
+         * decoded from the telegram
+         *
+         * @param target Attribute to set
+         */
+        @SuppressWarnings("unchecked")
+        private void assignTo(EEPAttribute<?> target) {
+            if (kind == DOUBLE && target instanceof DoubleAttribute) {
+                ((DoubleAttribute) target).setDouble(Double.longBitsToDouble(bits));
+            }
+            else if (kind == INTEGER && target instanceof IntAttribute) {
+                ((IntAttribute) target).setInt((int) bits);
+            }
+            else if (kind == BOOLEAN && target instanceof BooleanAttribute) {
+                ((BooleanAttribute) target).setBoolean(bits != 0);
+            }
+            else {
+                ((EEPAttribute<Object>) target).setValue(getValue());
+            }
         }
 
         /**
          * Notifies any attribute listeners
          */
         private void notifyAttributeListeners() {
-            changedAttribute.notifyAttributeListeners(channelId, telegram, device);
+            changedAttribute.notifyAttributeListeners(this);
         }
 
         /**
-         * Returns the changed attribute
+         * Returns the changed attribute, shared by all the devices of the
+         * profile. It holds the last value decoded for any of them, which may
+         * already belong to a later telegram: read the value of this one with
+         * {@link #getValue()} or {@link #getSnapshot()} instead.
          *
          * @return Changed attribute
          */
@@ -139,6 +308,33 @@ public class EEPAttributeChangeJob implements Runnable {
             return changedAttribute;
         }
 
+        /**
+         * Returns a copy of the changed attribute holding the value decoded
+         * from the telegram, e.g. for the listeners written against
+         * {@link EEPAttribute#getValue()}. The copy is built on the first
+         * call and shares the listeners of the attribute.
+         *
+         * @return Attribute holding the value of this change
+         */
+        public EEPAttribute<?> getSnapshot() {
+            EEPAttribute<?> current = snapshot;
+            if (current == null) {
+                current = changedAttribute.copy();
+                assignTo(current);
+                snapshot = current;
+            }
+            return current;
+        }
+
+        /**
+         * Returns the name of the changed attribute
+         *
+         * @return Attribute name
+         */
+        public String getName() {
+            return name;
+        }
+
         /**
          * Returns the associated channel
          *
@@ -165,5 +361,151 @@ public class EEPAttributeChangeJob implements Runnable {
         public EnOceanDevice getDevice() {
             return device;
         }
+
+        /**
+         * Returns the UID of the device
+         *
+         * @return Device UID
+         */
+        public int getDeviceUID() {
+            return deviceUID;
+        }
+
+        /**
+         * Returns the value decoded from the telegram, boxing primitive values
+         *
+         * @return Value
+         */
+        public Object getValue() {
+            switch (kind) {
+                case DOUBLE:
+                    return Double.longBitsToDouble(bits);
+                case INTEGER:
+                    return (int) bits;
+                case BOOLEAN:
+                    return bits != 0;
+                default:
+                    return value;
+            }
+        }
+
+        /**
+         * Returns the value decoded from the telegram
+         *
+         * @param type Expected type of the value
+         * @param <T>  Value type
+         * @return Value
+         */
+        public <T> T getValue(Class<T> type) {
+            return type.cast(getValue());
+        }
+
+        /**
+         * Returns the value decoded from the telegram as a real number,
+         * without boxing
+         *
+         * @return Value, 1 or 0 for booleans, NaN if the value is not numeric
+         */
+        public double getDouble() {
+            switch (kind) {
+                case DOUBLE:
+                    return Double.longBitsToDouble(bits);
+                case INTEGER:
+                case BOOLEAN:
+                    return bits;
+                default:
+                    return Double.NaN;
+            }
+        }
+
+        /**
+         * Returns the value decoded from the telegram as an integer, without
+         * boxing
+         *
+         * @return Value, real values being truncated, 1 or 0 for booleans, 0
+         * if the value is not numeric
+         */
+        public long getLong() {
+            return kind == DOUBLE ? (long) Double.longBitsToDouble(bits) : bits;
+        }
+
+        /**
+         * Returns the value decoded from the telegram as a boolean, without
+         * boxing
+         *
+         * @return True if the value is true or a number other than 0
+         */
+        public boolean getBoolean() {
+            return kind == DOUBLE ? Double.longBitsToDouble(bits) != 0 : bits != 0;
+        }
+
+        /**
+         * Returns true if the value is a real number
+         *
+         * @return True for real values
+         */
+        public boolean isDouble() {
+            return kind == DOUBLE;
+        }
+
+        /**
+         * Returns true if the value is an integer
+         *
+         * @return True for integer values
+         */
+        public boolean isInteger() {
+            return kind == INTEGER;
+        }
+
+        /**
+         * Returns true if the value is a boolean
+         *
+         * @return True for boolean values
+         */
+        public boolean isBoolean() {
+            return kind == BOOLEAN;
+        }
+
+        /**
+         * Returns the value of the attribute before the telegram
+         *
+         * @return Previous value or null if unknown
+         */
+        public Object getOldValue() {
+            if (kind == DOUBLE) {
+                return Double.isNaN(oldDouble) ? null : Double.valueOf(oldDouble);
+            }
+            return oldValue;
+        }
+
+        /**
+         * Returns the value of the attribute before the telegram as a real
+         * number, without boxing
+         *
+         * @return Previous value, NaN if unknown or not numeric
+         */
+        public double getOldDouble() {
+            if (kind == DOUBLE || oldValue instanceof Number) {
+                return oldDouble;
+            }
+            else if (oldValue instanceof Boolean) {
+                return (Boolean) oldValue ? 1 : 0;
+            }
+            return Double.NaN;
+        }
+
+        /**
+         * Returns the time the telegram was decoded
+         *
+         * @return Milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return "EEPAttributeChange{" + "name='" + name + '\'' + ", channelId=" + channelId + ", deviceUID=" + deviceUID + ", value=" + getValue() + ", oldValue=" + getOldValue() + ", timestamp=" + timestamp + '}';
+        }
     }
 }
@@ -34,4 +34,19 @@ public interface EEPAttributeChangeListener {
      * @param attribute The changed attribute (to ease handling).
      */
     void handleAttributeChange(int channelId, EEP26Telegram telegram, EEPAttribute<?> attribute, EnOceanDevice device);
+
+    /**
+     * Notifies a listener about a change, holding the value decoded from the
+     * telegram. By default the other method is called with a snapshot of the
+     * attribute holding the value of this telegram (see
+     * {@link EEPAttributeChangeJob.EEPAttributeChange#getSnapshot()}), which
+     * costs a copy of the attribute per change; listeners may override this
+     * method and read {@link EEPAttributeChangeJob.EEPAttributeChange#getValue()}
+     * instead.
+     *
+     * @param change The immutable attribute change.
+     */
+    default void handleAttributeChange(EEPAttributeChangeJob.EEPAttributeChange change) {
+        handleAttributeChange(change.getChannelId(), change.getTelegram(), change.getSnapshot(), change.getDevice());
+    }
 }
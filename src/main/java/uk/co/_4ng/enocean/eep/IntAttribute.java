@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.eep;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An attribute holding an integer, kept as a primitive int. The boxed
+ * {@link #getValue()} and {@link #setValue(Integer)} remain available for
+ * generic code; profiles and listeners should prefer {@link #getInt()} and
+ * {@link #setRaw(int)}.
+ */
+public abstract class IntAttribute extends EEPAttribute<Integer> {
+
+    // the attribute value
+    protected int intValue;
+
+    // the listeners to notify with the primitive value
+    private final Set<IntAttributeChangeListener> intListeners = Collections.newSetFromMap(new ConcurrentHashMap<IntAttributeChangeListener, Boolean>());
+
+    /**
+     * Creates an attribute with a value of 0
+     *
+     * @param name Attribute name
+     */
+    public IntAttribute(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the current value of this attribute
+     *
+     * @return The value of the attribute
+     */
+    public int getInt() {
+        return intValue;
+    }
+
+    /**
+     * Returns the current value of this attribute as a real number
+     *
+     * @return The value of the attribute
+     */
+    public double getDouble() {
+        return intValue;
+    }
+
+    /**
+     * Sets the current value of this attribute
+     *
+     * @param value Value to set
+     */
+    public void setInt(int value) {
+        intValue = value;
+        virginal = false;
+    }
+
+    /**
+     * Sets the value of this attribute from the unscaled value of a telegram,
+     * subclasses override it to apply their scaling
+     *
+     * @param raw Unscaled value
+     */
+    public void setRaw(int raw) {
+        setInt(raw);
+    }
+
+    /**
+     * Returns the current value of this attribute, boxed
+     *
+     * @return The value of the attribute
+     */
+    @Override
+    public Integer getValue() {
+        return intValue;
+    }
+
+    /**
+     * Sets the current value of this attribute, null values are ignored
+     *
+     * @param value Value to set
+     */
+    @Override
+    public void setValue(Integer value) {
+        if (value != null) {
+            setInt(value);
+        }
+    }
+
+    @Override
+    public void setRawValue(int value) {
+        setRaw(value);
+    }
+
+    /**
+     * Adds a listener notified of the changes of this attribute with the
+     * primitive value
+     *
+     * @param listener The listener to add.
+     * @return true if the listener is successfully added, false otherwise.
+     */
+    public boolean addIntChangeListener(IntAttributeChangeListener listener) {
+        return intListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener notified of the changes of this attribute with the
+     * primitive value
+     *
+     * @param listener The listener to remove.
+     * @return true if the listener is successfully removed, false otherwise.
+     */
+    public boolean removeIntChangeListener(IntAttributeChangeListener listener) {
+        return intListeners.remove(listener);
+    }
+
+    @Override
+    public void notifyAttributeListeners(EEPAttributeChangeJob.EEPAttributeChange change) {
+        super.notifyAttributeListeners(change);
+        if (!intListeners.isEmpty()) {
+            int value = (int) change.getLong();
+            for (IntAttributeChangeListener listener : intListeners) {
+                listener.handleAttributeChange(change, value);
+            }
+        }
+    }
+}
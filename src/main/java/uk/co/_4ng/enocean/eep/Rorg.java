@@ -37,6 +37,16 @@ public class Rorg implements Serializable {
      *
      */
     private static final long serialVersionUID = 1L;
+
+    // one shared instance per RORG value, see valueOf
+    private static final Rorg[] CACHE = new Rorg[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Rorg((byte) i);
+        }
+    }
+
     byte rorgValue;
 
     /**
@@ -46,6 +56,18 @@ public class Rorg implements Serializable {
         this.rorgValue = rorgValue;
     }
 
+    /**
+     * Returns the shared instance for the given RORG value, avoiding an
+     * allocation per decoded telegram. Shared instances must not be modified
+     * through {@link #setRorgValue(byte)}.
+     *
+     * @param rorgValue RORG value
+     * @return Shared Rorg instance
+     */
+    public static Rorg valueOf(byte rorgValue) {
+        return CACHE[rorgValue & 0xff];
+    }
+
     /**
      * @return the rorgValue
      */
@@ -15,14 +15,14 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.DoubleAttribute;
 
 import java.nio.ByteBuffer;
 
 /**
  * Gas concentration e.g. CO2
  */
-public class EEP26ConcentrationLinear extends EEPAttribute<Double> {
+public class EEP26ConcentrationLinear extends DoubleAttribute {
     // the EEPFunction name
     public static final String NAME = "Concentration";
     public static final double MAX_VALID_RAW = 255.0;
@@ -36,7 +36,7 @@ public class EEP26ConcentrationLinear extends EEPAttribute<Double> {
     public EEP26ConcentrationLinear() {
         super(NAME);
 
-        value = 0.0;
+        doubleValue = 0.0;
         unit = "ppm";
         minC = 0.0;
         maxC = 2550;
@@ -47,7 +47,7 @@ public class EEP26ConcentrationLinear extends EEPAttribute<Double> {
 
         if (unit != null && value != null && !unit.isEmpty() && (unit.equalsIgnoreCase("ppm"))) {
             // store the value
-            this.value = value;
+            doubleValue = value;
 
             // store the unit
             this.unit = unit;
@@ -103,14 +103,6 @@ public class EEP26ConcentrationLinear extends EEPAttribute<Double> {
         this.maxC = maxC;
     }
 
-    @Override
-    public void setValue(Double value) {
-        if (value != null) {
-            // store the current value
-            this.value = value;
-        }
-    }
-
     @Override
     public void setUnit(String unit) {
         if (unit != null && !unit.isEmpty() && (unit.equalsIgnoreCase("ppm"))) {
@@ -129,15 +121,15 @@ public class EEP26ConcentrationLinear extends EEPAttribute<Double> {
         ByteBuffer valueAsBytes = ByteBuffer.wrap(new byte[4]);
 
         // store the current value
-        valueAsBytes.putDouble(value);
+        valueAsBytes.putDouble(doubleValue);
 
         // return the value as byte array
         return valueAsBytes.array();
     }
 
     @Override
-    public void setRawValue(int value) {
-        this.value = (maxC - minC) * (double) value / MAX_VALID_RAW + minC;
+    public void setRaw(int value) {
+        setDouble((maxC - minC) * (double) value / MAX_VALID_RAW + minC);
     }
 
     /**
@@ -147,7 +139,7 @@ public class EEP26ConcentrationLinear extends EEPAttribute<Double> {
      * @return True if the value is valid
      */
     public boolean isValid() {
-        return value >= minC && value <= maxC;
+        return doubleValue >= minC && doubleValue <= maxC;
     }
 
 }
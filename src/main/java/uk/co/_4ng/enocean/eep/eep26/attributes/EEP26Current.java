@@ -15,14 +15,14 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.DoubleAttribute;
 
 import java.nio.ByteBuffer;
 
 /**
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26Current extends EEPAttribute<Double> {
+public class EEP26Current extends DoubleAttribute {
     // the EEPFunction name
     public static final String NAME = "Current";
 
@@ -33,7 +33,7 @@ public class EEP26Current extends EEPAttribute<Double> {
      */
     EEP26Current() {
         super(NAME);
-        value = 0.0;
+        doubleValue = 0.0;
         unit = "A";
     }
 
@@ -56,17 +56,10 @@ public class EEP26Current extends EEPAttribute<Double> {
         return maxRawValue;
     }
 
-    @Override
-    public void setValue(Double value) {
-        if (value != null) {
-            this.value = value;
-        }
-    }
-
     @Override
     public byte[] byteValue() {
         ByteBuffer valueAsBytes = ByteBuffer.wrap(new byte[4]);
-        valueAsBytes.putDouble(value);
+        valueAsBytes.putDouble(doubleValue);
         return valueAsBytes.array();
     }
 }
@@ -28,32 +28,23 @@ public class EEP26DefaultState extends EEPAttribute<D201DefaultStateValue> {
     public static final String NAME = "DefaultState";
 
     public EEP26DefaultState() {
-        // call the superclass constructor
-        super(NAME);
-
-        // set the default value at previous state
-        value = D201DefaultStateValue.PREVIOUS_STATE;
+        // call the superclass constructor, with the default value at
+        // previous state
+        super(NAME, D201DefaultStateValue.PREVIOUS_STATE);
     }
 
     public EEP26DefaultState(D201DefaultStateValue value) {
-        // call the superclass constructor
-        super(NAME);
-
-        // store the value
-        this.value = value;
+        // call the superclass constructor, storing the value
+        super(NAME, value);
     }
 
     public EEP26DefaultState(byte value) {
-        // call the super class constructor
-        super(NAME);
+        // call the super class constructor, with the default value at
+        // previous state
+        super(NAME, D201DefaultStateValue.PREVIOUS_STATE);
 
         //store the value
-        if (!setValue(value))
-        //set the value at the default value
-        {
-            this.value = D201DefaultStateValue.PREVIOUS_STATE;
-        }
-
+        setValue(value);
     }
 
     public boolean setValue(byte value) {
@@ -70,7 +61,7 @@ public class EEP26DefaultState extends EEPAttribute<D201DefaultStateValue> {
             // if the given value corresponds to a supported value, store it
             if (supportedValues[i].getCode() == value) {
                 // store the value
-                this.value = supportedValues[i];
+                setValue(supportedValues[i]);
 
                 // set the flag at true
                 found = true;
@@ -82,7 +73,7 @@ public class EEP26DefaultState extends EEPAttribute<D201DefaultStateValue> {
 
     @Override
     public byte[] byteValue() {
-        return new byte[]{value.getCode()};
+        return new byte[]{getValue().getCode()};
     }
 
 
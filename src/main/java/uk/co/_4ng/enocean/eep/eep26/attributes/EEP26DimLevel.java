@@ -15,12 +15,12 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.IntAttribute;
 
 /**
  * @author bonino
  */
-public class EEP26DimLevel extends EEPAttribute<Integer> {
+public class EEP26DimLevel extends IntAttribute {
     public static final String NAME = "DimLevel";
 
     /**
@@ -31,14 +31,14 @@ public class EEP26DimLevel extends EEPAttribute<Integer> {
         super(NAME);
 
         // default value 0%
-        value = 0;
+        intValue = 0;
     }
 
     public EEP26DimLevel(int value) {
         super(NAME);
 
         // store the value
-        this.value = value;
+        intValue = value;
     }
 
     @Override
@@ -46,7 +46,7 @@ public class EEP26DimLevel extends EEPAttribute<Integer> {
         // the value is only one byte
         // TODO check result here (working with binary data could provide
         // "unexpected" results
-        return new byte[]{value.byteValue()};
+        return new byte[]{(byte) intValue};
     }
 
 }
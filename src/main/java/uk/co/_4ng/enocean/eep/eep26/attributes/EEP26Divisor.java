@@ -15,14 +15,14 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * A class representing the divisor value (see D2-32-xx devices)
  *
  * @author sohara
  */
-public class EEP26Divisor extends EEPAttribute<Boolean> {
+public class EEP26Divisor extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "Divisor";
 
@@ -35,7 +35,7 @@ public class EEP26Divisor extends EEPAttribute<Boolean> {
         super(NAME);
 
         //set the default value at disabled
-        value = X10;
+        booleanValue = X10;
     }
 
     public EEP26Divisor(Boolean value) {
@@ -43,11 +43,11 @@ public class EEP26Divisor extends EEPAttribute<Boolean> {
         super(NAME);
 
         //set the given value
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
     public byte[] byteValue() {
-        return new byte[]{value ? (byte)1 : 0};
+        return new byte[]{booleanValue ? (byte)1 : 0};
     }
 }
@@ -15,7 +15,7 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.DoubleAttribute;
 
 import java.nio.ByteBuffer;
 
@@ -28,7 +28,7 @@ import java.nio.ByteBuffer;
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26EnergyMeasurement extends EEPAttribute<Double> {
+public class EEP26EnergyMeasurement extends DoubleAttribute {
     // the EEPFunction name
     public static final String NAME = "EnergyMeasurement";
 
@@ -46,7 +46,7 @@ public class EEP26EnergyMeasurement extends EEPAttribute<Double> {
         super(NAME);
 
         // default value is 0
-        value = 0d;
+        doubleValue = 0d;
         unit = WH;
     }
 
@@ -65,12 +65,12 @@ public class EEP26EnergyMeasurement extends EEPAttribute<Double> {
         // set the given value, if it is a number, otherwise use the default
         // value
         if (value != null) {
-            this.value = value;
+            doubleValue = value;
 
         }
         else {
             // default value is 0
-            this.value = 0d;
+            doubleValue = 0d;
 
         }
 
@@ -83,14 +83,6 @@ public class EEP26EnergyMeasurement extends EEPAttribute<Double> {
         }
     }
 
-    @Override
-    public void setValue(Double value) {
-        if (value != null) {
-            // store the current value
-            this.value = value;
-        }
-    }
-
 
     @Override
     public void setUnit(String unit) {
@@ -110,7 +102,7 @@ public class EEP26EnergyMeasurement extends EEPAttribute<Double> {
         ByteBuffer valueAsBytes = ByteBuffer.wrap(new byte[4]);
 
         // store the current value
-        valueAsBytes.putDouble(value);
+        valueAsBytes.putDouble(doubleValue);
 
         // return the value as byte array
         return valueAsBytes.array();
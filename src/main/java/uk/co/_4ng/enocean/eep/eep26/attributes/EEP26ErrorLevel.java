@@ -24,24 +24,19 @@ public class EEP26ErrorLevel extends EEPAttribute<D201ErrorLevel> {
     public static final String NAME = "ErrorLevel";
 
     public EEP26ErrorLevel() {
-        super(NAME);
-
         // default no error
-        value = D201ErrorLevel.HARDWARE_OK;
+        super(NAME, D201ErrorLevel.HARDWARE_OK);
     }
 
     public EEP26ErrorLevel(D201ErrorLevel errorLevel) {
-        // call the super class method
-        super(NAME);
-
-        // store the given error level
-        value = errorLevel;
+        // call the super class method, storing the given error level
+        super(NAME, errorLevel);
     }
 
     @Override
     public byte[] byteValue() {
         // return the byte representation of the current error level
-        return new byte[]{value.getCode()};
+        return new byte[]{getValue().getCode()};
     }
 
 }
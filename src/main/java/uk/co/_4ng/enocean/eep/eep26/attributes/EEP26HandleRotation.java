@@ -29,19 +29,14 @@ public class EEP26HandleRotation extends EEPAttribute<EEP26HandleRotation.Handle
      * Rotation sensor
      */
     public EEP26HandleRotation() {
-        // call the super class constructor
-        super(NAME);
-
-        // set the default value at closed
-        value = EEP26HandleRotation.HandlePositions.CLOSE;
+        // call the super class constructor, with the default value at closed
+        super(NAME, EEP26HandleRotation.HandlePositions.CLOSE);
     }
 
     public EEP26HandleRotation(EEP26HandleRotation.HandlePositions position) {
-        // call the super class constructo
-        super(NAME);
-
-        // set the inner value at the given one
-        value = position;
+        // call the super class constructor, with the inner value at the
+        // given one
+        super(NAME, position);
     }
 
     @Override
@@ -50,7 +45,7 @@ public class EEP26HandleRotation extends EEPAttribute<EEP26HandleRotation.Handle
         byte value = 0x00;
 
         // define the byte value depending on the currently stored value
-        switch (this.value) {
+        switch (getValue()) {
             case CLOSE: {
                 // stems from the EnOcean specification where XX have been set
                 // at 0
@@ -15,14 +15,14 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.DoubleAttribute;
 
 import java.nio.ByteBuffer;
 
 /**
  * @author bonino
  */
-public class EEP26HumidityLinear extends EEPAttribute<Double> {
+public class EEP26HumidityLinear extends DoubleAttribute {
     // the EEPFunction name
     public static final String NAME = "RelativeHumidity";
 
@@ -35,7 +35,7 @@ public class EEP26HumidityLinear extends EEPAttribute<Double> {
      */
     EEP26HumidityLinear() {
         super(NAME);
-        value = min;
+        doubleValue = min;
         unit = "Celsius";
     }
 
@@ -107,14 +107,6 @@ public class EEP26HumidityLinear extends EEPAttribute<Double> {
         this.maxRawValue = maxRawValue;
     }
 
-    @Override
-    public void setValue(Double value) {
-        if (value != null) {
-            // store the current value
-            this.value = value;
-        }
-    }
-
     @Override
     public void setUnit(String unit) {
         if (unit != null && !unit.isEmpty() && unit.equalsIgnoreCase("%")) {
@@ -133,15 +125,15 @@ public class EEP26HumidityLinear extends EEPAttribute<Double> {
         ByteBuffer valueAsBytes = ByteBuffer.wrap(new byte[4]);
 
         // store the current value
-        valueAsBytes.putDouble(value);
+        valueAsBytes.putDouble(doubleValue);
 
         // return the value as byte array
         return valueAsBytes.array();
     }
 
     @Override
-    public void setRawValue(int value) {
-        this.value = (max - min) * (double) value / maxRawValue + min;
+    public void setRaw(int value) {
+        setDouble((max - min) * (double) value / maxRawValue + min);
     }
 
     /**
@@ -151,7 +143,7 @@ public class EEP26HumidityLinear extends EEPAttribute<Double> {
      * @return True if the value is valid
      */
     public boolean isValid() {
-        return value >= min && value <= max;
+        return doubleValue >= min && doubleValue <= max;
     }
 
 
@@ -15,7 +15,7 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * A class representing the capability of a device to be locally controlled.
@@ -24,7 +24,7 @@ import uk.co._4ng.enocean.eep.EEPAttribute;
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26LocalControl extends EEPAttribute<Boolean> {
+public class EEP26LocalControl extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "LocalControl";
 
@@ -37,7 +37,7 @@ public class EEP26LocalControl extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the default value
-        value = DISABLED;
+        booleanValue = DISABLED;
     }
 
     public EEP26LocalControl(Boolean value) {
@@ -45,7 +45,7 @@ public class EEP26LocalControl extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the value
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
@@ -55,7 +55,7 @@ public class EEP26LocalControl extends EEPAttribute<Boolean> {
 
         // if value is true than the local control is enabled and the value
         // should be 0b1 == 0x01
-        if (this.value) {
+        if (booleanValue) {
             value = 0x01;
         }
 
@@ -15,7 +15,7 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * A class representing the capability of a switching device to act upon over
@@ -25,7 +25,7 @@ import uk.co._4ng.enocean.eep.EEPAttribute;
  *
  * @author bonino <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26OverCurrentShutdown extends EEPAttribute<Boolean> {
+public class EEP26OverCurrentShutdown extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "OverCurrentShutdown";
 
@@ -39,7 +39,7 @@ public class EEP26OverCurrentShutdown extends EEPAttribute<Boolean> {
 
         // the default value is set at STATIC_OFF,
         // TODO: check if the assumption is valid or not
-        value = STATIC_OFF;
+        booleanValue = STATIC_OFF;
     }
 
     public EEP26OverCurrentShutdown(Boolean value) {
@@ -47,7 +47,7 @@ public class EEP26OverCurrentShutdown extends EEPAttribute<Boolean> {
         super(NAME);
 
         //set the given value
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
@@ -57,7 +57,7 @@ public class EEP26OverCurrentShutdown extends EEPAttribute<Boolean> {
 
         // if value is true than the local control is enabled and the value
         // should be 0b1 == 0x01
-        if (this.value == AUTOMATIC_RESTART) {
+        if (booleanValue == AUTOMATIC_RESTART) {
             value = 0x01;
         }
 
@@ -15,7 +15,7 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * A class representing the behavior of a device upon an over current shutdown.
@@ -24,7 +24,7 @@ import uk.co._4ng.enocean.eep.EEPAttribute;
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26OverCurrentShutdownReset extends EEPAttribute<Boolean> {
+public class EEP26OverCurrentShutdownReset extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "ResetOverCurrentShutdown";
 
@@ -37,7 +37,7 @@ public class EEP26OverCurrentShutdownReset extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the default value at NOT_ACTIVE
-        value = NOT_ACTIVE;
+        booleanValue = NOT_ACTIVE;
     }
 
     public EEP26OverCurrentShutdownReset(Boolean value) {
@@ -45,7 +45,7 @@ public class EEP26OverCurrentShutdownReset extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the given value
-        this.value = value;
+        booleanValue = value;
 
     }
 
@@ -56,7 +56,7 @@ public class EEP26OverCurrentShutdownReset extends EEPAttribute<Boolean> {
 
         // if value is true than the local control is enabled and the value
         // should be 0b1 == 0x01
-        if (this.value == TRIGGER_SIGNAL) {
+        if (booleanValue == TRIGGER_SIGNAL) {
             value = 0x01;
         }
 
@@ -15,12 +15,12 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * @author bonino
  */
-public class EEP26OverCurrentSwitchOff extends EEPAttribute<Boolean> {
+public class EEP26OverCurrentSwitchOff extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "OverCurrentSwitchOff";
 
@@ -37,7 +37,7 @@ public class EEP26OverCurrentSwitchOff extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the default value at disabled
-        value = READY;
+        booleanValue = READY;
     }
 
     public EEP26OverCurrentSwitchOff(Boolean value) {
@@ -45,7 +45,7 @@ public class EEP26OverCurrentSwitchOff extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the given value
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
@@ -55,7 +55,7 @@ public class EEP26OverCurrentSwitchOff extends EEPAttribute<Boolean> {
 
         // if value is true than a power failure has been detected and the value
         // should be 0b1 == 0x01
-        if (this.value == EXECUTED) {
+        if (booleanValue == EXECUTED) {
             value = 0x01;
         }
 
@@ -15,7 +15,7 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * A class representing the PIR detection status associated to occupancy
@@ -23,7 +23,7 @@ import uk.co._4ng.enocean.eep.EEPAttribute;
  *
  * @author bonino
  */
-public class EEP26PIRStatus extends EEPAttribute<Boolean> {
+public class EEP26PIRStatus extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "PIRStatus";
 
@@ -39,7 +39,7 @@ public class EEP26PIRStatus extends EEPAttribute<Boolean> {
         super(NAME);
 
         // by default the function starts at OFF
-        value = OFF;
+        booleanValue = OFF;
     }
 
     /**
@@ -53,7 +53,7 @@ public class EEP26PIRStatus extends EEPAttribute<Boolean> {
         super(NAME);
 
         // by default the function starts at OFF
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
@@ -63,7 +63,7 @@ public class EEP26PIRStatus extends EEPAttribute<Boolean> {
 
         // if value is true than the local control is enabled and the value
         // should be 0b1 == 0x01
-        if (this.value == ON) {
+        if (booleanValue == ON) {
             value = 0x01;
         }
 
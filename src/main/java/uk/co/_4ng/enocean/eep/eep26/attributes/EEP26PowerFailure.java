@@ -15,7 +15,7 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * A class representing the capability of a device to detect power failures. It
@@ -23,7 +23,7 @@ import uk.co._4ng.enocean.eep.EEPAttribute;
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26PowerFailure extends EEPAttribute<Boolean> {
+public class EEP26PowerFailure extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "PowerFailure";
 
@@ -36,7 +36,7 @@ public class EEP26PowerFailure extends EEPAttribute<Boolean> {
         super(NAME);
 
         //set the default value at disabled
-        value = DISABLED;
+        booleanValue = DISABLED;
     }
 
     public EEP26PowerFailure(Boolean value) {
@@ -44,7 +44,7 @@ public class EEP26PowerFailure extends EEPAttribute<Boolean> {
         super(NAME);
 
         //set the given value
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
@@ -54,7 +54,7 @@ public class EEP26PowerFailure extends EEPAttribute<Boolean> {
 
         // if value is true than the local control is enabled and the value
         // should be 0b1 == 0x01
-        if (this.value == ENABLED) {
+        if (booleanValue == ENABLED) {
             value = 0x01;
         }
 
@@ -15,12 +15,12 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * @author bonino
  */
-public class EEP26PowerFailureDetection extends EEPAttribute<Boolean> {
+public class EEP26PowerFailureDetection extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "PowerFailureDetection";
 
@@ -33,7 +33,7 @@ public class EEP26PowerFailureDetection extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the default value at disabled
-        value = NOT_DETECTED;
+        booleanValue = NOT_DETECTED;
     }
 
     public EEP26PowerFailureDetection(Boolean value) {
@@ -41,7 +41,7 @@ public class EEP26PowerFailureDetection extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the given value
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
@@ -51,7 +51,7 @@ public class EEP26PowerFailureDetection extends EEPAttribute<Boolean> {
 
         // if value is true than a power failure has been detected and the value
         // should be 0b1 == 0x01
-        if (this.value == DETECTED) {
+        if (booleanValue == DETECTED) {
             value = 0x01;
         }
 
@@ -15,7 +15,7 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.DoubleAttribute;
 
 import java.nio.ByteBuffer;
 
@@ -27,7 +27,7 @@ import java.nio.ByteBuffer;
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26PowerMeasurement extends EEPAttribute<Double> {
+public class EEP26PowerMeasurement extends DoubleAttribute {
     // the EEPFunction name
     public static final String NAME = "PowerMeasurement";
 
@@ -44,7 +44,7 @@ public class EEP26PowerMeasurement extends EEPAttribute<Double> {
         super(NAME);
 
         // default value is 0
-        value = 0d;
+        doubleValue = 0d;
         unit = W;
     }
 
@@ -61,7 +61,9 @@ public class EEP26PowerMeasurement extends EEPAttribute<Double> {
         super(NAME);
 
         // set the given value
-        this.value = value;
+        if (value != null) {
+            doubleValue = value;
+        }
 
         // set the given unit if not null and not empty
         if (unit != null && !unit.isEmpty() && (unit.equalsIgnoreCase(W) || unit.equalsIgnoreCase(KW))) {
@@ -72,12 +74,6 @@ public class EEP26PowerMeasurement extends EEPAttribute<Double> {
         }
     }
 
-    @Override
-    public void setValue(Double value) {
-        // store the current value
-        this.value = value;
-    }
-
     @Override
     public void setUnit(String unit) {
         // set the given unit if not null and not empty
@@ -96,7 +92,7 @@ public class EEP26PowerMeasurement extends EEPAttribute<Double> {
         ByteBuffer valueAsBytes = ByteBuffer.wrap(new byte[4]);
 
         // store the current value
-        valueAsBytes.putDouble(value);
+        valueAsBytes.putDouble(doubleValue);
 
         // return the value as byte array
         return valueAsBytes.array();
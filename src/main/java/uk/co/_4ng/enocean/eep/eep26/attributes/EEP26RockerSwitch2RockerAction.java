@@ -39,16 +39,14 @@ public class EEP26RockerSwitch2RockerAction extends EEPAttribute<Boolean[]> {
      * at false.
      */
     public EEP26RockerSwitch2RockerAction() {
-        super(NAME);
-
         // build the initial value
-        value = new Boolean[]{false, false, false, false};
+        super(NAME, new Boolean[]{false, false, false, false});
     }
 
     @Override
     public void setValue(Boolean[] value) {
         // deep copy
-        this.value = Arrays.copyOf(value, value.length);
+        super.setValue(Arrays.copyOf(value, value.length));
     }
 
     @Override
@@ -65,7 +63,7 @@ public class EEP26RockerSwitch2RockerAction extends EEPAttribute<Boolean[]> {
      * @param value    The boolean value to set (true = pressed, false = released)
      */
     public void setButtonValue(int buttonId, boolean value) {
-        this.value[buttonId] = value;
+        getValue()[buttonId] = value;
     }
 
     /**
@@ -77,7 +75,7 @@ public class EEP26RockerSwitch2RockerAction extends EEPAttribute<Boolean[]> {
      * @return The value as a boolean (true = pressed, false= released)
      */
     public boolean getButtonValue(int buttonId) {
-        return value[buttonId];
+        return getValue()[buttonId];
     }
 
 }
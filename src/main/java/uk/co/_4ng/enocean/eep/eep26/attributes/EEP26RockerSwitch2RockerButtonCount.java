@@ -15,12 +15,12 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.IntAttribute;
 
 /**
  * @author bonino
  */
-public class EEP26RockerSwitch2RockerButtonCount extends EEPAttribute<Integer> {
+public class EEP26RockerSwitch2RockerButtonCount extends IntAttribute {
 
     // the attribute name
     public static final String NAME = "RockerSwitch2RockerButtonCount";
@@ -32,20 +32,20 @@ public class EEP26RockerSwitch2RockerButtonCount extends EEPAttribute<Integer> {
         super(NAME);
 
         // default value 0
-        value = 0;
+        intValue = 0;
     }
 
     public EEP26RockerSwitch2RockerButtonCount(int buttonCount) {
         super(NAME);
 
         // default value 0
-        value = buttonCount;
+        intValue = buttonCount;
     }
 
     @Override
     public byte[] byteValue() {
         // not used for rocker switches
-        return new byte[]{value.byteValue()};
+        return new byte[]{(byte) intValue};
     }
 
 }
@@ -15,12 +15,12 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * @author bonino
  */
-public class EEP26RockerSwitch2RockerEnergyBow extends EEPAttribute<Boolean> {
+public class EEP26RockerSwitch2RockerEnergyBow extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "EnergyBowStatus";
 
@@ -35,7 +35,7 @@ public class EEP26RockerSwitch2RockerEnergyBow extends EEPAttribute<Boolean> {
         super(NAME);
 
         // default value is released
-        value = RELEASED;
+        booleanValue = RELEASED;
     }
 
     public EEP26RockerSwitch2RockerEnergyBow(Boolean value) {
@@ -43,7 +43,7 @@ public class EEP26RockerSwitch2RockerEnergyBow extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the given value
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
@@ -53,7 +53,7 @@ public class EEP26RockerSwitch2RockerEnergyBow extends EEPAttribute<Boolean> {
 
         // if value is true than the local control is enabled and the value
         // should be 0b1 == 0x01
-        if (this.value == PRESSED) {
+        if (booleanValue == PRESSED) {
             value = 0x01;
         }
 
@@ -15,14 +15,14 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.DoubleAttribute;
 
 import java.nio.ByteBuffer;
 
 /**
  * @author bonino
  */
-public class EEP26SupplyVoltage extends EEPAttribute<Double> {
+public class EEP26SupplyVoltage extends DoubleAttribute {
     // the EEPFunction name
     public static final String NAME = "SupplyVoltage";
 
@@ -37,7 +37,7 @@ public class EEP26SupplyVoltage extends EEPAttribute<Double> {
         super(NAME);
 
         // set the default value
-        value = 0.0;
+        doubleValue = 0.0;
         unit = "V";
         minV = 0;
         maxV = 5;
@@ -46,11 +46,11 @@ public class EEP26SupplyVoltage extends EEPAttribute<Double> {
     public EEP26SupplyVoltage(Double value, String unit) {
         super(NAME);
 
-        if (unit != null
+        if (unit != null && value != null
 
                 && !unit.isEmpty() && (unit.equalsIgnoreCase("Volt") || unit.equalsIgnoreCase("V"))) {
             // store the value
-            this.value = value;
+            doubleValue = value;
 
             // store the unit
             this.unit = unit;
@@ -70,7 +70,7 @@ public class EEP26SupplyVoltage extends EEPAttribute<Double> {
         super(NAME);
 
         // default value 0V
-        value = 0.0;
+        doubleValue = 0.0;
         unit = "V";
         this.minV = minV;
         this.maxV = maxV;
@@ -105,14 +105,6 @@ public class EEP26SupplyVoltage extends EEPAttribute<Double> {
         this.maxV = maxV;
     }
 
-    @Override
-    public void setValue(Double value) {
-        if (value != null) {
-            // store the current value
-            this.value = value;
-        }
-    }
-
     @Override
     public void setUnit(String unit) {
         if (unit != null && !unit.isEmpty() && (unit.equalsIgnoreCase("Volt") || unit.equalsIgnoreCase("V"))) {
@@ -131,16 +123,16 @@ public class EEP26SupplyVoltage extends EEPAttribute<Double> {
         ByteBuffer valueAsBytes = ByteBuffer.wrap(new byte[4]);
 
         // store the current value
-        valueAsBytes.putDouble(value);
+        valueAsBytes.putDouble(doubleValue);
 
         // return the value as byte array
         return valueAsBytes.array();
     }
 
     @Override
-    public void setRawValue(int value) {
+    public void setRaw(int value) {
         if (value >= 0 && value <= 250) {
-            this.value = (maxV - minV) * (double) value / 250.0 + minV;
+            setDouble((maxV - minV) * (double) value / 250.0 + minV);
         }
     }
 
@@ -151,7 +143,7 @@ public class EEP26SupplyVoltage extends EEPAttribute<Double> {
      * @return True if the value is valid
      */
     public boolean isValid() {
-        return value >= minV && value <= maxV;
+        return doubleValue >= minV && doubleValue <= maxV;
     }
 
 }
@@ -15,12 +15,12 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * @author bonino
  */
-public class EEP26SupplyVoltageAvailability extends EEPAttribute<Boolean> {
+public class EEP26SupplyVoltageAvailability extends BooleanAttribute {
 
     // the EEPFunction name
     public static final String NAME = "SupplyVoltageAvailability";
@@ -36,7 +36,7 @@ public class EEP26SupplyVoltageAvailability extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the default value at not available
-        value = NOT_AVAILABLE;
+        booleanValue = NOT_AVAILABLE;
     }
 
     public EEP26SupplyVoltageAvailability(boolean value) {
@@ -44,7 +44,7 @@ public class EEP26SupplyVoltageAvailability extends EEPAttribute<Boolean> {
         super(NAME);
 
         // set the given value
-        this.value = value;
+        booleanValue = value;
     }
 
     @Override
@@ -54,7 +54,7 @@ public class EEP26SupplyVoltageAvailability extends EEPAttribute<Boolean> {
 
         // if value is true than the local control is enabled and the value
         // should be 0b1 == 0x01
-        if (this.value == AVAILABLE) {
+        if (booleanValue == AVAILABLE) {
             value = 0x01;
         }
 
@@ -32,9 +32,9 @@ public class EEP26TemperatureInverseLinear extends EEP26TemperatureLinear {
     }
 
     @Override
-    public void setRawValue(int value) {
+    public void setRaw(int value) {
         // perform the scaling
-        this.value = (max - min) * (maxRawValue - value) / maxRawValue + min;
+        setDouble((max - min) * (maxRawValue - value) / maxRawValue + min);
     }
 
 
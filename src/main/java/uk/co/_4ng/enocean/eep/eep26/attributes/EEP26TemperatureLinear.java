@@ -15,14 +15,14 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.DoubleAttribute;
 
 import java.nio.ByteBuffer;
 
 /**
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26TemperatureLinear extends EEPAttribute<Double> {
+public class EEP26TemperatureLinear extends DoubleAttribute {
     // the EEPFunction name
     public static final String NAME = "Temperature";
 
@@ -35,7 +35,7 @@ public class EEP26TemperatureLinear extends EEPAttribute<Double> {
      */
     EEP26TemperatureLinear() {
         super(NAME);
-        value = min;
+        doubleValue = min;
         unit = "Celsius";
     }
 
@@ -117,14 +117,6 @@ public class EEP26TemperatureLinear extends EEPAttribute<Double> {
         this.maxRawValue = maxRawValue;
     }
 
-    @Override
-    public void setValue(Double value) {
-        if (value != null) {
-            // store the current value
-            this.value = value;
-        }
-    }
-
     @Override
     public void setUnit(String unit) {
         if (unit != null && !unit.isEmpty() && (unit.equalsIgnoreCase("Celsius") || unit.equalsIgnoreCase("°C") || unit.equalsIgnoreCase("C"))) {
@@ -143,15 +135,15 @@ public class EEP26TemperatureLinear extends EEPAttribute<Double> {
         ByteBuffer valueAsBytes = ByteBuffer.wrap(new byte[4]);
 
         // store the current value
-        valueAsBytes.putDouble(value);
+        valueAsBytes.putDouble(doubleValue);
 
         // return the value as byte array
         return valueAsBytes.array();
     }
 
     @Override
-    public void setRawValue(int value) {
-        this.value = (max - min) * (double) value / maxRawValue + min;
+    public void setRaw(int value) {
+        setDouble((max - min) * (double) value / maxRawValue + min);
     }
 
     /**
@@ -161,7 +153,7 @@ public class EEP26TemperatureLinear extends EEPAttribute<Double> {
      * @return True if the value is valid
      */
     public boolean isValid() {
-        return value >= min && value <= max;
+        return doubleValue >= min && doubleValue <= max;
     }
 
 }
@@ -15,7 +15,7 @@
  */
 package uk.co._4ng.enocean.eep.eep26.attributes;
 
-import uk.co._4ng.enocean.eep.EEPAttribute;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
 
 /**
  * A class for representing the current user interface lighting mode, can either
@@ -23,7 +23,7 @@ import uk.co._4ng.enocean.eep.EEPAttribute;
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  */
-public class EEP26UserInterfaceMode extends EEPAttribute<Boolean> {
+public class EEP26UserInterfaceMode extends BooleanAttribute {
     // the EEPFunction name
     public static final String NAME = "UserInterfaceMode";
 
@@ -36,11 +36,6 @@ public class EEP26UserInterfaceMode extends EEPAttribute<Boolean> {
         // TODO Auto-generated constructor stub
     }
 
-    @Override
-    public void setValue(Boolean value) {
-        this.value = value;
-    }
-
     @Override
     public byte[] byteValue() {
         // by default is disabled
@@ -48,7 +43,7 @@ public class EEP26UserInterfaceMode extends EEPAttribute<Boolean> {
 
         // if value is true than the local control is enabled and the value
         // should be 0b1 == 0x01
-        if (this.value == NIGHT) {
+        if (booleanValue == NIGHT) {
             value = 0x01;
         }
 
@@ -77,7 +77,7 @@ public class A50701 extends A507 {
                 // set the attribute values
                 if (supplyVoltageAvailability != null) {
                     // set the availability value
-                    supplyVoltageAvailability.setValue(message.isSupplyVoltageAvailable());
+                    supplyVoltageAvailability.setBoolean(message.isSupplyVoltageAvailable());
 
                     // update the list of changed attributes
                     changedAttributes.add(supplyVoltageAvailability);
@@ -86,7 +86,7 @@ public class A50701 extends A507 {
                     // had been specified in the message
                     if (message.isSupplyVoltageAvailable() && supplyVoltage != null) {
                         // store the voltage value
-                        supplyVoltage.setRawValue(message.getSupplyVoltage());
+                        supplyVoltage.setRaw(message.getSupplyVoltage());
 
                         // update the list of changed attributes
                         changedAttributes.add(supplyVoltage);
@@ -97,7 +97,7 @@ public class A50701 extends A507 {
                 // available
                 if (pirStatus != null) {
                     // set the pir status value
-                    pirStatus.setValue(message.isMotionDetected());
+                    pirStatus.setBoolean(message.isMotionDetected());
 
                     // update the list of changed attributes
                     changedAttributes.add(pirStatus);
@@ -109,7 +109,7 @@ public class A50701 extends A507 {
                     EEPAttributeChangeJob dispatcherTask = new EEPAttributeChangeJob(deviceManager, changedAttributes, CHANNEL, telegram, device);
 
                     // submit the task for execution
-                    attributeNotificationWorker.submit(dispatcherTask);
+                    notifyAttributeChange(device, dispatcherTask);
 
                     // set success true
                     // TODO check what to do if nothing changes, i.e., with success equal to false.
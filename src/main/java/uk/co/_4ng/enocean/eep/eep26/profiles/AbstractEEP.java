@@ -22,16 +22,58 @@ import uk.co._4ng.enocean.eep.EEPAttribute;
 import uk.co._4ng.enocean.eep.EEPAttributeChangeJob;
 import uk.co._4ng.enocean.eep.eep26.telegram.EEP26Telegram;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import uk.co._4ng.enocean.link.OverflowPolicy;
+import uk.co._4ng.enocean.util.StripedExecutor;
 
 /**
  * A holder for all EEP profiles
  */
 public abstract class AbstractEEP extends EEP {
 
-    // Executor Thread Pool for handling attribute updates
-    protected static ExecutorService attributeNotificationWorker = Executors.newFixedThreadPool(5);
+    // the default number of threads handling attribute updates
+    public static final int DEFAULT_NOTIFICATION_STRIPES = 5;
+
+    // Executor for handling attribute updates, the updates of a device are
+    // handled in order by the same stripe
+    protected static volatile StripedExecutor attributeNotificationWorker = new StripedExecutor("EnOcean attribute notifications", DEFAULT_NOTIFICATION_STRIPES, StripedExecutor.DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+
+    /**
+     * Replaces the executor handling the attribute updates of all the
+     * profiles, the updates still queued in the previous one are discarded
+     *
+     * @param stripes        Number of threads, the updates of a device are
+     *                       always handled in order by the same thread
+     * @param queueCapacity  Number of updates every thread can hold
+     * @param overflowPolicy Behaviour when a thread queue is full
+     */
+    public static synchronized void configureAttributeNotifications(int stripes, int queueCapacity, OverflowPolicy overflowPolicy) {
+        StripedExecutor previous = attributeNotificationWorker;
+        attributeNotificationWorker = new StripedExecutor("EnOcean attribute notifications", stripes, queueCapacity, overflowPolicy);
+        previous.shutdown();
+    }
+
+    /**
+     * Returns the executor handling the attribute updates of all the profiles
+     *
+     * @return Attribute notification executor
+     */
+    public static StripedExecutor getAttributeNotificationExecutor() {
+        return attributeNotificationWorker;
+    }
+
+    /**
+     * Stores the changed values in the state of the device, then queues the
+     * notification of the changes after the previous ones of the same device
+     *
+     * @param device Device whose attributes changed
+     * @param job    Notification job
+     */
+    protected static void notifyAttributeChange(EnOceanDevice device, EEPAttributeChangeJob job) {
+        if (job.getDeviceManager() != null) {
+            job.getDeviceManager().updateDeviceState(device, job);
+        }
+        attributeNotificationWorker.execute(device.getAddressInt(), job);
+    }
 
     /**
      * Convenience routine for firing an attribute change value
@@ -43,23 +85,55 @@ public abstract class AbstractEEP extends EEP {
      * @param rawValue The unscaled value from the device - if null, it isn't stored
      * @return True if the update was OK
      */
-    protected boolean fireAttributeEvent(DeviceManager deviceManager, EEPAttribute attr, int channel, EEP26Telegram telegram, EnOceanDevice device, Integer rawValue) {
+    protected boolean fireAttributeEvent(DeviceManager deviceManager, EEPAttribute<?> attr, int channel, EEP26Telegram telegram, EnOceanDevice device, Integer rawValue) {
+
+        // update the attribute value if it isn't null
+        if (attr != null && rawValue != null) {
+            attr.setRawValue(rawValue);
+        }
+        return fireAttributeEvent(deviceManager, attr, channel, telegram, device);
+    }
+
+    /**
+     * Convenience routine for firing an attribute change value, without boxing
+     * the unscaled value
+     *
+     * @param attr     Attribute with new value
+     * @param channel  Channel
+     * @param telegram The telegram it came in on
+     * @param device   The device associated with the telegram
+     * @param rawValue The unscaled value from the device
+     * @return True if the update was OK
+     */
+    protected boolean fireAttributeEvent(DeviceManager deviceManager, EEPAttribute<?> attr, int channel, EEP26Telegram telegram, EnOceanDevice device, int rawValue) {
+        if (attr != null) {
+            attr.setRawValue(rawValue);
+        }
+        return fireAttributeEvent(deviceManager, attr, channel, telegram, device);
+    }
+
+    /**
+     * Convenience routine for firing the change of an attribute whose value
+     * has already been set
+     *
+     * @param attr     Attribute with new value
+     * @param channel  Channel
+     * @param telegram The telegram it came in on
+     * @param device   The device associated with the telegram
+     * @return True if the update was OK
+     */
+    protected boolean fireAttributeEvent(DeviceManager deviceManager, EEPAttribute<?> attr, int channel, EEP26Telegram telegram, EnOceanDevice device) {
 
         boolean success = false;
 
         // check not null
         if (attr != null) {
 
-            // update the attribute value if it isn't null
-            if (rawValue != null) {
-                attr.setRawValue(rawValue);
-            }
-
             // build the dispatching task
             EEPAttributeChangeJob dispatcherTask = new EEPAttributeChangeJob(deviceManager, attr, channel, telegram, device);
 
             // submit the task for execution
-            attributeNotificationWorker.submit(dispatcherTask);
+            notifyAttributeChange(device, dispatcherTask);
 
             // update the success flag
             success = true;
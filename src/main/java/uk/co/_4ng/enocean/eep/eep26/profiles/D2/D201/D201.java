@@ -17,14 +17,18 @@ package uk.co._4ng.enocean.eep.eep26.profiles.D2.D201;
 
 import uk.co._4ng.enocean.communication.Connection;
 import uk.co._4ng.enocean.devices.DeviceManager;
+import uk.co._4ng.enocean.devices.DeviceState;
 import uk.co._4ng.enocean.devices.EnOceanDevice;
 import uk.co._4ng.enocean.eep.EEPAttribute;
 import uk.co._4ng.enocean.eep.EEPAttributeChangeJob;
+import uk.co._4ng.enocean.eep.Rorg;
 import uk.co._4ng.enocean.eep.eep26.attributes.*;
 import uk.co._4ng.enocean.eep.eep26.profiles.AbstractEEP;
 import uk.co._4ng.enocean.eep.eep26.telegram.EEP26Telegram;
 import uk.co._4ng.enocean.eep.eep26.telegram.EEP26TelegramType;
 import uk.co._4ng.enocean.eep.eep26.telegram.VLDTelegram;
+import uk.co._4ng.enocean.link.CommandKeyExtractor;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
 
 import java.util.ArrayList;
 
@@ -37,6 +41,19 @@ import java.util.ArrayList;
  */
 public abstract class D201 extends AbstractEEP {
 
+    // the D2.01 commands set the state of one channel: command ID (the low
+    // nibble of the first data byte) and channel (the low 5 bits of the second)
+    private static final CommandKeyExtractor COMMAND_KEY_EXTRACTOR = new CommandKeyExtractor() {
+        @Override
+        public int getKey(ESP3Packet pkt) {
+            byte[] data = pkt.getData();
+            if (!pkt.isRadio() || data == null || data.length < 3 || data[0] != Rorg.VLD) {
+                return -1;
+            }
+            return (data[1] & 0x0F) << 8 | data[2] & 0x1F;
+        }
+    };
+
     /**
      * D2.01 CMD 0x1 Implements the CMD 0x1 of the D2.01 EnOcean Equipment
      * Profile, which allows setting the output level of a D2.01 device (On, Off
@@ -348,6 +365,11 @@ public abstract class D201 extends AbstractEEP {
         return new D201ActuatorMeasurementResponse(commandId, channelId, measureValue, unit);
     }
 
+    @Override
+    public CommandKeyExtractor getCommandKeyExtractor() {
+        return COMMAND_KEY_EXTRACTOR;
+    }
+
     @Override
     public boolean handleProfileUpdate(DeviceManager deviceManager, EEP26Telegram telegram, EnOceanDevice device) {
         boolean success = false;
@@ -378,7 +400,7 @@ public abstract class D201 extends AbstractEEP {
 
                 // updates all the attributes associated to the status change
                 // message
-                changedAttributes.addAll(updateStatusAttributes(response));
+                changedAttributes.addAll(updateStatusAttributes(response, deviceManager == null ? null : deviceManager.getDeviceState(device.getAddressInt())));
 
             }
             else if (commandId == (byte) 0x07) {
@@ -414,7 +436,7 @@ public abstract class D201 extends AbstractEEP {
                 EEPAttributeChangeJob dispatcherTask = new EEPAttributeChangeJob(deviceManager, changedAttributes, channelId, telegram, device);
 
                 // submit the task for execution
-                attributeNotificationWorker.submit(dispatcherTask);
+                notifyAttributeChange(device, dispatcherTask);
 
                 // set success at true
                 // TODO check what to do if nothing changes, i.e., with success equal to false.
@@ -424,16 +446,28 @@ public abstract class D201 extends AbstractEEP {
         return success;
     }
 
-    private ArrayList<EEPAttribute<?>> updateStatusAttributes(D201ActuatorStatusResponse response) {
+    /**
+     * Updates the attributes of an actuator status response whose value
+     * differs from the last one received from the device
+     *
+     * @param response The status response
+     * @param state    The current values of the device, null if none was
+     *                 received yet
+     * @return The changed attributes
+     */
+    private ArrayList<EEPAttribute<?>> updateStatusAttributes(D201ActuatorStatusResponse response, DeviceState state) {
         // the set of changed attributes
         ArrayList<EEPAttribute<?>> changedAttributes = new ArrayList<>();
 
+        // the channel of the response
+        int channelId = response.getChannelId();
+
         // -------- update the power failure settings
         EEP26PowerFailure powerFailureAttribute = (EEP26PowerFailure) getChannelAttribute(response.getChannelId(), EEP26PowerFailure.NAME);
 
-        if (powerFailureAttribute != null && powerFailureAttribute.getValue() != response.isPowerFailureEnabled()) {
+        if (powerFailureAttribute != null && changed(state, powerFailureAttribute, channelId, response.isPowerFailureEnabled())) {
             // update the attribute
-            powerFailureAttribute.setValue(response.isPowerFailureEnabled());
+            powerFailureAttribute.setBoolean(response.isPowerFailureEnabled());
 
             // add the attribute to the set of changed ones
             changedAttributes.add(powerFailureAttribute);
@@ -443,9 +477,9 @@ public abstract class D201 extends AbstractEEP {
         EEP26PowerFailureDetection powerFailureDetectionAttribute = (EEP26PowerFailureDetection) getChannelAttribute(response.getChannelId(), EEP26PowerFailureDetection.NAME);
 
         // check not null
-        if (powerFailureDetectionAttribute != null && powerFailureDetectionAttribute.getValue() != response.isPowerFailureDetected()) {
+        if (powerFailureDetectionAttribute != null && changed(state, powerFailureDetectionAttribute, channelId, response.isPowerFailureDetected())) {
             // update the attribute
-            powerFailureDetectionAttribute.setValue(response.isPowerFailureDetected());
+            powerFailureDetectionAttribute.setBoolean(response.isPowerFailureDetected());
 
             // add the attribute to the set of changed attributes
             changedAttributes.add(powerFailureDetectionAttribute);
@@ -455,9 +489,9 @@ public abstract class D201 extends AbstractEEP {
         EEP26OverCurrentSwitchOff overCurrentSwitchOffAttribute = (EEP26OverCurrentSwitchOff) getChannelAttribute(response.getChannelId(), EEP26OverCurrentSwitchOff.NAME);
 
         // check not null
-        if (overCurrentSwitchOffAttribute != null && overCurrentSwitchOffAttribute.getValue() != response.isOverCurrentSwitchOffExecuted()) {
+        if (overCurrentSwitchOffAttribute != null && changed(state, overCurrentSwitchOffAttribute, channelId, response.isOverCurrentSwitchOffExecuted())) {
             // update the attribute
-            overCurrentSwitchOffAttribute.setValue(response.isOverCurrentSwitchOffExecuted());
+            overCurrentSwitchOffAttribute.setBoolean(response.isOverCurrentSwitchOffExecuted());
 
             // add the attribute to the set of changed attributes
             changedAttributes.add(overCurrentSwitchOffAttribute);
@@ -467,7 +501,7 @@ public abstract class D201 extends AbstractEEP {
         EEP26ErrorLevel errorLevelAttribute = (EEP26ErrorLevel) getChannelAttribute(response.getChannelId(), EEP26ErrorLevel.NAME);
 
         // check not null (attribute exists)
-        if (errorLevelAttribute != null && errorLevelAttribute.getValue() != response.getErrorLevel()) {
+        if (errorLevelAttribute != null && changed(state, errorLevelAttribute, channelId, response.getErrorLevel())) {
             // update the attribute
             errorLevelAttribute.setValue(response.getErrorLevel());
 
@@ -479,9 +513,9 @@ public abstract class D201 extends AbstractEEP {
         EEP26LocalControl localControlAttribute = (EEP26LocalControl) getChannelAttribute(response.getChannelId(), EEP26LocalControl.NAME);
 
         // check not null
-        if (localControlAttribute != null && localControlAttribute.getValue() != response.isLocalControlEnabled()) {
+        if (localControlAttribute != null && changed(state, localControlAttribute, channelId, response.isLocalControlEnabled())) {
             // update the attribute
-            localControlAttribute.setValue(response.isLocalControlEnabled());
+            localControlAttribute.setBoolean(response.isLocalControlEnabled());
 
             // add the attribute to the set of changed attributes
             changedAttributes.add(localControlAttribute);
@@ -501,18 +535,18 @@ public abstract class D201 extends AbstractEEP {
             if (outputLevel <= 100) {
 
                 // update switching
-                if (switchingAttribute != null && switchingAttribute.getValue() != outputLevel > 0) {
+                if (switchingAttribute != null && changed(state, switchingAttribute, channelId, outputLevel > 0)) {
                     // update the switching attribute
-                    switchingAttribute.setValue(outputLevel > 0);
+                    switchingAttribute.setBoolean(outputLevel > 0);
 
                     // add the attribute to the set of changed attributes
                     changedAttributes.add(switchingAttribute);
                 }
 
                 // update dimming
-                if (dimLevelAttribute != null && dimLevelAttribute.getValue() != outputLevel) {
+                if (dimLevelAttribute != null && changed(state, dimLevelAttribute, channelId, outputLevel)) {
                     // update the dim level
-                    dimLevelAttribute.setValue(outputLevel);
+                    dimLevelAttribute.setInt(outputLevel);
 
                     // add the attribute to the set of changed attributes
                     changedAttributes.add(dimLevelAttribute);
@@ -525,6 +559,25 @@ public abstract class D201 extends AbstractEEP {
 
     }
 
+    /**
+     * Checks a decoded value against the value last received from the
+     * device, the attributes of the profile being shared by all its devices
+     *
+     * @param state     The current values of the device, null if none was
+     *                  received yet
+     * @param attribute The attribute decoded
+     * @param channelId The channel of the attribute
+     * @param value     The decoded value
+     * @return True if the value changed
+     */
+    private static boolean changed(DeviceState state, EEPAttribute<?> attribute, int channelId, Object value) {
+        if (state == null) {
+            return true;
+        }
+        Object current = state.getValue(channelId, attribute.getName());
+        return value == null ? current != null : !value.equals(current);
+    }
+
     /**
      * Given an ActuatorMeasurementResponse, updates the right attibute
      * (channel-specific)
@@ -535,7 +588,7 @@ public abstract class D201 extends AbstractEEP {
         // get the right channel attribute and update the current power figure
         EEP26PowerMeasurement powerMeasurementAttribute = (EEP26PowerMeasurement) getChannelAttribute(response.getChannelId(), EEP26PowerMeasurement.NAME);
 
-        powerMeasurementAttribute.setValue(response.getMeasureAsDouble());
+        powerMeasurementAttribute.setDouble(response.getMeasureAsDouble());
         powerMeasurementAttribute.setUnit(response.getUnit().name());
 
         // return the changed attribute
@@ -552,7 +605,7 @@ public abstract class D201 extends AbstractEEP {
         // get the right channel attribute and update the current energy figure
         EEP26EnergyMeasurement energyMeasurementAttribute = (EEP26EnergyMeasurement) getChannelAttribute(response.getChannelId(), EEP26EnergyMeasurement.NAME);
 
-        energyMeasurementAttribute.setValue(response.getMeasureAsDouble());
+        energyMeasurementAttribute.setDouble(response.getMeasureAsDouble());
         energyMeasurementAttribute.setUnit(response.getUnit().name());
 
         return energyMeasurementAttribute;
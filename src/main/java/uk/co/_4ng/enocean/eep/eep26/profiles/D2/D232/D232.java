@@ -58,22 +58,22 @@ abstract class D232 extends AbstractEEP {
                 EEPAttributeChangeJob changes = new EEPAttributeChangeJob(deviceManager);
 
                 EEP26Divisor divisor = (EEP26Divisor) getChannelAttribute(0, EEP26Divisor.NAME);
-                divisor.setValue(msg.getDivisor());
+                divisor.setBoolean(msg.getDivisor());
                 changes.addChangedAttribute(divisor, 0, telegram, device);
 
                 EEP26PowerFailure powerFailed = (EEP26PowerFailure) getChannelAttribute(0, EEP26PowerFailure.NAME);
-                powerFailed.setValue(msg.hasPowerFailed());
+                powerFailed.setBoolean(msg.hasPowerFailed());
                 changes.addChangedAttribute(powerFailed, 0, telegram, device);
 
                 // Work out the phases
                 for (int channel = 0; channel < channels; channel++) {
                     EEP26Current phase = (EEP26Current) getChannelAttribute(channel, EEP26Current.NAME);
-                    phase.setValue(msg.getScaledValue(channel));
+                    phase.setDouble(msg.getScaledValue(channel));
                     changes.addChangedAttribute(phase, channel, telegram, device);
                 }
 
                 // submit the task for execution
-                attributeNotificationWorker.submit(changes);
+                notifyAttributeChange(device, changes);
                 success = true;
             }
         }
@@ -60,13 +60,13 @@ public class D50001 extends D500 {
                 EEP26Switching switchingAttribute = (EEP26Switching) getChannelAttribute(CHANNEL, EEP26Switching.NAME);
 
                 // update the attribute value
-                switchingAttribute.setValue(message.isContactClosed());
+                switchingAttribute.setBoolean(message.isContactClosed());
 
                 // build the dispatching task
                 EEPAttributeChangeJob dispatcherTask = new EEPAttributeChangeJob(deviceManager, switchingAttribute, CHANNEL, telegram, device);
 
                 // submit the task for execution
-                attributeNotificationWorker.submit(dispatcherTask);
+                notifyAttributeChange(device, dispatcherTask);
 
                 success = true;
             }
@@ -95,7 +95,7 @@ public class F60201 extends F602 {
                     // get the number of buttons attribute
                     EEP26RockerSwitch2RockerButtonCount btnCountAttribute = (EEP26RockerSwitch2RockerButtonCount) getChannelAttribute(CHANNEL_1, EEP26RockerSwitch2RockerButtonCount.NAME);
                     if (btnCountAttribute != null) {
-                        btnCountAttribute.setValue(message.getnButtonsPressed());
+                        btnCountAttribute.setInt(message.getnButtonsPressed());
                         attrs.get(CHANNEL_1).add(btnCountAttribute);
                     }
                 }
@@ -103,7 +103,7 @@ public class F60201 extends F602 {
                 // handle energy bow (common to all messages)
                 EEP26RockerSwitch2RockerEnergyBow energyBowAttribute = (EEP26RockerSwitch2RockerEnergyBow) getChannelAttribute(CHANNEL_1, EEP26RockerSwitch2RockerEnergyBow.NAME);
                 if (energyBowAttribute != null) {
-                    energyBowAttribute.setValue(message.isEnergyBowPressed());
+                    energyBowAttribute.setBoolean(message.isEnergyBowPressed());
                     attrs.get(CHANNEL_1).add(energyBowAttribute);
                 }
 
@@ -151,6 +151,6 @@ public class F60201 extends F602 {
         }
 
         // submit the task for execution
-        attributeNotificationWorker.submit(dispatcherTask);
+        notifyAttributeChange(device, dispatcherTask);
     }
 }
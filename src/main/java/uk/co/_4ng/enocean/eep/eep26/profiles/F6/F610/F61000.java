@@ -69,7 +69,7 @@ public class F61000 extends F610 {
                 EEPAttributeChangeJob dispatcherTask = new EEPAttributeChangeJob(deviceManager, rotationAttribute, CHANNEL, telegram, device);
 
                 // submit the task for execution
-                attributeNotificationWorker.submit(dispatcherTask);
+                notifyAttributeChange(device, dispatcherTask);
 
                 // if comes here everything is fine
                 success = true;
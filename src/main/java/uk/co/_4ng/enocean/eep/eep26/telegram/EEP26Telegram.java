@@ -91,6 +91,15 @@ public abstract class EEP26Telegram {
         return rorg;
     }
 
+    /**
+     * Gets the raw {@link ESP3Packet} instance this telegram was decoded from
+     *
+     * @return the rawPacket
+     */
+    public ESP3Packet getRawPacket() {
+        return rawPacket;
+    }
+
     /**
      * Returns true if this is a teach-in telegram
      * @return True if teach-in type
@@ -22,7 +22,8 @@ import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
  * low level {@link ESP3Packet} containing a telegram as payload. While it
  * currently works only on the fixed set of telegrams defined in the eEP2.6
  * specification, it will be extended to automatically include newly added
- * telegram types.
+ * telegram types. Hot paths only interested in a few fields should use an
+ * {@link EEP26TelegramView} instead, which decodes in place.
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  *         <p>
@@ -49,34 +50,42 @@ public class EEP26TelegramFactory {
     public static EEP26Telegram getEEP26Telegram(ESP3Packet pkt) {
         EEP26Telegram telegram = null;
 
-        // handle UTE Teach-In telegrams
-        if (UTETeachInTelegram.isUTETeachIn(pkt)) {
-            telegram = new UTETeachInTelegram(pkt);
-        }
+        // dispatch on the RORG rather than probing every telegram type
+        if (pkt.isRadio() && pkt.getData() != null && pkt.getData().length > 0) {
+            EEP26TelegramType type = EEP26TelegramView.getTelegramType(pkt.getData()[0]);
+            if (type != null) {
+                switch (type) {
 
-        // handle VLD telegrams
-        else if (VLDTelegram.isVLDPacket(pkt)) {
-            // handle VLD packets, search the destination device
-            telegram = new VLDTelegram(pkt);
-        }
+                    // handle UTE Teach-In telegrams
+                    case UTETeachIn:
+                        telegram = new UTETeachInTelegram(pkt);
+                        break;
 
-        // handle RPS telegrams
-        else if (RPSTelegram.isRPSPacket(pkt)) {
-            telegram = new RPSTelegram(pkt);
-        }
+                    // handle VLD telegrams
+                    case VLD:
+                        telegram = new VLDTelegram(pkt);
+                        break;
 
-        // handle 1BS telegrams
-        else if (OneBSTelegram.is1BSPacket(pkt)) {
-            telegram = new OneBSTelegram(pkt);
-        }
+                    // handle RPS telegrams
+                    case RPS:
+                        telegram = new RPSTelegram(pkt);
+                        break;
+
+                    // handle 1BS telegrams
+                    case OneBS:
+                        telegram = new OneBSTelegram(pkt);
+                        break;
 
-        // handle 4BS telegrams
-        else if (FourBSTelegram.is4BSPacket(pkt)) {
-            telegram = new FourBSTelegram(pkt);
+                    // handle 4BS telegrams
+                    case FourBS:
+                        telegram = new FourBSTelegram(pkt);
 
-            // handle 4BS teach in telegrams
-            if (FourBSTeachInTelegram.isTeachIn((FourBSTelegram) telegram)) {
-                telegram = new FourBSTeachInTelegram((FourBSTelegram) telegram);
+                        // handle 4BS teach in telegrams
+                        if (FourBSTeachInTelegram.isTeachIn((FourBSTelegram) telegram)) {
+                            telegram = new FourBSTeachInTelegram((FourBSTelegram) telegram);
+                        }
+                        break;
+                }
             }
         }
 
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.eep.eep26.telegram;
+
+import uk.co._4ng.enocean.eep.Rorg;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+/**
+ * A reusable, allocation free view of the {@link EEP26Telegram} carried by a
+ * radio {@link ESP3Packet}. Every field is read in place from the packet data
+ * at the fixed offsets defined by the EEP2.6 specification:
+ * <p>
+ * <pre>
+ * RORG (1 byte) | payload (n bytes) | sender address (4 bytes) | status (1 byte)
+ * </pre>
+ * <p>
+ * The payload is exposed in wire order for every telegram type (UTE teach-in
+ * payloads are not reversed as {@link UTETeachInTelegram} does). A view is
+ * only valid until it is wrapped around another packet, or until the packet
+ * is released to its pool; {@link #toOwned()} builds a regular telegram for
+ * holders that need to keep it.
+ * <p>
+ * Views are not thread safe, each decoding thread should use its own.
+ */
+public class EEP26TelegramView {
+
+    // the number of bytes surrounding the payload: RORG, address and status
+    private static final int FRAMING_LENGTH = 6;
+
+    // the wrapped packet and its data
+    private ESP3Packet pkt;
+    private byte[] data;
+
+    // the telegram type, null if the view is empty
+    private EEP26TelegramType type;
+
+    /**
+     * Points this view at the given packet
+     *
+     * @param pkt Packet to decode
+     * @return True if the packet is a radio packet carrying a supported
+     * telegram, false otherwise (the view is then empty)
+     */
+    public boolean wrap(ESP3Packet pkt) {
+        this.pkt = null;
+        data = null;
+        type = null;
+        if (pkt.isRadio() && pkt.getData() != null && pkt.getData().length >= FRAMING_LENGTH) {
+            type = getTelegramType(pkt.getData()[0]);
+            if (type != null) {
+                this.pkt = pkt;
+                data = pkt.getData();
+            }
+        }
+        return type != null;
+    }
+
+    /**
+     * Returns the type of telegram carried by a RORG
+     *
+     * @param rorg RORG value
+     * @return Telegram type or null if not supported
+     */
+    static EEP26TelegramType getTelegramType(byte rorg) {
+        switch (rorg) {
+            case Rorg.UTE:
+                return EEP26TelegramType.UTETeachIn;
+            case Rorg.VLD:
+                return EEP26TelegramType.VLD;
+            case Rorg.RPS:
+                return EEP26TelegramType.RPS;
+            case Rorg.BS1:
+                return EEP26TelegramType.OneBS;
+            case Rorg.BS4:
+                return EEP26TelegramType.FourBS;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the packet this view is pointing at
+     *
+     * @return Wrapped packet or null if the view is empty
+     */
+    public ESP3Packet getPacket() {
+        return pkt;
+    }
+
+    /**
+     * Returns the type of the telegram
+     *
+     * @return Telegram type or null if the view is empty
+     */
+    public EEP26TelegramType getTelegramType() {
+        return type;
+    }
+
+    /**
+     * Returns the RORG of the telegram
+     *
+     * @return RORG value
+     */
+    public byte getRorgValue() {
+        return data[0];
+    }
+
+    /**
+     * Returns the shared {@link Rorg} instance of the telegram
+     *
+     * @return Rorg
+     */
+    public Rorg getRorg() {
+        return Rorg.valueOf(data[0]);
+    }
+
+    /**
+     * Returns the number of payload bytes
+     *
+     * @return Payload length
+     */
+    public int getPayloadLength() {
+        return data.length - FRAMING_LENGTH;
+    }
+
+    /**
+     * Returns a payload byte
+     *
+     * @param index Index of the byte within the payload, in wire order
+     * @return Payload byte
+     */
+    public byte getPayloadByte(int index) {
+        if (index < 0 || index >= getPayloadLength()) {
+            throw new IndexOutOfBoundsException("Payload index " + index + " out of " + getPayloadLength());
+        }
+        return data[1 + index];
+    }
+
+    /**
+     * Returns an unsigned bit field of the payload, bits being numbered from
+     * the most significant bit of the first payload byte as in the EEP
+     * specification tables
+     *
+     * @param offset Offset of the first bit
+     * @param length Number of bits, at most 32
+     * @return Bit field value
+     */
+    public long getPayloadBits(int offset, int length) {
+        if (length < 0 || length > 32 || offset < 0 || offset + length > getPayloadLength() * 8) {
+            throw new IndexOutOfBoundsException("Bit field " + offset + "+" + length + " out of " + getPayloadLength() * 8 + " bits");
+        }
+        long value = 0;
+        for (int bit = offset; bit < offset + length; bit++) {
+            value = value << 1 | (data[1 + (bit >> 3)] >> (7 - (bit & 7))) & 1;
+        }
+        return value;
+    }
+
+    /**
+     * Copies the payload into the given array
+     *
+     * @param target Array of at least {@link #getPayloadLength()} bytes
+     * @return The target array
+     */
+    public byte[] getPayload(byte[] target) {
+        System.arraycopy(data, 1, target, 0, getPayloadLength());
+        return target;
+    }
+
+    /**
+     * Returns the sender address as the integer UID used by the device manager
+     *
+     * @return Sender UID
+     */
+    public int getAddressAsInt() {
+        int offset = data.length - 5;
+        return (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16 | (data[offset + 2] & 0xff) << 8 | data[offset + 3] & 0xff;
+    }
+
+    /**
+     * Copies the sender address into the given array
+     *
+     * @param target Array of at least 4 bytes
+     * @return The target array
+     */
+    public byte[] getAddress(byte[] target) {
+        System.arraycopy(data, data.length - 5, target, 0, 4);
+        return target;
+    }
+
+    /**
+     * Returns the status byte
+     *
+     * @return Status
+     */
+    public byte getStatus() {
+        return data[data.length - 1];
+    }
+
+    /**
+     * Returns true if the telegram is a teach-in request, using the same rules
+     * as {@link EEP26TelegramFactory}
+     *
+     * @return True if teach-in
+     */
+    public boolean isTeachIn() {
+        if (type == EEP26TelegramType.UTETeachIn) {
+            return true;
+        }
+
+        // 4BS teach-in flag (offset 28, 4th bit of the 4th byte)
+        return type == EEP26TelegramType.FourBS && (data[4] & 0x8) == 0;
+    }
+
+    /**
+     * Builds a regular, independent {@link EEP26Telegram} from this view. A
+     * pooled packet is copied first, so the telegram stays valid after the
+     * packet has been released.
+     *
+     * @return Telegram owning its data
+     */
+    public EEP26Telegram toOwned() {
+        return EEP26TelegramFactory.getEEP26Telegram(pkt.isPooled() ? pkt.copy() : pkt);
+    }
+}
@@ -45,7 +45,7 @@ public class OneBSTelegram extends EEP26Telegram {
         System.arraycopy(rawData, startingOffset, address, 0, address.length);
 
         // build the actual Rorg
-        rorg = new Rorg(rawData[0]);
+        rorg = Rorg.valueOf(rawData[0]);
 
         status = rawData[startingOffset + address.length]; // shall be equal to rawData.length-1
 
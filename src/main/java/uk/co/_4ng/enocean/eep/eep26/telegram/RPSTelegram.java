@@ -45,7 +45,7 @@ public class RPSTelegram extends EEP26Telegram {
         System.arraycopy(rawData, startingOffset, address, 0, address.length);
 
         // build the actual Rorg
-        rorg = new Rorg(rawData[0]);
+        rorg = Rorg.valueOf(rawData[0]);
 
         // store the status byte
         status = rawData[startingOffset + address.length]; //shall be equal to rawData.length-1
@@ -109,7 +109,7 @@ public class UTETeachInTelegram extends EEP26Telegram {
         isTeachIn = true;
 
         // build the rorg
-        rorg = new Rorg(payload[0]);
+        rorg = Rorg.valueOf(payload[0]);
 
         // build the equipment profile
         eep = new EEPIdentifier(rorg, payload[1], payload[2]);
@@ -194,16 +194,6 @@ public class UTETeachInTelegram extends EEP26Telegram {
         this.response = response;
     }
 
-    /**
-     * Gets the raw {@link ESP3Packet} instance corresponding to this teach-in
-     * high-level packet
-     *
-     * @return the rawPacket
-     */
-    public ESP3Packet getRawPacket() {
-        return rawPacket;
-    }
-
 
     @Override
     public byte[] getAddress() {
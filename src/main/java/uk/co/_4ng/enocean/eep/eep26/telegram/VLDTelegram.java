@@ -58,7 +58,7 @@ public class VLDTelegram extends EEP26Telegram {
         System.arraycopy(rawData, startingOffset, address, 0, address.length);
 
         // build the actual Rorg
-        rorg = new Rorg(rawData[0]);
+        rorg = Rorg.valueOf(rawData[0]);
 
         // no func nor type definitions are provided in these packets...
     }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link WaitStrategy} sleeping on a lock condition. It uses no CPU while
+ * idle, at the cost of a thread wake-up on every signal. Producers only take
+ * the lock when a consumer is actually waiting.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+
+    // the lock and condition the consumer sleeps on
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    // the number of consumers currently waiting
+    private volatile int waiters;
+
+    @Override
+    public boolean waitFor(Queue<?> queue, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!queue.isEmpty()) {
+            return true;
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            waiters++;
+            try {
+                while (queue.isEmpty()) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                return true;
+            }
+            finally {
+                waiters--;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signal() {
+        if (waiters > 0) {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
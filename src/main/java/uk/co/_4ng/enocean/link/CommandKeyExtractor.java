@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+/**
+ * Tells which state of a device a command sets, so that the
+ * {@link TransmitScheduler} can replace a queued command by a newer one
+ * setting the same state. The layout of a command depends on the profile of
+ * the device it is sent to, so an extractor is provided by the profile (see
+ * {@link uk.co._4ng.enocean.eep.EEP#getCommandKeyExtractor()}) and registered
+ * for every destination using it.
+ */
+public interface CommandKeyExtractor {
+
+    /**
+     * Returns the key identifying the state a command sets, e.g. command ID
+     * and channel
+     *
+     * @param pkt Command to interrogate
+     * @return Non-negative key, or -1 if the command must never be replaced
+     */
+    int getKey(ESP3Packet pkt);
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+/**
+ * An {@link RxFilter} keeping the radio frames received with at least the
+ * given signal strength, dropping the telegrams of distant devices. Frames
+ * whose signal strength is not reported are kept.
+ */
+public class DbmFilter implements RxFilter {
+
+    // the weakest signal strength kept, in dBm
+    private volatile int minDbm;
+
+    /**
+     * Creates a filter
+     *
+     * @param minDbm Weakest signal strength kept, in dBm (e.g. -85)
+     */
+    public DbmFilter(int minDbm) {
+        setMinDbm(minDbm);
+    }
+
+    /**
+     * Sets the weakest signal strength kept
+     *
+     * @param minDbm Signal strength, in dBm
+     */
+    public void setMinDbm(int minDbm) {
+        if (minDbm > 0) {
+            throw new IllegalArgumentException("Invalid signal strength: " + minDbm);
+        }
+        this.minDbm = minDbm;
+    }
+
+    /**
+     * Returns the weakest signal strength kept
+     *
+     * @return Signal strength, in dBm
+     */
+    public int getMinDbm() {
+        return minDbm;
+    }
+
+    @Override
+    public boolean accept(byte[] frame, int offset, int dataLength, int optLength) {
+        int dbm = RxFilter.getDbm(frame, offset, dataLength, optLength);
+        return dbm == ESP3Packet.UNKNOWN_DBM || dbm >= minDbm;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drops the copies of a radio telegram received within a short window: the
+ * subtelegrams reported separately by the transceiver and the copies forwarded
+ * by repeaters, whose status byte differs only by the repeater count. It is
+ * used by the {@link PacketReceiver}, before the packets are queued and
+ * decoded, see {@link LinkLayer#setDuplicateFilter(DuplicateFilter)}.
+ * <p>
+ * Telegrams are keyed by sender address and a hash of the RORG and payload,
+ * in a set associative cache of primitive keys and arrival times that never
+ * allocates. The first copy is delivered straight away and is never modified
+ * afterwards, as it may already be read by other threads; the best signal
+ * strength of all the copies received so far is kept by the filter, see
+ * {@link #getBestDbm(ESP3Packet)}.
+ * <p>
+ * The filter is updated by the thread reading the transceiver and may be
+ * queried by any thread.
+ */
+public class DuplicateFilter {
+
+    // the default window, in milliseconds
+    public static final int DEFAULT_WINDOW = 100;
+
+    // the default number of telegrams remembered
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // the number of telegrams sharing a set
+    private static final int WAYS = 4;
+
+    // the keys, the arrival times (0 for a free entry) and the best signal
+    // strengths of the telegrams, by set and way
+    private final long[] keys;
+    private final long[] arrivals;
+    private final int[] bestDbms;
+
+    // the mask selecting a set
+    private final int setMask;
+
+    // the window, in nanoseconds
+    private volatile long window;
+
+    // statistics
+    private volatile long passed;
+    private volatile long duplicates;
+    private volatile long strongerCopies;
+
+    /**
+     * Creates a filter remembering {@link #DEFAULT_CAPACITY} telegrams for
+     * {@link #DEFAULT_WINDOW} milliseconds
+     */
+    public DuplicateFilter() {
+        this(DEFAULT_CAPACITY, DEFAULT_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a filter
+     *
+     * @param capacity Number of telegrams remembered, rounded up to a power of
+     *                 2
+     * @param window   Time a telegram is remembered
+     * @param unit     Unit of the window
+     */
+    public DuplicateFilter(int capacity, long window, TimeUnit unit) {
+        if (capacity < WAYS || capacity > 1 << 20) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        keys = new long[size];
+        arrivals = new long[size];
+        bestDbms = new int[size];
+        setMask = size / WAYS - 1;
+        setWindow(window, unit);
+    }
+
+    /**
+     * Sets the time a telegram is remembered, which should cover the
+     * subtelegrams of a transmission and its repetitions
+     *
+     * @param window Window
+     * @param unit   Unit of the window
+     */
+    public void setWindow(long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+        this.window = unit.toNanos(window);
+    }
+
+    /**
+     * Returns the time a telegram is remembered
+     *
+     * @param unit Unit of the result
+     * @return Window
+     */
+    public long getWindow(TimeUnit unit) {
+        return unit.convert(window, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Checks a received packet against the telegrams received within the
+     * window, remembering it if it is new. Packets other than radio telegrams
+     * are never duplicates.
+     *
+     * @param pkt Received packet
+     * @param now Reception time, {@link System#nanoTime()}
+     * @return True if the packet is a copy of a telegram already received
+     */
+    public synchronized boolean isDuplicate(ESP3Packet pkt, long now) {
+        byte[] data = pkt.getData();
+        if (!isRadio(pkt) || data.length < 6) {
+            return false;
+        }
+        long currentWindow = window;
+        long key = key(data);
+        int base = set(key) * WAYS;
+        int victim = -1;
+        boolean victimLive = true;
+        for (int i = base; i < base + WAYS; i++) {
+            boolean live = arrivals[i] != 0 && now - arrivals[i] < currentWindow;
+            if (live && keys[i] == key) {
+                duplicates++;
+
+                // remember the best signal strength
+                int dbm = pkt.getDbm();
+                if (dbm != ESP3Packet.UNKNOWN_DBM && dbm > bestDbms[i]) {
+                    bestDbms[i] = dbm;
+                    strongerCopies++;
+                }
+                return true;
+            }
+
+            // replace a free or expired entry, or else the oldest one
+            if (!live) {
+                if (victimLive) {
+                    victim = i;
+                    victimLive = false;
+                }
+            }
+            else if (victimLive && (victim < 0 || arrivals[i] - arrivals[victim] < 0)) {
+                victim = i;
+            }
+        }
+        keys[victim] = key;
+        arrivals[victim] = now == 0 ? 1 : now;
+        bestDbms[victim] = pkt.getDbm();
+        passed++;
+        return false;
+    }
+
+    /**
+     * Returns the best signal strength a radio telegram was received with,
+     * among the copies received within the window, e.g. to be called by the
+     * listener the first copy is delivered to
+     *
+     * @param pkt Any copy of the telegram
+     * @return Signal strength in dBm, the one of the packet if the telegram
+     * is no longer remembered, {@link ESP3Packet#UNKNOWN_DBM} if not known
+     */
+    public synchronized int getBestDbm(ESP3Packet pkt) {
+        byte[] data = pkt.getData();
+        int dbm = pkt.getDbm();
+        if (!isRadio(pkt) || data.length < 6) {
+            return dbm;
+        }
+        long now = System.nanoTime();
+        long key = key(data);
+        int base = set(key) * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            if (arrivals[i] != 0 && now - arrivals[i] < window && keys[i] == key) {
+                return Math.max(dbm, bestDbms[i]);
+            }
+        }
+        return dbm;
+    }
+
+    /**
+     * Forgets every telegram
+     */
+    public synchronized void clear() {
+        Arrays.fill(arrivals, 0);
+    }
+
+    /**
+     * Returns the number of radio telegrams passed on
+     *
+     * @return Telegram count
+     */
+    public long getPassed() {
+        return passed;
+    }
+
+    /**
+     * Returns the number of copies dropped
+     *
+     * @return Copy count
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns the number of copies stronger than the copies received before
+     * them
+     *
+     * @return Copy count
+     */
+    public long getStrongerCopies() {
+        return strongerCopies;
+    }
+
+    /**
+     * Builds the key of a radio telegram: the sender address and a hash of the
+     * RORG and payload, the status byte, which holds the repeater count, being
+     * left out
+     *
+     * @param data Data of a radio telegram, at least 6 bytes long
+     * @return Key
+     */
+    public static long key(byte[] data) {
+        int end = data.length - 5;
+        int hash = 1;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + data[i];
+        }
+        int uid = (data[end] & 0xff) << 24 | (data[end + 1] & 0xff) << 16 | (data[end + 2] & 0xff) << 8 | data[end + 3] & 0xff;
+        return (long) uid << 32 | hash & 0xffffffffL;
+    }
+
+    /**
+     * Tells whether a packet carries a radio telegram, as reported with or
+     * without its subtelegrams
+     *
+     * @param pkt Packet
+     * @return True for the RADIO and RADIO_SUB_TEL packets
+     */
+    public static boolean isRadio(ESP3Packet pkt) {
+        return (pkt.getPacketType() == ESP3Packet.RADIO || pkt.getPacketType() == ESP3Packet.RADIO_SUB_TEL) && pkt.getData() != null;
+    }
+
+    private int set(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & setMask;
+    }
+}
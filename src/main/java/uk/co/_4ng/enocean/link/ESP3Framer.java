@@ -0,0 +1,357 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import uk.co._4ng.enocean.protocol.serial.v3.network.crc8.Crc8;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+/**
+ * A fixed capacity ring buffer that accumulates the raw bytes read from the
+ * transceiver and splits them into ESP3 frames. Data is written straight into
+ * the backing array (see {@link #getWriteArray()}, {@link #getWriteOffset()}
+ * and {@link #commit(int)}) so that bulk reads from the serial port need no
+ * intermediate copy, and complete frames are handed to a {@link FrameHandler}
+ * as offset/length slices of a byte array. Both the header and the data CRC
+ * are checked before a frame is handed over, so the handler never sees a
+ * corrupt frame.
+ * <p>
+ * Frames are only copied when they wrap around the end of the ring, in which
+ * case a reusable scratch buffer is used, so the steady state performs no
+ * allocation at all. The framer is not thread safe and is meant to be driven
+ * by a single reader.
+ */
+public class ESP3Framer {
+
+    // the default ring capacity, comfortably larger than any radio telegram
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // the size of the ESP3 header including the sync byte and the header CRC
+    static final int HEADER_LENGTH = 6;
+
+    /**
+     * Receives the frames extracted by an {@link ESP3Framer}
+     */
+    public interface FrameHandler {
+        /**
+         * Called for every complete frame. The slice is only valid for the
+         * duration of the call, it must be copied if it needs to be kept.
+         *
+         * @param buffer Array holding the frame
+         * @param offset Offset of the sync byte within the array
+         * @param length Total length of the frame, CRCs included
+         */
+        void handleFrame(byte[] buffer, int offset, int length);
+    }
+
+    // the ring storage, its length is always a power of two
+    private final byte[] ring;
+    private final int mask;
+
+    // scratch area used to linearise frames wrapping around the ring end
+    private final byte[] frame;
+
+    // absolute read and write positions, the ring index is position & mask
+    private long readPosition;
+    private long writePosition;
+
+    // the length of the frame whose header has been validated, 0 while hunting
+    private int frameLength;
+
+    // statistics, written by the reader thread only
+    private volatile long discardedBytes;
+    private volatile long frames;
+    private volatile long headerCrcErrors;
+    private volatile long dataCrcErrors;
+    private volatile long oversizedFrames;
+    private volatile long resyncs;
+
+    /**
+     * Creates a framer with the default capacity
+     */
+    public ESP3Framer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a framer able to buffer at least the given number of bytes. The
+     * capacity is rounded up to the next power of two and bounds the largest
+     * frame that can be handled.
+     *
+     * @param capacity Minimum capacity in bytes
+     */
+    public ESP3Framer(int capacity) {
+        if (capacity < 2 * HEADER_LENGTH) {
+            throw new IllegalArgumentException("Framer capacity too small: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        ring = new byte[size];
+        mask = size - 1;
+        frame = new byte[size];
+    }
+
+    /**
+     * Returns the array the next bytes must be written into
+     *
+     * @return Backing array of the ring
+     */
+    public byte[] getWriteArray() {
+        return ring;
+    }
+
+    /**
+     * Returns the offset within {@link #getWriteArray()} at which the next
+     * bytes must be written
+     *
+     * @return Write offset
+     */
+    public int getWriteOffset() {
+        return (int) (writePosition & mask);
+    }
+
+    /**
+     * Returns the number of bytes that can be written in a single contiguous
+     * run starting at {@link #getWriteOffset()}
+     *
+     * @return Contiguous free space in bytes
+     */
+    public int getContiguousWritable() {
+        int free = ring.length - getBuffered();
+        return Math.min(free, ring.length - getWriteOffset());
+    }
+
+    /**
+     * Returns the number of bytes currently buffered and not yet framed
+     *
+     * @return Number of buffered bytes
+     */
+    public int getBuffered() {
+        return (int) (writePosition - readPosition);
+    }
+
+    /**
+     * Returns the capacity of the ring
+     *
+     * @return Capacity in bytes
+     */
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * Marks the given number of bytes, written directly into the backing
+     * array, as available for framing
+     *
+     * @param count Number of bytes written
+     */
+    public void commit(int count) {
+        if (count < 0 || count > ring.length - getBuffered()) {
+            throw new IllegalArgumentException("Invalid commit size: " + count);
+        }
+        writePosition += count;
+    }
+
+    /**
+     * Copies the given bytes into the ring and frames them, for callers that
+     * do not read straight into the backing array
+     *
+     * @param data    Source bytes
+     * @param offset  Offset of the first byte
+     * @param length  Number of bytes
+     * @param handler Handler to receive the complete frames
+     */
+    public void write(byte[] data, int offset, int length, FrameHandler handler) {
+        while (length > 0) {
+            int chunk = Math.min(length, getContiguousWritable());
+            System.arraycopy(data, offset, ring, getWriteOffset(), chunk);
+            commit(chunk);
+            offset += chunk;
+            length -= chunk;
+            process(handler);
+        }
+    }
+
+    /**
+     * Extracts all the complete frames currently buffered and passes them to
+     * the handler. The framer works as a small state machine: it hunts for a
+     * sync byte, validates the header CRC, then waits for the rest of the
+     * frame and validates the data CRC. When either check fails only the sync
+     * byte is consumed and the hunt restarts from the next byte, so a genuine
+     * frame hidden behind a spurious 0x55 is not lost. A partial frame is kept
+     * until the rest of it has been committed.
+     *
+     * @param handler Handler to receive the complete frames
+     * @return The number of frames extracted
+     */
+    public int process(FrameHandler handler) {
+        int extracted = 0;
+        while (true) {
+            if (frameLength == 0) {
+
+                // hunt for the sync byte
+                while (readPosition < writePosition && ring[(int) (readPosition & mask)] != ESP3Packet.SYNC_BYTE) {
+                    readPosition++;
+                    discardedBytes++;
+                }
+
+                // wait for the whole header
+                if (getBuffered() < HEADER_LENGTH) {
+                    return extracted;
+                }
+
+                // the header CRC covers the lengths and the packet type
+                byte crc = 0;
+                for (int i = 1; i < HEADER_LENGTH - 1; i++) {
+                    crc = Crc8.update(crc, at(i));
+                }
+                if (crc != at(HEADER_LENGTH - 1)) {
+                    headerCrcErrors++;
+                    resync();
+                    continue;
+                }
+
+                // compute the length of the whole frame
+                int dataLength = (at(1) & 0xff) << 8 | at(2) & 0xff;
+                int optLength = at(3) & 0xff;
+                int length = HEADER_LENGTH + dataLength + optLength + 1;
+
+                // a frame that can never fit cannot be real
+                if (length > ring.length) {
+                    oversizedFrames++;
+                    resync();
+                    continue;
+                }
+                frameLength = length;
+            }
+
+            // wait for the rest of the frame
+            if (getBuffered() < frameLength) {
+                return extracted;
+            }
+
+            // the data CRC covers both the data and the optional data
+            byte crc = 0;
+            for (int i = HEADER_LENGTH; i < frameLength - 1; i++) {
+                crc = Crc8.update(crc, at(i));
+            }
+            if (crc != at(frameLength - 1)) {
+                dataCrcErrors++;
+                frameLength = 0;
+                resync();
+                continue;
+            }
+
+            // hand the frame over, linearising it if it wraps
+            int start = (int) (readPosition & mask);
+            if (start + frameLength <= ring.length) {
+                handler.handleFrame(ring, start, frameLength);
+            }
+            else {
+                int firstPart = ring.length - start;
+                System.arraycopy(ring, start, frame, 0, firstPart);
+                System.arraycopy(ring, 0, frame, firstPart, frameLength - firstPart);
+                handler.handleFrame(frame, 0, frameLength);
+            }
+            readPosition += frameLength;
+            frameLength = 0;
+            frames++;
+            extracted++;
+        }
+    }
+
+    /**
+     * Discards all the buffered data
+     */
+    public void clear() {
+        readPosition = writePosition;
+        frameLength = 0;
+    }
+
+    /**
+     * Returns the number of bytes discarded while hunting for a sync byte
+     *
+     * @return Discarded byte count
+     */
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
+    /**
+     * Returns the number of complete frames extracted so far
+     *
+     * @return Frame count
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of headers rejected because of a bad header CRC
+     *
+     * @return Header CRC error count
+     */
+    public long getHeaderCrcErrors() {
+        return headerCrcErrors;
+    }
+
+    /**
+     * Returns the number of frames rejected because of a bad data CRC
+     *
+     * @return Data CRC error count
+     */
+    public long getDataCrcErrors() {
+        return dataCrcErrors;
+    }
+
+    /**
+     * Returns the number of headers rejected because the frame they announce
+     * can not fit in the ring
+     *
+     * @return Oversized frame count
+     */
+    public long getOversizedFrames() {
+        return oversizedFrames;
+    }
+
+    /**
+     * Returns the number of times the framer dropped a sync candidate and
+     * rescanned for the next one
+     *
+     * @return Resynchronisation count
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    /**
+     * Drops the current sync candidate so that the hunt restarts from the
+     * following byte
+     */
+    private void resync() {
+        readPosition++;
+        discardedBytes++;
+        resyncs++;
+    }
+
+    /**
+     * Returns the buffered byte at the given distance from the read position
+     *
+     * @param index Distance from the read position
+     * @return The byte
+     */
+    private byte at(int index) {
+        return ring[(int) (readPosition + index & mask)];
+    }
+}
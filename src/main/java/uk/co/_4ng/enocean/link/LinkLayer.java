@@ -15,17 +15,24 @@
  */
 package uk.co._4ng.enocean.link;
 
-import com.fazecast.jSerialComm.SerialPort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.co._4ng.enocean.link.serial.SerialPortFactory;
+import uk.co._4ng.enocean.link.transport.SerialTransport;
+import uk.co._4ng.enocean.link.transport.Transport;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.response.Response;
 import uk.co._4ng.enocean.util.EnOceanException;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * The link-level EnOcean connection, handles packet transmission and reception.
@@ -37,54 +44,169 @@ public class LinkLayer {
 
     private static final Logger logger = LoggerFactory.getLogger(LinkLayer.class);
 
-    // The serial port to which the link layer is attached
-    private final SerialPort serialPort;
+    // the default capacity of each RX and TX queue
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    // the default maximum number of asynchronous commands not yet answered
+    public static final int DEFAULT_MAX_PENDING_COMMANDS = 16;
+
+    // the time allowed for a thread to stop on disconnection, in milliseconds
+    private static final long STOP_TIMEOUT = 1000;
+
+    // the timer shared by all the link layers for the asynchronous command timeouts
+    private static final ScheduledThreadPoolExecutor timeoutScheduler = createTimeoutScheduler();
+
+    // The transport to which the link layer is attached
+    private final Transport transport;
 
     // The high priority RX and TX queues used by the link layer
-    private final ConcurrentLinkedQueue<PacketQueueItem> highPriorityTxQueue;
-    private final ConcurrentLinkedQueue<PacketQueueItem> highPriorityRxQueue;
+    private final RingQueue<PacketQueueItem> highPriorityTxQueue;
+    private final RingQueue<PacketQueueItem> highPriorityRxQueue;
 
     // The low priority RX and TX queues used by the link layer
-    private final ConcurrentLinkedQueue<PacketQueueItem> lowPriorityTxQueue;
-    private final ConcurrentLinkedQueue<PacketQueueItem> lowPriorityRxQueue;
+    private final RingQueue<PacketQueueItem> lowPriorityTxQueue;
+    private final RingQueue<PacketQueueItem> lowPriorityRxQueue;
 
-    // the transmitter
+    // the transmitter, and its thread while connected
     private PacketTransmitter transmitter;
+    private Thread transmitterThread;
 
     // the receiver
     private PacketReceiver receiver;
 
-    // the packet delivery process
+    // how the received bytes are read, and the reader of the READER_THREAD
+    // mode with its thread
+    private volatile ReceiveMode receiveMode = ReceiveMode.CALLBACK;
+    private volatile PacketReader reader;
+    private Thread readerThread;
+
+    // the packet delivery process, and its thread while connected
     private PacketDelivery pktDeliveryProcess;
+    private Thread packetDeliveryThread;
+
+    // the delivery process of the packets needing a response, and its thread
+    // while connected
+    private final PriorityDelivery priorityDeliveryProcess;
+    private Thread priorityDeliveryThread;
+
+    // the asynchronous commands not yet answered, and their maximum number
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+    private volatile int maxPendingCommands = DEFAULT_MAX_PENDING_COMMANDS;
+
+    // the number of times a packet is transmitted before giving up
+    private volatile int maxTransmissions = PacketQueueItem.MAX_RETRANSMISSION;
 
     /**
      * Builds a new instance of the EnJ link layer, which handles low-level
      * communication with any physical transceiver connected to the serial port
-     * identified by given serial port id.
+     * identified by given serial port id. The queues hold
+     * {@link #DEFAULT_QUEUE_CAPACITY} packets, received packets are dropped
+     * oldest first and senders wait when a transmission queue is full.
      */
     public LinkLayer(String serialPortId) throws EnOceanException {
+        this(serialPortId, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Builds a new instance of the EnJ link layer, which handles low-level
+     * communication with any physical transceiver connected to the serial port
+     * identified by given serial port id, using bounded queues of the given
+     * capacity.
+     *
+     * @param serialPortId     Serial port to use
+     * @param queueCapacity    Capacity of each RX and TX queue
+     * @param rxOverflowPolicy What to do when a reception queue is full
+     * @param txOverflowPolicy What to do when a transmission queue is full
+     * @throws EnOceanException If the serial port can not be found
+     */
+    public LinkLayer(String serialPortId, int queueCapacity, OverflowPolicy rxOverflowPolicy, OverflowPolicy txOverflowPolicy) throws EnOceanException {
+        this(new SerialTransport(serialPortId), queueCapacity, rxOverflowPolicy, txOverflowPolicy);
+    }
 
-        // build transmission and reception queues
-        // TODO: check if it is better to adopt circular buffers in order to avoid possible memory leaks.
-        highPriorityRxQueue = new ConcurrentLinkedQueue<>();
-        highPriorityTxQueue = new ConcurrentLinkedQueue<>();
-        lowPriorityRxQueue = new ConcurrentLinkedQueue<>();
-        lowPriorityTxQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * Builds a new instance of the EnJ link layer communicating with a
+     * transceiver through the given transport, e.g. a {@link SerialTransport},
+     * a {@link uk.co._4ng.enocean.link.transport.TcpTransport} or a simulated
+     * transceiver. The queues hold {@link #DEFAULT_QUEUE_CAPACITY} packets,
+     * received packets are dropped oldest first and senders wait when a
+     * transmission queue is full.
+     *
+     * @param transport Transport to the transceiver, opened by
+     *                  {@link #connect()}
+     */
+    public LinkLayer(Transport transport) {
+        this(transport, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST, OverflowPolicy.BLOCK);
+    }
 
-        // build the response semaphore
-        Semaphore expectedResponse = new Semaphore(1);
+    /**
+     * Builds a new instance of the EnJ link layer communicating with a
+     * transceiver through the given transport, using bounded queues of the
+     * given capacity.
+     *
+     * @param transport        Transport to the transceiver, opened by
+     *                         {@link #connect()}
+     * @param queueCapacity    Capacity of each RX and TX queue
+     * @param rxOverflowPolicy What to do when a reception queue is full
+     * @param txOverflowPolicy What to do when a transmission queue is full
+     */
+    public LinkLayer(Transport transport, int queueCapacity, OverflowPolicy rxOverflowPolicy, OverflowPolicy txOverflowPolicy) {
+
+        // build the bounded transmission and reception queues
+        highPriorityRxQueue = new RingQueue<>(queueCapacity, rxOverflowPolicy);
+        highPriorityTxQueue = new RingQueue<>(queueCapacity, txOverflowPolicy);
+        lowPriorityRxQueue = new RingQueue<>(queueCapacity, rxOverflowPolicy);
+        lowPriorityTxQueue = new RingQueue<>(queueCapacity, txOverflowPolicy);
+
+        // dropped received packets go back to their pool, if any
+        RingQueue.DropListener<PacketQueueItem> rxDropListener = new RingQueue.DropListener<PacketQueueItem>() {
+            @Override
+            public void dropped(PacketQueueItem item) {
+                logger.debug("Reception queue full, dropped packet");
+                item.getPkt().release();
+            }
+        };
+        lowPriorityRxQueue.setDropListener(rxDropListener);
+
+        // packets needing a response dropped from the priority queue are
+        // left to the regular listeners
+        highPriorityRxQueue.setDropListener(new RingQueue.DropListener<PacketQueueItem>() {
+            @Override
+            public void dropped(PacketQueueItem item) {
+                logger.warn("Priority reception queue full, dropped packet needing a response");
+                item.getPkt().setPriorityQueued(false);
+                item.getPkt().release();
+            }
+        });
 
-        // get the serial port
-        serialPort = SerialPortFactory.getPort(serialPortId);
+        // dropped packets to send are only logged
+        RingQueue.DropListener<PacketQueueItem> txDropListener = new RingQueue.DropListener<PacketQueueItem>() {
+            @Override
+            public void dropped(PacketQueueItem item) {
+                logger.warn("Transmission queue full, dropped packet {}", item.getPkt());
+            }
+        };
+        highPriorityTxQueue.setDropListener(txDropListener);
+        lowPriorityTxQueue.setDropListener(txDropListener);
+
+        // store the transport
+        this.transport = transport;
 
         // build the packet transmitter
-        transmitter = new PacketTransmitter(highPriorityTxQueue, lowPriorityTxQueue, serialPort, expectedResponse);
+        transmitter = new PacketTransmitter(highPriorityTxQueue, lowPriorityTxQueue, transport);
 
         // build (and start) the packet receiver
-        receiver = new PacketReceiver(highPriorityRxQueue, lowPriorityRxQueue, serialPort, expectedResponse);
-
-        // build the packet delivery process
-        pktDeliveryProcess = new PacketDelivery(lowPriorityRxQueue);
+        receiver = new PacketReceiver(highPriorityRxQueue, lowPriorityRxQueue, transmitter);
+
+        // build the packet delivery process, woken up by the receiver
+        WaitStrategy waitStrategy = new BlockingWaitStrategy();
+        receiver.setWaitStrategy(waitStrategy);
+        pktDeliveryProcess = new PacketDelivery(lowPriorityRxQueue, waitStrategy);
+
+        // build the delivery process of the packets needing a response, woken
+        // up by the receiver for every such packet
+        WaitStrategy priorityWaitStrategy = new BlockingWaitStrategy();
+        receiver.setPriorityWaitStrategy(priorityWaitStrategy);
+        priorityDeliveryProcess = new PriorityDelivery(highPriorityRxQueue, priorityWaitStrategy);
     }
 
     /**
@@ -93,14 +215,20 @@ public class LinkLayer {
      * transceiver, and then to the EnOcean network.
      */
     public void connect() {
-        if (transmitter != null && receiver != null && serialPort != null) {
-            // Open the serial port if it exists
-            serialPort.openPort();
+        if (transmitter != null && receiver != null && transport != null) {
+            // Open the transport
+            try {
+                transport.open();
+            }
+            catch (IOException e) {
+                logger.error("Cannot open the transport {}", transport.getName(), e);
+                return;
+            }
 
             // --------------- TX ------------------
 
             // create the TX thread
-            Thread transmitterThread = new Thread(transmitter);
+            transmitterThread = new Thread(transmitter);
 
             // enable the TX thread
             transmitter.setRunnable(true);
@@ -108,17 +236,36 @@ public class LinkLayer {
             // start the Thread
             transmitterThread.start();
 
-            // add the receiver as a listener
-            serialPort.addDataListener(receiver);
+            // read the received bytes on a dedicated thread, or on the
+            // thread of the transport
+            if (receiveMode == ReceiveMode.READER_THREAD) {
+                PacketReader packetReader = new PacketReader(transport, receiver);
+                readerThread = new Thread(packetReader, "EnOcean reader " + transport.getName());
+                readerThread.setDaemon(true);
+                packetReader.setRunnable(true);
+                reader = packetReader;
+                readerThread.start();
+            }
+            else {
+                // add the receiver as a listener
+                transport.setDataListener(receiver);
+            }
 
             // create the packet delivery process thread
-            Thread packetDeliveryThread = new Thread(pktDeliveryProcess);
+            packetDeliveryThread = new Thread(pktDeliveryProcess);
 
             // enable the packet delivery process
             pktDeliveryProcess.setRunnable(true);
 
             // start packet delivery
             packetDeliveryThread.start();
+
+            // start the delivery of the packets needing a response, ahead of
+            // the other threads
+            priorityDeliveryThread = new Thread(priorityDeliveryProcess);
+            priorityDeliveryThread.setPriority(Thread.MAX_PRIORITY);
+            priorityDeliveryProcess.setRunnable(true);
+            priorityDeliveryThread.start();
         }
     }
 
@@ -128,16 +275,42 @@ public class LinkLayer {
      */
     public void disconnect() {
         if (transmitter != null && receiver != null) {
-            // remove the event listener
-            serialPort.removeDataListener();
+            // remove the event listener, or stop the reader thread, waiting
+            // for its current read to time out so that it does not read from
+            // the transport once closed, or from the next connection
+            transport.setDataListener(null);
+            PacketReader packetReader = reader;
+            if (packetReader != null) {
+                packetReader.setRunnable(false);
+                reader = null;
+                join(readerThread);
+                readerThread = null;
+            }
 
-            // stop the transmission thread
+            // stop the transmission thread, failing the commands still
+            // waiting
             transmitter.setRunnable(false);
+            join(transmitterThread);
+            transmitterThread = null;
+
+            // stop the delivery threads, so that the next connection does
+            // not start a second pair
+            pktDeliveryProcess.setRunnable(false);
+            priorityDeliveryProcess.setRunnable(false);
+            join(packetDeliveryThread);
+            join(priorityDeliveryThread);
+            packetDeliveryThread = null;
+            priorityDeliveryThread = null;
         }
 
-        // Close the serial port if it exists and is open
-        if (serialPort != null && serialPort.isOpen()) {
-            serialPort.closePort();
+        // Close the transport if it is open
+        if (transport != null && transport.isOpen()) {
+            try {
+                transport.close();
+            }
+            catch (IOException e) {
+                logger.warn("Cannot close the transport {}", transport.getName(), e);
+            }
         }
     }
 
@@ -165,13 +338,46 @@ public class LinkLayer {
         }
     }
 
+    /**
+     * Adds a listener answering the packets that need a response within a
+     * short time window (Smart Ack events, UTE teach-in requests). It is
+     * called on a dedicated thread, as soon as such a packet is received, and
+     * should send its response first. The packets are also delivered to the
+     * regular packet listeners.
+     *
+     * @param listener The listener to add.
+     */
+    public void addPriorityPacketListener(PacketListener listener) {
+        priorityDeliveryProcess.addPacketListener(listener);
+    }
+
+    /**
+     * Removes a listener answering the packets that need a response
+     *
+     * @param listener The listener to remove
+     */
+    public void removePriorityPacketListener(PacketListener listener) {
+        priorityDeliveryProcess.removePacketListener(listener);
+    }
+
+    /**
+     * Returns the delivery process of the packets needing a response, giving
+     * access to its deadline and to the deadline miss statistics
+     *
+     * @return Priority delivery process
+     */
+    public PriorityDelivery getPriorityDelivery() {
+        return priorityDeliveryProcess;
+    }
+
     /**
      * Sends a single {@link ESP3Packet} to the transceiver
      *
      * @param pkt The packet to send.
+     * @return True if the packet was queued, false if it was dropped
      */
-    public void send(ESP3Packet pkt) {
-        send(pkt, false);
+    public boolean send(ESP3Packet pkt) {
+        return send(pkt, false);
     }
 
     /**
@@ -181,14 +387,150 @@ public class LinkLayer {
      * @param pkt            the packet to send
      * @param isHighPriority true if the packet should be sent with high priority (typical
      *                       for responses), false otherwise.
+     * @return True if the packet was queued, false if it was dropped
      */
-    public void send(ESP3Packet pkt, boolean isHighPriority) {
+    public boolean send(ESP3Packet pkt, boolean isHighPriority) {
+        boolean queued;
         if (!isHighPriority) {
-            lowPriorityTxQueue.add(new PacketQueueItem(pkt));
+            queued = lowPriorityTxQueue.offer(newItem(pkt));
+        }
+        else {
+            queued = highPriorityTxQueue.offer(newItem(pkt));
+        }
+
+        // wake the transmitter up
+        if (queued) {
+            transmitter.signal();
+        }
+        return queued;
+    }
+
+    /**
+     * Sends a command to the transceiver and returns a future completed with
+     * the transceiver's response. The command is sent with low priority and
+     * re-transmitted by the transmitter while its response is missing; the
+     * future fails with an {@link EnOceanException} when the transmitter gives
+     * up, or once the link layer is disconnected. Cancelling the future before
+     * the command is sent skips it.
+     *
+     * @param pkt The command to send
+     * @return Future completed with the correlated response
+     */
+    public CompletableFuture<Response> sendAsync(ESP3Packet pkt) {
+        return sendAsync(pkt, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a command to the transceiver and returns a future completed with
+     * the transceiver's response, see {@link #sendAsync(ESP3Packet)}. The
+     * future also fails with a {@link TimeoutException} if no response is
+     * received within the given time, in which case the command is neither
+     * sent nor re-transmitted anymore.
+     *
+     * @param pkt     The command to send
+     * @param timeout Maximum time to wait for the response, 0 for no limit
+     * @param unit    Unit of the timeout
+     * @return Future completed with the correlated response
+     */
+    public CompletableFuture<Response> sendAsync(final ESP3Packet pkt, long timeout, TimeUnit unit) {
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+
+        // bound the number of commands waiting for their response
+        if (pendingCommands.incrementAndGet() > maxPendingCommands) {
+            pendingCommands.decrementAndGet();
+            future.completeExceptionally(new EnOceanException("Too many pending commands (%d)", maxPendingCommands));
+            return future;
+        }
+
+        // arm the timeout
+        final ScheduledFuture<?> timeoutTask;
+        if (timeout > 0) {
+            timeoutTask = timeoutScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    future.completeExceptionally(new TimeoutException("No response received for " + pkt));
+                }
+            }, timeout, unit);
         }
         else {
-            highPriorityTxQueue.add(new PacketQueueItem(pkt));
+            timeoutTask = null;
         }
+        future.whenComplete(new BiConsumer<Response, Throwable>() {
+            @Override
+            public void accept(Response response, Throwable error) {
+                pendingCommands.decrementAndGet();
+                if (timeoutTask != null) {
+                    timeoutTask.cancel(false);
+                }
+            }
+        });
+
+        // queue the command, failing it if the transmitter has stopped
+        // meanwhile
+        PacketQueueItem item = newItem(pkt);
+        item.setResponseFuture(future);
+        if (lowPriorityTxQueue.offer(item)) {
+            transmitter.signal();
+            transmitter.failPending();
+        }
+        else {
+            future.completeExceptionally(new EnOceanException("Transmission queue full"));
+        }
+        return future;
+    }
+
+    /**
+     * Returns the number of asynchronous commands not yet answered
+     *
+     * @return Pending command count
+     */
+    public int getPendingCommands() {
+        return pendingCommands.get();
+    }
+
+    /**
+     * Returns the maximum number of asynchronous commands not yet answered
+     *
+     * @return Maximum pending command count
+     */
+    public int getMaxPendingCommands() {
+        return maxPendingCommands;
+    }
+
+    /**
+     * Sets the maximum number of asynchronous commands not yet answered, i.e.
+     * the one in flight plus the ones queued behind it. Further commands fail
+     * straight away.
+     *
+     * @param maxPendingCommands Maximum pending command count
+     */
+    public void setMaxPendingCommands(int maxPendingCommands) {
+        this.maxPendingCommands = maxPendingCommands;
+    }
+
+    /**
+     * Returns the number of times a low priority packet is transmitted before
+     * the transmitter gives up on its response
+     *
+     * @return Maximum transmission count
+     */
+    public int getMaxTransmissions() {
+        return maxTransmissions;
+    }
+
+    /**
+     * Sets the number of times a low priority packet is transmitted before
+     * the transmitter gives up on its response, applied to the packets sent
+     * afterwards. The time waited for every response is set by the
+     * transmitter, see {@link PacketTransmitter#getRttEstimator()}.
+     *
+     * @param maxTransmissions Maximum transmission count, at least 1
+     */
+    public void setMaxTransmissions(int maxTransmissions) {
+        if (maxTransmissions < 1) {
+            throw new IllegalArgumentException("Invalid transmission count: " + maxTransmissions);
+        }
+        this.maxTransmissions = maxTransmissions;
     }
 
     /**
@@ -206,25 +548,248 @@ public class LinkLayer {
         logger.debug("Packets in queue: {}", size);
 
         // check that the queue is not empty
-        if (!lowPriorityRxQueue.isEmpty()) {
-            pkt = lowPriorityRxQueue.poll().getPkt();
+        PacketQueueItem item = lowPriorityRxQueue.poll();
+        if (item != null) {
+            pkt = item.getPkt();
         }
         return pkt;
     }
 
+    /**
+     * Enables pooling of the received packets, see {@link PacketPool}. Should
+     * be called before {@link #connect()}. Packets obtained through
+     * {@link #receive()} while pooling is enabled must be released by the
+     * caller.
+     *
+     * @param packetPool Pool to take received packets from, null to disable
+     *                   pooling
+     */
+    public void setPacketPool(PacketPool packetPool) {
+        receiver.setPacketPool(packetPool);
+    }
+
+    /**
+     * Returns the pool received packets are taken from
+     *
+     * @return Packet pool or null if pooling is disabled
+     */
+    public PacketPool getPacketPool() {
+        return receiver.getPacketPool();
+    }
+
+    /**
+     * Drops the copies of the radio telegrams received within a short window
+     * (subtelegrams, repeated telegrams) before they are queued, see
+     * {@link DuplicateFilter}. Should be called before {@link #connect()}.
+     *
+     * @param duplicateFilter Filter, null to deliver every copy
+     */
+    public void setDuplicateFilter(DuplicateFilter duplicateFilter) {
+        receiver.setDuplicateFilter(duplicateFilter);
+    }
+
+    /**
+     * Returns the filter dropping the copies of the radio telegrams
+     *
+     * @return Duplicate filter or null if every copy is delivered
+     */
+    public DuplicateFilter getDuplicateFilter() {
+        return receiver.getDuplicateFilter();
+    }
+
+    /**
+     * Drops the unwanted radio frames as soon as they are framed, before any
+     * packet, telegram or device lookup is made for them, e.g. with a
+     * {@link RxFilterChain} of a {@link RorgFilter}, a {@link DbmFilter} and
+     * a {@link uk.co._4ng.enocean.communication.KnownAddressFilter}. The
+     * responses and events of the transceiver are always kept.
+     *
+     * @param rxFilter Filter, null to parse every frame
+     */
+    public void setRxFilter(RxFilter rxFilter) {
+        receiver.setRxFilter(rxFilter);
+    }
+
+    /**
+     * Returns the filter dropping the unwanted radio frames
+     *
+     * @return Filter or null if every frame is parsed
+     */
+    public RxFilter getRxFilter() {
+        return receiver.getRxFilter();
+    }
+
+    /**
+     * Returns the number of radio frames dropped by the filter
+     *
+     * @return Frame count
+     */
+    public long getRejectedFrames() {
+        return receiver.getRejectedFrames();
+    }
+
+    /**
+     * Sets how the received bytes are read: on the thread of the transport
+     * signalling them (the default), or on a dedicated reader thread with
+     * semi-blocking reads, keeping the work off the event thread of the serial
+     * library. Should be called before {@link #connect()}.
+     *
+     * @param receiveMode Receive mode
+     */
+    public void setReceiveMode(ReceiveMode receiveMode) {
+        if (receiveMode == null) {
+            throw new IllegalArgumentException("The receive mode cannot be null");
+        }
+        this.receiveMode = receiveMode;
+    }
+
+    /**
+     * Returns how the received bytes are read
+     *
+     * @return Receive mode
+     */
+    public ReceiveMode getReceiveMode() {
+        return receiveMode;
+    }
+
+    /**
+     * Returns the reader thread of the {@link ReceiveMode#READER_THREAD} mode
+     *
+     * @return Packet reader or null if not connected in this mode
+     */
+    public PacketReader getPacketReader() {
+        return reader;
+    }
+
+    /**
+     * Sets how the packet delivery process waits for received packets, see
+     * {@link BlockingWaitStrategy} (the default), {@link SpinThenParkWaitStrategy}
+     * and {@link BusySpinWaitStrategy}. Should be called before
+     * {@link #connect()}.
+     *
+     * @param waitStrategy Wait strategy
+     */
+    public void setDeliveryWaitStrategy(WaitStrategy waitStrategy) {
+        receiver.setWaitStrategy(waitStrategy);
+        pktDeliveryProcess.setWaitStrategy(waitStrategy);
+    }
+
+    /**
+     * Returns how the packet delivery process waits for received packets
+     *
+     * @return Wait strategy
+     */
+    public WaitStrategy getDeliveryWaitStrategy() {
+        return pktDeliveryProcess.getWaitStrategy();
+    }
+
+    /**
+     * Returns the transport to the transceiver
+     *
+     * @return Transport
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Returns the transmitter, giving access to its timing settings and its
+     * statistics
+     *
+     * @return Packet transmitter
+     */
+    public PacketTransmitter getTransmitter() {
+        return transmitter;
+    }
+
+    /**
+     * Returns one of the reception queues, giving access to its overflow
+     * statistics
+     *
+     * @param isHighPriority True for the high priority queue
+     * @return Reception queue
+     */
+    public RingQueue<PacketQueueItem> getRxQueue(boolean isHighPriority) {
+        return isHighPriority ? highPriorityRxQueue : lowPriorityRxQueue;
+    }
+
+    /**
+     * Returns one of the transmission queues, giving access to its overflow
+     * statistics
+     *
+     * @param isHighPriority True for the high priority queue
+     * @return Transmission queue
+     */
+    public RingQueue<PacketQueueItem> getTxQueue(boolean isHighPriority) {
+        return isHighPriority ? highPriorityTxQueue : lowPriorityTxQueue;
+    }
+
+    /**
+     * Returns the framer used by the receiver, giving access to the framing
+     * statistics (CRC errors, resynchronisations, discarded bytes)
+     *
+     * @return Receiver framer
+     */
+    public ESP3Framer getFramer() {
+        return receiver.getFramer();
+    }
+
     /**
      * Convenience method for getting a list of all the local comms ports
      *
      * @return List of comms ports
      */
     public static List<String> getCommsPorts() {
-        List<String> returnValue = new ArrayList<>();
-        SerialPort[] ports = SerialPort.getCommPorts();
-        if (ports != null && ports.length > 0) {
-            for (SerialPort port : ports) {
-                returnValue.add(port.getSystemPortName());
+        return SerialTransport.getPortNames();
+    }
+
+    /**
+     * Creates the daemon timer used for the asynchronous command timeouts
+     *
+     * @return Scheduler
+     */
+    private static ScheduledThreadPoolExecutor createTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "EnOcean command timeouts");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Wraps a packet to send into a queue item
+     *
+     * @param pkt Packet to send
+     * @return Queue item
+     */
+    private PacketQueueItem newItem(ESP3Packet pkt) {
+        PacketQueueItem item = new PacketQueueItem(pkt);
+        item.setRetransmissionCounter(maxTransmissions);
+        return item;
+    }
+
+    /**
+     * Waits for a thread stopped by {@link #disconnect()} to finish, unless
+     * it is the calling thread, e.g. a listener disconnecting the link
+     *
+     * @param thread Thread, may be null
+     */
+    private static void join(Thread thread) {
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(STOP_TIMEOUT);
+                if (thread.isAlive()) {
+                    logger.warn("Thread {} did not stop within {} ms", thread.getName(), STOP_TIMEOUT);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
-        return returnValue;
     }
-}
\ No newline at end of file
+}
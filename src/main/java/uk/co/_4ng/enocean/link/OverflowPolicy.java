@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+/**
+ * What a bounded {@link RingQueue} does with a new element when it is full
+ */
+public enum OverflowPolicy {
+    /**
+     * The oldest queued element is dropped to make room for the new one
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new element is dropped
+     */
+    DROP_NEWEST,
+
+    /**
+     * The producer waits until a consumer makes room
+     */
+    BLOCK
+}
@@ -19,8 +19,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
 
-import java.util.HashSet;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides a utility for sampling a given queue containing
@@ -28,6 +30,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * deliver such packets to registered {@link PacketListener}s. It allows to
  * decouple reception timing from event handling times, thus acting as "buffer"
  * layer between low level events and high level packet handling.
+ * <p>
+ * The delivery thread waits for packets using a {@link WaitStrategy}, which
+ * the producer signals, and then drains every available packet in one batch.
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  * @author <a href="mailto:biasiandrea04@gmail.com">Andrea Biasi </a>
@@ -35,32 +40,46 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class PacketDelivery implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(PacketDelivery.class);
 
-    // the time between two consecutive packet delivery cycles
+    // the former polling period, now the pause between two checks for
+    // listeners while none is registered
     private static final int DEFAULT_PACKET_DELIVERY_TIME = 10;
 
+    // the longest wait before the runnable flag and the listeners are checked again
+    private static final long MAX_WAIT_TIME = 100;
+
     // a reference to the queue from which extracting Packets to deliver
-    private final ConcurrentLinkedQueue<PacketQueueItem> theQueue;
+    private final Queue<PacketQueueItem> theQueue;
 
     // the set of listeners registered with the link layer
-    private final HashSet<PacketListener> listeners;
+    private final Set<PacketListener> listeners;
 
     // the instance-level delivery time
     private int deliveryTime;
 
+    // the strategy used to wait for packets
+    private volatile WaitStrategy waitStrategy;
+
     // the runnable flag
-    private boolean runnable;
+    private volatile boolean runnable;
 
     /**
-     * Builds a {@link PacketDelivery} instance, initialized with the default
-     * delivery time (i.e.,
-     * <code>Packetdelivery.DEFAULT_PACKET_DELIVERY_TIME</code>).
+     * Builds a {@link PacketDelivery} instance waiting for packets with the
+     * given strategy
+     *
+     * @param queue        The queue to deliver packets from
+     * @param waitStrategy The strategy used to wait for packets, signalled by
+     *                     the producer
      */
-    PacketDelivery(ConcurrentLinkedQueue<PacketQueueItem> queue) {
+    PacketDelivery(Queue<PacketQueueItem> queue, WaitStrategy waitStrategy) {
         // store a reference to the queue from which events must be delivered
         theQueue = queue;
 
-        // initialize the set of listeners to deliver to
-        listeners = new HashSet<>();
+        // store the wait strategy
+        this.waitStrategy = waitStrategy;
+
+        // initialize the set of listeners to deliver to, it is iterated for
+        // every packet and rarely changed
+        listeners = new CopyOnWriteArraySet<>();
 
         // default delivery time
         deliveryTime = DEFAULT_PACKET_DELIVERY_TIME;
@@ -119,7 +138,10 @@ public class PacketDelivery implements Runnable {
      * be changed while running.
      *
      * @return the deliveryTime in milliseconds.
+     * @deprecated Delivery is event driven and no longer polls, the delivery
+     * time is ignored
      */
+    @Deprecated
     public int getDeliveryTime() {
         return deliveryTime;
     }
@@ -129,45 +151,75 @@ public class PacketDelivery implements Runnable {
      * while running.
      *
      * @param deliveryTime the deliveryTime to set in milliseconds
+     * @deprecated Delivery is event driven and no longer polls, the delivery
+     * time is ignored
      */
+    @Deprecated
     public void setDeliveryTime(int deliveryTime) {
         this.deliveryTime = deliveryTime;
     }
 
+    /**
+     * Returns the strategy used to wait for packets
+     *
+     * @return Wait strategy
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Sets the strategy used to wait for packets, the producer must signal
+     * the same strategy
+     *
+     * @param waitStrategy Wait strategy
+     */
+    void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
     @Override
     public void run() {
         // main delivery loop, packets are consumed only if at least one
-        // listener is
-        // registered, possible leaks here, check if it is better to:
-        // 1) use a circular buffer as queue
-        // 2) always poll data from the queue
-        while (runnable) {
-            // check that there are listeners registered for the packet delivery
-            if (listeners != null && !listeners.isEmpty() && theQueue.size() > 0) {
-                // poll the current queue item
-                ESP3Packet pkt = theQueue.poll().getPkt();
-
-                // deliver the current packet to the set of registered
-                // listeners
-                // this migh be improved using a thread pool of executors if
-                // timing becomes critical
-                for (PacketListener listener : listeners) {
-                    // deliver the packet
-                    listener.handlePacket(pkt);
+        // listener is registered, the queue is bounded and applies its
+        // overflow policy in the meantime
+        try {
+            while (runnable) {
+                // check that there are listeners registered for the packet delivery
+                if (listeners.isEmpty()) {
+                    Thread.sleep(DEFAULT_PACKET_DELIVERY_TIME);
+                    continue;
                 }
-            }
 
-            // sleep for the current delivery time
-            try {
-                Thread.sleep(deliveryTime);
-            }
-            catch (InterruptedException e) {
-                logger.error("Problem", e);
-
-                // stop the thread
-                runnable = false;
+                // wait for packets, then drain all of them in one batch
+                if (waitStrategy.waitFor(theQueue, MAX_WAIT_TIME, TimeUnit.MILLISECONDS)) {
+                    PacketQueueItem item;
+                    while (runnable && (item = theQueue.poll()) != null) {
+                        ESP3Packet pkt = item.getPkt();
+
+                        // deliver the current packet to the set of registered
+                        // listeners
+                        for (PacketListener listener : listeners) {
+                            try {
+                                listener.handlePacket(pkt);
+                            }
+                            catch (RuntimeException e) {
+                                logger.warn("Packet listener {} failed", listener, e);
+                            }
+                        }
+
+                        // give a pooled packet back, listeners keeping it have
+                        // retained it
+                        pkt.release();
+                    }
+                }
             }
         }
+        catch (InterruptedException e) {
+            logger.error("Problem", e);
 
+            // stop the thread
+            runnable = false;
+        }
     }
 }
@@ -25,7 +25,10 @@ import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
  */
 public interface PacketListener {
     /**
-     * Delivers a {@link ESP3Packet}.
+     * Delivers a {@link ESP3Packet}. The packet may come from a
+     * {@link PacketPool}, in which case it is reused once the call returns:
+     * listeners keeping it must either {@link ESP3Packet#retain()} it, and
+     * release it when done, or keep a {@link ESP3Packet#copy()}.
      *
      * @param pkt
      */
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounded pool of received packets, each wrapped in the
+ * {@link PacketQueueItem} used to queue it. Packets are reference counted (see
+ * {@link ESP3Packet#retain()} and {@link ESP3Packet#release()}) and come back
+ * to the pool when the last holder releases them, so once the pool has warmed
+ * up the receive path allocates nothing.
+ * <p>
+ * ESP3 packets expose their data as exact length arrays, so free packets are
+ * kept per data/optional data length pair. Radio traffic only uses a handful
+ * of such pairs; when the pool is exhausted, or a pair is seen after all the
+ * size classes are taken, an ordinary packet is handed out instead.
+ */
+public class PacketPool {
+
+    // the default maximum number of pooled packets
+    public static final int DEFAULT_CAPACITY = 256;
+
+    // the maximum number of distinct data/optional data length pairs
+    private static final int MAX_SIZE_CLASSES = 16;
+
+    // the maximum number of pooled packets
+    private final int capacity;
+
+    // the length pairs (data length << 8 | optional length) and their free
+    // lists, at the same index
+    private final int[] sizeClasses;
+    private final List<ArrayDeque<PooledItem>> freeLists;
+
+    // statistics
+    private int created;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a pool holding at most {@link #DEFAULT_CAPACITY} packets
+     */
+    public PacketPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pool holding at most the given number of packets
+     *
+     * @param capacity Maximum number of pooled packets
+     */
+    public PacketPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Pool capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        sizeClasses = new int[MAX_SIZE_CLASSES];
+        freeLists = new ArrayList<>(MAX_SIZE_CLASSES);
+    }
+
+    /**
+     * Returns a queue item wrapping a packet whose data arrays have the given
+     * lengths. Pooled packets are handed out holding one reference, owned by
+     * the caller.
+     *
+     * @param dataLen Length of the data
+     * @param optLen  Length of the optional data
+     * @return Queue item wrapping the packet
+     */
+    public synchronized PacketQueueItem acquire(int dataLen, int optLen) {
+        ArrayDeque<PooledItem> freeList = getFreeList(dataLen << 8 | optLen);
+        if (freeList != null) {
+            PooledItem item = freeList.poll();
+            if (item == null && created < capacity) {
+                item = new PooledItem(this, dataLen, optLen);
+                created++;
+            }
+            if (item != null) {
+                hits++;
+                item.getPkt().retain();
+                return item;
+            }
+        }
+        misses++;
+        return new PacketQueueItem(new ESP3Packet());
+    }
+
+    /**
+     * Returns the maximum number of pooled packets
+     *
+     * @return Capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of pooled packets created so far
+     *
+     * @return Created packet count
+     */
+    public synchronized int getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the number of pooled packets currently waiting to be reused
+     *
+     * @return Free packet count
+     */
+    public synchronized int getAvailable() {
+        int available = 0;
+        for (ArrayDeque<PooledItem> freeList : freeLists) {
+            available += freeList.size();
+        }
+        return available;
+    }
+
+    /**
+     * Returns the number of requests served with a pooled packet
+     *
+     * @return Hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests served with an ordinary packet because
+     * no pooled one was available
+     *
+     * @return Miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Puts a released item back on its free list
+     *
+     * @param item Item to reuse
+     */
+    private synchronized void recycle(PooledItem item) {
+        item.setRetransmissionCounter(PacketQueueItem.MAX_RETRANSMISSION);
+        getFreeList(item.sizeClass).add(item);
+    }
+
+    /**
+     * Returns the free list of the given size class, creating it if there is
+     * room for one more
+     *
+     * @param sizeClass Data length << 8 | optional data length
+     * @return Free list or null if all the size classes are taken
+     */
+    private ArrayDeque<PooledItem> getFreeList(int sizeClass) {
+        int sizeClassCount = freeLists.size();
+        for (int i = 0; i < sizeClassCount; i++) {
+            if (sizeClasses[i] == sizeClass) {
+                return freeLists.get(i);
+            }
+        }
+        if (sizeClassCount == MAX_SIZE_CLASSES) {
+            return null;
+        }
+        ArrayDeque<PooledItem> freeList = new ArrayDeque<>(capacity);
+        sizeClasses[sizeClassCount] = sizeClass;
+        freeLists.add(freeList);
+        return freeList;
+    }
+
+    /**
+     * A queue item permanently bound to a pooled packet, it is the packet's
+     * recycler so that releasing the packet returns the whole item
+     */
+    private static class PooledItem extends PacketQueueItem implements ESP3Packet.Recycler {
+
+        // the owning pool
+        private final PacketPool pool;
+
+        // the size class of the packet
+        private final int sizeClass;
+
+        PooledItem(PacketPool pool, int dataLen, int optLen) {
+            super(null);
+            this.pool = pool;
+            sizeClass = dataLen << 8 | optLen;
+            setPkt(new ESP3Packet(dataLen, optLen, this));
+        }
+
+        @Override
+        public void recycle(ESP3Packet pkt) {
+            pool.recycle(this);
+        }
+    }
+}
@@ -16,6 +16,9 @@
 package uk.co._4ng.enocean.link;
 
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.response.Response;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A class modeling a queue item containing an EnOcean {@link ESP3Packet}, and a
@@ -37,6 +40,12 @@ public class PacketQueueItem {
     // Count the number of attempts to send packet
     private int counter;
 
+    // the number of times the packet has been transmitted
+    private int attempts;
+
+    // the future completed with the response, for packets sent asynchronously
+    private CompletableFuture<Response> responseFuture;
+
     /**
      * Create a new Queue item containing an ESP packet, and the default
      * re-transmission counter.
@@ -77,18 +86,60 @@ public class PacketQueueItem {
     }
 
     /**
-     * Set the re-transmission counter associated to this queue item.
+     * Set the re-transmission counter associated to this queue item, the
+     * packet is then considered as never transmitted.
      *
      * @param counter The initial value of the counter.
      */
     public void setRetransmissionCounter(int counter) {
         this.counter = counter;
+        attempts = 0;
     }
 
     /**
-     * Decreases by one the retransmission counter.
+     * Decreases by one the retransmission counter, counting one more
+     * transmission attempt.
      */
     public void decreaseRetransmissionCounter() {
         counter--;
+        attempts++;
+    }
+
+    /**
+     * Get the number of times the packet has been transmitted
+     *
+     * @return The number of transmission attempts.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Get the future completed with the response to this packet
+     *
+     * @return The response future, null if the packet was not sent
+     * asynchronously.
+     */
+    public CompletableFuture<Response> getResponseFuture() {
+        return responseFuture;
+    }
+
+    /**
+     * Set the future completed with the response to this packet
+     *
+     * @param responseFuture The response future.
+     */
+    public void setResponseFuture(CompletableFuture<Response> responseFuture) {
+        this.responseFuture = responseFuture;
+    }
+
+    /**
+     * Returns true if nobody is waiting for this packet anymore, i.e. its
+     * response future has been cancelled or has timed out
+     *
+     * @return True if the packet need not be sent
+     */
+    public boolean isAbandoned() {
+        return responseFuture != null && responseFuture.isDone();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co._4ng.enocean.link.transport.Transport;
+
+import java.io.IOException;
+
+/**
+ * The dedicated reader thread of the {@link ReceiveMode#READER_THREAD} mode.
+ * It waits for the received bytes with semi-blocking bulk reads straight into
+ * the framer of the {@link PacketReceiver}, which only copies the complete
+ * frames into packets and queues them; the packets are decoded by the
+ * delivery threads.
+ */
+public class PacketReader implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PacketReader.class);
+
+    // the default time a read waits for the first byte, in milliseconds
+    public static final int DEFAULT_READ_TIMEOUT = 100;
+
+    // the transport the bytes are read from
+    private final Transport transport;
+
+    // the receiver framing the bytes
+    private final PacketReceiver receiver;
+
+    // the time a read waits for the first byte, in milliseconds, bounding the
+    // time taken to notice the reader was stopped
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+
+    // the run enabling flag
+    private volatile boolean runnable;
+
+    /**
+     * Creates a reader of the given transport
+     *
+     * @param transport Transport to read from
+     * @param receiver  Receiver framing and queueing the packets
+     */
+    public PacketReader(Transport transport, PacketReceiver receiver) {
+        this.transport = transport;
+        this.receiver = receiver;
+    }
+
+    /**
+     * Reads until stopped or until the transport is closed
+     */
+    @Override
+    public void run() {
+        try {
+            while (runnable) {
+                if (!receiver.read(transport, readTimeout)) {
+                    if (runnable) {
+                        logger.warn("The transport {} was closed, stopped reading", transport.getName());
+                    }
+                    break;
+                }
+            }
+        }
+        catch (IOException e) {
+            if (runnable) {
+                logger.error("Unable to read the data received from {}", transport.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Sets the time a read waits for the first byte before checking the run
+     * flag again
+     *
+     * @param readTimeout Timeout, in milliseconds
+     */
+    public void setReadTimeout(int readTimeout) {
+        if (readTimeout <= 0) {
+            throw new IllegalArgumentException("Invalid read timeout: " + readTimeout);
+        }
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Returns the time a read waits for the first byte
+     *
+     * @return Timeout, in milliseconds
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sets the run flag, the reader stops within a read timeout once cleared
+     *
+     * @param runnable True to keep reading
+     */
+    public void setRunnable(boolean runnable) {
+        this.runnable = runnable;
+    }
+}
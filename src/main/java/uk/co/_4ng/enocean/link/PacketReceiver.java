@@ -15,72 +15,72 @@
  */
 package uk.co._4ng.enocean.link;
 
-import com.fazecast.jSerialComm.SerialPort;
-import com.fazecast.jSerialComm.SerialPortDataListener;
-import com.fazecast.jSerialComm.SerialPortEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co._4ng.enocean.link.transport.Transport;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
 import uk.co._4ng.enocean.util.EnOceanUtils;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Queue;
-import java.util.concurrent.Semaphore;
 
 /**
  * A class implementing the receiver tier of the Java EnOcean Serial Protocol
- * API, EnJ. It listens for new incoming packets on the attached serial port,
+ * API, EnJ. It listens for new incoming packets on the attached transport,
  * and routes packets depending on their nature, accounting for responses, when
  * needed.
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  * @author <a href="mailto:biasiandrea04@gmail.com">Andrea Biasi </a>
  */
-public class PacketReceiver implements SerialPortDataListener {
+public class PacketReceiver implements Transport.DataListener, ESP3Framer.FrameHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(PacketReceiver.class);
 
-    // The serial port from which packets are received (i.e., read)
-    private final SerialPort serialPort;
-
     // HighPriority message queue, will hold incoming messages who need
-    // response.
-    // within a maximum time frame of 500ms.
-    // TODO check the actual time frame on the ESP3 specs
+    // response within a short time frame, see ESP3Packet.requiresResponse()
     private final Queue<PacketQueueItem> highPriorityRxQueue;
 
     // LowPriority message queue, holds messages not needing any response.
     private final Queue<PacketQueueItem> lowPriorityRxQueue;
 
-    // Semaphore for "waiting" responses for those packets needing a response
-    // from the transceiver. Typically, a message is sent by the
-    // PacketTransmitter over the serial connection and no other operations
-    // could be performed until a response is received.
-    private final Semaphore expectedResponse;
+    // the transmitter waiting for the responses of the packets it sends to
+    // the transceiver
+    private final PacketTransmitter transmitter;
+
+    // the framer splitting the received bytes into ESP3 frames
+    private final ESP3Framer framer;
+
+    // the optional pool received packets are taken from
+    private volatile PacketPool packetPool;
 
-    // the data buffer
-    private final ArrayList<Byte> buffer;
+    // the optional filter dropping the copies of the radio telegrams
+    private volatile DuplicateFilter duplicateFilter;
 
-    // the current packet length
-    private int packetLength;
+    // the optional filter dropping unwanted radio frames before parsing, and
+    // the number of frames it rejected
+    private volatile RxFilter rxFilter;
+    private volatile long rejectedFrames;
+
+    // signalled once received packets have been queued
+    private volatile WaitStrategy waitStrategy;
+
+    // signalled as soon as a packet needing a response has been queued
+    private volatile WaitStrategy priorityWaitStrategy;
 
     /**
-     * Create a {@link PacketReceiver} instance, attached to the given serial
-     * port, and using the given message queues and response semaphore.
+     * Create a {@link PacketReceiver} instance, using the given message queues
+     * and transmitter. It must be set as the data listener of the transport
+     * the packets are received from.
      *
-     * @param serialPort          The serial port upon which receiving packets.
      * @param highPriorityRxQueue The High Priority queue to which deliver messages needing a
      *                            response.
      * @param lowPriorityRxQueue  The Low Priority queue to which deliver all the other
      *                            messages.
-     * @param expectedResponse    The semaphore signaling if a response is needed.
+     * @param transmitter         The transmitter to pass the responses to.
      */
-    public PacketReceiver(Queue<PacketQueueItem> highPriorityRxQueue, Queue<PacketQueueItem> lowPriorityRxQueue, SerialPort serialPort, Semaphore expectedResponse) {
-
-        // store the serial port
-        this.serialPort = serialPort;
+    public PacketReceiver(Queue<PacketQueueItem> highPriorityRxQueue, Queue<PacketQueueItem> lowPriorityRxQueue, PacketTransmitter transmitter) {
 
         // store the high-priority queue reference
         this.highPriorityRxQueue = highPriorityRxQueue;
@@ -88,153 +88,246 @@ public class PacketReceiver implements SerialPortDataListener {
         // store the low-priority queue reference
         this.lowPriorityRxQueue = lowPriorityRxQueue;
 
-        // store a reference to the expected response semaphore
-        this.expectedResponse = expectedResponse;
+        // store a reference to the transmitter
+        this.transmitter = transmitter;
 
-        // prepare the data buffer
-        buffer = new ArrayList<>();
-
-        // initialize the packet length at a non-valid value
-        packetLength = -1;
+        // prepare the framer
+        framer = new ESP3Framer();
     }
 
     @Override
-    public int getListeningEvents() {
-        return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
+    public void dataAvailable(Transport transport) {
+        // read in bulk straight into the framer until the transport is drained
+        try {
+            while (true) {
+                int read = transport.read(framer.getWriteArray(), framer.getWriteOffset(), framer.getContiguousWritable());
+                if (read <= 0) {
+                    if (read < 0) {
+                        logger.warn("Unable to read the data received from {}", transport.getName());
+                    }
+                    break;
+                }
+                frame(read);
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Unable to read the data received from {}", transport.getName(), e);
+        }
     }
 
-    @Override
-    public void serialEvent(SerialPortEvent event) {
-        try {
-            // Input Stream of the serial port
-            InputStream serialInputStream = serialPort.getInputStream();
+    /**
+     * Reads the received bytes straight into the framer, waiting up to the
+     * given time for the first one, and queues the complete frames. Used by
+     * the {@link PacketReader} thread instead of {@link #dataAvailable(Transport)}.
+     *
+     * @param transport Transport to read from
+     * @param timeout   Maximum time to wait for a byte, in milliseconds
+     * @return False if the transport is closed
+     * @throws IOException If the bytes cannot be read
+     */
+    public boolean read(Transport transport, int timeout) throws IOException {
+        int read = transport.read(framer.getWriteArray(), framer.getWriteOffset(), framer.getContiguousWritable(), timeout);
+        if (read > 0) {
+            frame(read);
+        }
+        return read >= 0;
+    }
 
-            // check if data is available
-            if (event.getEventType() == SerialPort.LISTENING_EVENT_DATA_AVAILABLE) {
+    /**
+     * Hands the complete frames over, once bytes were read into the framer,
+     * waking the consumer up once for the whole batch
+     */
+    private void frame(int read) {
+        framer.commit(read);
+        if (framer.process(this) > 0) {
+            signal();
+        }
+    }
 
-                // read the incoming packet if data is available
-                // byte placeholder for data reading
-                int readedIntValue;
+    /**
+     * Parses a complete frame into an ESP3 Packet and places it in the right
+     * queue
+     *
+     * @param buffer Array holding the frame
+     * @param offset Offset of the sync byte within the array
+     * @param length Total length of the frame
+     */
+    @Override
+    public void handleFrame(byte[] buffer, int offset, int length) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Received frame: {}", EnOceanUtils.toHexString(Arrays.copyOfRange(buffer, offset, offset + length)));
+        }
 
-                // Read until there is data on the serial port
-                while (serialInputStream.available() > 0) {
-                    // read the next byte of data from the input stream
-                    readedIntValue = serialInputStream.read();
+        // drop the unwanted radio frames before building anything for them
+        int dataLen = (buffer[offset + 1] & 0xff) << 8 | buffer[offset + 2] & 0xff;
+        int optLen = buffer[offset + 3] & 0xff;
+        RxFilter early = rxFilter;
+        if (early != null && (buffer[offset + 4] == ESP3Packet.RADIO || buffer[offset + 4] == ESP3Packet.RADIO_SUB_TEL) && dataLen >= 6 && !early.accept(buffer, offset, dataLen, optLen)) {
+            rejectedFrames++;
+            return;
+        }
 
-                    // convert read data into a real byte
-                    byte readedByteValue = (byte) (readedIntValue & 0xff);
+        // Prepare a Packet instance for holding the just received data,
+        // taking it from the pool if there is one
+        PacketPool pool = packetPool;
+        PacketQueueItem item;
+        if (pool != null) {
+            item = pool.acquire(dataLen, optLen);
+        }
+        else {
+            item = new PacketQueueItem(new ESP3Packet());
+        }
+        ESP3Packet pkt = item.getPkt();
+        pkt.parsePacket(buffer, offset);
+        long now = System.nanoTime();
+        pkt.setReceivedAt(now);
+
+        // drop the subtelegrams and repeated copies of a telegram
+        DuplicateFilter filter = duplicateFilter;
+        if (filter != null && filter.isDuplicate(pkt, now)) {
+            pkt.release();
+            return;
+        }
 
-                    // check for the packet sync byte
-                    if (readedByteValue == ESP3Packet.SYNC_BYTE) {
+        // place the packet in the right queue
+        putInQueue(item);
+    }
 
-                        // parsed packet
-                        logger.debug("Detected new packet");
+    /**
+     * Returns the framer used by this receiver
+     *
+     * @return Framer
+     */
+    public ESP3Framer getFramer() {
+        return framer;
+    }
 
-                        // clear the buffer
-                        buffer.clear();
-                    }
+    /**
+     * Returns the pool received packets are taken from
+     *
+     * @return Packet pool or null if packets are not pooled
+     */
+    public PacketPool getPacketPool() {
+        return packetPool;
+    }
 
-                    // Store the current byte in the packet buffer (always
-                    // starts with a sync byte)
-                    buffer.add(readedByteValue);
-
-                    // check the buffer size
-                    if (buffer.size() == 4) {
-                        // create a new byte array of the size of the read
-                        // buffer
-                        byte[] receivedBytes = new byte[buffer.size()];
-
-                        // fill the byte array
-                        for (int i = 0; i < buffer.size(); i++) {
-                            receivedBytes[i] = buffer.get(i);
-                        }
-                        // compute the packet length
-                        packetLength = ESP3Packet.getPacketLength(receivedBytes);
-                    }
+    /**
+     * Sets the pool received packets are taken from
+     *
+     * @param packetPool Packet pool or null to allocate every packet
+     */
+    public void setPacketPool(PacketPool packetPool) {
+        this.packetPool = packetPool;
+    }
 
-                    // check the end of the packet
-                    if (packetLength > 0 && buffer.size() == packetLength) {
-                        // parse the Packet and enqueue it in the right
-                        // place
-                        ESP3Packet pkt = parsePacket(buffer);
+    /**
+     * Returns the filter dropping the copies of the radio telegrams
+     *
+     * @return Duplicate filter or null if copies are not dropped
+     */
+    public DuplicateFilter getDuplicateFilter() {
+        return duplicateFilter;
+    }
 
-                        // check not null
-                        if (pkt != null) {
-                            // place the packet in the right queue
-                            putInQueue(pkt);
-                        }
+    /**
+     * Sets the filter dropping the copies of the radio telegrams, only used
+     * by the thread reading the transport
+     *
+     * @param duplicateFilter Duplicate filter or null to keep every copy
+     */
+    public void setDuplicateFilter(DuplicateFilter duplicateFilter) {
+        this.duplicateFilter = duplicateFilter;
+    }
 
-                        // packet read, reset the expected length
-                        packetLength = -1;
-                    }
-                    logger.debug(String.format("%02x", readedByteValue));
-                }
-            }
-        }
-        catch (IOException e) {
-            //log the error
-            logger.warn("Unable to decode the received serial data", e);
-        }
+    /**
+     * Returns the filter dropping unwanted radio frames before they are parsed
+     *
+     * @return Filter or null if every frame is parsed
+     */
+    public RxFilter getRxFilter() {
+        return rxFilter;
     }
 
     /**
-     * Given a buffer of bytes as an {@link ArrayList} instance, parses the
-     * buffer into an ESP3 Packet, if possible.
+     * Sets the filter dropping unwanted radio frames before they are parsed,
+     * only used by the thread reading the transport
      *
-     * @param buffer The byte buffer to parse.
-     * @return The corresponding ESP3 {@link ESP3Packet} if the parsing process
-     * was successful, null otherwise.
+     * @param rxFilter Filter or null to parse every frame
      */
-    private ESP3Packet parsePacket(ArrayList<Byte> buffer) {
-        ESP3Packet pkt = null;
+    public void setRxFilter(RxFilter rxFilter) {
+        this.rxFilter = rxFilter;
+    }
 
-        if (!buffer.isEmpty()) {
-            // Input byte buffer to use for packet construction
-            byte[] receivedBytes;
+    /**
+     * Returns the number of radio frames rejected by the filter
+     *
+     * @return Frame count
+     */
+    public long getRejectedFrames() {
+        return rejectedFrames;
+    }
 
-            // Prepare a Packet instance for holding the just received data
-            pkt = new ESP3Packet();
+    /**
+     * Sets the strategy signalled once received packets have been queued
+     *
+     * @param waitStrategy Wait strategy of the packet consumer
+     */
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
 
-            // create a new byte array of the size of the read
-            // packet
-            receivedBytes = new byte[buffer.size()];
+    /**
+     * Sets the strategy signalled as soon as a packet needing a response has
+     * been queued
+     *
+     * @param priorityWaitStrategy Wait strategy of the high priority consumer
+     */
+    public void setPriorityWaitStrategy(WaitStrategy priorityWaitStrategy) {
+        this.priorityWaitStrategy = priorityWaitStrategy;
+    }
 
-            // fill the byte array
-            for (int i = 0; i < buffer.size(); i++) {
-                receivedBytes[i] = buffer.get(i);
-            }
-            // Build the Packet instance
-            pkt.parsePacket(receivedBytes);
+    private void signal() {
+        WaitStrategy strategy = waitStrategy;
+        if (strategy != null) {
+            strategy.signal();
         }
-        return pkt;
     }
 
-    private void putInQueue(ESP3Packet pkt) {
+    private void putInQueue(PacketQueueItem item) {
+        ESP3Packet pkt = item.getPkt();
+
         // If the packet is a response to a previously sent packet, then the
-        // expected semaphore should be freed.
+        // transmitter should match it with its request.
         if (pkt.isResponse()) {
-            // debug, TODO use a logging system here
-            logger.info("Received response packet {}", EnOceanUtils.toHexString(pkt.getData()));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Received response packet {}", EnOceanUtils.toHexString(pkt.getData()));
+            }
 
-            // free the expected response semaphore
-            expectedResponse.release();
+            // hand the response to the transmitter
+            transmitter.handleResponse(pkt);
 
             // Add the packet to the low priority queue
-            lowPriorityRxQueue.add(new PacketQueueItem(pkt));
+            lowPriorityRxQueue.offer(item);
         }
         else {
             // if the packet requires a response, than specific timings must be
-            // respected (response in less than 500ms,
-            // TODO check the actual time frame on the ESP3 specs), and therefore the packet should be
-            // TODO inserted into an high priority message queue.
-            if (pkt.requiresResponse()) {
-                highPriorityRxQueue.add(new PacketQueueItem(pkt));
-            }
-            else {
-                // simple packet not requiring any response, should be treated
-                // at normal speed.
-                lowPriorityRxQueue.add(new PacketQueueItem(pkt));
+            // respected, and therefore the packet is also handed to the high
+            // priority consumer straight away; the low priority listeners
+            // still see it, and answer it if the priority queue dropped it
+            boolean priority = pkt.requiresResponse();
+            pkt.setPriorityQueued(priority);
+            if (priority) {
+                pkt.retain();
+                if (highPriorityRxQueue.offer(item)) {
+                    WaitStrategy strategy = priorityWaitStrategy;
+                    if (strategy != null) {
+                        strategy.signal();
+                    }
+                }
             }
+
+            // every other packet is treated at normal speed
+            lowPriorityRxQueue.offer(item);
         }
     }
 
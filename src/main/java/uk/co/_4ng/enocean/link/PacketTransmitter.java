@@ -15,21 +15,45 @@
  */
 package uk.co._4ng.enocean.link;
 
-import com.fazecast.jSerialComm.SerialPort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co._4ng.enocean.link.transport.Transport;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.response.Response;
+import uk.co._4ng.enocean.util.EnOceanException;
 import uk.co._4ng.enocean.util.EnOceanUtils;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Queue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A class implementing the transmitter tier of the Java EnOcean Serial Protocol
- * API, EnJ. Writes packets on the serial port (connected to the external
+ * API, EnJ. Writes packets on the transport (connected to the external
  * EnOcean transceiver, e.g., the TCM 320) accounting for different transmission
  * priorities.
+ * <p>
+ * The transmitter thread sleeps until a packet is queued, a response arrives
+ * or a response deadline expires. ESP3 responses carry no reference to the
+ * command they answer, so, as the protocol requires, only one command is
+ * outstanding at a time and a response is always matched with it. Once a
+ * response is late, no new command is written until the late response has
+ * arrived or a further timeout has passed, so that it cannot be taken for the
+ * response to the next command; responses arriving while no command is
+ * outstanding are counted as stray. The frames are written without holding
+ * the lock the receiver needs to hand the responses over. Low priority
+ * packets are ordered by a {@link TransmitScheduler}, which serves the
+ * destinations round robin within the duty-cycle budget.
+ * <p>
+ * By default, the transmitter waits {@link #TIMEOUT_TX} for every response.
+ * Optionally, the response timeout is derived from the measured response
+ * times of the transceiver by a {@link RttEstimator}, so that a slow link
+ * gets the time it needs, see {@link #setAdaptiveTimeout(boolean)}. The
+ * commands known to answer slowly, such as flash writes, are always given at
+ * least {@link #TIMEOUT_TX}.
  *
  * @author <a href="mailto:dario.bonino@gmail.com">Dario Bonino</a>
  * @author <a href="mailto:biasiandrea04@gmail.com">Andrea Biasi </a>
@@ -40,43 +64,89 @@ public class PacketTransmitter implements Runnable {
     // the transmission timeout, in milliseconds
     public static final int TIMEOUT_TX = 500;
 
-    // the transmission sleep time
-    // should be able to transmit 10 high priority messages within the timeout
-    // of a single low priority packet
-    // TODO: there was a warning on a minimum timeout of 200ms to avoid multiple
-    // TODO: transmissions, check if such a minimum exists and, in case, if there are
-    // TODO: references to such a value in the ESP3 documentation.
+    /**
+     * The former polling period of the transmission loop
+     *
+     * @deprecated The transmitter is event driven, see {@link #setMinFrameGap(long)}
+     * for pacing frames
+     */
+    @Deprecated
     public static final int MIN_TX_TIME = 50;
     private static final Logger logger = LoggerFactory.getLogger(PacketTransmitter.class);
 
+    // the longest idle wait before the runnable flag is checked again
+    private static final long MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // the shortest wait for the response to a slow command, in nanoseconds
+    private static final long SLOW_COMMAND_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(TIMEOUT_TX);
+
     // the high priority transmission queue
     private final Queue<PacketQueueItem> highPriorityTxQueue;
 
     // the low priority transmission queue
     private final Queue<PacketQueueItem> lowPriorityTxQueue;
 
-    // Serial port
-    private final SerialPort serialPort;
-
-    // the expected response semaphore
-    private final Semaphore expectedResponse;
+    // the transport the packets are written to
+    private final Transport transport;
+
+    // the lock guarding the in-flight frames, and the condition the
+    // transmission thread sleeps on
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
+
+    // the scheduler ordering the low priority packets
+    private final TransmitScheduler scheduler = new TransmitScheduler();
+
+    // the command written and still waiting for its response
+    private InFlight inFlight;
+
+    // set once a response is late, until the late response arrives or the
+    // given time
+    private boolean resyncing;
+    private long resyncDeadline;
+
+    // the time the last frame was written
+    private long lastWrite;
+
+    // the fixed response timeout and the minimum gap between two frames, in
+    // nanoseconds
+    private volatile long responseTimeout = TimeUnit.MILLISECONDS.toNanos(TIMEOUT_TX);
+
+    // the estimator learning the response time of the transceiver, and the
+    // flag telling whether the timeout is derived from it
+    private final RttEstimator rttEstimator = new RttEstimator();
+    private volatile boolean adaptiveTimeout;
+    private volatile long minFrameGap;
+
+    // statistics
+    private volatile long framesSent;
+    private volatile long responses;
+    private volatile long strayResponses;
+    private volatile long lateResponses;
+    private volatile long timeouts;
+    private volatile long retransmissions;
+    private volatile long failures;
+    private volatile long abandoned;
+    private volatile long writeErrors;
 
     // the run enabling flag
-    private boolean runnable;
+    private volatile boolean runnable;
+
+    // set once the transmission loop has ended, until restarted
+    private volatile boolean stopped;
 
     /**
      * Creates a {@link PacketTransmitter} runnable connected to the given
-     * serial port, and exploiting the given transmission queues. Exploits the
-     * given semaphore to signal that a sent packet needs a response from the
-     * EnOcean transceiver.
+     * transport, and exploiting the given transmission queues. The receiver
+     * must pass every response to {@link #handleResponse(ESP3Packet)} and
+     * producers must call {@link #signal()} after queueing a packet.
      *
      * @param highPriorityTxQueue The high priority transmission queue.
      * @param lowPriorityTxQueue  The low priority transmission queue.
-     * @param serialPort          The serial port used by the transmitter to send data to the
+     * @param transport           The transport used by the transmitter to send data to the
      *                            physical transceiver.
-     * @param expectedResponse    The expected response semphore.
      */
-    public PacketTransmitter(Queue<PacketQueueItem> highPriorityTxQueue, Queue<PacketQueueItem> lowPriorityTxQueue, SerialPort serialPort, Semaphore expectedResponse) {
+    public PacketTransmitter(Queue<PacketQueueItem> highPriorityTxQueue, Queue<PacketQueueItem> lowPriorityTxQueue, Transport transport) {
 
         // store a reference to the high priority transmission queue
         this.highPriorityTxQueue = highPriorityTxQueue;
@@ -84,11 +154,8 @@ public class PacketTransmitter implements Runnable {
         // store a reference to the low priority transmission queue
         this.lowPriorityTxQueue = lowPriorityTxQueue;
 
-        // store a reference to the serial port used for communication
-        this.serialPort = serialPort;
-
-        // store a reference to the expected response semaphore
-        this.expectedResponse = expectedResponse;
+        // store a reference to the transport used for communication
+        this.transport = transport;
 
         // set the initial state at runnable
         runnable = true;
@@ -98,157 +165,400 @@ public class PacketTransmitter implements Runnable {
      * The main transmission cycle. It looks for packets to transmit, in both
      * transmission queues. The priority handling is greedy and packets in the
      * high priority queue are always handled before packets in the low priority
-     * queue, regardless of the arrival order.
+     * queue, regardless of the arrival order. One packet is sent at a time,
+     * and low priority packets are re-transmitted when their response does not
+     * arrive in time, or when they cannot be written, e.g. while a transport
+     * reconnects. The transmitter stops once the transport is closed; the
+     * packets still waiting then fail.
      */
     @Override
     public void run() {
-        // the serial port output stream
-        OutputStream serialOut;
-
-        // the timestamp to use for packet timeout
-        // negative values mean that the time has not been
-        // initialized.
-        long time = -1;
-
-        // try to open the serial port, if some error happens, the serial port
-        // is unreachable and no data can be transmitted.
-        // TODO: check if any fail safe solution can be devised
         try {
-            // get the serial port output stream
-            serialOut = serialPort.getOutputStream();
-
-            // thread loop
-            while (runnable) {
-                // every cycle manages one packet transmission
-
-                // manage the high priority queue first, high priority packets
-                // are sent event if an already sent packet is still waiting for
-                // its response.
-
-                // the current message
-                PacketQueueItem currentMessage;
-
-                // check if packets are waiting in the high priority queue
-                if (!highPriorityTxQueue.isEmpty()) {
-                    // handle the high priority messages
-
-                    // extract the first packet in the queue (FIFO queue)
-                    currentMessage = highPriorityTxQueue.poll();
-
-                    // send the packet
-                    byte[] packetBytes = currentMessage.getPkt().getPacketAsBytes();
-                    logger.debug("Sending: {}", EnOceanUtils.toHexString(packetBytes));
-                    serialOut.write(packetBytes);
+            lock.lockInterruptibly();
+            try {
+                // thread loop
+                while (runnable) {
+                    long now = System.nanoTime();
+
+                    // deal with the command whose response is late
+                    expireResponse(now);
+
+                    // the time to wait before anything else can happen
+                    long wait = MAX_IDLE_NANOS;
+                    if (inFlight != null) {
+                        wait = Math.min(wait, inFlight.deadline - now);
+                    }
+                    else if (resyncing) {
+                        wait = Math.min(wait, resyncDeadline - now);
+                    }
+                    boolean idle = inFlight == null && !resyncing;
 
-                }
-                else {
-                    // handle the low priority messages
-
-                    // check if there is still some pending response to be
-                    // received, in such a case do not transmit the next packet.
-                    if (expectedResponse.availablePermits() > 0) {
-                        // no response is waited, handle packet transmission
-                        if (!lowPriorityTxQueue.isEmpty()) {
-                            // check if the current HEAD of the queue has
-                            // already been transmitted, in such a case, since
-                            // the expected response flag the transmission was
-                            // successful the the queue HEAD should be consumed.
-                            currentMessage = lowPriorityTxQueue.peek();
-
-                            // purge already sent packets
-                            if (currentMessage.getRetransmissionCounter() < PacketQueueItem.MAX_RETRANSMISSION) {
-                                // the packet has already been sent, remove it
-                                // from the queue
-                                lowPriorityTxQueue.poll();
-
-                                // update the current message
-                                currentMessage = lowPriorityTxQueue.peek();
-                            }
+                    // hand the low priority packets over to the scheduler
+                    PacketQueueItem queued;
+                    while ((queued = lowPriorityTxQueue.poll()) != null) {
+                        scheduler.add(queued);
+                    }
 
-                            // handle packet transmission
-                            // in this first implementation it seems that all
-                            // low-priority packets require a response from the
-                            // physical transceiver, it remains to check if this
-                            // is true at the ESP3 specification level or not.
-
-                            // check if transmission is possible
-                            if (currentMessage != null && currentMessage.getRetransmissionCounter() > 0) {
-                                // ok can transmit
-                                try {
-                                    // acquire the expected response semaphore
-                                    expectedResponse.acquire();
-
-                                    // set the transmission time
-                                    time = System.currentTimeMillis();
-
-                                    // transmit the packet
-                                    byte[] packetBytes = currentMessage.getPkt().getPacketAsBytes();
-                                    logger.debug("Sending: {}", EnOceanUtils.toHexString(packetBytes));
-                                    serialOut.write(packetBytes);
-
-                                    // decrease the retransmission count
-                                    currentMessage.decreaseRetransmissionCounter();
-                                }
-                                catch (InterruptedException e) {
-                                    logger.error("Error while acquiring the expected response semaphore", e);
-                                }
+                    // check if there is something to send, the scheduler may
+                    // hold low priority packets back to respect the duty cycle
+                    boolean canSendLow = false;
+                    if (idle) {
+                        long dispatch = scheduler.getNextDispatchTime(now);
+                        if (dispatch != Long.MAX_VALUE) {
+                            canSendLow = dispatch - now <= 0;
+                            if (!canSendLow) {
+                                wait = Math.min(wait, dispatch - now);
                             }
                         }
                     }
-                    else {
-                        // still waiting for a response
-
-                        // check the time
-                        if (System.currentTimeMillis() - time > TIMEOUT_TX) {
-                            // timeout, we do not expect the response anymore,
-                            // re-transmission shall be forced. the expected
-                            // response semaphore cannot be used
-                            // as it is meant for synchronizing the transmit and
-                            // receive processes.
-
-                            // get the current message
-                            currentMessage = lowPriorityTxQueue.peek();
-
-                            // check if re-transmission is enabled
-                            if (currentMessage != null && currentMessage.getRetransmissionCounter() > 0) {
-                                // set the transmission time
-                                time = System.currentTimeMillis();
-
-                                // transmit the packet
-                                serialOut.write(currentMessage.getPkt().getPacketAsBytes());
-
-                                // decrease the retransmission count
-                                currentMessage.decreaseRetransmissionCounter();
+                    if (idle && !highPriorityTxQueue.isEmpty() || canSendLow) {
+                        long gap = lastWrite + minFrameGap - now;
+                        if (framesSent > 0 && gap > 0) {
+                            // respect the inter-frame gap
+                            wait = Math.min(wait, gap);
+                        }
+                        else {
+                            // high priority messages first
+                            PacketQueueItem currentMessage = highPriorityTxQueue.poll();
+                            boolean highPriority = currentMessage != null;
+                            if (!highPriority && canSendLow) {
+                                currentMessage = scheduler.next(now);
                             }
-                            else {
-                                // log the error
-                                logger.warn("Packet transmission failed after {} transmission attempts", PacketQueueItem.MAX_RETRANSMISSION);
-
-                                // free the expected response semaphore
-                                // this causes a subsequent packet drop from the
-                                // queue as in the case in which the packet has
-                                // been successfully sent.
-                                expectedResponse.release();
+                            if (currentMessage != null) {
+                                // skip the packets nobody is waiting for
+                                if (currentMessage.isAbandoned()) {
+                                    abandoned++;
+                                }
+                                else {
+                                    write(currentMessage, highPriority, now);
+                                }
                             }
+                            continue;
                         }
+                    }
 
+                    // sleep until signalled or the next deadline
+                    if (wait > 0) {
+                        wakeUp.awaitNanos(wait);
                     }
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("The transmitter was interrupted", e);
+        }
+        finally {
+            stopped = true;
+            failPending();
+        }
+    }
+
+    /**
+     * Fails the packets waiting to be sent or answered once the transmitter
+     * has stopped, so that nobody waits for their response forever. Also
+     * called when a packet is queued after the transmitter stopped.
+     */
+    void failPending() {
+        if (!stopped) {
+            return;
+        }
+        lock.lock();
+        try {
+            EnOceanException error = new EnOceanException("The transmitter is stopped");
+            InFlight request = inFlight;
+            if (request != null) {
+                inFlight = null;
+                fail(request.item, error);
+            }
+            resyncing = false;
+            PacketQueueItem item;
+            while ((item = highPriorityTxQueue.poll()) != null) {
+                fail(item, error);
+            }
+            while ((item = lowPriorityTxQueue.poll()) != null) {
+                fail(item, error);
+            }
+            for (PacketQueueItem queued : scheduler.drain()) {
+                fail(queued, error);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private static void fail(PacketQueueItem item, EnOceanException error) {
+        CompletableFuture<Response> future = item.getResponseFuture();
+        if (future != null) {
+            future.completeExceptionally(error);
+        }
+    }
 
+    /**
+     * Wakes the transmission thread up, to be called after queueing a packet
+     */
+    public void signal() {
+        lock.lock();
+        try {
+            wakeUp.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Matches a response received from the transceiver with the command
+     * waiting for it, and wakes the transmission thread up so that the next
+     * packet can be sent straight away
+     *
+     * @param response The response packet
+     */
+    public void handleResponse(ESP3Packet response) {
+        lock.lock();
+        try {
+            InFlight request = inFlight;
+            if (request == null) {
+                if (resyncing) {
+                    // the late response to the command that timed out
+                    resyncing = false;
+                    lateResponses++;
+                    logger.debug("Dropped the late response to a command that timed out");
+                    wakeUp.signal();
+                }
+                else {
+                    strayResponses++;
+                    logger.debug("Received a response while no request is pending");
                 }
+            }
+            else {
+                inFlight = null;
+                responses++;
+
+                // only frames transmitted once give an unambiguous sample,
+                // and the slow commands would inflate the estimate
+                if (!request.retransmitted && !request.slow) {
+                    rttEstimator.sample(System.nanoTime() - request.sent);
+                }
+                if (!request.highPriority) {
+                    scheduler.recordServiceTime(System.nanoTime() - request.sent);
+                    scheduler.responded(request.item.getPkt());
+                }
+                responseReceived(request.item, response);
+                wakeUp.signal();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
 
-                // sleep
-                Thread.sleep(MIN_TX_TIME);
+    /**
+     * Called, with the lock held, when the response to a frame is received
+     *
+     * @param item     The item that was sent
+     * @param response The matching response
+     */
+    void responseReceived(PacketQueueItem item, ESP3Packet response) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Response {} received for {}", EnOceanUtils.toHexString(response.getData()), EnOceanUtils.toHexString(item.getPkt().getData()));
+        }
+
+        // complete the future, the response may come from a pool
+        CompletableFuture<Response> future = item.getResponseFuture();
+        if (future != null && !future.isDone()) {
+            try {
+                future.complete(new Response(response.copy()));
+            }
+            catch (EnOceanException e) {
+                future.completeExceptionally(e);
             }
         }
-        catch (IOException | InterruptedException e) {
-            logger.error("Problem", e);
+    }
+
+    /**
+     * Called, with the lock held, when a frame is given up on
+     *
+     * @param item The item that was sent
+     */
+    void transmissionFailed(PacketQueueItem item) {
+        int attempts = item.getAttempts();
+        logger.warn("Packet transmission failed after {} transmission attempts", attempts);
+
+        CompletableFuture<Response> future = item.getResponseFuture();
+        if (future != null) {
+            future.completeExceptionally(new EnOceanException("No response received after %d transmission attempts", attempts));
+        }
+    }
+
+    /**
+     * Called, with the lock held, when a frame cannot be written and is given
+     * up on
+     *
+     * @param item  The item that was sent
+     * @param cause The write error
+     */
+    void writeFailed(PacketQueueItem item, IOException cause) {
+        logger.warn("Packet transmission failed after {} transmission attempts", item.getAttempts(), cause);
+
+        CompletableFuture<Response> future = item.getResponseFuture();
+        if (future != null) {
+            future.completeExceptionally(new EnOceanException("Cannot write to " + transport.getName(), cause));
+        }
+    }
+
+    /**
+     * Writes a frame, with the lock held on entry and on exit. The frame is
+     * registered as outstanding first, as the response may arrive before the
+     * write returns, and the lock is released while writing so that the
+     * receiver is not held up by a slow transport. The response deadline
+     * starts once the frame is written. The responses to the events of the
+     * transceiver are not answered, so they are not waited for.
+     */
+    private void write(PacketQueueItem item, boolean highPriority, long now) {
+        byte[] packetBytes = item.getPkt().getPacketAsBytes();
+        item.decreaseRetransmissionCounter();
+        scheduler.sent(item.getPkt(), now);
+        lastWrite = now;
+        framesSent++;
+        InFlight request = null;
+        if (!item.getPkt().isResponse()) {
+            request = new InFlight(item, highPriority, item.getAttempts() > 1, now);
+            inFlight = request;
+        }
+
+        logger.debug("Sending: {}", EnOceanUtils.toHexString(packetBytes));
+        IOException error = null;
+        lock.unlock();
+        try {
+            transport.write(packetBytes, 0, packetBytes.length);
+        }
+        catch (IOException e) {
+            error = e;
+        }
+        finally {
+            lock.lock();
+        }
+        if (error != null) {
+            notWritten(item, request, highPriority, now, error);
+            return;
+        }
+        if (request != null && inFlight == request) {
+            request.deadline = System.nanoTime() + nextTimeout(request);
+        }
+    }
+
+    /**
+     * Returns the time to wait for the response to a command, at least
+     * {@link #TIMEOUT_TX} for the commands known to answer slowly
+     */
+    private long nextTimeout(InFlight request) {
+        long timeout = adaptiveTimeout ? rttEstimator.nextTimeout() : responseTimeout;
+        return request.slow ? Math.max(timeout, SLOW_COMMAND_TIMEOUT) : timeout;
+    }
+
+    /**
+     * Tells whether a packet is a common command the transceiver answers
+     * slowly, writing its flash or testing itself
+     */
+    private static boolean isSlowCommand(ESP3Packet pkt) {
+        byte[] data = pkt.getData();
+        if (pkt.getPacketType() != ESP3Packet.COMMON_COMMAND || data == null || data.length == 0) {
+            return false;
+        }
+        switch (data[0]) {
+            case 0x06: // CO_WR_BIST
+            case 0x07: // CO_WR_IDBASE
+            case 0x09: // CO_WR_REPEATER
+            case 0x0B: // CO_WR_FILTER_ADD
+            case 0x0C: // CO_WR_FILTER_DEL
+            case 0x0D: // CO_WR_FILTER_DEL_ALL
+            case 0x0E: // CO_WR_FILTER_ENABLE
+            case 0x12: // CO_WR_MEM
+            case 0x16: // CO_WR_SECURITY
+            case 0x19: // CO_WR_SECUREDEVICE_ADD
+            case 0x1A: // CO_WR_SECUREDEVICE_DEL
+                return true;
+
+            default:
+                return false;
         }
+    }
+
+    /**
+     * Deals with a frame the transport could not take, with the lock held:
+     * low priority packets go back to the scheduler while attempts remain, so
+     * that a transport reconnecting delays them rather than losing them. The
+     * transmitter stops once the transport is closed.
+     */
+    private void notWritten(PacketQueueItem item, InFlight request, boolean highPriority, long now, IOException error) {
+        writeErrors++;
+        if (request != null && inFlight == request) {
+            inFlight = null;
+        }
+        if (!transport.isOpen()) {
+            logger.error("The transport {} is closed, stopped transmitting", transport.getName());
+            runnable = false;
+        }
+        if (!highPriority) {
+            if (runnable && !item.isAbandoned() && item.getRetransmissionCounter() > 0) {
+                logger.debug("Cannot write to {}, will retry", transport.getName(), error);
+                retransmissions++;
+                scheduler.retry(item, now);
+                return;
+            }
+            scheduler.abandoned(item.getPkt());
+        }
+        failures++;
+        writeFailed(item, error);
+    }
 
+    /**
+     * Gives up waiting for the response of the outstanding command once its
+     * deadline has expired, low priority packets go back to the scheduler
+     * while attempts remain. The late response is then waited for, up to one
+     * more timeout, before another command is written.
+     */
+    private void expireResponse(long now) {
+        if (resyncing && resyncDeadline - now <= 0) {
+            // the late response was lost, the link is back in step
+            resyncing = false;
+        }
+        InFlight request = inFlight;
+        if (request == null || request.deadline - now > 0) {
+            return;
+        }
+        inFlight = null;
+        resyncing = true;
+        resyncDeadline = now + nextTimeout(request);
+        timeouts++;
+        rttEstimator.timedOut();
+        if (!request.highPriority) {
+            if (request.item.isAbandoned()) {
+                abandoned++;
+                scheduler.abandoned(request.item.getPkt());
+                return;
+            }
+            if (request.item.getRetransmissionCounter() > 0) {
+                // re-transmit through the scheduler, so that other
+                // destinations are served while this one waits
+                retransmissions++;
+                scheduler.retry(request.item, now);
+                return;
+            }
+            scheduler.abandoned(request.item.getPkt());
+        }
+        failures++;
+        transmissionFailed(request.item);
     }
 
     /**
      * Return the current state of the transmitter, if true the transmitter is
-     * enabled, and, if started, can trasmit packets.
+     * running.
      *
      * @return the runnable flag, true if the transmitter can run, false, otherwise.
      */
@@ -263,6 +573,212 @@ public class PacketTransmitter implements Runnable {
      */
     public void setRunnable(boolean runnable) {
         this.runnable = runnable;
+        if (runnable) {
+            stopped = false;
+        }
+        signal();
+    }
+
+    /**
+     * Returns true once the transmission loop has ended, until the
+     * transmitter is made runnable again
+     *
+     * @return True if stopped
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns the time the transmitter waits for a response before
+     * re-transmitting or giving up, without backoff or jitter
+     *
+     * @return Response timeout in milliseconds
+     */
+    public long getResponseTimeout() {
+        return adaptiveTimeout ? rttEstimator.getTimeout(TimeUnit.MILLISECONDS) : TimeUnit.NANOSECONDS.toMillis(responseTimeout);
+    }
+
+    /**
+     * Sets the time the transmitter waits for a response before
+     * re-transmitting or giving up when the timeout is not adaptive, and
+     * until the first response otherwise; the slow commands wait at least
+     * {@link #TIMEOUT_TX}
+     *
+     * @param responseTimeout Response timeout in milliseconds
+     */
+    public void setResponseTimeout(long responseTimeout) {
+        this.responseTimeout = TimeUnit.MILLISECONDS.toNanos(responseTimeout);
+        rttEstimator.setInitialTimeout(responseTimeout);
+    }
+
+    /**
+     * Returns true if the response timeout is derived from the measured
+     * response times
+     *
+     * @return True if the timeout is adaptive
+     */
+    public boolean isAdaptiveTimeout() {
+        return adaptiveTimeout;
+    }
+
+    /**
+     * Chooses between the timeout derived from the measured response times
+     * and the fixed {@link #setResponseTimeout(long)}, the default
+     *
+     * @param adaptiveTimeout True to derive the timeout from the response times
+     */
+    public void setAdaptiveTimeout(boolean adaptiveTimeout) {
+        this.adaptiveTimeout = adaptiveTimeout;
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns the estimator of the response times of the transceiver, giving
+     * access to the current estimates and to the timeout bounds, backoff and
+     * jitter settings
+     *
+     * @return Round trip time estimator
+     */
+    public RttEstimator getRttEstimator() {
+        return rttEstimator;
+    }
+
+    /**
+     * Returns the minimum time between the start of two frames
+     *
+     * @return Minimum frame gap in milliseconds
+     */
+    public long getMinFrameGap() {
+        return TimeUnit.NANOSECONDS.toMillis(minFrameGap);
+    }
+
+    /**
+     * Sets the minimum time between the start of two frames. ESP3 itself needs
+     * no gap, as the transceiver acknowledges every frame, so it defaults to 0;
+     * it can be raised for transceivers or radio links needing slower pacing.
+     *
+     * @param minFrameGap Minimum frame gap in milliseconds
+     */
+    public void setMinFrameGap(long minFrameGap) {
+        this.minFrameGap = TimeUnit.MILLISECONDS.toNanos(minFrameGap);
+        signal();
+    }
+
+    /**
+     * Returns the scheduler ordering the low priority packets, giving access
+     * to the duty-cycle settings, the backlog and the predicted dispatch times
+     *
+     * @return Transmit scheduler
+     */
+    public TransmitScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the number of frames written, re-transmissions included
+     *
+     * @return Frame count
+     */
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * Returns the number of responses matched with a frame
+     *
+     * @return Response count
+     */
+    public long getResponses() {
+        return responses;
+    }
+
+    /**
+     * Returns the number of responses received while no command was waiting
+     * for one, and no late response was expected
+     *
+     * @return Stray response count
+     */
+    public long getStrayResponses() {
+        return strayResponses;
+    }
+
+    /**
+     * Returns the number of responses that arrived after their command timed
+     * out, and were dropped
+     *
+     * @return Late response count
+     */
+    public long getLateResponses() {
+        return lateResponses;
+    }
+
+    /**
+     * Returns the number of frames whose response did not arrive in time
+     *
+     * @return Timeout count
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the number of re-transmitted frames
+     *
+     * @return Re-transmission count
+     */
+    public long getRetransmissions() {
+        return retransmissions;
+    }
+
+    /**
+     * Returns the number of packets given up on
+     *
+     * @return Failure count
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the number of frames the transport could not take
+     *
+     * @return Write error count
+     */
+    public long getWriteErrors() {
+        return writeErrors;
+    }
+
+    /**
+     * Returns the number of packets skipped, or not re-transmitted, because
+     * their response future was cancelled or timed out
+     *
+     * @return Abandoned packet count
+     */
+    public long getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * A frame waiting for its response
+     */
+    private static final class InFlight {
+        private final PacketQueueItem item;
+        private final boolean highPriority;
+        private final boolean retransmitted;
+        private final long sent;
+
+        // set for the commands known to answer slowly
+        private final boolean slow;
+
+        // set once the frame is written
+        private long deadline = Long.MAX_VALUE;
+
+        InFlight(PacketQueueItem item, boolean highPriority, boolean retransmitted, long sent) {
+            this.item = item;
+            this.highPriority = highPriority;
+            this.retransmitted = retransmitted;
+            this.sent = sent;
+            slow = isSlowCommand(item.getPkt());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the received packets that must be answered within a short time
+ * window, i.e. Smart Ack events and UTE teach-in requests (see
+ * {@link ESP3Packet#requiresResponse()}), on a dedicated thread. Listeners are
+ * called directly on that thread and should send their response before doing
+ * anything slow.
+ * <p>
+ * The time between the reception of a packet and the return of its last
+ * listener is measured against a configurable deadline; packets handled after
+ * their deadline are counted and reported. The same packets are also
+ * delivered to the regular {@link PacketListener}s by {@link PacketDelivery}.
+ */
+public class PriorityDelivery implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(PriorityDelivery.class);
+
+    // the default time allowed to answer a packet, in milliseconds
+    public static final long DEFAULT_DEADLINE = 500;
+
+    // the longest wait before the runnable flag is checked again
+    private static final long MAX_WAIT_TIME = 100;
+
+    // the queue of packets needing a response
+    private final Queue<PacketQueueItem> theQueue;
+
+    // the listeners answering the packets
+    private final Set<PacketListener> listeners = new CopyOnWriteArraySet<>();
+
+    // the strategy used to wait for packets
+    private final WaitStrategy waitStrategy;
+
+    // the time allowed to answer a packet, in nanoseconds
+    private volatile long deadline = TimeUnit.MILLISECONDS.toNanos(DEFAULT_DEADLINE);
+
+    // statistics
+    private volatile long delivered;
+    private volatile long deadlineMisses;
+    private volatile long totalLatency;
+    private volatile long maxLatency;
+
+    // the runnable flag
+    private volatile boolean runnable = true;
+
+    /**
+     * Builds a {@link PriorityDelivery} instance waiting for packets with the
+     * given strategy
+     *
+     * @param queue        The queue of packets needing a response
+     * @param waitStrategy The strategy used to wait for packets, signalled by
+     *                     the receiver for every packet
+     */
+    PriorityDelivery(Queue<PacketQueueItem> queue, WaitStrategy waitStrategy) {
+        theQueue = queue;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Adds a listener answering the packets needing a response
+     *
+     * @param listener The listener to add.
+     */
+    void addPacketListener(PacketListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener answering the packets needing a response
+     *
+     * @param listener The listener to remove
+     */
+    void removePacketListener(PacketListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the state of this {@link PriorityDelivery} instance
+     *
+     * @return true if the delivery process can run (or is running), false
+     * otherwise.
+     */
+    public boolean isRunnable() {
+        return runnable;
+    }
+
+    /**
+     * Set the state of this {@link PriorityDelivery} instance.
+     *
+     * @param runnable true if the delivery process can run, false otherwise
+     */
+    void setRunnable(boolean runnable) {
+        this.runnable = runnable;
+        waitStrategy.signal();
+    }
+
+    /**
+     * Returns the time allowed between the reception of a packet and the
+     * return of its listeners
+     *
+     * @return Deadline in milliseconds
+     */
+    public long getDeadline() {
+        return TimeUnit.NANOSECONDS.toMillis(deadline);
+    }
+
+    /**
+     * Sets the time allowed between the reception of a packet and the return
+     * of its listeners
+     *
+     * @param deadline Deadline in milliseconds
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = TimeUnit.MILLISECONDS.toNanos(deadline);
+    }
+
+    /**
+     * Returns the number of packets delivered
+     *
+     * @return Delivered packet count
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Returns the number of packets whose listeners returned after the
+     * deadline
+     *
+     * @return Deadline miss count
+     */
+    public long getDeadlineMisses() {
+        return deadlineMisses;
+    }
+
+    /**
+     * Returns the average time between the reception of a packet and the
+     * return of its listeners
+     *
+     * @param unit Unit of the result
+     * @return Average latency, 0 if nothing was delivered
+     */
+    public long getAverageLatency(TimeUnit unit) {
+        long count = delivered;
+        return count == 0 ? 0 : unit.convert(totalLatency / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time between the reception of a packet and the
+     * return of its listeners
+     *
+     * @param unit Unit of the result
+     * @return Maximum latency
+     */
+    public long getMaxLatency(TimeUnit unit) {
+        return unit.convert(maxLatency, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void run() {
+        // packets are always drained, so that the queue never holds the
+        // receiver up even without listeners
+        try {
+            while (runnable) {
+                if (waitStrategy.waitFor(theQueue, MAX_WAIT_TIME, TimeUnit.MILLISECONDS)) {
+                    PacketQueueItem item;
+                    while (runnable && (item = theQueue.poll()) != null) {
+                        deliver(item.getPkt());
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            logger.error("Problem", e);
+
+            // stop the thread
+            runnable = false;
+        }
+    }
+
+    /**
+     * Hands a packet to the listeners and checks its deadline
+     *
+     * @param pkt Packet needing a response
+     */
+    private void deliver(ESP3Packet pkt) {
+        if (!listeners.isEmpty()) {
+            for (PacketListener listener : listeners) {
+                try {
+                    listener.handlePacket(pkt);
+                }
+                catch (RuntimeException e) {
+                    logger.warn("Priority packet listener {} failed", listener, e);
+                }
+            }
+
+            // measure the time since reception, the statistics are only
+            // written by this thread
+            long latency = System.nanoTime() - pkt.getReceivedAt();
+            delivered++;
+            totalLatency += latency;
+            if (latency > maxLatency) {
+                maxLatency = latency;
+            }
+            if (latency > deadline) {
+                deadlineMisses++;
+                logger.warn("Packet needing a response handled after {} ms, over the {} ms deadline", TimeUnit.NANOSECONDS.toMillis(latency), getDeadline());
+            }
+        }
+        pkt.release();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+/**
+ * How the {@link LinkLayer} reads the bytes received from the transceiver
+ */
+public enum ReceiveMode {
+    /**
+     * The bytes are read and framed on the thread of the transport signalling
+     * them, e.g. the event thread of jSerialComm
+     */
+    CALLBACK,
+
+    /**
+     * The bytes are read and framed by a dedicated {@link PacketReader}
+     * thread, waiting for them with semi-blocking bulk reads
+     */
+    READER_THREAD
+}
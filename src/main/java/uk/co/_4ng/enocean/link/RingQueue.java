@@ -0,0 +1,348 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free array queue safe for any number of producers and
+ * consumers. Every slot carries a sequence number telling producers and
+ * consumers whether it is free or full, so an offer or a poll is a single CAS
+ * on the tail or head counter; with a single producer and a single consumer
+ * those CASes never contend. Head and tail live on separate cache lines.
+ * Nothing is allocated once the queue is built.
+ * <p>
+ * When the queue is full, the {@link OverflowPolicy} decides whether the
+ * oldest element or the new one is dropped, or whether the producer waits.
+ * Every drop is counted and reported to the optional {@link DropListener}, so
+ * owners can release resources attached to the dropped element.
+ *
+ * @param <E> Element type
+ */
+public class RingQueue<E> extends AbstractQueue<E> {
+
+    // how long a blocked producer parks between two attempts
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Notified of every element dropped by the queue
+     *
+     * @param <E> Element type
+     */
+    public interface DropListener<E> {
+        /**
+         * Called on the producer thread for every dropped element
+         *
+         * @param element The dropped element
+         */
+        void dropped(E element);
+    }
+
+    // the slots and their sequence numbers
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequence;
+    private final int mask;
+
+    // the positions of the next poll and of the next offer
+    private final PaddedAtomicLong head = new PaddedAtomicLong();
+    private final PaddedAtomicLong tail = new PaddedAtomicLong();
+
+    // the behaviour when full
+    private final OverflowPolicy overflowPolicy;
+
+    // the optional drop listener
+    private volatile DropListener<E> dropListener;
+
+    // statistics
+    private final AtomicLong droppedOldest = new AtomicLong();
+    private final AtomicLong droppedNewest = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+
+    /**
+     * Creates a queue holding at least the given number of elements
+     *
+     * @param capacity       Minimum capacity, rounded up to a power of two
+     * @param overflowPolicy Behaviour when the queue is full
+     */
+    public RingQueue(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("An overflow policy is required");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        buffer = new AtomicReferenceArray<>(size);
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds an element applying the overflow policy when the queue is full.
+     * Unlike other queues, no exception is thrown when the element is dropped.
+     *
+     * @param element Element to add
+     * @return True if the element was queued
+     */
+    @Override
+    public boolean add(E element) {
+        return offer(element);
+    }
+
+    /**
+     * Adds an element applying the overflow policy when the queue is full
+     *
+     * @param element Element to add
+     * @return True if the element was queued, false if it was dropped (or the
+     * blocked producer was interrupted)
+     */
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("Null elements are not supported");
+        }
+        if (tryOffer(element)) {
+            return true;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                do {
+                    E oldest = poll();
+                    if (oldest != null) {
+                        droppedOldest.incrementAndGet();
+                        notifyDropped(oldest);
+                    }
+                } while (!tryOffer(element));
+                return true;
+
+            case BLOCK:
+                blocked.incrementAndGet();
+                do {
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    if (Thread.currentThread().isInterrupted()) {
+                        droppedNewest.incrementAndGet();
+                        notifyDropped(element);
+                        return false;
+                    }
+                } while (!tryOffer(element));
+                return true;
+
+            default:
+                droppedNewest.incrementAndGet();
+                notifyDropped(element);
+                return false;
+        }
+    }
+
+    @Override
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequence.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequence.lazySet(index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            }
+            else if (difference < 0) {
+                // empty
+                return null;
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position & mask);
+            if (sequence.get(index) != position + 1) {
+                return null;
+            }
+            E element = buffer.get(index);
+            if (element != null && head.get() == position) {
+                return element;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        // read the head first so that the difference is never negative
+        long first = head.get();
+        long size = tail.get() - first;
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns a weakly consistent snapshot iterator, removal is not supported
+     *
+     * @return Iterator over the elements queued when called
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>();
+        long end = tail.get();
+        for (long position = Math.max(head.get(), end - mask - 1); position < end; position++) {
+            E element = buffer.get((int) (position & mask));
+            if (element != null) {
+                snapshot.add(element);
+            }
+        }
+        final Iterator<E> iterator = snapshot.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Removal is not supported");
+            }
+        };
+    }
+
+    /**
+     * Returns the number of elements the queue can hold
+     *
+     * @return Capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the behaviour of the queue when full
+     *
+     * @return Overflow policy
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets the listener notified of every dropped element
+     *
+     * @param dropListener Listener or null
+     */
+    public void setDropListener(DropListener<E> dropListener) {
+        this.dropListener = dropListener;
+    }
+
+    /**
+     * Returns the number of queued elements dropped to make room for new ones
+     *
+     * @return Dropped oldest count
+     */
+    public long getDroppedOldest() {
+        return droppedOldest.get();
+    }
+
+    /**
+     * Returns the number of new elements dropped because the queue was full
+     *
+     * @return Dropped newest count
+     */
+    public long getDroppedNewest() {
+        return droppedNewest.get();
+    }
+
+    /**
+     * Returns the number of offers that had to wait for room
+     *
+     * @return Blocked offer count
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    /**
+     * Tries to add an element without applying the overflow policy
+     *
+     * @param element Element to add
+     * @return False if the queue is full
+     */
+    private boolean tryOffer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequence.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, element);
+                    sequence.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                // full
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void notifyDropped(E element) {
+        DropListener<E> listener = dropListener;
+        if (listener != null) {
+            listener.dropped(element);
+        }
+    }
+
+    /**
+     * An atomic counter padded to fill a cache line, keeping the head and the
+     * tail from sharing one
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedAtomicLong extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+/**
+ * An {@link RxFilter} keeping the radio frames whose RORG is allowed, e.g.
+ * only the RPS, 1BS and 4BS telegrams of the sensors of a site
+ */
+public class RorgFilter implements RxFilter {
+
+    // the allowed RORGs
+    private final boolean[] allowed = new boolean[256];
+
+    /**
+     * Creates a filter allowing the given RORGs
+     *
+     * @param rorgs Allowed RORGs, e.g. 0xF6, 0xD5, 0xA5
+     */
+    public RorgFilter(int... rorgs) {
+        for (int rorg : rorgs) {
+            allow(rorg);
+        }
+    }
+
+    /**
+     * Allows a RORG
+     *
+     * @param rorg RORG, 0 to 255
+     */
+    public void allow(int rorg) {
+        allowed[rorg & 0xff] = true;
+    }
+
+    /**
+     * Disallows a RORG
+     *
+     * @param rorg RORG, 0 to 255
+     */
+    public void disallow(int rorg) {
+        allowed[rorg & 0xff] = false;
+    }
+
+    /**
+     * Tells whether a RORG is allowed
+     *
+     * @param rorg RORG, 0 to 255
+     * @return True if allowed
+     */
+    public boolean isAllowed(int rorg) {
+        return allowed[rorg & 0xff];
+    }
+
+    @Override
+    public boolean accept(byte[] frame, int offset, int dataLength, int optLength) {
+        return allowed[RxFilter.getRorg(frame, offset)];
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Learns the time a transceiver takes to answer a frame and derives the
+ * response timeout from it, the way TCP derives its retransmission timeout
+ * (RFC 6298): a smoothed round trip time and its mean deviation are updated
+ * with every sample, and the timeout is the smoothed time plus four
+ * deviations, clamped between a minimum and a maximum.
+ * <p>
+ * The adaptive timeout is off by default, the transmitter then waits the
+ * fixed {@link PacketTransmitter#TIMEOUT_TX}. Once enabled with
+ * {@link PacketTransmitter#setAdaptiveTimeout(boolean)}, the minimum still
+ * defaults to the 500 ms ESP3 allows the transceiver to answer, so the
+ * estimate only lengthens the timeout of slow links, such as serial to
+ * Ethernet converters. To also detect lost responses sooner on a fast link,
+ * lower the minimum with {@link #setMinTimeout(long)}, e.g. to a few times
+ * the usual response time:
+ * <pre>
+ * transmitter.setAdaptiveTimeout(true);
+ * transmitter.getRttEstimator().setMinTimeout(50);
+ * </pre>
+ * The commands known to answer slowly, such as flash writes, keep waiting at
+ * least {@link PacketTransmitter#TIMEOUT_TX} whatever the minimum, and their
+ * response times are not sampled.
+ * <p>
+ * Until the first sample, the initial timeout is used. Callers must not feed
+ * the round trip times of re-transmitted frames (Karn's algorithm), as the
+ * response cannot be matched with one of the transmissions for sure.
+ * <p>
+ * Optionally, every timeout doubles the next timeouts until a new sample is
+ * taken, and a random jitter is added so that several gateways timing out
+ * together do not re-transmit in step.
+ */
+public class RttEstimator {
+
+    // the default timeouts, in milliseconds
+    public static final long DEFAULT_INITIAL_TIMEOUT = PacketTransmitter.TIMEOUT_TX;
+    public static final long DEFAULT_MIN_TIMEOUT = PacketTransmitter.TIMEOUT_TX;
+    public static final long DEFAULT_MAX_TIMEOUT = 2000;
+
+    // the gains of the smoothed round trip time and of its deviation
+    private static final double ALPHA = 0.125;
+    private static final double BETA = 0.25;
+
+    // the weight of the deviation in the timeout
+    private static final int K = 4;
+
+    // the largest backoff exponent
+    private static final int MAX_BACKOFF = 6;
+
+    // the timeout bounds, in nanoseconds
+    private long initialTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_TIMEOUT);
+    private long minTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_TIMEOUT);
+    private long maxTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_TIMEOUT);
+
+    // the estimates, in nanoseconds
+    private double smoothedRtt;
+    private double rttVariance;
+    private long lastRtt;
+    private long samples;
+
+    // the backoff applied after timeouts
+    private boolean exponentialBackoff;
+    private int backoff;
+
+    // the fraction of the timeout added at random
+    private double jitter;
+
+    /**
+     * Adds the round trip time of a frame transmitted once
+     *
+     * @param rtt Time between the frame being written and its response, in
+     *            nanoseconds
+     */
+    public synchronized void sample(long rtt) {
+        if (rtt < 0) {
+            return;
+        }
+        if (samples == 0) {
+            smoothedRtt = rtt;
+            rttVariance = rtt / 2.0;
+        }
+        else {
+            rttVariance = (1 - BETA) * rttVariance + BETA * Math.abs(smoothedRtt - rtt);
+            smoothedRtt = (1 - ALPHA) * smoothedRtt + ALPHA * rtt;
+        }
+        lastRtt = rtt;
+        samples++;
+        backoff = 0;
+    }
+
+    /**
+     * Records that a response did not arrive in time, doubling the next
+     * timeouts if exponential backoff is enabled
+     */
+    public synchronized void timedOut() {
+        if (exponentialBackoff && backoff < MAX_BACKOFF) {
+            backoff++;
+        }
+    }
+
+    /**
+     * Returns the timeout to use for the next frame, backoff and jitter
+     * included
+     *
+     * @return Timeout in nanoseconds
+     */
+    public synchronized long nextTimeout() {
+        long timeout = Math.min(getTimeoutNanos() << backoff, maxTimeout);
+        if (jitter > 0) {
+            timeout += (long) (timeout * jitter * ThreadLocalRandom.current().nextDouble());
+        }
+        return timeout;
+    }
+
+    /**
+     * Returns the timeout derived from the estimates, without backoff or
+     * jitter
+     *
+     * @param unit Unit of the result
+     * @return Timeout
+     */
+    public synchronized long getTimeout(TimeUnit unit) {
+        return unit.convert(getTimeoutNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the smoothed round trip time
+     *
+     * @param unit Unit of the result
+     * @return Smoothed round trip time, 0 before the first sample
+     */
+    public synchronized long getSmoothedRtt(TimeUnit unit) {
+        return unit.convert((long) smoothedRtt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the mean deviation of the round trip time
+     *
+     * @param unit Unit of the result
+     * @return Round trip time deviation, 0 before the first sample
+     */
+    public synchronized long getRttVariance(TimeUnit unit) {
+        return unit.convert((long) rttVariance, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the last round trip time sampled
+     *
+     * @param unit Unit of the result
+     * @return Last round trip time, 0 before the first sample
+     */
+    public synchronized long getLastRtt(TimeUnit unit) {
+        return unit.convert(lastRtt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of round trip times sampled
+     *
+     * @return Sample count
+     */
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Returns the current backoff exponent, the timeouts being multiplied by
+     * two to its power
+     *
+     * @return Backoff exponent
+     */
+    public synchronized int getBackoff() {
+        return backoff;
+    }
+
+    /**
+     * Returns the timeout used until the first sample
+     *
+     * @return Initial timeout in milliseconds
+     */
+    public synchronized long getInitialTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(initialTimeout);
+    }
+
+    /**
+     * Sets the timeout used until the first sample
+     *
+     * @param initialTimeout Initial timeout in milliseconds
+     */
+    public synchronized void setInitialTimeout(long initialTimeout) {
+        this.initialTimeout = TimeUnit.MILLISECONDS.toNanos(initialTimeout);
+    }
+
+    /**
+     * Returns the lower bound of the timeout
+     *
+     * @return Minimum timeout in milliseconds
+     */
+    public synchronized long getMinTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(minTimeout);
+    }
+
+    /**
+     * Sets the lower bound of the timeout, e.g. below the default
+     * {@link #DEFAULT_MIN_TIMEOUT} to detect lost responses sooner on a fast
+     * link
+     *
+     * @param minTimeout Minimum timeout in milliseconds, at most the maximum
+     */
+    public synchronized void setMinTimeout(long minTimeout) {
+        setTimeoutBounds(minTimeout, getMaxTimeout());
+    }
+
+    /**
+     * Returns the upper bound of the timeout, backoff included and jitter
+     * excluded
+     *
+     * @return Maximum timeout in milliseconds
+     */
+    public synchronized long getMaxTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(maxTimeout);
+    }
+
+    /**
+     * Sets the bounds of the timeout. The minimum absorbs the scheduling
+     * latency of the serial driver, the maximum should cover the slowest
+     * link expected, e.g. a serial port forwarded over the network.
+     *
+     * @param minTimeout Minimum timeout in milliseconds
+     * @param maxTimeout Maximum timeout in milliseconds
+     */
+    public synchronized void setTimeoutBounds(long minTimeout, long maxTimeout) {
+        if (minTimeout <= 0 || maxTimeout < minTimeout) {
+            throw new IllegalArgumentException("Invalid timeout bounds: " + minTimeout + " - " + maxTimeout);
+        }
+        this.minTimeout = TimeUnit.MILLISECONDS.toNanos(minTimeout);
+        this.maxTimeout = TimeUnit.MILLISECONDS.toNanos(maxTimeout);
+    }
+
+    /**
+     * Returns true if every timeout doubles the next ones
+     *
+     * @return True if exponential backoff is enabled
+     */
+    public synchronized boolean isExponentialBackoff() {
+        return exponentialBackoff;
+    }
+
+    /**
+     * Enables or disables the doubling of the timeouts after every timeout,
+     * until a new round trip time is sampled
+     *
+     * @param exponentialBackoff True to enable exponential backoff
+     */
+    public synchronized void setExponentialBackoff(boolean exponentialBackoff) {
+        this.exponentialBackoff = exponentialBackoff;
+        if (!exponentialBackoff) {
+            backoff = 0;
+        }
+    }
+
+    /**
+     * Returns the fraction of the timeout added at random
+     *
+     * @return Jitter between 0 and 1
+     */
+    public synchronized double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Sets the fraction of the timeout added at random, 0 to disable
+     *
+     * @param jitter Jitter between 0 and 1
+     */
+    public synchronized void setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Invalid jitter: " + jitter);
+        }
+        this.jitter = jitter;
+    }
+
+    /**
+     * Forgets the samples, going back to the initial timeout
+     */
+    public synchronized void reset() {
+        smoothedRtt = 0;
+        rttVariance = 0;
+        lastRtt = 0;
+        samples = 0;
+        backoff = 0;
+    }
+
+    private long getTimeoutNanos() {
+        if (samples == 0) {
+            return initialTimeout;
+        }
+        long timeout = (long) (smoothedRtt + K * rttVariance);
+        return Math.max(minTimeout, Math.min(timeout, maxTimeout));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+
+/**
+ * Decides from the raw bytes of a received radio frame, before any object is
+ * built for it, whether the telegram is worth parsing and decoding, e.g. to
+ * ignore the devices of the neighbours. The filter is called by the thread
+ * reading the transceiver for the RADIO and RADIO_SUB_TEL frames only, see
+ * {@link LinkLayer#setRxFilter(RxFilter)}; responses and events are always
+ * kept.
+ * <p>
+ * The static methods locate the fields of the frame.
+ */
+public interface RxFilter {
+
+    /**
+     * Tells whether a radio frame should be kept
+     *
+     * @param frame      Array holding the frame, only valid during the call
+     * @param offset     Offset of the sync byte
+     * @param dataLength Length of the data: RORG, payload, sender and status,
+     *                   at least 6
+     * @param optLength  Length of the optional data
+     * @return True to keep the frame, false to drop it
+     */
+    boolean accept(byte[] frame, int offset, int dataLength, int optLength);
+
+    /**
+     * Returns the RORG of a radio frame
+     *
+     * @param frame  Array holding the frame
+     * @param offset Offset of the sync byte
+     * @return RORG, 0 to 255
+     */
+    static int getRorg(byte[] frame, int offset) {
+        return frame[offset + 6] & 0xff;
+    }
+
+    /**
+     * Returns the offset of the sender address of a radio frame
+     *
+     * @param offset     Offset of the sync byte
+     * @param dataLength Length of the data
+     * @return Offset of the first of the 4 address bytes
+     */
+    static int getSenderOffset(int offset, int dataLength) {
+        return offset + 6 + dataLength - 5;
+    }
+
+    /**
+     * Returns the signal strength of a radio frame, taken from its optional
+     * data
+     *
+     * @param frame      Array holding the frame
+     * @param offset     Offset of the sync byte
+     * @param dataLength Length of the data
+     * @param optLength  Length of the optional data
+     * @return Signal strength in dBm (e.g. -64), or
+     * {@link ESP3Packet#UNKNOWN_DBM} if not reported
+     */
+    static int getDbm(byte[] frame, int offset, int dataLength, int optLength) {
+        if (optLength <= 5 || frame[offset + 6 + dataLength + 5] == (byte) 0xff) {
+            return ESP3Packet.UNKNOWN_DBM;
+        }
+        return -(frame[offset + 6 + dataLength + 5] & 0xff);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An {@link RxFilter} keeping the frames accepted by all the filters it holds,
+ * asked in the order they were added, so that the cheapest and most selective
+ * filters should come first. It counts the frames each filter rejected.
+ */
+public class RxFilterChain implements RxFilter {
+
+    // the filters, with their rejection counters
+    private final List<Link> links = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a chain holding the given filters
+     *
+     * @param filters Filters, in the order they are asked
+     */
+    public RxFilterChain(RxFilter... filters) {
+        for (RxFilter filter : filters) {
+            add(filter);
+        }
+    }
+
+    /**
+     * Adds a filter at the end of the chain
+     *
+     * @param filter Filter
+     * @return This chain
+     */
+    public RxFilterChain add(RxFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("The filter cannot be null");
+        }
+        links.add(new Link(filter));
+        return this;
+    }
+
+    /**
+     * Removes a filter from the chain
+     *
+     * @param filter Filter
+     * @return True if the filter was in the chain
+     */
+    public boolean remove(RxFilter filter) {
+        for (Link link : links) {
+            if (link.filter == filter) {
+                return links.remove(link);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean accept(byte[] frame, int offset, int dataLength, int optLength) {
+        for (Link link : links) {
+            if (!link.filter.accept(frame, offset, dataLength, optLength)) {
+                link.rejected++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of frames a filter rejected
+     *
+     * @param filter Filter
+     * @return Frame count, 0 if the filter is not in the chain
+     */
+    public long getRejected(RxFilter filter) {
+        for (Link link : links) {
+            if (link.filter == filter) {
+                return link.rejected;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A filter of the chain
+     */
+    private static final class Link {
+        private final RxFilter filter;
+
+        // only updated by the thread reading the transceiver
+        private volatile long rejected;
+
+        private Link(RxFilter filter) {
+            this.filter = filter;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link WaitStrategy} that first spins, then yields, and finally parks the
+ * consumer thread until a producer unparks it. Bursts are picked up without a
+ * thread wake-up while an idle consumer uses no CPU. Only one consumer thread
+ * is supported.
+ */
+public class SpinThenParkWaitStrategy implements WaitStrategy {
+
+    // the default number of spins and yields before parking
+    public static final int DEFAULT_SPINS = 1000;
+    public static final int DEFAULT_YIELDS = 10;
+
+    // the number of spins and yields before parking
+    private final int spins;
+    private final int yields;
+
+    // the parked consumer, if any
+    private volatile Thread waiter;
+
+    /**
+     * Creates a strategy using the default number of spins and yields
+     */
+    public SpinThenParkWaitStrategy() {
+        this(DEFAULT_SPINS, DEFAULT_YIELDS);
+    }
+
+    /**
+     * Creates a strategy using the given number of spins and yields
+     *
+     * @param spins  Number of busy checks before yielding
+     * @param yields Number of yielding checks before parking
+     */
+    public SpinThenParkWaitStrategy(int spins, int yields) {
+        this.spins = spins;
+        this.yields = yields;
+    }
+
+    @Override
+    public boolean waitFor(Queue<?> queue, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int i = 0; i < spins + yields; i++) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+            if (i >= spins) {
+                Thread.yield();
+            }
+        }
+
+        // register, then check again so that a signal can not be missed
+        waiter = Thread.currentThread();
+        try {
+            while (queue.isEmpty()) {
+                long nanos = deadline - System.nanoTime();
+                if (nanos <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, nanos);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        }
+        finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    public void signal() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
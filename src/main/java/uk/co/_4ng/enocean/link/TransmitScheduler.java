@@ -0,0 +1,648 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.ESP3Packet;
+import uk.co._4ng.enocean.protocol.serial.v3.network.packet.response.Response;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Orders the low priority packets waiting to be transmitted. Packets are kept
+ * in one queue per destination address and the destinations are served round
+ * robin, so a burst of commands to one device does not starve the others.
+ * <p>
+ * Radio telegrams are also charged their estimated airtime against a token
+ * bucket refilled at the configured duty cycle, so that the gateway keeps
+ * within the regulatory duty-cycle limit of its band (1% over one hour for the
+ * 868.3 MHz EnOcean channel) instead of being throttled by the transceiver.
+ * Packets that are not radio telegrams, e.g. common commands, never go on air
+ * and are not charged.
+ * <p>
+ * Every destination has its own retry state: a packet whose response is
+ * missing goes back to the head of its destination queue, and that
+ * destination waits for the retry delay at the back of the rotation, so one
+ * unreachable device does not hold up commands to the others.
+ * <p>
+ * Optionally, commands can be coalesced: a command replaces a still queued one
+ * for the same destination setting the same state, so that only the final
+ * state of e.g. a dimmer being dragged goes on air. Which state a command sets
+ * depends on the profile of the destination, so only the destinations with a
+ * registered {@link CommandKeyExtractor} are coalesced.
+ * <p>
+ * The scheduler is driven by the {@link PacketTransmitter} thread; all its
+ * methods are synchronized so that the statistics can be read from any thread.
+ */
+public class TransmitScheduler {
+
+    // the key used for the packets that do not target a device
+    public static final int LOCAL_DESTINATION = 0;
+
+    // the default duty cycle and the window it is measured over
+    public static final double DEFAULT_DUTY_CYCLE = 0.01;
+    public static final long DEFAULT_DUTY_CYCLE_WINDOW = TimeUnit.HOURS.toMillis(1);
+
+    // ERP1 radio timing: 125 kbit/s, preamble, start and end of frame, and the
+    // sync bits inserted into every byte
+    private static final long BIT_NANOS = 8000;
+    private static final int FRAME_OVERHEAD_BITS = 8 + 8 + 4;
+    private static final int BITS_PER_BYTE = 12;
+
+    // the number of sub-telegrams sent when the packet does not specify it
+    private static final int DEFAULT_SUB_TELEGRAMS = 3;
+
+    // the weight of a new sample in the service time average
+    private static final double SERVICE_TIME_WEIGHT = 0.125;
+
+    // the queue of every destination with waiting packets, and the round robin
+    // order in which they are served
+    private final Map<Integer, Lane> lanes = new HashMap<>();
+    private final ArrayDeque<Lane> rotation = new ArrayDeque<>();
+
+    // the token bucket, in nanoseconds of airtime
+    private double dutyCycle;
+    private double bucketCapacity;
+    private double tokens;
+    private long lastRefill;
+
+    // the number of waiting packets
+    private int backlog;
+
+    // the average time between sending a packet and being able to send the next one
+    private double serviceTime;
+
+    // true if queued commands are replaced by newer ones
+    private boolean coalescing;
+
+    // the extractors telling which state a command sets, by destination
+    private final Map<Integer, CommandKeyExtractor> keyExtractors = new HashMap<>();
+
+    // the time a destination waits before a re-transmission
+    private long retryDelay;
+
+    // statistics
+    private long airtimeUsed;
+    private long throttled;
+    private long coalesced;
+    private long retries;
+
+    /**
+     * Creates a scheduler enforcing the default duty cycle
+     */
+    public TransmitScheduler() {
+        this(DEFAULT_DUTY_CYCLE, DEFAULT_DUTY_CYCLE_WINDOW);
+    }
+
+    /**
+     * Creates a scheduler enforcing the given duty cycle
+     *
+     * @param dutyCycle Fraction of the time the radio may transmit, 1 disables
+     *                  the limit
+     * @param window    Window the duty cycle is measured over, in milliseconds
+     */
+    public TransmitScheduler(double dutyCycle, long window) {
+        lastRefill = System.nanoTime();
+        setDutyCycle(dutyCycle, window);
+    }
+
+    /**
+     * Changes the duty-cycle budget, the bucket starts full
+     *
+     * @param dutyCycle Fraction of the time the radio may transmit, 1 disables
+     *                  the limit
+     * @param window    Window the duty cycle is measured over, in milliseconds
+     */
+    public synchronized void setDutyCycle(double dutyCycle, long window) {
+        if (dutyCycle <= 0 || dutyCycle > 1 || window <= 0) {
+            throw new IllegalArgumentException("Invalid duty cycle " + dutyCycle + " over " + window + " ms");
+        }
+        this.dutyCycle = dutyCycle;
+        bucketCapacity = dutyCycle * TimeUnit.MILLISECONDS.toNanos(window);
+        tokens = bucketCapacity;
+    }
+
+    /**
+     * Returns the fraction of the time the radio may transmit
+     *
+     * @return Duty cycle
+     */
+    public synchronized double getDutyCycle() {
+        return dutyCycle;
+    }
+
+    /**
+     * Queues a packet behind the other packets for the same destination
+     *
+     * @param item Packet to queue
+     */
+    public synchronized void add(PacketQueueItem item) {
+        int destination = getDestination(item.getPkt());
+        Lane lane = lanes.get(destination);
+        if (lane == null) {
+            lane = new Lane(destination);
+            lanes.put(destination, lane);
+        }
+        else if (coalescing && coalesce(lane, item)) {
+            return;
+        }
+        if (lane.items.isEmpty()) {
+            rotation.addLast(lane);
+        }
+        lane.items.addLast(item);
+        backlog++;
+    }
+
+    /**
+     * Returns true if queued commands are replaced by newer ones
+     *
+     * @return True if coalescing
+     */
+    public synchronized boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * Enables or disables the replacement of queued commands by newer ones
+     * setting the same state of the same destination, for the destinations
+     * with a registered {@link CommandKeyExtractor}. The newer command takes
+     * the queue position of the older one, and the future of the older one, if
+     * any, completes with the result of the newer one.
+     *
+     * @param coalescing True to coalesce commands
+     */
+    public synchronized void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Registers the extractor telling which state the commands sent to a
+     * destination set, as provided by the profile of the device
+     *
+     * @param destination  Destination address
+     * @param keyExtractor Extractor, null to never coalesce the commands sent
+     *                     to the destination
+     */
+    public synchronized void setCommandKeyExtractor(int destination, CommandKeyExtractor keyExtractor) {
+        if (keyExtractor == null) {
+            keyExtractors.remove(destination);
+        }
+        else {
+            keyExtractors.put(destination, keyExtractor);
+        }
+    }
+
+    /**
+     * Returns the extractor registered for a destination
+     *
+     * @param destination Destination address
+     * @return Extractor or null if the commands sent to the destination are
+     * never coalesced
+     */
+    public synchronized CommandKeyExtractor getCommandKeyExtractor(int destination) {
+        return keyExtractors.get(destination);
+    }
+
+    /**
+     * Returns the number of queued commands replaced by newer ones
+     *
+     * @return Coalesced command count
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Returns the next packet to send if the duty-cycle budget allows it.
+     * Destinations waiting out a retry delay are skipped, so that they do not
+     * hold the others up.
+     *
+     * @param now Current {@link System#nanoTime()}
+     * @return Next packet or null if nothing can be sent now
+     */
+    public synchronized PacketQueueItem next(long now) {
+        Lane lane = firstReadyLane(now);
+        if (lane == null) {
+            return null;
+        }
+        refill(now);
+        PacketQueueItem item = lane.items.peekFirst();
+        if (getAirtime(item.getPkt()) > tokens) {
+            throttled++;
+            return null;
+        }
+
+        // serve the destination and move it to the back of the rotation
+        lane.items.pollFirst();
+        rotation.remove(lane);
+        if (!lane.items.isEmpty()) {
+            rotation.addLast(lane);
+        }
+        else if (lane.failures == 0) {
+            lanes.remove(lane.destination);
+        }
+        backlog--;
+        return item;
+    }
+
+    /**
+     * Returns the time at which {@link #next(long)} will return a packet
+     *
+     * @param now Current {@link System#nanoTime()}
+     * @return Dispatch time as a {@link System#nanoTime()} value, or
+     * {@link Long#MAX_VALUE} if nothing is waiting
+     */
+    public synchronized long getNextDispatchTime(long now) {
+        if (rotation.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+
+        // the first destination ready to be served, or the one whose retry
+        // delay ends first
+        Lane lane = firstReadyLane(now);
+        long ready = now;
+        if (lane == null) {
+            for (Lane waiting : rotation) {
+                if (lane == null || waiting.retryAt - lane.retryAt < 0) {
+                    lane = waiting;
+                }
+            }
+            ready = lane.retryAt;
+        }
+        refill(now);
+        double missing = getAirtime(lane.items.peekFirst().getPkt()) - tokens;
+        long earned = missing <= 0 ? now : now + (long) Math.ceil(missing / dutyCycle);
+        return earned - ready > 0 ? earned : ready;
+    }
+
+    /**
+     * Puts back a packet whose response did not arrive in time, at the head of
+     * its destination queue. The destination then waits for the retry delay,
+     * and goes to the back of the rotation, while the others keep being
+     * served.
+     *
+     * @param item Packet to re-transmit
+     * @param now  Current {@link System#nanoTime()}
+     */
+    public synchronized void retry(PacketQueueItem item, long now) {
+        int destination = getDestination(item.getPkt());
+        Lane lane = lanes.get(destination);
+        if (lane == null) {
+            lane = new Lane(destination);
+            lanes.put(destination, lane);
+        }
+        rotation.remove(lane);
+        rotation.addLast(lane);
+        lane.items.addFirst(item);
+        lane.failures++;
+        lane.retryAt = now + retryDelay;
+        backlog++;
+        retries++;
+    }
+
+    /**
+     * Clears the retry state of the destination of a packet whose response
+     * has been received
+     *
+     * @param pkt Packet answered
+     */
+    public synchronized void responded(ESP3Packet pkt) {
+        Lane lane = lanes.get(getDestination(pkt));
+        if (lane != null && lane.failures > 0) {
+            lane.failures = 0;
+            lane.retryAt = 0;
+            if (lane.items.isEmpty()) {
+                lanes.remove(lane.destination);
+            }
+        }
+    }
+
+    /**
+     * Removes every waiting packet and clears the retry state of all the
+     * destinations, e.g. when the transmitter stops
+     *
+     * @return Removed packets
+     */
+    public synchronized List<PacketQueueItem> drain() {
+        List<PacketQueueItem> drained = new ArrayList<>(backlog);
+        for (Lane lane : rotation) {
+            drained.addAll(lane.items);
+        }
+        lanes.clear();
+        rotation.clear();
+        backlog = 0;
+        return drained;
+    }
+
+    /**
+     * Clears the retry state of a destination whose packet was given up on
+     *
+     * @param pkt Packet given up on
+     */
+    public synchronized void abandoned(ESP3Packet pkt) {
+        responded(pkt);
+    }
+
+    /**
+     * Returns the number of consecutive packets to the given destination
+     * whose response was missing
+     *
+     * @param destination Destination address as an integer UID
+     * @return Consecutive failure count
+     */
+    public synchronized int getConsecutiveFailures(int destination) {
+        Lane lane = lanes.get(destination);
+        return lane == null ? 0 : lane.failures;
+    }
+
+    /**
+     * Returns the number of destinations waiting out a retry delay
+     *
+     * @return Retrying destination count
+     */
+    public synchronized int getRetryingDestinations() {
+        long now = System.nanoTime();
+        int retrying = 0;
+        for (Lane lane : rotation) {
+            if (lane.retryAt - now > 0) {
+                retrying++;
+            }
+        }
+        return retrying;
+    }
+
+    /**
+     * Returns the time a destination waits before a packet is re-transmitted
+     *
+     * @return Retry delay in milliseconds
+     */
+    public synchronized long getRetryDelay() {
+        return TimeUnit.NANOSECONDS.toMillis(retryDelay);
+    }
+
+    /**
+     * Sets the time a destination waits before a packet is re-transmitted,
+     * the other destinations are served in the meantime
+     *
+     * @param retryDelay Retry delay in milliseconds
+     */
+    public synchronized void setRetryDelay(long retryDelay) {
+        this.retryDelay = TimeUnit.MILLISECONDS.toNanos(retryDelay);
+    }
+
+    /**
+     * Returns the number of packets put back for re-transmission
+     *
+     * @return Retry count
+     */
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Charges the airtime of a packet that has been written to the
+     * transceiver, re-transmissions and high priority packets included
+     *
+     * @param pkt Packet sent
+     * @param now Current {@link System#nanoTime()}
+     */
+    public synchronized void sent(ESP3Packet pkt, long now) {
+        refill(now);
+        long airtime = getAirtime(pkt);
+        tokens -= airtime;
+        airtimeUsed += airtime;
+    }
+
+    /**
+     * Records the time it took from sending a packet to being able to send the
+     * next one, used to predict dispatch times
+     *
+     * @param nanos Service time in nanoseconds
+     */
+    public synchronized void recordServiceTime(long nanos) {
+        serviceTime = serviceTime == 0 ? nanos : serviceTime + SERVICE_TIME_WEIGHT * (nanos - serviceTime);
+    }
+
+    /**
+     * Returns the number of packets waiting
+     *
+     * @return Backlog
+     */
+    public synchronized int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Returns the number of packets waiting for the given destination
+     *
+     * @param destination Destination address as an integer UID
+     * @return Destination backlog
+     */
+    public synchronized int getBacklog(int destination) {
+        Lane lane = lanes.get(destination);
+        return lane == null ? 0 : lane.items.size();
+    }
+
+    /**
+     * Predicts how long a packet queued now for the given destination would
+     * wait before being sent. Every destination ahead in the rotation gets one
+     * turn per round, and every turn costs the average service time or, when
+     * the duty cycle is the bottleneck, the time needed to earn its airtime.
+     *
+     * @param destination Destination address as an integer UID
+     * @return Predicted delay in milliseconds
+     */
+    public synchronized long getPredictedDispatchDelay(int destination) {
+        long now = System.nanoTime();
+        refill(now);
+
+        // the packets served before a new one for this destination
+        int rounds = getBacklog(destination);
+        double ahead = rounds;
+        double airtime = 0;
+        for (Lane lane : rotation) {
+            if (lane.destination != destination) {
+                ahead += Math.min(lane.items.size(), rounds + 1);
+            }
+            for (PacketQueueItem item : lane.items) {
+                airtime += getAirtime(item.getPkt());
+            }
+        }
+
+        // the slower of the transceiver and the duty-cycle budget
+        double serviceDelay = ahead * serviceTime;
+        double budgetDelay = Math.max(0, airtime - tokens) / dutyCycle;
+        return TimeUnit.NANOSECONDS.toMillis((long) Math.max(serviceDelay, budgetDelay));
+    }
+
+    /**
+     * Returns the airtime budget currently available
+     *
+     * @return Available airtime in milliseconds
+     */
+    public synchronized double getAvailableAirtime() {
+        refill(System.nanoTime());
+        return tokens / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the total airtime used so far
+     *
+     * @return Airtime in milliseconds
+     */
+    public synchronized long getAirtimeUsed() {
+        return TimeUnit.NANOSECONDS.toMillis(airtimeUsed);
+    }
+
+    /**
+     * Returns the number of times a packet was held back by the duty-cycle
+     * budget
+     *
+     * @return Throttle count
+     */
+    public synchronized long getThrottled() {
+        return throttled;
+    }
+
+    /**
+     * Returns the destination of a packet: the destination ID of radio
+     * telegrams (0xFFFFFFFF for broadcasts), {@link #LOCAL_DESTINATION} for
+     * anything else
+     *
+     * @param pkt Packet to interrogate
+     * @return Destination address as an integer UID
+     */
+    public static int getDestination(ESP3Packet pkt) {
+        byte[] optData = pkt.getOptData();
+        if (!pkt.isRadio() || optData == null || optData.length < 5) {
+            return LOCAL_DESTINATION;
+        }
+        return (optData[1] & 0xff) << 24 | (optData[2] & 0xff) << 16 | (optData[3] & 0xff) << 8 | optData[4] & 0xff;
+    }
+
+    /**
+     * Estimates the time a packet spends on air: every sub-telegram carries
+     * the radio data plus a check byte, each byte being sent as 12 bits at
+     * 125 kbit/s
+     *
+     * @param pkt Packet to interrogate
+     * @return Airtime in nanoseconds, 0 for packets that are not radio telegrams
+     */
+    public static long getAirtime(ESP3Packet pkt) {
+        if (!pkt.isRadio() || pkt.getData() == null) {
+            return 0;
+        }
+        byte[] optData = pkt.getOptData();
+        int subTelegrams = optData != null && optData.length > 0 && optData[0] > 0 ? optData[0] : DEFAULT_SUB_TELEGRAMS;
+        long bits = FRAME_OVERHEAD_BITS + (pkt.getData().length + 1) * BITS_PER_BYTE;
+        return subTelegrams * bits * BIT_NANOS;
+    }
+
+    /**
+     * Replaces a queued command matching the given one
+     *
+     * @param lane Queue of the destination
+     * @param item New command
+     * @return True if the new command took the place of a queued one
+     */
+    private boolean coalesce(Lane lane, PacketQueueItem item) {
+        CommandKeyExtractor keyExtractor = keyExtractors.get(lane.destination);
+        if (keyExtractor == null) {
+            return false;
+        }
+        int key = keyExtractor.getKey(item.getPkt());
+        if (key < 0) {
+            return false;
+        }
+        for (PacketQueueItem queued : lane.items) {
+            if (keyExtractor.getKey(queued.getPkt()) == key) {
+                // take the place of the queued command
+                queued.setPkt(item.getPkt());
+                queued.setRetransmissionCounter(item.getRetransmissionCounter());
+
+                // whoever waits for the old command gets the new result
+                final CompletableFuture<Response> superseded = queued.getResponseFuture();
+                CompletableFuture<Response> latest = item.getResponseFuture();
+                if (latest != null) {
+                    queued.setResponseFuture(latest);
+                    if (superseded != null && superseded != latest) {
+                        latest.whenComplete(new BiConsumer<Response, Throwable>() {
+                            @Override
+                            public void accept(Response response, Throwable error) {
+                                if (error != null) {
+                                    superseded.completeExceptionally(error);
+                                }
+                                else {
+                                    superseded.complete(response);
+                                }
+                            }
+                        });
+                    }
+                }
+                coalesced++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the first destination in the rotation that is not waiting out a
+     * retry delay, moving the waiting ones behind it
+     *
+     * @param now Current {@link System#nanoTime()}
+     * @return Ready destination or null
+     */
+    private Lane firstReadyLane(long now) {
+        for (Lane lane : rotation) {
+            if (lane.failures == 0 || lane.retryAt - now <= 0) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(bucketCapacity, tokens + elapsed * dutyCycle);
+            lastRefill = now;
+        }
+    }
+
+    /**
+     * The packets waiting for one destination
+     */
+    private static final class Lane {
+        private final int destination;
+        private final ArrayDeque<PacketQueueItem> items = new ArrayDeque<>();
+
+        // the retry state: consecutive missing responses and the time the
+        // destination may be served again
+        private int failures;
+        private long retryAt;
+
+        Lane(int destination) {
+            this.destination = destination;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines how a consumer waits for elements to appear in a queue, and how
+ * producers wake it up. Implementations trade CPU usage against wake-up
+ * latency: {@link BlockingWaitStrategy} sleeps on a condition,
+ * {@link SpinThenParkWaitStrategy} spins briefly before parking and
+ * {@link BusySpinWaitStrategy} never gives the CPU up.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Waits until the queue is not empty or the timeout expires
+     *
+     * @param queue   Queue to watch
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of the timeout
+     * @return True if the queue is not empty
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    boolean waitFor(Queue<?> queue, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Wakes the waiting consumer up, called by producers after adding one or
+     * more elements
+     */
+    void signal();
+}
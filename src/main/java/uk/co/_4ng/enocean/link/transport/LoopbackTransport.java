@@ -0,0 +1,254 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link.transport;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One end of an in-memory pair of {@link Transport}s, the bytes written to an
+ * end being read from the other. It connects a link layer to a simulated
+ * transceiver, for tests and load tests without hardware:
+ * <pre>
+ * LoopbackTransport transport = new LoopbackTransport();
+ * LinkLayer linkLayer = new LinkLayer(transport);
+ * LoopbackTransport transceiver = transport.getPeer();
+ * </pre>
+ * Each end buffers the bytes it has not read yet and tells its listener, if
+ * any, about them on its own thread. Writers wait while the buffer of the other end is
+ * full.
+ */
+public class LoopbackTransport implements Transport {
+
+    // the default number of bytes buffered by each end
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    // the other end
+    private final LoopbackTransport peer;
+
+    // the name of this end
+    private final String name;
+
+    // the bytes received and not read yet, guarded by this
+    private final byte[] ring;
+    private int head;
+    private int count;
+
+    // set when bytes arrived since the listener was last told
+    private boolean pending;
+
+    // the open flag, guarded by this
+    private boolean open;
+
+    // the listener told about new bytes
+    private volatile DataListener listener;
+
+    /**
+     * Creates a pair of ends buffering {@link #DEFAULT_CAPACITY} bytes each
+     */
+    public LoopbackTransport() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pair of ends
+     *
+     * @param capacity Number of bytes buffered by each end
+     */
+    public LoopbackTransport(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        name = "loopback";
+        ring = new byte[capacity];
+        peer = new LoopbackTransport(this, capacity);
+    }
+
+    private LoopbackTransport(LoopbackTransport peer, int capacity) {
+        name = "loopback peer";
+        ring = new byte[capacity];
+        this.peer = peer;
+    }
+
+    /**
+     * Returns the other end
+     *
+     * @return Peer end
+     */
+    public LoopbackTransport getPeer() {
+        return peer;
+    }
+
+    @Override
+    public void open() {
+        synchronized (this) {
+            if (open) {
+                return;
+            }
+            open = true;
+        }
+
+        // tell the listener about new bytes
+        Thread notifier = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                notifyListener();
+            }
+        }, "EnOcean " + name);
+        notifier.setDaemon(true);
+        notifier.start();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) {
+        if (!open) {
+            return -1;
+        }
+        int read = 0;
+        while (read < length && count > 0) {
+            int chunk = Math.min(Math.min(length - read, count), ring.length - head);
+            System.arraycopy(ring, head, buffer, offset + read, chunk);
+            head = (head + chunk) % ring.length;
+            count -= chunk;
+            read += chunk;
+        }
+        if (read > 0) {
+            // wake writers waiting for room
+            notifyAll();
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length, int timeout) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long left = TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (open && count == 0 && left > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading from the " + name, e);
+            }
+            left = deadline - System.nanoTime();
+        }
+        return read(buffer, offset, length);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        synchronized (this) {
+            if (!open) {
+                throw new IOException("The " + name + " is not open");
+            }
+        }
+        peer.receive(buffer, offset, length);
+    }
+
+    @Override
+    public void setDataListener(DataListener listener) {
+        this.listener = listener;
+        synchronized (this) {
+            // bytes received before the listener was set
+            if (count > 0) {
+                pending = true;
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        count = 0;
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of bytes received and not read yet
+     *
+     * @return Byte count
+     */
+    public synchronized int available() {
+        return count;
+    }
+
+    /**
+     * Stores bytes written by the other end, waiting while the buffer is full
+     */
+    private synchronized void receive(byte[] buffer, int offset, int length) throws IOException {
+        int written = 0;
+        while (written < length) {
+            if (!open) {
+                throw new IOException("The " + name + " is not open");
+            }
+            if (count == ring.length) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while writing to the " + name, e);
+                }
+                continue;
+            }
+            int tail = (head + count) % ring.length;
+            int chunk = Math.min(length - written, Math.min(ring.length - count, ring.length - tail));
+            System.arraycopy(buffer, offset + written, ring, tail, chunk);
+            count += chunk;
+            written += chunk;
+            pending = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * The loop of the notifier thread, until the end is closed
+     */
+    private void notifyListener() {
+        while (true) {
+            DataListener current;
+            synchronized (this) {
+                while (open && !(pending && listener != null)) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (!open) {
+                    return;
+                }
+                pending = false;
+                current = listener;
+            }
+            current.dataAvailable(this);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Transport} replaying a capture of the bytes received from a
+ * transceiver, e.g. recorded from a serial port, to exercise or load test the
+ * stack without hardware. The capture holds the raw ESP3 byte stream.
+ * <p>
+ * The bytes are made available either as fast as they are read, or at a
+ * given rate (5760 bytes per second for the 57600 bit/s of a real
+ * transceiver), and the capture can be replayed several times. The bytes
+ * written are discarded, so that the packets sent get no response.
+ */
+public class ReplayTransport implements Transport {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayTransport.class);
+
+    // the rate of a real transceiver, in bytes per second
+    public static final int TRANSCEIVER_RATE = 5760;
+
+    // the most bytes made available at once
+    private static final int CHUNK_SIZE = 4096;
+
+    // the capture file
+    private final Path file;
+
+    // the rate the bytes are made available at, in bytes per second, 0 for
+    // as fast as they are read
+    private final int bytesPerSecond;
+
+    // the number of times the capture is replayed
+    private volatile int repeat = 1;
+
+    // the capture, the position of the next byte to read and the end of the
+    // bytes available so far, guarded by this
+    private byte[] data;
+    private int position;
+    private int limit;
+
+    // the open flag, guarded by this
+    private boolean open;
+
+    // the listener told about new bytes
+    private volatile DataListener listener;
+
+    // statistics
+    private volatile long bytesReplayed;
+    private volatile long bytesWritten;
+
+    // released once the whole capture has been replayed
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * Creates a transport replaying a capture as fast as it is read
+     *
+     * @param file Capture file
+     */
+    public ReplayTransport(Path file) {
+        this(file, 0);
+    }
+
+    /**
+     * Creates a transport replaying a capture at the given rate
+     *
+     * @param file           Capture file
+     * @param bytesPerSecond Rate, in bytes per second, 0 for as fast as the
+     *                       bytes are read
+     */
+    public ReplayTransport(Path file, int bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid rate: " + bytesPerSecond);
+        }
+        this.file = file;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Sets the number of times the capture is replayed. Should be called
+     * before {@link #open()}.
+     *
+     * @param repeat Replay count
+     */
+    public void setRepeat(int repeat) {
+        if (repeat < 1) {
+            throw new IllegalArgumentException("Invalid replay count: " + repeat);
+        }
+        this.repeat = repeat;
+    }
+
+    /**
+     * Returns the number of times the capture is replayed
+     *
+     * @return Replay count
+     */
+    public int getRepeat() {
+        return repeat;
+    }
+
+    @Override
+    public void open() throws IOException {
+        synchronized (this) {
+            if (open) {
+                return;
+            }
+            data = Files.readAllBytes(file);
+            position = 0;
+            limit = 0;
+            open = true;
+        }
+
+        // make the bytes available
+        Thread replayer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        }, "EnOcean replay " + file.getFileName());
+        replayer.setDaemon(true);
+        replayer.start();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) {
+        if (!open) {
+            return -1;
+        }
+        int read = Math.min(length, limit - position);
+        System.arraycopy(data, position, buffer, offset, read);
+        position += read;
+        bytesReplayed += read;
+        if (read > 0 && position == limit) {
+            // the replay thread waits for the chunk to be read
+            notifyAll();
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length, int timeout) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long left = TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (open && position == limit && left > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while replaying " + file, e);
+            }
+            left = deadline - System.nanoTime();
+        }
+        return read(buffer, offset, length);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+        bytesWritten += length;
+    }
+
+    @Override
+    public void setDataListener(DataListener listener) {
+        synchronized (this) {
+            this.listener = listener;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return file.toString();
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        notifyAll();
+    }
+
+    /**
+     * Waits until the whole capture has been replayed and read
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of the timeout
+     * @return True if the replay finished, false if the time elapsed
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    /**
+     * Returns the number of bytes replayed and read so far
+     *
+     * @return Byte count
+     */
+    public long getBytesReplayed() {
+        return bytesReplayed;
+    }
+
+    /**
+     * Returns the number of bytes written, and discarded, so far
+     *
+     * @return Byte count
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * The loop of the replay thread: makes a chunk of the capture available
+     * once the previous one has been read, telling the listener if any and
+     * pacing the chunks if needed
+     */
+    private void replay() {
+        int chunkSize = bytesPerSecond > 0 ? Math.max(1, Math.min(CHUNK_SIZE, bytesPerSecond / 100)) : CHUNK_SIZE;
+        long start = System.nanoTime();
+        long released = 0;
+        try {
+            for (int pass = 0; pass < repeat; pass++) {
+                synchronized (this) {
+                    position = 0;
+                    limit = 0;
+                }
+                while (true) {
+                    DataListener current;
+                    synchronized (this) {
+                        if (!open) {
+                            return;
+                        }
+                        if (limit == data.length) {
+                            break;
+                        }
+
+                        // release the next chunk and wake a waiting reader up
+                        limit = Math.min(data.length, limit + chunkSize);
+                        released += chunkSize;
+                        current = listener;
+                        notifyAll();
+                    }
+
+                    // tell the listener until the chunk is read
+                    while (true) {
+                        if (current != null) {
+                            current.dataAvailable(this);
+                        }
+                        synchronized (this) {
+                            if (open && position < limit) {
+                                wait(10);
+                            }
+                            if (!open) {
+                                return;
+                            }
+                            if (position == limit) {
+                                break;
+                            }
+                            current = listener;
+                        }
+                    }
+
+                    // keep to the rate
+                    if (bytesPerSecond > 0) {
+                        long due = start + released * 1000000000L / bytesPerSecond;
+                        long wait = due - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                    }
+                }
+            }
+            logger.info("Replayed {} bytes of {}", bytesReplayed, file);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            finished.countDown();
+        }
+    }
+}
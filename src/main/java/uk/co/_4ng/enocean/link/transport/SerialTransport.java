@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link.transport;
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListener;
+import com.fazecast.jSerialComm.SerialPortEvent;
+import uk.co._4ng.enocean.link.serial.SerialPortFactory;
+import uk.co._4ng.enocean.util.EnOceanException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Transport} over a local serial port, e.g. a USB300 stick, using
+ * jSerialComm. New bytes are signalled by the data available events of the
+ * port, and waited for by semi-blocking reads.
+ */
+public class SerialTransport implements Transport {
+
+    // the serial port
+    private final SerialPort serialPort;
+
+    // the stream frames are written to, while open
+    private volatile OutputStream out;
+
+    // the timeout of the semi-blocking reads the port is configured for, -1
+    // while it is non-blocking
+    private int readTimeout = -1;
+
+    /**
+     * Creates a transport over the serial port with the given name,
+     * configured for ESP3 (57600 bit/s, 8N1)
+     *
+     * @param portName Name of the port (e.g., COM1, /dev/ttyUSB0,...)
+     * @throws EnOceanException If the port does not exist
+     */
+    public SerialTransport(String portName) throws EnOceanException {
+        this(SerialPortFactory.getPort(portName));
+    }
+
+    /**
+     * Creates a transport over an already configured serial port
+     *
+     * @param serialPort Serial port
+     */
+    public SerialTransport(SerialPort serialPort) {
+        this.serialPort = serialPort;
+    }
+
+    @Override
+    public void open() throws IOException {
+        if (!serialPort.openPort()) {
+            throw new IOException("Cannot open the serial port " + getName());
+        }
+        out = serialPort.getOutputStream();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return serialPort.isOpen();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int available = serialPort.bytesAvailable();
+        if (available <= 0 || length == 0) {
+            return available < 0 ? -1 : 0;
+        }
+        return serialPort.readBytes(buffer, Math.min(available, length), offset);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length, int timeout) {
+        if (!serialPort.isOpen()) {
+            return -1;
+        }
+        if (timeout != readTimeout) {
+            // the non-blocking reads never ask for more than is available,
+            // they are not affected
+            serialPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, timeout, 0);
+            readTimeout = timeout;
+        }
+        return serialPort.readBytes(buffer, length, offset);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        OutputStream current = out;
+        if (current == null) {
+            throw new IOException("The serial port " + getName() + " is not open");
+        }
+        current.write(buffer, offset, length);
+    }
+
+    @Override
+    public void setDataListener(final DataListener listener) {
+        serialPort.removeDataListener();
+        if (listener != null) {
+            serialPort.addDataListener(new SerialPortDataListener() {
+                @Override
+                public int getListeningEvents() {
+                    return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
+                }
+
+                @Override
+                public void serialEvent(SerialPortEvent event) {
+                    if (event.getEventType() == SerialPort.LISTENING_EVENT_DATA_AVAILABLE) {
+                        listener.dataAvailable(SerialTransport.this);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public String getName() {
+        return serialPort.getSystemPortName();
+    }
+
+    @Override
+    public void close() {
+        serialPort.removeDataListener();
+        out = null;
+        if (serialPort.isOpen()) {
+            serialPort.closePort();
+        }
+    }
+
+    /**
+     * Returns the serial port
+     *
+     * @return Serial port
+     */
+    public SerialPort getSerialPort() {
+        return serialPort;
+    }
+
+    /**
+     * Returns the names of the local serial ports
+     *
+     * @return List of port names
+     */
+    public static List<String> getPortNames() {
+        List<String> names = new ArrayList<>();
+        SerialPort[] ports = SerialPort.getCommPorts();
+        if (ports != null) {
+            for (SerialPort port : ports) {
+                names.add(port.getSystemPortName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Transport} over a raw TCP connection carrying the ESP3 byte stream,
+ * e.g. to a transceiver behind a serial to Ethernet converter or ser2net. The
+ * socket is non-blocking; while a listener is set, a thread of the transport
+ * waits for incoming bytes on a selector and tells the listener about them,
+ * otherwise the reads with a timeout wait on the selector.
+ * <p>
+ * Converters drop idle or flaky connections, so once open the transport
+ * reconnects by itself when the connection is lost, waiting longer after
+ * every failed attempt (see {@link #setReconnectDelays(long, long)}). While
+ * reconnecting the transport stays open: reads return no bytes and writes
+ * fail. A {@link ConnectionListener} is told when the connection is lost and
+ * restored.
+ */
+public class TcpTransport implements Transport {
+
+    private static final Logger logger = LoggerFactory.getLogger(TcpTransport.class);
+
+    // the default connection and write timeout, in milliseconds
+    public static final int DEFAULT_TIMEOUT = 5000;
+
+    // the default delays before reconnecting, doubled after every failed
+    // attempt up to the maximum, in milliseconds
+    public static final long DEFAULT_MIN_RECONNECT_DELAY = 500;
+    public static final long DEFAULT_MAX_RECONNECT_DELAY = 30000;
+
+    // the address of the converter
+    private final String host;
+    private final int port;
+
+    // the connection and write timeout, in milliseconds
+    private volatile int timeout = DEFAULT_TIMEOUT;
+
+    // true to reconnect when the connection is lost, and the delays between
+    // the attempts
+    private volatile boolean reconnect = true;
+    private volatile long minReconnectDelay = DEFAULT_MIN_RECONNECT_DELAY;
+    private volatile long maxReconnectDelay = DEFAULT_MAX_RECONNECT_DELAY;
+
+    // set from open to close
+    private volatile boolean opened;
+
+    // the connection, and the selectors waiting for it to be readable and
+    // writable
+    private volatile SocketChannel channel;
+    private volatile Selector readSelector;
+    private volatile Selector writeSelector;
+
+    // the listener told about new bytes, the supervisor thread waits for one
+    // on the lock
+    private volatile DataListener listener;
+    private final Object listenerLock = new Object();
+
+    // the listener told when the connection is lost and restored
+    private volatile ConnectionListener connectionListener;
+
+    // serialises the writes
+    private final Object writeLock = new Object();
+
+    // set once the current connection was lost
+    private volatile boolean endOfStream;
+
+    // statistics
+    private final AtomicLong reconnections = new AtomicLong();
+
+    /**
+     * Creates a transport connecting to the given address
+     *
+     * @param host Host name or address of the converter
+     * @param port TCP port of the converter
+     */
+    public TcpTransport(String host, int port) {
+        if (port <= 0 || port > 0xffff) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Sets the time allowed to connect, and to write a frame while the socket
+     * buffer is full. Should be called before {@link #open()}.
+     *
+     * @param timeout Timeout, in milliseconds
+     */
+    public void setTimeout(int timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        }
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the time allowed to connect and to write a frame
+     *
+     * @return Timeout, in milliseconds
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Enables or disables the reconnection once the connection is lost; when
+     * disabled, the transport is no longer open once the connection is lost
+     *
+     * @param reconnect True to reconnect
+     */
+    public void setReconnect(boolean reconnect) {
+        this.reconnect = reconnect;
+    }
+
+    /**
+     * Returns true if the transport reconnects once the connection is lost
+     *
+     * @return True if reconnecting
+     */
+    public boolean isReconnect() {
+        return reconnect;
+    }
+
+    /**
+     * Sets the delay before the first reconnection attempt, doubled after
+     * every failed attempt up to the given maximum
+     *
+     * @param minDelay Delay before the first attempt, in milliseconds
+     * @param maxDelay Longest delay between two attempts, in milliseconds
+     */
+    public void setReconnectDelays(long minDelay, long maxDelay) {
+        if (minDelay <= 0 || maxDelay < minDelay) {
+            throw new IllegalArgumentException("Invalid reconnection delays: " + minDelay + " to " + maxDelay);
+        }
+        minReconnectDelay = minDelay;
+        maxReconnectDelay = maxDelay;
+    }
+
+    /**
+     * Returns the delay before the first reconnection attempt
+     *
+     * @return Delay, in milliseconds
+     */
+    public long getMinReconnectDelay() {
+        return minReconnectDelay;
+    }
+
+    /**
+     * Returns the longest delay between two reconnection attempts
+     *
+     * @return Delay, in milliseconds
+     */
+    public long getMaxReconnectDelay() {
+        return maxReconnectDelay;
+    }
+
+    /**
+     * Sets the listener told when the connection is lost and restored
+     *
+     * @param connectionListener Listener or null to remove it
+     */
+    public void setConnectionListener(ConnectionListener connectionListener) {
+        this.connectionListener = connectionListener;
+    }
+
+    /**
+     * Tells whether the transport is currently connected to the converter
+     *
+     * @return True if connected, false if closed or reconnecting
+     */
+    public boolean isConnected() {
+        SocketChannel current = channel;
+        return current != null && current.isOpen() && !endOfStream;
+    }
+
+    /**
+     * Returns the number of times the connection was restored
+     *
+     * @return Reconnection count
+     */
+    public long getReconnections() {
+        return reconnections.get();
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        try {
+            connect();
+        }
+        catch (IOException e) {
+            opened = false;
+            throw e;
+        }
+
+        // wait for incoming bytes, and reconnect
+        Thread supervisor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                supervise();
+            }
+        }, "EnOcean TCP " + getName());
+        supervisor.setDaemon(true);
+        supervisor.start();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return opened && (reconnect || isConnected());
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        SocketChannel current = channel;
+        if (current == null || endOfStream) {
+            return noConnection();
+        }
+        int read;
+        try {
+            read = current.read(ByteBuffer.wrap(buffer, offset, length));
+        }
+        catch (IOException e) {
+            if (!reconnect || current != channel) {
+                throw e;
+            }
+            logger.warn("Cannot read from {}", getName(), e);
+            read = -1;
+        }
+        if (read < 0) {
+            lost();
+            return noConnection();
+        }
+        return read;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        SocketChannel current = channel;
+        Selector selector = writeSelector;
+        if (current == null || endOfStream) {
+            throw new IOException("Not connected to " + getName());
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, offset, length);
+        synchronized (writeLock) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            try {
+                while (bytes.hasRemaining()) {
+                    if (current.write(bytes) == 0) {
+                        long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (left <= 0) {
+                            throw new IOException("Timed out writing to " + getName());
+                        }
+                        selector.select(left);
+                        selector.selectedKeys().clear();
+                    }
+                }
+            }
+            catch (ClosedSelectorException e) {
+                throw new IOException("Not connected to " + getName());
+            }
+            catch (IOException e) {
+                // a broken connection, reconnect
+                if (current == channel) {
+                    lost();
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length, int timeout) throws IOException {
+        int read = read(buffer, offset, length);
+        if (read == 0) {
+            Selector selector = readSelector;
+            if (!isConnected()) {
+                // wait for the reconnection
+                synchronized (this) {
+                    if (opened && !isConnected()) {
+                        try {
+                            wait(timeout);
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+                return noConnection();
+            }
+            try {
+                selector.select(timeout);
+                selector.selectedKeys().clear();
+            }
+            catch (ClosedSelectorException e) {
+                return noConnection();
+            }
+            read = read(buffer, offset, length);
+        }
+        return read;
+    }
+
+    @Override
+    public void setDataListener(DataListener listener) {
+        synchronized (listenerLock) {
+            this.listener = listener;
+            listenerLock.notifyAll();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return host + ":" + port;
+    }
+
+    @Override
+    public synchronized void close() {
+        opened = false;
+        disconnect();
+        notifyAll();
+        synchronized (listenerLock) {
+            listenerLock.notifyAll();
+        }
+    }
+
+    /**
+     * Connects to the converter, unless the transport was closed meanwhile
+     *
+     * @throws IOException If the converter cannot be reached
+     */
+    private void connect() throws IOException {
+        SocketChannel connection = SocketChannel.open();
+        Selector reads = null;
+        Selector writes = null;
+        try {
+            connection.socket().connect(new InetSocketAddress(host, port), timeout);
+            connection.socket().setTcpNoDelay(true);
+            connection.socket().setKeepAlive(true);
+            connection.configureBlocking(false);
+            reads = Selector.open();
+            writes = Selector.open();
+            connection.register(reads, SelectionKey.OP_READ);
+            connection.register(writes, SelectionKey.OP_WRITE);
+        }
+        catch (IOException e) {
+            closeQuietly(connection);
+            closeQuietly(reads);
+            closeQuietly(writes);
+            throw e;
+        }
+        synchronized (this) {
+            if (!opened) {
+                closeQuietly(connection);
+                closeQuietly(reads);
+                closeQuietly(writes);
+                return;
+            }
+            readSelector = reads;
+            writeSelector = writes;
+            endOfStream = false;
+            channel = connection;
+
+            // wake up the reads waiting for the connection
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes the current connection, if any
+     */
+    private synchronized void disconnect() {
+        SocketChannel current = channel;
+        channel = null;
+        if (current != null) {
+            closeQuietly(current);
+            closeQuietly(readSelector);
+            closeQuietly(writeSelector);
+        }
+    }
+
+    /**
+     * Marks the current connection as lost and wakes the supervisor thread up
+     */
+    private void lost() {
+        endOfStream = true;
+        synchronized (listenerLock) {
+            listenerLock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns what a read returns while not connected
+     *
+     * @return 0 while the transport reconnects, -1 once it is closed
+     */
+    private int noConnection() {
+        return isOpen() ? 0 : -1;
+    }
+
+    /**
+     * The loop of the supervisor thread until the transport is closed: tells
+     * the listener about new bytes, and reconnects once the connection is lost
+     */
+    private void supervise() {
+        long delay = minReconnectDelay;
+        while (opened) {
+            SocketChannel connection = channel;
+            if (connection != null) {
+                watch(connection);
+                if (!opened) {
+                    break;
+                }
+                logger.warn("The connection to {} was lost", getName());
+                disconnect();
+                fireConnectionChanged(false);
+                if (!reconnect) {
+                    break;
+                }
+                delay = minReconnectDelay;
+            }
+
+            // wait before the next attempt, unless closed meanwhile
+            synchronized (this) {
+                if (!opened) {
+                    break;
+                }
+                try {
+                    wait(delay);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (!opened) {
+                    break;
+                }
+            }
+            try {
+                connect();
+            }
+            catch (IOException e) {
+                delay = Math.min(delay * 2, maxReconnectDelay);
+                logger.debug("Cannot reconnect to {}, next attempt in {} ms", getName(), delay, e);
+                continue;
+            }
+            if (!opened) {
+                break;
+            }
+            reconnections.incrementAndGet();
+            logger.info("Reconnected to {}", getName());
+            fireConnectionChanged(true);
+        }
+    }
+
+    /**
+     * Tells the listener about the bytes received on a connection, until it is
+     * lost or closed
+     *
+     * @param connection Connection to watch
+     */
+    private void watch(SocketChannel connection) {
+        Selector selector = readSelector;
+        try {
+            while (connection == channel && !endOfStream) {
+                // leave the selector to the reads with a timeout while there
+                // is no listener
+                DataListener current;
+                synchronized (listenerLock) {
+                    while (listener == null && connection == channel && !endOfStream) {
+                        listenerLock.wait();
+                    }
+                    current = listener;
+                }
+                if (current != null && selector.select(1000) > 0) {
+                    selector.selectedKeys().clear();
+                    current.dataAvailable(this);
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            if (connection == channel) {
+                logger.error("Cannot wait for the data received from {}", getName(), e);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fireConnectionChanged(boolean connected) {
+        ConnectionListener current = connectionListener;
+        if (current != null) {
+            try {
+                current.connectionChanged(this, connected);
+            }
+            catch (RuntimeException e) {
+                logger.warn("Connection listener failed", e);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        }
+        catch (IOException e) {
+            logger.debug("Cannot close {}", closeable, e);
+        }
+    }
+
+    /**
+     * Told when the connection to the converter is lost and restored
+     */
+    public interface ConnectionListener {
+
+        /**
+         * Called on the thread of the transport when the connection is lost
+         * or restored
+         *
+         * @param transport The transport
+         * @param connected True once restored, false once lost
+         */
+        void connectionChanged(TcpTransport transport, boolean connected);
+    }
+}
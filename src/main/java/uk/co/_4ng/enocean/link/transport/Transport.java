@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.link.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The byte stream connecting the link layer to an EnOcean transceiver: a
+ * serial port, a TCP connection to a serial to Ethernet converter, or a
+ * simulated transceiver for tests.
+ * <p>
+ * The bytes received are either read as they are signalled to a
+ * {@link DataListener}, on a thread owned by the transport, or by a reader
+ * thread waiting for them with {@link #read(byte[], int, int, int)}. Writes
+ * hand a whole frame over to the transport and only wait while its output
+ * buffer is full.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Opens the transport
+     *
+     * @throws IOException If the transceiver cannot be reached
+     */
+    void open() throws IOException;
+
+    /**
+     * Tells whether the transport is open
+     *
+     * @return True if open
+     */
+    boolean isOpen();
+
+    /**
+     * Reads the bytes received so far, without blocking
+     *
+     * @param buffer Array to read into
+     * @param offset Offset of the first byte to write in the array
+     * @param length Maximum number of bytes to read
+     * @return Number of bytes read, 0 if none is available, -1 if the
+     * transport is closed or the connection was lost
+     * @throws IOException If the bytes cannot be read
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Reads the bytes received so far, waiting up to the given time for the
+     * first one to arrive. Should not be used while a {@link DataListener} is
+     * set.
+     *
+     * @param buffer  Array to read into
+     * @param offset  Offset of the first byte to write in the array
+     * @param length  Maximum number of bytes to read
+     * @param timeout Maximum time to wait, in milliseconds
+     * @return Number of bytes read, 0 if none arrived in time, -1 if the
+     * transport is closed or the connection was lost
+     * @throws IOException If the bytes cannot be read
+     */
+    int read(byte[] buffer, int offset, int length, int timeout) throws IOException;
+
+    /**
+     * Writes bytes, waiting only while the output buffer of the transport is
+     * full
+     *
+     * @param buffer Array holding the bytes
+     * @param offset Offset of the first byte
+     * @param length Number of bytes to write
+     * @throws IOException If the bytes cannot be written
+     */
+    void write(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Sets the listener told when new bytes are available
+     *
+     * @param listener Listener or null to remove it
+     */
+    void setDataListener(DataListener listener);
+
+    /**
+     * Returns a name describing the transport, for logging
+     *
+     * @return Name
+     */
+    String getName();
+
+    /**
+     * Told by a transport when new bytes are available
+     */
+    interface DataListener {
+
+        /**
+         * Called on a thread of the transport when new bytes are available,
+         * the listener should read all of them
+         *
+         * @param transport The transport holding the bytes
+         */
+        void dataAvailable(Transport transport);
+    }
+}
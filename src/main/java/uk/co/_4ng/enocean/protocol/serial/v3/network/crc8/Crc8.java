@@ -39,10 +39,31 @@ public class Crc8 {
      * @return CRC
      */
     public static byte calc(byte[] data) {
+        return calc(data, 0, data.length);
+    }
+
+    /**
+     * Calculate the CRC for a slice of the byte array
+     * @param data Byte array
+     * @param offset Offset of the first byte
+     * @param length Number of bytes
+     * @return CRC
+     */
+    public static byte calc(byte[] data, int offset, int length) {
         byte crc = 0;
-        for (byte aData : data) {
-            crc = crc8Table[(crc ^ aData) & 0xff];
+        for (int i = offset; i < offset + length; i++) {
+            crc = crc8Table[(crc ^ data[i]) & 0xff];
         }
         return crc;
     }
+
+    /**
+     * Adds a single byte to a running CRC
+     * @param crc CRC of the preceding bytes (0 for the first byte)
+     * @param data Byte to add
+     * @return Updated CRC
+     */
+    public static byte update(byte crc, byte data) {
+        return crc8Table[(crc ^ data) & 0xff];
+    }
 }
\ No newline at end of file
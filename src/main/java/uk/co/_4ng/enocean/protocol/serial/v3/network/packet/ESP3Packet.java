@@ -16,11 +16,13 @@
 
 package uk.co._4ng.enocean.protocol.serial.v3.network.packet;
 
+import uk.co._4ng.enocean.eep.Rorg;
 import uk.co._4ng.enocean.protocol.serial.v3.network.crc8.Crc8;
 import uk.co._4ng.enocean.protocol.serial.v3.network.packet.event.Event;
 import uk.co._4ng.enocean.util.EnOceanUtils;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * A class for representing EnOcean Serial Protocol version 3 packets
@@ -50,6 +52,17 @@ public class ESP3Packet {
     public static final byte REMOTE_MAN_COMMAND = 7;
     public static final byte RADIO_MESSAGE = 9;
     public static final byte RADIO_ADVANCED = 10;
+
+    // the flag of the first data byte of UTE teach-in telegrams telling that
+    // no response is expected
+    private static final byte UTE_NO_RESPONSE = 0x40;
+
+    // the signal strength of a received telegram when it is not known
+    public static final int UNKNOWN_DBM = Integer.MIN_VALUE;
+
+    // the offset of the signal strength in the optional data of radio
+    // telegrams
+    private static final int OPT_DBM = 5;
     // serial synchronization byte
     protected byte syncByte; // Il problema e che byte e signed
     // identifies the packet type
@@ -67,6 +80,31 @@ public class ESP3Packet {
     // checksum for DATA and OPTIONAL_DATA
     private byte crc8d;
 
+    // the System.nanoTime() at which the packet was received, 0 if not received
+    private long receivedAt;
+
+    // set while a received packet needing a response is handed to the
+    // priority delivery
+    private volatile boolean priorityQueued;
+
+    // the owner of a pooled packet, null for ordinary packets
+    private final Recycler recycler;
+    // the number of holders of a pooled packet
+    private volatile int references;
+    private static final AtomicIntegerFieldUpdater<ESP3Packet> REFERENCES = AtomicIntegerFieldUpdater.newUpdater(ESP3Packet.class, "references");
+
+    /**
+     * Takes back pooled packets once their last reference has been released
+     */
+    public interface Recycler {
+        /**
+         * Called when the last reference to a pooled packet is released
+         *
+         * @param pkt The packet to take back
+         */
+        void recycle(ESP3Packet pkt);
+    }
+
     // --------------- Constructors --------------------
 
     /**
@@ -74,6 +112,24 @@ public class ESP3Packet {
      */
     public ESP3Packet() {
         syncByte = SYNC_BYTE;
+        recycler = null;
+    }
+
+    /**
+     * Creates a pooled packet whose data arrays are allocated once with the
+     * given lengths and reused by {@link #parsePacket(byte[], int)}. The
+     * packet is handed back to the recycler when its last reference is
+     * released.
+     *
+     * @param dataLen  Length of the data
+     * @param optLen   Length of the optional data
+     * @param recycler Owner of the packet
+     */
+    public ESP3Packet(int dataLen, int optLen, Recycler recycler) {
+        syncByte = SYNC_BYTE;
+        data = new byte[dataLen];
+        optData = new byte[optLen];
+        this.recycler = recycler;
     }
 
     /**
@@ -83,6 +139,7 @@ public class ESP3Packet {
      */
     public ESP3Packet(byte packetType, byte[] data, byte[] optData) {
         syncByte = 0x55;
+        recycler = null;
         this.packetType = packetType;
         this.data = data;
         this.optData = optData;
@@ -293,14 +350,25 @@ public class ESP3Packet {
     }
 
     public void parsePacket(byte[] buffer) {
+        parsePacket(buffer, 0);
+    }
+
+    /**
+     * Fills this packet from a complete frame held in the given buffer,
+     * starting at the given offset (the position of the sync byte)
+     *
+     * @param buffer Buffer holding the frame
+     * @param offset Offset of the sync byte within the buffer
+     */
+    public void parsePacket(byte[] buffer, int offset) {
         // "Inpacchetto" cio che arriva in ingresso
 
-        syncByte = buffer[0];
-        dataLength[0] = buffer[1];
-        dataLength[1] = buffer[2];
-        optLength = buffer[3];
-        packetType = buffer[4];
-        crc8h = buffer[5];
+        syncByte = buffer[offset];
+        dataLength[0] = buffer[offset + 1];
+        dataLength[1] = buffer[offset + 2];
+        optLength = buffer[offset + 3];
+        packetType = buffer[offset + 4];
+        crc8h = buffer[offset + 5];
 
         // byte array to unsigned int conversion
         int dataLen = (this.dataLength[0] << 8 & 0xff00) + (this.dataLength[1] & 0xff);
@@ -309,20 +377,105 @@ public class ESP3Packet {
         int optLen = this.optLength & 0xFF;
 
         // Inizializzo il vettore dei dati alla lunghezza effettiva
-        data = new byte[dataLen];
+        // (pooled packets keep the arrays they already have)
+        if (data == null || data.length != dataLen) {
+            data = new byte[dataLen];
+        }
 
-        System.arraycopy(buffer, 6, data, 0, dataLen);
+        System.arraycopy(buffer, offset + 6, data, 0, dataLen);
 
         // Inizializzo il vettore dati opzionali alla lunghezza effettiva
-        optData = new byte[optLen];
-
-        for (int i = 0; i < optLen; i++) {
-            optData[i] = buffer[6 + dataLen + i];
+        if (optData == null || optData.length != optLen) {
+            optData = new byte[optLen];
         }
-        crc8d = buffer[6 + dataLen + optLen];
+
+        System.arraycopy(buffer, offset + 6 + dataLen, optData, 0, optLen);
+
+        crc8d = buffer[offset + 6 + dataLen + optLen];
 
     } // Fine parsePacket
 
+    /**
+     * Copies the header fields, CRCs included, of the given packet into this
+     * one and shares its data arrays, so that a typed view of a received
+     * packet can be built without recomputing the CRCs
+     *
+     * @param pkt Packet to copy from
+     */
+    protected void copyFrom(ESP3Packet pkt) {
+        syncByte = pkt.syncByte;
+        packetType = pkt.packetType;
+        dataLength[0] = pkt.dataLength[0];
+        dataLength[1] = pkt.dataLength[1];
+        optLength = pkt.optLength;
+        crc8h = pkt.crc8h;
+        data = pkt.data;
+        optData = pkt.optData;
+        crc8d = pkt.crc8d;
+        receivedAt = pkt.receivedAt;
+        priorityQueued = pkt.priorityQueued;
+    }
+
+    /**
+     * Returns an ordinary (not pooled) copy of this packet, owning its own
+     * data arrays, for holders that need to keep the packet beyond its
+     * delivery
+     *
+     * @return Detached copy
+     */
+    public ESP3Packet copy() {
+        ESP3Packet pkt = new ESP3Packet();
+        pkt.copyFrom(this);
+        pkt.data = data.clone();
+        pkt.optData = optData.clone();
+        return pkt;
+    }
+
+    /**
+     * Returns true if this packet belongs to a pool and must be released by
+     * its holders once handled
+     *
+     * @return True if pooled
+     */
+    public boolean isPooled() {
+        return recycler != null;
+    }
+
+    /**
+     * Adds a reference to a pooled packet, holders keeping the packet beyond
+     * the call that handed it over must retain it and release it later.
+     * Ordinary packets are unaffected.
+     *
+     * @return This packet
+     */
+    public ESP3Packet retain() {
+        if (recycler != null) {
+            REFERENCES.incrementAndGet(this);
+        }
+        return this;
+    }
+
+    /**
+     * Drops a reference to a pooled packet, handing the packet back to its pool
+     * when it was the last one. Ordinary packets are unaffected.
+     *
+     * @return True if the packet went back to its pool
+     */
+    public boolean release() {
+        if (recycler != null) {
+            int remaining = REFERENCES.decrementAndGet(this);
+            if (remaining == 0) {
+                recycler.recycle(this);
+                return true;
+            }
+            if (remaining < 0) {
+                REFERENCES.incrementAndGet(this);
+                throw new IllegalStateException("Pooled packet released more times than retained");
+            }
+        }
+        return false;
+    }
+
     // Metodi per discriminare che tipo di pacchetto ho ricevuto
     public boolean isResponse() {
         return packetType == RESPONSE;
@@ -336,8 +489,73 @@ public class ESP3Packet {
         return packetType == RADIO;
     }
 
+    /**
+     * Returns true if the packet must be answered within a short time window:
+     * the Smart Ack events expecting a response, and the UTE teach-in
+     * telegrams asking for one
+     *
+     * @return True if a timely response is required
+     */
     public boolean requiresResponse() {
-        return isEvent() && (packetType == Event.SA_RECLAIM_NOT_SUCCESSFUL || packetType == Event.SA_CONFIRM_LEARN || packetType == Event.SA_LEARN_ACK);
+        if (data == null || data.length == 0) {
+            return false;
+        }
+        if (isEvent()) {
+            return data[0] == Event.SA_RECLAIM_NOT_SUCCESSFUL || data[0] == Event.SA_CONFIRM_LEARN || data[0] == Event.SA_LEARN_ACK;
+        }
+        return isRadio() && data[0] == Rorg.UTE && data.length > 1 && (data[1] & UTE_NO_RESPONSE) == 0;
+    }
+
+    /**
+     * Returns the signal strength a radio telegram was received with, the
+     * best of its subtelegrams, taken from its optional data
+     *
+     * @return Signal strength in dBm (e.g. -64), {@link #UNKNOWN_DBM} if not
+     * a received radio telegram
+     */
+    public int getDbm() {
+        if ((packetType != RADIO && packetType != RADIO_SUB_TEL) || optData == null || optData.length <= OPT_DBM || optData[OPT_DBM] == (byte) 0xff) {
+            return UNKNOWN_DBM;
+        }
+        return -(optData[OPT_DBM] & 0xff);
+    }
+
+    /**
+     * Returns the time at which the packet was received
+     *
+     * @return {@link System#nanoTime()} value, 0 if the packet was not received
+     */
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    /**
+     * Sets the time at which the packet was received
+     *
+     * @param receivedAt {@link System#nanoTime()} value
+     */
+    public void setReceivedAt(long receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Tells whether a received packet needing a response was handed to the
+     * priority delivery, which answers it, rather than dropped because the
+     * priority queue was full
+     *
+     * @return True if the priority delivery took the packet
+     */
+    public boolean isPriorityQueued() {
+        return priorityQueued;
+    }
+
+    /**
+     * Records whether a received packet was handed to the priority delivery
+     *
+     * @param priorityQueued True if the priority delivery took the packet
+     */
+    public void setPriorityQueued(boolean priorityQueued) {
+        this.priorityQueued = priorityQueued;
     }
 
     @Override
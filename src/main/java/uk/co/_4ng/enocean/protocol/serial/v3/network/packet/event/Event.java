@@ -44,7 +44,8 @@ public class Event extends ESP3Packet {
      */
     public Event(byte respCode) {
         packetType = 0x04;
-        data[0] = respCode;
+        data = new byte[]{respCode};
+        optData = new byte[0];
         buildPacket();
     }
 
@@ -59,11 +60,7 @@ public class Event extends ESP3Packet {
             throw new EnOceanException("Packet is null");
         }
         if (pkt.isEvent()) {
-            syncByte = pkt.getSyncByte();
-            packetType = pkt.getPacketType();
-            data = pkt.getData();
-            optData = pkt.getOptData();
-            buildPacket();
+            copyFrom(pkt);
         }
         else {
             throw new EnOceanException("Incompatible packet type (not an Event): {}", pkt.getPacketType());
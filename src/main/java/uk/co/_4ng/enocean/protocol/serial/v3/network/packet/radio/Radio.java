@@ -81,11 +81,7 @@ public class Radio extends ESP3Packet {
             throw new EnOceanException("Packet is null");
         }
         if (pkt.isRadio()) {
-            syncByte = pkt.getSyncByte();
-            packetType = pkt.getPacketType();
-            data = pkt.getData();
-            optData = pkt.getOptData();
-            buildPacket();
+            copyFrom(pkt);
         }
         else {
             throw new EnOceanException("Incompatible packet type (not a Radio): {}", pkt.getPacketType());
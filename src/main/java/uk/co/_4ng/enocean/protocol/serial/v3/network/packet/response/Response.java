@@ -38,7 +38,8 @@ public class Response extends ESP3Packet {
      */
     public Response(byte respCode) {
         packetType = RESPONSE;
-        data[0] = respCode;
+        data = new byte[]{respCode};
+        optData = new byte[0];
         buildPacket();
     }
 
@@ -52,11 +53,7 @@ public class Response extends ESP3Packet {
             throw new EnOceanException("Packet is null");
         }
         if (pkt.isResponse()) {
-            syncByte = pkt.getSyncByte();
-            packetType = pkt.getPacketType();
-            data = pkt.getData();
-            optData = pkt.getOptData();
-            buildPacket();
+            copyFrom(pkt);
         }
         else {
             throw new EnOceanException("Incompatible packet type (not a Response): {}", pkt.getPacketType());
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co._4ng.enocean.link.OverflowPolicy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks on a fixed set of single threaded stripes, choosing the stripe
+ * from a key such as a device address. Tasks with the same key always run on
+ * the same stripe, one after the other in submission order, while tasks with
+ * different keys run in parallel on the other stripes.
+ * <p>
+ * Every stripe has a bounded queue; when it is full the {@link OverflowPolicy}
+ * decides whether the submitter waits, or whether the oldest or the new task
+ * is dropped. The stripe threads are daemons, started on the first task for
+ * their stripe.
+ */
+public class StripedExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedExecutor.class);
+
+    // the default queue capacity of every stripe
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    // the name of the stripe threads
+    private final String name;
+
+    // the stripes
+    private final Stripe[] stripes;
+
+    // the behaviour when a stripe queue is full
+    private final OverflowPolicy overflowPolicy;
+
+    // statistics
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // the shutdown flag
+    private volatile boolean shutdown;
+
+    /**
+     * Creates an executor with one stripe per processor, making submitters
+     * wait when a stripe queue is full
+     *
+     * @param name Name of the stripe threads
+     */
+    public StripedExecutor(String name) {
+        this(name, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates an executor
+     *
+     * @param name           Name of the stripe threads
+     * @param stripes        Number of stripes, i.e. of threads
+     * @param queueCapacity  Number of tasks every stripe can hold
+     * @param overflowPolicy Behaviour when a stripe queue is full
+     */
+    public StripedExecutor(String name, int stripes, int queueCapacity, OverflowPolicy overflowPolicy) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Invalid stripe count: " + stripes);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + queueCapacity);
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("An overflow policy is required");
+        }
+        this.name = name;
+        this.overflowPolicy = overflowPolicy;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(i, queueCapacity);
+        }
+    }
+
+    /**
+     * Runs a task after the ones previously submitted with the same key
+     *
+     * @param key  Ordering key, e.g. a device UID
+     * @param task Task to run
+     * @return True if the task was queued, false if it was dropped or the
+     * executor is shut down
+     */
+    public boolean execute(int key, Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("Null tasks are not supported");
+        }
+        if (shutdown) {
+            return false;
+        }
+        return stripes[getStripe(key)].offer(task);
+    }
+
+    /**
+     * Returns the stripe running the tasks of a key
+     *
+     * @param key Ordering key
+     * @return Stripe index
+     */
+    public int getStripe(int key) {
+        // spread the key bits, device addresses often differ in a few bits only
+        int hash = key * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return (hash & 0x7fffffff) % stripes.length;
+    }
+
+    /**
+     * Returns the number of stripes
+     *
+     * @return Stripe count
+     */
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Returns the behaviour when a stripe queue is full
+     *
+     * @return Overflow policy
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the number of tasks waiting in all the stripes
+     *
+     * @return Queued task count
+     */
+    public int getQueued() {
+        int queued = 0;
+        for (Stripe stripe : stripes) {
+            queued += stripe.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the number of tasks run
+     *
+     * @return Executed task count
+     */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * Returns the number of tasks dropped because their stripe was full
+     *
+     * @return Dropped task count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of tasks that threw an exception
+     *
+     * @return Failed task count
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Stops the stripe threads, the tasks still queued are discarded
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Stripe stripe : stripes) {
+            stripe.stop();
+        }
+    }
+
+    /**
+     * Returns true once {@link #shutdown()} has been called
+     *
+     * @return True if shut down
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * A single threaded stripe
+     */
+    private final class Stripe implements Runnable {
+        private final int index;
+        private final BlockingQueue<Runnable> queue;
+        private Thread thread;
+
+        Stripe(int index, int queueCapacity) {
+            this.index = index;
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * Queues a task applying the overflow policy, starting the thread if
+         * needed
+         */
+        boolean offer(Runnable task) {
+            start();
+            if (queue.offer(task)) {
+                return true;
+            }
+            switch (overflowPolicy) {
+                case BLOCK:
+                    try {
+                        queue.put(task);
+                        return true;
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+
+                case DROP_OLDEST:
+                    do {
+                        if (queue.poll() != null) {
+                            dropped.incrementAndGet();
+                        }
+                    } while (!queue.offer(task));
+                    return true;
+
+                default:
+                    dropped.incrementAndGet();
+                    return false;
+            }
+        }
+
+        synchronized void start() {
+            if (thread == null && !shutdown) {
+                thread = new Thread(this, name + " " + index);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        synchronized void stop() {
+            if (thread != null) {
+                thread.interrupt();
+            }
+            queue.clear();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!shutdown) {
+                    Runnable task = queue.take();
+                    try {
+                        task.run();
+                    }
+                    catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        logger.warn("Task {} failed", task, e);
+                    }
+                    executed.incrementAndGet();
+                }
+            }
+            catch (InterruptedException e) {
+                logger.debug("Stripe {} of {} stopped", index, name);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.devices;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.co._4ng.enocean.eep.EEPIdentifier;
+import uk.co._4ng.enocean.eep.eep26.EEPRegistry;
+import uk.co._4ng.enocean.protocol.serial.v3.network.crc8.Crc8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the replay, repair and compaction of the device journal on crafted
+ * files
+ */
+public class DeviceJournalTest {
+
+    // the file header and record types, as written by the journal
+    private static final int MAGIC = 0x454E4A01;
+    private static final int HEADER_SIZE = 8;
+    private static final byte REGISTER = 1;
+    private static final byte REGISTER_MANUFACTURER = 2;
+    private static final byte REMOVE = 3;
+    private static final byte CLEAR = 4;
+
+    // the profiles of the crafted devices
+    private static final EEPIdentifier A50205 = new EEPIdentifier(0xA5, 0x02, 0x05);
+    private static final EEPIdentifier D20108 = new EEPIdentifier(0xD2, 0x01, 0x08);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysTheRecords() throws IOException {
+        Path file = write(header(),
+                record(REGISTER, 0x01000001, null, A50205),
+                record(REGISTER_MANUFACTURER, 0x01000002, new byte[]{0x00, 0x0B, 0x01}, D20108),
+                record(REGISTER, 0x01000003, null, null),
+                record(REMOVE, 0x01000003, null, null),
+                record(REGISTER, 0x01000001, null, D20108));
+
+        try (DeviceJournal journal = new DeviceJournal(file)) {
+            Map<Integer, EnOceanDevice> devices = journal.open();
+            assertEquals(Arrays.asList(0x01000001, 0x01000002), new ArrayList<>(devices.keySet()));
+            assertEquals(D20108, devices.get(0x01000001).getEEP().getIdentifier());
+            assertNull(devices.get(0x01000001).getManufacturerId());
+            assertEquals(D20108, devices.get(0x01000002).getEEP().getIdentifier());
+            assertArrayEquals(new byte[]{0x00, 0x0B, 0x01}, devices.get(0x01000002).getManufacturerId());
+            assertEquals(5, journal.getRecords());
+            assertEquals(2, journal.getLoadedDevices());
+        }
+    }
+
+    @Test
+    public void replaysAClear() throws IOException {
+        Path file = write(header(),
+                record(REGISTER, 0x01000001, null, A50205),
+                record(CLEAR, 0, null, null),
+                record(REGISTER, 0x01000002, null, A50205));
+
+        try (DeviceJournal journal = new DeviceJournal(file)) {
+            Map<Integer, EnOceanDevice> devices = journal.open();
+            assertEquals(Arrays.asList(0x01000002), new ArrayList<>(devices.keySet()));
+        }
+    }
+
+    @Test
+    public void truncatesATornTail() throws IOException {
+        byte[] corrupted = record(REGISTER, 0x01000003, null, A50205);
+        corrupted[DeviceJournal.RECORD_SIZE - 1] ^= 0x5A;
+        Path file = write(header(),
+                record(REGISTER, 0x01000001, null, A50205),
+                record(REGISTER, 0x01000002, null, A50205),
+                corrupted,
+                Arrays.copyOf(record(REGISTER, 0x01000004, null, A50205), 5));
+
+        try (DeviceJournal journal = new DeviceJournal(file)) {
+            Map<Integer, EnOceanDevice> devices = journal.open();
+            assertEquals(Arrays.asList(0x01000001, 0x01000002), new ArrayList<>(devices.keySet()));
+            assertEquals(2, journal.getRecords());
+            assertEquals(HEADER_SIZE + 2 * DeviceJournal.RECORD_SIZE, Files.size(file));
+
+            // later records follow the last valid one
+            journal.registered(device(0x01000005, D20108));
+        }
+        try (DeviceJournal journal = new DeviceJournal(file)) {
+            Map<Integer, EnOceanDevice> devices = journal.open();
+            assertEquals(Arrays.asList(0x01000001, 0x01000002, 0x01000005), new ArrayList<>(devices.keySet()));
+            assertEquals(3, journal.getRecords());
+        }
+    }
+
+    @Test
+    public void skipsACorruptedRecordFollowedByValidOnes() throws IOException {
+        byte[] corrupted = record(REGISTER, 0x01000002, null, A50205);
+        corrupted[3] ^= 0x01;
+        byte[] unknown = record((byte) 0x7F, 0x01000003, null, A50205);
+        Path file = write(header(),
+                record(REGISTER, 0x01000001, null, A50205),
+                corrupted,
+                unknown,
+                record(REGISTER, 0x01000004, null, D20108),
+                record(REMOVE, 0x01000001, null, null));
+        long size = Files.size(file);
+
+        try (DeviceJournal journal = new DeviceJournal(file)) {
+            Map<Integer, EnOceanDevice> devices = journal.open();
+            assertEquals(Arrays.asList(0x01000004), new ArrayList<>(devices.keySet()));
+            assertEquals(D20108, devices.get(0x01000004).getEEP().getIdentifier());
+
+            // the skipped records are kept, as obsolete ones
+            assertEquals(5, journal.getRecords());
+            assertEquals(size, Files.size(file));
+        }
+    }
+
+    @Test
+    public void compactsAndReopens() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("devices.journal");
+        try (DeviceJournal journal = new DeviceJournal(file)) {
+            journal.setCompactionThreshold(16);
+            assertTrue(journal.open().isEmpty());
+            for (int i = 0; i < 64; i++) {
+                journal.registered(device(0x01000000 + i, i % 2 == 0 ? A50205 : D20108));
+            }
+            for (int i = 0; i < 64; i += 2) {
+                journal.removed(0x01000000 + i);
+            }
+            for (int i = 1; i < 64; i += 4) {
+                journal.registered(device(0x01000000 + i, A50205));
+            }
+            assertTrue(journal.getCompactions() > 0);
+
+            journal.compact();
+            assertEquals(32, journal.getRecords());
+            assertEquals(HEADER_SIZE + 32 * DeviceJournal.RECORD_SIZE, Files.size(file));
+            assertTrue(Files.notExists(file.resolveSibling(file.getFileName() + ".tmp")));
+
+            // records appended after a compaction are kept
+            journal.removed(0x01000003);
+        }
+
+        try (DeviceJournal journal = new DeviceJournal(file)) {
+            Map<Integer, EnOceanDevice> devices = journal.open();
+            assertEquals(31, devices.size());
+            for (int i = 1; i < 64; i += 2) {
+                EnOceanDevice device = devices.get(0x01000000 + i);
+                if (i == 3) {
+                    assertNull(device);
+                }
+                else {
+                    assertEquals(i % 4 == 1 ? A50205 : D20108, device.getEEP().getIdentifier());
+                }
+            }
+            assertEquals(33, journal.getRecords());
+        }
+    }
+
+    private Path write(byte[]... parts) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            content.write(part);
+        }
+        Path file = folder.newFile().toPath();
+        Files.write(file, content.toByteArray());
+        return file;
+    }
+
+    private static byte[] header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(DeviceJournal.RECORD_SIZE).array();
+    }
+
+    private static byte[] record(byte type, int uid, byte[] manufacturerId, EEPIdentifier eep) {
+        ByteBuffer record = ByteBuffer.allocate(DeviceJournal.RECORD_SIZE);
+        record.put(type);
+        record.putInt(uid);
+        record.put(manufacturerId == null ? new byte[3] : manufacturerId);
+        if (eep != null) {
+            record.put(eep.getRorg().getRorgValue());
+            record.put(eep.getFunction());
+            record.put(eep.getType());
+        }
+        byte[] bytes = record.array();
+        bytes[DeviceJournal.RECORD_SIZE - 1] = Crc8.calc(bytes, 0, DeviceJournal.RECORD_SIZE - 1);
+        return bytes;
+    }
+
+    private static EnOceanDevice device(int uid, EEPIdentifier eep) {
+        EnOceanDevice device = new EnOceanDevice(new byte[]{(byte) (uid >>> 24), (byte) (uid >>> 16), (byte) (uid >>> 8), (byte) uid}, null);
+        device.setEEP(EEPRegistry.getEEP(eep));
+        return device;
+    }
+}
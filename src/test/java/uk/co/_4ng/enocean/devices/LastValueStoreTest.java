@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017 enocean4j development teams
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co._4ng.enocean.devices;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.co._4ng.enocean.eep.BooleanAttribute;
+import uk.co._4ng.enocean.eep.DoubleAttribute;
+import uk.co._4ng.enocean.eep.EEPAttributeChangeJob;
+import uk.co._4ng.enocean.eep.IntAttribute;
+import uk.co._4ng.enocean.eep.eep26.attributes.EEP26RockerSwitch2RockerButtonCount;
+import uk.co._4ng.enocean.eep.eep26.attributes.EEP26RockerSwitch2RockerEnergyBow;
+import uk.co._4ng.enocean.eep.eep26.attributes.EEP26TemperatureLinear;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests storing, growing, purging and restoring the last value store
+ */
+public class LastValueStoreTest {
+
+    // the channel of the profiles used
+    private static final int CHANNEL = 0;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // the store file and the device managers, shut down after every test
+    private Path file;
+    private final List<DeviceManager> managers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        file = folder.getRoot().toPath().resolve("values.store");
+    }
+
+    @After
+    public void tearDown() {
+        for (DeviceManager deviceManager : managers) {
+            deviceManager.shutdown();
+        }
+    }
+
+    @Test
+    public void restoresTheStoredValues() throws IOException {
+        DeviceManager before = deviceManager();
+        EnOceanDevice sensor = before.registerDevice("01000001", "A5-02-05");
+        EnOceanDevice rocker = before.registerDevice("01000002", "F6-02-01");
+        EnOceanDevice absent = before.registerDevice("01000003", "A5-02-05");
+        try (LastValueStore store = new LastValueStore(file, 1024)) {
+            storeTemperature(store, before, sensor, 21.5);
+            storeTemperature(store, before, absent, 18.0);
+            storeRocker(store, before, rocker, 2, true);
+            assertEquals(4, store.getSize());
+        }
+
+        // the values of devices not registered are kept for later restores
+        DeviceManager after = deviceManager();
+        after.registerDevice("01000001", "A5-02-05");
+        after.registerDevice("01000002", "F6-02-01");
+        try (LastValueStore store = new LastValueStore(file)) {
+            assertEquals(1024, store.getCapacity());
+            assertEquals(3, store.restore(after));
+        }
+        assertEquals(21.5, after.getDeviceState(sensor.getAddressInt()).getValue(CHANNEL, EEP26TemperatureLinear.NAME));
+        assertEquals(2, after.getDeviceState(rocker.getAddressInt()).getValue(CHANNEL, EEP26RockerSwitch2RockerButtonCount.NAME));
+        assertEquals(true, after.getDeviceState(rocker.getAddressInt()).getValue(CHANNEL, EEP26RockerSwitch2RockerEnergyBow.NAME));
+
+        // the values already in the device state are not restored again
+        after.registerDevice("01000003", "A5-02-05");
+        try (LastValueStore store = new LastValueStore(file)) {
+            assertEquals(1, store.restore(after));
+        }
+        assertEquals(18.0, after.getDeviceState(absent.getAddressInt()).getValue(CHANNEL, EEP26TemperatureLinear.NAME));
+    }
+
+    @Test
+    public void growsPastAFullSegment() throws IOException {
+        int devices = 1000;
+        DeviceManager before = deviceManager();
+        try (LastValueStore store = new LastValueStore(file, 1)) {
+            assertEquals(LastValueStore.SEGMENTS * 4, store.getCapacity());
+            for (int i = 0; i < devices; i++) {
+                storeTemperature(store, before, before.registerDevice(address(i), "A5-02-05"), i % 40);
+            }
+            assertTrue(store.getGrowths() > 0);
+            assertTrue(store.getCapacity() * 3 / 4 >= devices);
+            assertEquals(devices, store.getSize());
+            assertEquals(0, store.getDropped());
+        }
+
+        DeviceManager after = deviceManager();
+        for (int i = 0; i < devices; i++) {
+            after.registerDevice(address(i), "A5-02-05");
+        }
+        try (LastValueStore store = new LastValueStore(file)) {
+            assertEquals(devices, store.restore(after));
+        }
+        for (int i = 0; i < devices; i++) {
+            assertEquals((double) (i % 40), after.getDeviceState(0x01000000 + i).getValue(CHANNEL, EEP26TemperatureLinear.NAME));
+        }
+    }
+
+    @Test
+    public void purgesTheRemovedSlots() throws IOException {
+        int window = 200;
+        DeviceManager deviceManager = deviceManager();
+        try (LastValueStore store = new LastValueStore(file, 1024)) {
+            for (int i = 0; i < 20000; i++) {
+                storeTemperature(store, deviceManager, deviceManager.registerDevice(address(i), "A5-02-05"), 20.0);
+                if (i >= window) {
+                    EnOceanDevice old = deviceManager.getDevice(0x01000000 + i - window);
+                    deviceManager.unRegisterDevice(old);
+                    store.remove(old);
+                }
+            }
+            assertTrue(store.getPurges() > 0);
+            assertEquals(0, store.getGrowths());
+            assertEquals(1024, store.getCapacity());
+            assertEquals(window, store.getSize());
+            assertEquals(window, store.restore(deviceManager));
+        }
+    }
+
+    @Test
+    public void closesWhileUpdating() throws Exception {
+        final DeviceManager deviceManager = deviceManager();
+        final LastValueStore store = new LastValueStore(file, 1);
+        final EnOceanDevice[] devices = new EnOceanDevice[4];
+        for (int i = 0; i < devices.length; i++) {
+            devices[i] = deviceManager.registerDevice(address(i), "A5-02-05");
+        }
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch started = new CountDownLatch(devices.length);
+        final List<Throwable> errors = new ArrayList<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < devices.length; i++) {
+            final int writer = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        // every writer adds values of its own, so that the store grows
+                        for (int n = 0; running.get(); n++) {
+                            EnOceanDevice device = n % 2 == 0 ? devices[writer] : deviceManager.registerDevice(address(devices.length + writer + n * devices.length), "A5-02-05");
+                            storeTemperature(store, deviceManager, device, n % 40);
+                        }
+                    }
+                    catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+            writers.add(thread);
+            thread.start();
+        }
+        started.await();
+        Thread.sleep(50);
+        store.close();
+        Thread.sleep(20);
+
+        // the store ignores the calls made once closed
+        store.remove(devices[0]);
+        store.clear();
+        store.flush();
+        assertEquals(0, store.restore(deviceManager));
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), errors);
+
+        try (LastValueStore reopened = new LastValueStore(file)) {
+            assertTrue(reopened.getSize() > devices.length);
+            assertTrue(reopened.restore(deviceManager) > devices.length);
+        }
+        for (EnOceanDevice device : devices) {
+            double value = (Double) deviceManager.getDeviceState(device.getAddressInt()).getValue(CHANNEL, EEP26TemperatureLinear.NAME);
+            assertTrue(value >= 0 && value < 40);
+        }
+    }
+
+    private DeviceManager deviceManager() {
+        DeviceManager deviceManager = new DeviceManager();
+        managers.add(deviceManager);
+        return deviceManager;
+    }
+
+    private static String address(int index) {
+        return String.format("%08X", 0x01000000 + index);
+    }
+
+    private static void storeTemperature(LastValueStore store, DeviceManager deviceManager, EnOceanDevice device, double value) {
+        DoubleAttribute temperature = (DoubleAttribute) device.getEEP().getChannelAttribute(CHANNEL, EEP26TemperatureLinear.NAME);
+        temperature.setDouble(value);
+        store.update(device, new EEPAttributeChangeJob(deviceManager, temperature, CHANNEL, null, device));
+    }
+
+    private static void storeRocker(LastValueStore store, DeviceManager deviceManager, EnOceanDevice device, int buttons, boolean energyBow) {
+        IntAttribute buttonCount = (IntAttribute) device.getEEP().getChannelAttribute(CHANNEL, EEP26RockerSwitch2RockerButtonCount.NAME);
+        BooleanAttribute pressed = (BooleanAttribute) device.getEEP().getChannelAttribute(CHANNEL, EEP26RockerSwitch2RockerEnergyBow.NAME);
+        buttonCount.setInt(buttons);
+        pressed.setBoolean(energyBow);
+        store.update(device, new EEPAttributeChangeJob(deviceManager, buttonCount, CHANNEL, null, device));
+        store.update(device, new EEPAttributeChangeJob(deviceManager, pressed, CHANNEL, null, device));
+    }
+}
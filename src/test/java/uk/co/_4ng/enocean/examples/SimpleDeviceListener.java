@@ -54,7 +54,7 @@ public class SimpleDeviceListener implements DeviceListener,DeviceValueListener,
     @Override
     public void deviceAttributeChange(EEPAttributeChangeJob eepAttributeChangeJob) {
         for (EEPAttributeChangeJob.EEPAttributeChange attr : eepAttributeChangeJob.getChanges()) {
-            logger.info("Device: {} Channel: {} Attribute: {} Value: {}", attr.getDevice().getAddressHex(), attr.getChannelId(), attr.getAttribute().getName(), attr.getAttribute().getValue());
+            logger.info("Device: {} Channel: {} Attribute: {} Value: {}", attr.getDevice().getAddressHex(), attr.getChannelId(), attr.getName(), attr.getValue());
         }
     }
 
@@ -22,6 +22,7 @@ import uk.co._4ng.enocean.eep.eep26.profiles.D2.D201.D20109;
 import uk.co._4ng.enocean.eep.eep26.profiles.D2.D201.D201UnitOfMeasure;
 import uk.co._4ng.enocean.examples.util.Options;
 import uk.co._4ng.enocean.link.LinkLayer;
+import uk.co._4ng.enocean.link.transport.TcpTransport;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -42,7 +43,7 @@ public class TestApp {
      */
     public static void main(String[] args) throws InterruptedException {
         // a utility object for managing command line arguments...
-        Options opt = new Options(new String[]{"-p port", "The serial port to which the EnOcean dongle / adapter is connected", "-m mode", "the testmode, either [interactive,demo], default is demo"}, "java TestApp", args);
+        Options opt = new Options(new String[]{"-p port", "The serial port to which the EnOcean dongle / adapter is connected, or the host:port of a serial to Ethernet converter", "-m mode", "the testmode, either [interactive,demo], default is demo"}, "java TestApp", args);
 
         // create an instance of TestApp
         TestApp app = new TestApp();
@@ -51,8 +52,16 @@ public class TestApp {
         if (opt.getValue('p') != null && !opt.getValue('p').isEmpty()) {
             // The EnOcean link layer
             try {
-                // create the lowest link layer
-                LinkLayer linkLayer = new LinkLayer(opt.getValue('p'));
+                // create the lowest link layer, over TCP for a host:port
+                String portName = opt.getValue('p');
+                int colon = portName.lastIndexOf(':');
+                LinkLayer linkLayer;
+                if (colon > 0) {
+                    linkLayer = new LinkLayer(new TcpTransport(portName.substring(0, colon), Integer.parseInt(portName.substring(colon + 1))));
+                }
+                else {
+                    linkLayer = new LinkLayer(portName);
+                }
                 DeviceManager deviceManager = new DeviceManager();
 
                 // create a device listener for handling device updates and value changes